@@ -1,10 +1,19 @@
 package ch.martinelli.fun.kututipp;
 
+import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
+import com.vaadin.flow.theme.Theme;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+/**
+ * Server push is enabled for live leaderboard updates.
+ * The styles of the application are in the kutu-tipp theme.
+ */
+@Push
+@Theme("kutu-tipp")
 @SpringBootApplication
-public class KutuTippApplication {
+public class KutuTippApplication implements AppShellConfigurator {
 
     public static void main(String[] args) {
         SpringApplication.run(KutuTippApplication.class, args);
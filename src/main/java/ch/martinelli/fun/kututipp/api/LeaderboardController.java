@@ -0,0 +1,129 @@
+package ch.martinelli.fun.kututipp.api;
+
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import ch.martinelli.fun.kututipp.service.LeaderboardService;
+import ch.martinelli.fun.kututipp.service.ScoresVersion;
+import org.springframework.dao.DataAccessException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Read-only JSON leaderboards for external consumers like club websites and scoreboard screens.
+ * <p>
+ * Responses carry an ETag of the {@link ScoresVersion}. A client sending it back in {@code If-None-Match}
+ * gets {@code 304 Not Modified} without any database access until an actual score changes.
+ * <p>
+ * UC-014 E2: if the leaderboard query exceeds its budget or fails, the last good leaderboard is served like in the
+ * views. It is marked with a {@code Warning: 110} (Response is Stale) header and its {@code Last-Modified} time,
+ * and carries no ETag, so clients do not revalidate the current version against it. Without a last good
+ * leaderboard, the answer is {@code 503 Service Unavailable}.
+ * <p>
+ * Example: {@code GET /api/leaderboard?competitionId=1&limit=10}
+ */
+@RestController
+public class LeaderboardController {
+
+    public static final String LEADERBOARD_PATH = "/api/leaderboard";
+
+    static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+    // The background refresh of the leaderboard retries within a few seconds
+    private static final int RETRY_AFTER_SECONDS = 5;
+
+    private final LeaderboardService leaderboardService;
+    private final ScoresVersion scoresVersion;
+
+    public LeaderboardController(LeaderboardService leaderboardService, ScoresVersion scoresVersion) {
+        this.leaderboardService = leaderboardService;
+        this.scoresVersion = scoresVersion;
+    }
+
+    /**
+     * Leaderboard response.
+     *
+     * @param version Scores version the leaderboard was computed at
+     * @param entries Entries sorted by rank
+     */
+    public record LeaderboardResponse(long version, List<Entry> entries) {
+    }
+
+    /**
+     * Public part of a leaderboard entry.
+     */
+    public record Entry(
+            int rank,
+            String username,
+            int totalPoints,
+            int totalPredictions,
+            int exactPredictions,
+            double avgPoints,
+            RankTrend trend
+    ) {
+        static Entry of(LeaderboardEntryDto entry) {
+            return new Entry(entry.rank(), entry.username(), entry.totalPoints(), entry.totalPredictions(),
+                    entry.exactPredictions(), entry.avgPoints(), entry.trend());
+        }
+    }
+
+    @GetMapping(LEADERBOARD_PATH)
+    public ResponseEntity<LeaderboardResponse> getLeaderboard(
+            @RequestParam(required = false) Long competitionId,
+            @RequestParam(required = false) Long apparatusId,
+            @RequestParam(required = false) GenderType gender,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        // Read before loading: if a score changes meanwhile, the next request gets the new leaderboard
+        var version = scoresVersion.current();
+        var etag = scoresVersion.etag(version);
+
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        var filter = new LeaderboardFilter(competitionId, apparatusId, gender, startDate, endDate);
+        try {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(toResponse(version, leaderboardService.getLeaderboard(filter), limit));
+        } catch (DataAccessException e) {
+            var lastGood = leaderboardService.getLastGoodLeaderboard(filter, e);
+            if (!lastGood.isAvailable()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                        .cacheControl(CacheControl.noStore())
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.WARNING, STALE_WARNING)
+                    .lastModified(lastGood.computedAt().toInstant())
+                    .cacheControl(CacheControl.noStore())
+                    .body(toResponse(lastGood.version(), lastGood.entries(), limit));
+        }
+    }
+
+    private static LeaderboardResponse toResponse(long version, List<LeaderboardEntryDto> leaderboard, Integer limit) {
+        if (limit != null) {
+            leaderboard = leaderboard.subList(0, Math.clamp(limit, 0, leaderboard.size()));
+        }
+        return new LeaderboardResponse(version, leaderboard.stream().map(Entry::of).toList());
+    }
+}
@@ -0,0 +1,88 @@
+package ch.martinelli.fun.kututipp.api;
+
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.service.LeaderboardExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Download of complete leaderboards for administrators, see {@link LeaderboardExportService}.
+ * <p>
+ * Example: {@code GET /api/admin/leaderboard/export?format=csv&competitionId=1&gender=M}
+ */
+@RestController
+public class LeaderboardExportController {
+
+    public static final String EXPORT_PATH = "/api/admin/leaderboard/export";
+
+    private final LeaderboardExportService leaderboardExportService;
+
+    public LeaderboardExportController(LeaderboardExportService leaderboardExportService) {
+        this.leaderboardExportService = leaderboardExportService;
+    }
+
+    /**
+     * Builds the download link of a leaderboard export.
+     *
+     * @param filter Filter criteria
+     * @param format Export format
+     * @return Path with the query parameters of the filter
+     */
+    public static String exportPath(LeaderboardFilter filter, LeaderboardExportService.Format format) {
+        return UriComponentsBuilder.fromPath(EXPORT_PATH)
+                .queryParam("format", format.extension())
+                .queryParamIfPresent("competitionId", Optional.ofNullable(filter.competitionId()))
+                .queryParamIfPresent("apparatusId", Optional.ofNullable(filter.apparatusId()))
+                .queryParamIfPresent("gender", Optional.ofNullable(filter.gender()).map(GenderType::name))
+                // As UTC instants, a '+' of an offset would be decoded as a space
+                .queryParamIfPresent("startDate", Optional.ofNullable(filter.startDate()).map(DateTimeFormatter.ISO_INSTANT::format))
+                .queryParamIfPresent("endDate", Optional.ofNullable(filter.endDate()).map(DateTimeFormatter.ISO_INSTANT::format))
+                .encode()
+                .toUriString();
+    }
+
+    @GetMapping(EXPORT_PATH)
+    public void export(@RequestParam(defaultValue = "csv") String format,
+                       @RequestParam(required = false) Long competitionId,
+                       @RequestParam(required = false) Long apparatusId,
+                       @RequestParam(required = false) GenderType gender,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
+                       @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate,
+                       HttpServletResponse response) throws IOException {
+        var exportFormat = parseFormat(format);
+        var filter = new LeaderboardFilter(competitionId, apparatusId, gender, startDate, endDate);
+
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("leaderboard." + exportFormat.extension())
+                .build()
+                .toString());
+
+        leaderboardExportService.export(filter, exportFormat, response.getOutputStream());
+    }
+
+    private static LeaderboardExportService.Format parseFormat(String format) {
+        try {
+            return LeaderboardExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format: " + format, e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ch.martinelli.fun.kututipp.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.ExecuteType;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency and row count of every jOOQ query, tagged with the repository method that executed it,
+ * e.g. {@code LeaderboardRepository.getCompetitionLeaderboard}.
+ * <p>
+ * Meters:
+ * - {@code kututipp.db.query}: timer from execution start until the result has been fetched,
+ * tagged with {@code method}, {@code type} (read, write, batch, ...) and {@code outcome} (success, error)
+ * - {@code kututipp.db.query.rows}: histogram of fetched or affected rows, tagged with {@code method} and {@code type}
+ * <p>
+ * The SQL is never rendered to a string. The calling method is found by walking the stack to the first frame of
+ * the application, and the meters of a method are registered once and looked up by class and method name.
+ * They are available at {@code /actuator/metrics/kututipp.db.query?tag=method:...}.
+ * <p>
+ * Registered with jOOQ by the Spring Boot auto-configuration, which picks up all {@link ExecuteListenerProvider} beans.
+ */
+@Component
+public class QueryMetrics implements ExecuteListenerProvider {
+
+    static final String QUERY_METER = "kututipp.db.query";
+    static final String ROWS_METER = "kututipp.db.query.rows";
+
+    private static final String APPLICATION_PACKAGE = "ch.martinelli.fun.kututipp.";
+    // Generated jOOQ classes
+    private static final String GENERATED_PACKAGE = APPLICATION_PACKAGE + "db.";
+    private static final String UNKNOWN_METHOD = "unknown";
+
+    private static final double[] ROW_BUCKETS = {0, 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Caller, Meters> metersByCaller = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ExecuteListener provide() {
+        // jOOQ asks for a listener per execution, so the listener can keep the state of the execution
+        return new Listener();
+    }
+
+    /**
+     * The method that executed a query.
+     *
+     * @param declaringClass The class of the method, null if no application method was found
+     * @param methodName     The method name
+     * @param type           The query type
+     */
+    record Caller(Class<?> declaringClass, String methodName, ExecuteType type) {
+    }
+
+    private record Meters(Timer success, Timer error, DistributionSummary rows) {
+    }
+
+    private class Listener implements ExecuteListener {
+
+        private long startNanos;
+        private Caller caller;
+        private int fetchedRows;
+        private boolean failed;
+        private boolean recorded;
+
+        @Override
+        public void start(ExecuteContext ctx) {
+            caller = findCaller(ctx.type());
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void recordEnd(ExecuteContext ctx) {
+            fetchedRows++;
+        }
+
+        @Override
+        public void exception(ExecuteContext ctx) {
+            failed = true;
+            record(ctx);
+        }
+
+        @Override
+        public void end(ExecuteContext ctx) {
+            record(ctx);
+        }
+
+        private void record(ExecuteContext ctx) {
+            if (recorded || caller == null) {
+                return;
+            }
+            recorded = true;
+
+            var meters = metersByCaller.computeIfAbsent(caller, QueryMetrics.this::register);
+            var elapsed = System.nanoTime() - startNanos;
+            if (failed) {
+                meters.error().record(elapsed, TimeUnit.NANOSECONDS);
+            } else {
+                meters.success().record(elapsed, TimeUnit.NANOSECONDS);
+                meters.rows().record(rowCount(ctx));
+            }
+        }
+
+        private int rowCount(ExecuteContext ctx) {
+            if (fetchedRows > 0) {
+                return fetchedRows;
+            }
+            if (ctx.type() == ExecuteType.BATCH) {
+                var rows = 0;
+                for (var batchRow : ctx.batchRows()) {
+                    rows += Math.max(batchRow, 0);
+                }
+                return rows;
+            }
+            return Math.max(ctx.rows(), 0);
+        }
+    }
+
+    /**
+     * Finds the application method executing the current query.
+     * Must be called when the execution starts, a lazily fetched result can be consumed by another method.
+     *
+     * @param type The query type
+     * @return The calling method, with a null class if no application method was found
+     */
+    static Caller findCaller(ExecuteType type) {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> isApplicationClass(frame.getClassName()))
+                .findFirst()
+                .map(frame -> new Caller(frame.getDeclaringClass(), frame.getMethodName(), type))
+                .orElseGet(() -> new Caller(null, UNKNOWN_METHOD, type)));
+    }
+
+    private static boolean isApplicationClass(String className) {
+        return className.startsWith(APPLICATION_PACKAGE)
+                && !className.startsWith(GENERATED_PACKAGE)
+                && !className.startsWith(QueryMetrics.class.getName())
+                && !className.startsWith(SlowQueryLog.class.getName());
+    }
+
+    private Meters register(Caller caller) {
+        var method = methodTag(caller.declaringClass(), caller.methodName());
+        var type = caller.type() == null ? "other" : caller.type().name().toLowerCase(Locale.ROOT);
+
+        return new Meters(
+                timer(method, type, "success"),
+                timer(method, type, "error"),
+                DistributionSummary.builder(ROWS_METER)
+                        .description("Rows fetched or affected by a query")
+                        .tag("method", method)
+                        .tag("type", type)
+                        .serviceLevelObjectives(ROW_BUCKETS)
+                        .register(meterRegistry));
+    }
+
+    private Timer timer(String method, String type, String outcome) {
+        return Timer.builder(QUERY_METER)
+                .description("Execution and fetch time of a query")
+                .tag("method", method)
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Gets the method tag, e.g. {@code LeaderboardRepository.getCompetitionLeaderboard}.
+     * Lambdas are attributed to the method they are declared in.
+     */
+    static String methodTag(Class<?> declaringClass, String methodName) {
+        if (declaringClass == null) {
+            return methodName;
+        }
+        var name = methodName;
+        if (name.startsWith("lambda$")) {
+            var end = name.indexOf('$', "lambda$".length());
+            name = name.substring("lambda$".length(), end < 0 ? name.length() : end);
+        }
+        return declaringClass.getSimpleName() + "." + name;
+    }
+}
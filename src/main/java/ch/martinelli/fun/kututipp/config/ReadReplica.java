@@ -0,0 +1,161 @@
+package ch.martinelli.fun.kututipp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool of a PostgreSQL streaming replica, used for read-only work (see {@link ReplicaDataSourceConfig}).
+ * <p>
+ * The replication lag is checked periodically. The replica is only used while it is reachable, streams from the
+ * primary and its lag is below the maximum, otherwise read-only work falls back to the primary until the next
+ * successful check. The replica user needs the {@code pg_read_all_stats} role to see the state of the WAL receiver.
+ */
+@Component
+@ConditionalOnProperty("kututipp.datasource.replica.url")
+public class ReadReplica {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplica.class);
+
+    // Zero while the replica has replayed everything it received, so an idle primary does not look lagging.
+    // Unknown (-1) while the replica does not stream: it has also replayed everything then, but receives nothing.
+    private static final String LAG_SQL = """
+            SELECT CASE
+                     WHEN NOT pg_is_in_recovery() THEN 0
+                     WHEN NOT EXISTS(SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN -1
+                     WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                     ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, -1)
+                   END
+            """;
+
+    private static final int CHECK_TIMEOUT_SECONDS = 1;
+
+    private final HikariDataSource dataSource;
+    private final Duration maxLag;
+    private final ScheduledExecutorService checkExecutor;
+
+    private volatile boolean available;
+    // Milliseconds, -1 if unknown
+    private volatile long lagMillis = -1;
+
+    public ReadReplica(@Value("${kututipp.datasource.replica.url}") String url,
+                       @Value("${kututipp.datasource.replica.username:${spring.datasource.username:}}") String username,
+                       @Value("${kututipp.datasource.replica.password:${spring.datasource.password:}}") String password,
+                       @Value("${kututipp.datasource.replica.maximum-pool-size:10}") int maximumPoolSize,
+                       @Value("${kututipp.datasource.replica.max-lag:1s}") Duration maxLag,
+                       @Value("${kututipp.datasource.replica.check-interval:1s}") Duration checkInterval,
+                       @Value("${kututipp.cluster.node-id:kutu-tipp}") String nodeId,
+                       MeterRegistry meterRegistry) {
+        this.maxLag = maxLag;
+
+        dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setReadOnly(true);
+        // Fails fast during an outage, the work is then sent to the primary
+        dataSource.setConnectionTimeout(1_000);
+        // Does not fail the start of the application if the replica is down
+        dataSource.setInitializationFailTimeout(-1);
+        dataSource.addDataSourceProperty("ApplicationName", nodeId + "-replica");
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        Gauge.builder("kututipp.datasource.replica.lag", () -> lagMillis)
+                .description("Replication lag of the read replica, -1 if unknown")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("kututipp.datasource.replica.available", () -> available ? 1 : 0)
+                .description("1 while read-only work is sent to the read replica")
+                .register(meterRegistry);
+
+        checkExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "replica-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkExecutor.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks if read-only work can be sent to the replica.
+     *
+     * @return True if the replica was reachable and not lagging at the last check
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Gets a connection of the replica pool.
+     *
+     * @return A read-only connection
+     * @throws SQLException if the replica is not reachable
+     */
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * Stops using the replica until the next successful check, e.g. after a connection failed.
+     *
+     * @param cause Why the replica is not usable
+     */
+    public void markUnavailable(Exception cause) {
+        if (available) {
+            available = false;
+            log.warn("Read replica is not available, using the primary", cause);
+        }
+    }
+
+    /**
+     * Measures the replication lag and updates the availability.
+     */
+    void check() {
+        try (var connection = dataSource.getConnection();
+             var statement = connection.createStatement()) {
+            statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+            try (var resultSet = statement.executeQuery(LAG_SQL)) {
+                resultSet.next();
+                lagMillis = resultSet.getLong(1);
+            }
+        } catch (SQLException | RuntimeException e) {
+            lagMillis = -1;
+            markUnavailable(e);
+            return;
+        }
+
+        var usable = lagMillis >= 0 && lagMillis <= maxLag.toMillis();
+        if (usable != available) {
+            available = usable;
+            if (usable) {
+                log.info("Read replica is available, lag {} ms", lagMillis);
+            } else if (lagMillis < 0) {
+                log.warn("Read replica does not stream from the primary, using the primary");
+            } else {
+                log.warn("Read replica lags {} ms behind the primary, using the primary", lagMillis);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        checkExecutor.shutdownNow();
+        dataSource.close();
+    }
+}
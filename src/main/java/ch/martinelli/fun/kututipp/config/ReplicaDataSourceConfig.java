@@ -0,0 +1,77 @@
+package ch.martinelli.fun.kututipp.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends read-only work to a read replica, configured with {@code kututipp.datasource.replica.url}.
+ * <p>
+ * The auto-configured data source is wrapped in a {@link LazyConnectionDataSourceProxy}, which fetches the
+ * connection on the first statement of a transaction. Transactions marked with
+ * {@code @Transactional(readOnly = true)} get a connection of the {@link ReadReplica}, all other work,
+ * including queries outside of transactions, runs on the primary. While the replica lags or is not
+ * reachable, read-only transactions run on the primary as well.
+ * <p>
+ * The replica lags behind the primary, so work that has to read its own writes must not be read-only.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("kututipp.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    private static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+    @Bean
+    static BeanPostProcessor replicaRoutingPostProcessor(ObjectProvider<ReadReplica> readReplica) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource primary && DATA_SOURCE_BEAN_NAME.equals(beanName)) {
+                    var proxy = new LazyConnectionDataSourceProxy(primary);
+                    proxy.setReadOnlyDataSource(new ReplicaRoutingDataSource(primary, readReplica.getObject()));
+                    return proxy;
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Data source of read-only transactions: the replica while it is available, the primary otherwise.
+     */
+    static class ReplicaRoutingDataSource extends AbstractDataSource {
+
+        private final DataSource primary;
+        private final ReadReplica readReplica;
+
+        ReplicaRoutingDataSource(DataSource primary, ReadReplica readReplica) {
+            this.primary = primary;
+            this.readReplica = readReplica;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (readReplica.isAvailable()) {
+                try {
+                    return readReplica.getConnection();
+                } catch (SQLException e) {
+                    readReplica.markUnavailable(e);
+                }
+            }
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package ch.martinelli.fun.kututipp.config;
+
+import jakarta.annotation.PreDestroy;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.ExecuteType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ch.martinelli.fun.kututipp.db.Tables.APP_USER;
+
+/**
+ * Keeps the latest jOOQ queries that took longer than {@code kututipp.db.slow-query.threshold}, with the SQL,
+ * the bind values and the repository method that executed them.
+ * <p>
+ * Bind values cannot be attributed to columns, so for queries that reference a sensitive column, e.g. the password
+ * hash or email of an {@code APP_USER}, only the types of the bind values are kept.
+ * <p>
+ * If {@code kututipp.db.slow-query.explain} is enabled, the plan of slow read queries is captured with
+ * {@code EXPLAIN (ANALYZE, BUFFERS)} in the background, on a separate connection in a read-only transaction that
+ * is rolled back. Failed queries, e.g. cancelled by the statement timeout, are only explained without
+ * {@code ANALYZE}, so they are not run again. At most a few plans are captured at a time, further plans are
+ * skipped.
+ * <p>
+ * Queries below the threshold only cost reading the clock and finding the calling method, the SQL is only copied
+ * for slow queries.
+ * The log is shown in the {@code SlowQueryView} of the administrators.
+ */
+@Component
+public class SlowQueryLog implements ExecuteListenerProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final int MAX_BIND_VALUES = 100;
+    private static final int MAX_BIND_VALUE_LENGTH = 200;
+    private static final int MAX_PENDING_PLANS = 4;
+    private static final Duration EXPLAIN_TIMEOUT = Duration.ofSeconds(30);
+    private static final List<String> SENSITIVE_COLUMNS = List.of(
+            APP_USER.PASSWORD_HASH.getName(),
+            APP_USER.EMAIL.getName());
+
+    private final DataSource dataSource;
+    private final Duration threshold;
+    private final long thresholdNanos;
+    private final int capacity;
+    private final boolean explain;
+    private final ThreadPoolExecutor explainExecutor;
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // Ring buffer of at most capacity entries, newest first
+    private final Deque<SlowQuery> entries;
+
+    public SlowQueryLog(DataSource dataSource,
+                        @Value("${kututipp.db.slow-query.threshold:1s}") Duration threshold,
+                        @Value("${kututipp.db.slow-query.capacity:100}") int capacity,
+                        @Value("${kututipp.db.slow-query.explain:false}") boolean explain) {
+        this.dataSource = dataSource;
+        this.threshold = threshold;
+        this.thresholdNanos = threshold.toNanos();
+        this.capacity = capacity;
+        this.explain = explain;
+        this.entries = new ArrayDeque<>(capacity + 1);
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_PLANS),
+                runnable -> {
+                    var thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * A slow query.
+     *
+     * @param id         Sequence number
+     * @param executedAt When the query finished
+     * @param method     The method that executed the query, e.g. {@code LeaderboardRepository.getLeaderboardPage}
+     * @param type       The query type, e.g. read or write
+     * @param elapsed    Execution and fetch time
+     * @param rows       Fetched or affected rows
+     * @param sql        The SQL with bind value placeholders
+     * @param bindValues The bind values in order, only their types if the query references a sensitive column
+     * @param error      The error message if the query failed, null otherwise
+     * @param plan       The captured plan, null if not captured (yet)
+     */
+    public record SlowQuery(
+            long id,
+            OffsetDateTime executedAt,
+            String method,
+            String type,
+            Duration elapsed,
+            int rows,
+            String sql,
+            List<String> bindValues,
+            String error,
+            String plan
+    ) {
+        SlowQuery withPlan(String plan) {
+            return new SlowQuery(id, executedAt, method, type, elapsed, rows, sql, bindValues, error, plan);
+        }
+    }
+
+    @Override
+    public ExecuteListener provide() {
+        return new Listener();
+    }
+
+    /**
+     * Gets the minimum execution time of a logged query.
+     *
+     * @return The threshold
+     */
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Checks if plans of slow queries are captured.
+     *
+     * @return True if enabled
+     */
+    public boolean isExplainEnabled() {
+        return explain;
+    }
+
+    /**
+     * Gets the logged slow queries.
+     *
+     * @return Slow queries, newest first
+     */
+    public List<SlowQuery> getEntries() {
+        synchronized (entries) {
+            return List.copyOf(entries);
+        }
+    }
+
+    /**
+     * Removes all logged slow queries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Writes the logged slow queries as text, e.g. to a file.
+     *
+     * @param writer The writer, flushed but not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(Writer writer) throws IOException {
+        for (var entry : getEntries()) {
+            writer.write("%s %s (%s) %d ms, %d rows%n".formatted(entry.executedAt(), entry.method(), entry.type(),
+                    entry.elapsed().toMillis(), entry.rows()));
+            writer.write("SQL: " + entry.sql() + System.lineSeparator());
+            writer.write("Bind values: " + entry.bindValues() + System.lineSeparator());
+            if (entry.error() != null) {
+                writer.write("Error: " + entry.error() + System.lineSeparator());
+            }
+            if (entry.plan() != null) {
+                writer.write("Plan:" + System.lineSeparator() + entry.plan() + System.lineSeparator());
+            }
+            writer.write(System.lineSeparator());
+        }
+        writer.flush();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+
+    private class Listener implements ExecuteListener {
+
+        private long startNanos;
+        private QueryMetrics.Caller caller;
+        private int fetchedRows;
+        private boolean recorded;
+
+        @Override
+        public void start(ExecuteContext ctx) {
+            caller = QueryMetrics.findCaller(ctx.type());
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void recordEnd(ExecuteContext ctx) {
+            fetchedRows++;
+        }
+
+        @Override
+        public void exception(ExecuteContext ctx) {
+            record(ctx);
+        }
+
+        @Override
+        public void end(ExecuteContext ctx) {
+            record(ctx);
+        }
+
+        private void record(ExecuteContext ctx) {
+            if (recorded) {
+                return;
+            }
+            recorded = true;
+
+            var elapsed = System.nanoTime() - startNanos;
+            if (elapsed < thresholdNanos) {
+                return;
+            }
+            add(ctx, caller, Duration.ofNanos(elapsed), fetchedRows > 0 ? fetchedRows : Math.max(ctx.rows(), 0));
+        }
+    }
+
+    private void add(ExecuteContext ctx, QueryMetrics.Caller caller, Duration elapsed, int rows) {
+        var failed = ctx.exception() != null;
+        var entry = new SlowQuery(
+                nextId.getAndIncrement(),
+                OffsetDateTime.now(),
+                QueryMetrics.methodTag(caller.declaringClass(), caller.methodName()),
+                ctx.type() == null ? "other" : ctx.type().name().toLowerCase(Locale.ROOT),
+                elapsed,
+                rows,
+                ctx.sql() != null ? ctx.sql() : "(batch of " + ctx.batchQueries().length + " statements)",
+                bindValues(ctx),
+                failed ? errorMessage(ctx) : null,
+                null
+        );
+        log.warn("Slow query in {} took {} ms: {}", entry.method(), elapsed.toMillis(), entry.sql());
+
+        synchronized (entries) {
+            entries.addFirst(entry);
+            if (entries.size() > capacity) {
+                entries.removeLast();
+            }
+        }
+
+        if (explain && ctx.type() == ExecuteType.READ && ctx.query() != null) {
+            // Rendered with inlined bind values, the original query is not used on the other thread
+            var inlinedSql = ctx.dsl().renderInlined(ctx.query());
+            var statement = (failed ? "EXPLAIN " : "EXPLAIN (ANALYZE, BUFFERS) ") + inlinedSql;
+            explainExecutor.execute(() -> capturePlan(entry.id(), statement));
+        }
+    }
+
+    private static List<String> bindValues(ExecuteContext ctx) {
+        if (ctx.query() == null) {
+            return List.of();
+        }
+        var values = ctx.query().getBindValues();
+        var masked = referencesSensitiveColumn(ctx.sql());
+        var result = new ArrayList<String>(Math.min(values.size(), MAX_BIND_VALUES));
+        for (var value : values) {
+            if (result.size() == MAX_BIND_VALUES) {
+                result.add("... " + (values.size() - MAX_BIND_VALUES) + " more");
+                break;
+            }
+            if (masked) {
+                result.add(value == null ? "null" : "(" + value.getClass().getSimpleName() + ")");
+                continue;
+            }
+            var text = String.valueOf(value);
+            result.add(text.length() > MAX_BIND_VALUE_LENGTH ? text.substring(0, MAX_BIND_VALUE_LENGTH) + "..." : text);
+        }
+        return result;
+    }
+
+    private static boolean referencesSensitiveColumn(String sql) {
+        if (sql == null) {
+            return true;
+        }
+        var normalized = sql.toLowerCase(Locale.ROOT);
+        return SENSITIVE_COLUMNS.stream().anyMatch(normalized::contains);
+    }
+
+    private static String errorMessage(ExecuteContext ctx) {
+        return ctx.sqlException() != null ? ctx.sqlException().getMessage() : ctx.exception().getMessage();
+    }
+
+    private void capturePlan(long id, String explainStatement) {
+        String plan;
+        try (var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (var statement = connection.createStatement()) {
+                statement.execute("SET LOCAL statement_timeout = " + EXPLAIN_TIMEOUT.toMillis());
+                try (var resultSet = statement.executeQuery(explainStatement)) {
+                    var lines = new ArrayList<String>();
+                    while (resultSet.next()) {
+                        lines.add(resultSet.getString(1));
+                    }
+                    plan = String.join(System.lineSeparator(), lines);
+                }
+            } finally {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            log.warn("Could not capture the plan of slow query {}", id, e);
+            plan = "Plan not available: " + e.getMessage();
+        }
+
+        var capturedPlan = plan;
+        synchronized (entries) {
+            // A deque cannot replace in place, plans are only captured for a few queries
+            var updated = entries.stream()
+                    .map(entry -> entry.id() == id ? entry.withPlan(capturedPlan) : entry)
+                    .toList();
+            entries.clear();
+            entries.addAll(updated);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ch.martinelli.fun.kututipp.dto;
+
+/**
+ * Keyset position in a leaderboard, used to continue paging after the last loaded entry.
+ * Leaderboards are ordered by total points, exact predictions and total predictions (all descending),
+ * ties are ordered by user ID.
+ *
+ * @param totalPoints      Total points of the last loaded entry
+ * @param exactPredictions Exact predictions of the last loaded entry
+ * @param totalPredictions Total predictions of the last loaded entry
+ * @param userId           User ID of the last loaded entry
+ */
+public record LeaderboardCursor(
+        int totalPoints,
+        int exactPredictions,
+        int totalPredictions,
+        long userId
+) {
+    /**
+     * Creates a cursor pointing after the given entry.
+     */
+    public static LeaderboardCursor after(LeaderboardEntryDto entry) {
+        return new LeaderboardCursor(
+                entry.totalPoints(),
+                entry.exactPredictions(),
+                entry.totalPredictions(),
+                entry.userId()
+        );
+    }
+}
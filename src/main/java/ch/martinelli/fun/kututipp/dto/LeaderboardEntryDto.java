@@ -25,4 +25,13 @@ public record LeaderboardEntryDto(
         RankTrend trend,
         boolean isCurrentUser
 ) {
+    /**
+     * Creates a copy of this entry flagged as the currently logged-in user.
+     *
+     * @return Entry with isCurrentUser set
+     */
+    public LeaderboardEntryDto asCurrentUser() {
+        return new LeaderboardEntryDto(userId, username, rank, totalPoints, totalPredictions,
+                exactPredictions, avgPoints, trend, true);
+    }
 }
@@ -0,0 +1,41 @@
+package ch.martinelli.fun.kututipp.dto;
+
+/**
+ * A ranked user as read from the database, mapped by column index without boxing the totals twice.
+ * The average points are derived from the totals instead of being calculated and transferred per row.
+ *
+ * @param userId           The user's unique identifier
+ * @param username         The user's display name
+ * @param rank             The user's rank (1 = first place, tied users share a rank)
+ * @param totalPoints      Total points earned
+ * @param totalPredictions Number of scored predictions
+ * @param exactPredictions Number of exact predictions (3 points)
+ */
+public record LeaderboardRow(
+        long userId,
+        String username,
+        int rank,
+        int totalPoints,
+        int totalPredictions,
+        int exactPredictions
+) {
+    /**
+     * Average points per prediction.
+     *
+     * @return Average points, or 0 if the user has no scored predictions
+     */
+    public double avgPoints() {
+        return totalPredictions == 0 ? 0 : (double) totalPoints / totalPredictions;
+    }
+
+    /**
+     * Creates the leaderboard entry of this row.
+     *
+     * @param trend Rank trend of the user
+     * @return Entry with the average points rounded to 2 decimal places
+     */
+    public LeaderboardEntryDto toEntry(RankTrend trend) {
+        return new LeaderboardEntryDto(userId, username, rank, totalPoints, totalPredictions, exactPredictions,
+                Math.round(avgPoints() * 100.0) / 100.0, trend, false);
+    }
+}
@@ -0,0 +1,50 @@
+package ch.martinelli.fun.kututipp.dto;
+
+import java.util.Map;
+
+/**
+ * Ranks of users in the rank history snapshot that trends are compared with.
+ *
+ * @param available Whether a snapshot exists, without one all trends are stable
+ * @param ranks     Previous overall rank by user ID, users missing in the snapshot are new
+ */
+public record PreviousRanks(
+        boolean available,
+        Map<Long, Integer> ranks
+) {
+    public PreviousRanks {
+        ranks = Map.copyOf(ranks);
+    }
+
+    /**
+     * Previous ranks if no snapshot exists yet.
+     */
+    public static PreviousRanks none() {
+        return new PreviousRanks(false, Map.of());
+    }
+
+    /**
+     * Calculates the trend of a user compared to the previous rank.
+     * A lower rank number is better, so a decreasing rank is an improvement.
+     *
+     * @param userId      The user ID
+     * @param currentRank Current rank position
+     * @return Rank trend indicator
+     */
+    public RankTrend trendOf(Long userId, int currentRank) {
+        if (!available) {
+            return RankTrend.STABLE;
+        }
+        var previousRank = ranks.get(userId);
+        if (previousRank == null) {
+            return RankTrend.NEW;
+        }
+        if (currentRank < previousRank) {
+            return RankTrend.UP;
+        }
+        if (currentRank > previousRank) {
+            return RankTrend.DOWN;
+        }
+        return RankTrend.STABLE;
+    }
+}
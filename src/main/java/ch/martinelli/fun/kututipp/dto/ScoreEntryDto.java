@@ -0,0 +1,20 @@
+package ch.martinelli.fun.kututipp.dto;
+
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO representing a competition entry in the score entry console.
+ * Used in UC-011: Enter Actual Scores.
+ */
+public record ScoreEntryDto(
+        Long competitionEntryId,
+        Long apparatusId,
+        String apparatusName,
+        GenderType gender,
+        String gymnastName,
+        String teamName,
+        BigDecimal actualScore  // null if not yet available
+) {
+}
@@ -0,0 +1,26 @@
+package ch.martinelli.fun.kututipp.dto;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * A change of an actual score, read from the score event log.
+ *
+ * @param id                 Event ID, orders the events
+ * @param competitionEntryId The competition entry whose score changed
+ * @param gymnastName        Name of the gymnast
+ * @param apparatusName      Name of the apparatus
+ * @param actualScore        The new actual score, null if the score was removed
+ * @param previousScore      The actual score before the change, null if there was none
+ * @param createdAt          When the score was entered
+ */
+public record ScoreEventDto(
+        long id,
+        long competitionEntryId,
+        String gymnastName,
+        String apparatusName,
+        BigDecimal actualScore,
+        BigDecimal previousScore,
+        OffsetDateTime createdAt
+) {
+}
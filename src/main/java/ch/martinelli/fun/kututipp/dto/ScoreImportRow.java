@@ -0,0 +1,19 @@
+package ch.martinelli.fun.kututipp.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * A validated row of an actual score import file.
+ *
+ * @param lineNumber    Line in the file, starting with 1 for the header
+ * @param gymnastName   Name of the gymnast, matched case-insensitively
+ * @param apparatusName Name of the apparatus, matched case-insensitively
+ * @param actualScore   The actual score between 0.000 and 20.000
+ */
+public record ScoreImportRow(
+        int lineNumber,
+        String gymnastName,
+        String apparatusName,
+        BigDecimal actualScore
+) {
+}
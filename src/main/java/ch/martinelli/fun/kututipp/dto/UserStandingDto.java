@@ -0,0 +1,21 @@
+package ch.martinelli.fun.kututipp.dto;
+
+/**
+ * Where a user stands in a leaderboard, based on the total points only.
+ *
+ * @param totalPoints Total points of the user
+ * @param bestRank    Rank if the user wins all ties
+ * @param worstRank   Rank if the user loses all ties
+ * @param users       Number of ranked users
+ * @param topPercent  The user is in the top X% (1-100)
+ * @param percentile  Share of users with fewer points (0-100)
+ */
+public record UserStandingDto(
+        int totalPoints,
+        int bestRank,
+        int worstRank,
+        int users,
+        int topPercent,
+        double percentile
+) {
+}
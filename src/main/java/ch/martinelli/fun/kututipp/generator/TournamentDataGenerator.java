@@ -0,0 +1,446 @@
+package ch.martinelli.fun.kututipp.generator;
+
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static ch.martinelli.fun.kututipp.db.Tables.APPARATUS;
+
+/**
+ * Generates a synthetic season of competitions, gymnasts, users and predictions for scale testing.
+ * <p>
+ * Every competition has an entry for each gymnast on each apparatus of the gymnast's gender. Actual scores
+ * depend on the apparatus, the gymnast's level and the form of the day (including falls), predictions scatter
+ * around the expected score of the gymnast depending on the user's expertise. Competitions take place weekly:
+ * all but the last two are finished, the second to last is live (half of the entries scored) and the last one
+ * is upcoming.
+ * <p>
+ * Rows are streamed into the tables with PostgreSQL COPY. The leaderboard triggers are disabled during the load
+ * and the aggregates are rebuilt set-based afterward, so millions of predictions load in seconds. The generator
+ * runs in the caller's transaction, the triggers are disabled for other sessions until it is committed.
+ * <p>
+ * Command line usage (against a development database, never production):
+ * <pre>
+ * ./mvnw spring-boot:run -Dspring-boot.run.main-class=ch.martinelli.fun.kututipp.generator.TournamentDataGenerator \
+ *     -Dspring-boot.run.arguments="--url=jdbc:postgresql://localhost:5432/kututipp --user=kututipp --password=secret --users=100000 --predictions-per-user=10"
+ * </pre>
+ */
+public class TournamentDataGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(TournamentDataGenerator.class);
+
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_SCORE = 20_000;
+    private static final int SCORE_STEP = 50;
+    private static final String PASSWORD = "password";
+
+    private static final List<ApparatusProfile> APPARATUS_PROFILES = List.of(
+            new ApparatusProfile("Floor", GenderType.M, 12.8),
+            new ApparatusProfile("Pommel Horse", GenderType.M, 12.0),
+            new ApparatusProfile("Rings", GenderType.M, 12.5),
+            new ApparatusProfile("Vault", GenderType.M, 13.5),
+            new ApparatusProfile("Parallel Bars", GenderType.M, 12.6),
+            new ApparatusProfile("High Bar", GenderType.M, 12.3),
+            new ApparatusProfile("Vault", GenderType.F, 12.8),
+            new ApparatusProfile("Uneven Bars", GenderType.F, 11.8),
+            new ApparatusProfile("Balance Beam", GenderType.F, 11.9),
+            new ApparatusProfile("Floor", GenderType.F, 12.2)
+    );
+
+    private static final List<String> MALE_FIRST_NAMES = List.of(
+            "Luca", "Noah", "Nils", "Jonas", "Elia", "Levin", "Timo", "Jan", "Fabio", "Marco");
+    private static final List<String> FEMALE_FIRST_NAMES = List.of(
+            "Lena", "Mia", "Anna", "Lara", "Nina", "Elena", "Sara", "Julia", "Alina", "Giulia");
+    private static final List<String> LAST_NAMES = List.of(
+            "Müller", "Meier", "Schmid", "Keller", "Weber", "Huber", "Brunner", "Frei", "Baumann", "Gerber", "Moser", "Steiner");
+    private static final List<String> TEAMS = List.of(
+            "Aargau", "Basel", "Bern", "Genève", "Luzern", "St. Gallen", "Solothurn", "Thurgau", "Ticino", "Zürich");
+
+    private final Settings settings;
+
+    public TournamentDataGenerator(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Size of the generated data.
+     *
+     * @param users              Number of users
+     * @param competitions       Number of competitions (at least 2: the last two are live and upcoming)
+     * @param gymnastsPerGender  Number of gymnasts per gender, each starts in every competition
+     * @param predictionsPerUser Average number of predictions per user
+     * @param seed               Seed of the random generator, the same seed generates the same scores
+     */
+    public record Settings(
+            int users,
+            int competitions,
+            int gymnastsPerGender,
+            int predictionsPerUser,
+            long seed
+    ) {
+        public Settings {
+            if (users < 1 || competitions < 2 || gymnastsPerGender < 1 || predictionsPerUser < 1) {
+                throw new IllegalArgumentException("At least 1 user, 2 competitions, 1 gymnast per gender and 1 prediction per user required");
+            }
+        }
+
+        /**
+         * Creates settings for a small dataset, e.g. for tests.
+         */
+        public static Settings small() {
+            return new Settings(200, 4, 6, 30, 1);
+        }
+
+        /**
+         * Creates settings for a full season: 100k users with 1M predictions.
+         */
+        public static Settings season() {
+            return new Settings(100_000, 20, 30, 10, 1);
+        }
+    }
+
+    /**
+     * Number of generated rows.
+     *
+     * @param competitions       Generated competitions
+     * @param gymnasts           Generated gymnasts
+     * @param competitionEntries Generated competition entries
+     * @param users              Generated users
+     * @param predictions        Generated predictions
+     * @param duration           Time taken including the aggregate rebuild
+     */
+    public record Summary(
+            int competitions,
+            int gymnasts,
+            int competitionEntries,
+            int users,
+            long predictions,
+            Duration duration
+    ) {
+    }
+
+    private record ApparatusProfile(String name, GenderType gender, double mean) {
+    }
+
+    /**
+     * Generates the data on the given connection, in the caller's transaction.
+     *
+     * @param connection Connection to the PostgreSQL database
+     * @return Number of generated rows
+     * @throws GeneratorException if the data cannot be loaded
+     */
+    public Summary generate(Connection connection) {
+        var start = System.nanoTime();
+        var dsl = DSL.using(connection, SQLDialect.POSTGRES);
+        var random = new SplittableRandom(settings.seed());
+
+        setUserTriggersEnabled(dsl, false);
+        try {
+            var apparatus = loadApparatus(dsl);
+            var competitionIds = copyCompetitions(connection, dsl);
+            var gymnasts = copyGymnasts(connection, dsl, random);
+            var entries = copyCompetitionEntries(connection, dsl, random, competitionIds, gymnasts, apparatus);
+            var userIds = copyUsers(connection, dsl);
+            var predictions = copyPredictions(connection, random, userIds, entries);
+
+            // Set-based instead of one trigger call per prediction, including the frozen totals
+            var repository = new LeaderboardRepository(dsl, Duration.ZERO);
+            repository.rebuildPointsAggregate();
+            if (competitionIds.size() > 2) {
+                // Base of the rank trends: the last finished competition
+                repository.snapshotRanks(competitionIds.get(competitionIds.size() - 3));
+            }
+
+            dsl.execute("ANALYZE");
+
+            var summary = new Summary(competitionIds.size(), gymnasts.size(), entries.size(), userIds.size(), predictions,
+                    Duration.ofNanos(System.nanoTime() - start));
+            log.info("Generated {}", summary);
+            return summary;
+        } finally {
+            setUserTriggersEnabled(dsl, true);
+        }
+    }
+
+    private static void setUserTriggersEnabled(DSLContext dsl, boolean enabled) {
+        for (var table : List.of("prediction", "user_points_agg")) {
+            dsl.execute("ALTER TABLE " + table + (enabled ? " ENABLE" : " DISABLE") + " TRIGGER USER");
+        }
+    }
+
+    private static Map<ApparatusProfile, Long> loadApparatus(DSLContext dsl) {
+        var apparatus = new HashMap<ApparatusProfile, Long>();
+        for (var profile : APPARATUS_PROFILES) {
+            dsl.insertInto(APPARATUS, APPARATUS.NAME, APPARATUS.GENDER)
+                    .values(profile.name(), profile.gender())
+                    .onConflictDoNothing()
+                    .execute();
+            apparatus.put(profile, dsl.select(APPARATUS.ID)
+                    .from(APPARATUS)
+                    .where(APPARATUS.NAME.eq(profile.name()))
+                    .and(APPARATUS.GENDER.eq(profile.gender()))
+                    .fetchSingle(APPARATUS.ID));
+        }
+        return apparatus;
+    }
+
+    private List<Long> copyCompetitions(Connection connection, DSLContext dsl) {
+        var count = settings.competitions();
+        var firstId = reserveIds(dsl, "competition", count);
+        var today = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).withHour(10);
+
+        var ids = new ArrayList<Long>(count);
+        copy(connection, "COPY competition (id, name, date, status) FROM STDIN", writer -> {
+            for (var i = 0; i < count; i++) {
+                var id = firstId + i;
+                // The live competition takes place today, one week after the previous one
+                var date = today.plusWeeks(i - (count - 2L));
+                var status = i == count - 1 ? "upcoming" : i == count - 2 ? "live" : "finished";
+                writer.write(id + "\tSwiss Cup Round " + id + "\t" + date + "\t" + status + "\n");
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    private record Gymnast(long id, GenderType gender, double level) {
+    }
+
+    private List<Gymnast> copyGymnasts(Connection connection, DSLContext dsl, SplittableRandom random) {
+        var count = settings.gymnastsPerGender() * 2;
+        var firstId = reserveIds(dsl, "gymnast", count);
+
+        var gymnasts = new ArrayList<Gymnast>(count);
+        copy(connection, "COPY gymnast (id, name, team_name, gender) FROM STDIN", writer -> {
+            for (var i = 0; i < count; i++) {
+                var gender = i % 2 == 0 ? GenderType.M : GenderType.F;
+                var firstNames = gender == GenderType.M ? MALE_FIRST_NAMES : FEMALE_FIRST_NAMES;
+                var gymnast = new Gymnast(firstId + i, gender, random.nextGaussian(0, 0.8));
+                writer.write(gymnast.id() + "\t" + pick(random, firstNames) + " " + pick(random, LAST_NAMES) + "\t"
+                        + pick(random, TEAMS) + "\t" + gender.getLiteral() + "\n");
+                gymnasts.add(gymnast);
+            }
+        });
+        return gymnasts;
+    }
+
+    /**
+     * Expected score (in thousandths) of a competition entry, predictions scatter around it.
+     */
+    private record Entry(long id, int expectedScore) {
+    }
+
+    private List<Entry> copyCompetitionEntries(Connection connection, DSLContext dsl, SplittableRandom random,
+                                               List<Long> competitionIds, List<Gymnast> gymnasts,
+                                               Map<ApparatusProfile, Long> apparatus) {
+        var apparatusPerGymnast = new HashMap<GenderType, List<ApparatusProfile>>();
+        for (var profile : APPARATUS_PROFILES) {
+            apparatusPerGymnast.computeIfAbsent(profile.gender(), _ -> new ArrayList<>()).add(profile);
+        }
+        var count = 0;
+        for (var gymnast : gymnasts) {
+            count += apparatusPerGymnast.get(gymnast.gender()).size() * competitionIds.size();
+        }
+        var firstId = reserveIds(dsl, "competition_entry", count);
+
+        var entries = new ArrayList<Entry>(count);
+        copy(connection, "COPY competition_entry (id, competition_id, gymnast_id, apparatus_id, actual_score) FROM STDIN", writer -> {
+            var id = firstId;
+            for (var c = 0; c < competitionIds.size(); c++) {
+                var upcoming = c == competitionIds.size() - 1;
+                var live = c == competitionIds.size() - 2;
+                for (var gymnast : gymnasts) {
+                    for (var profile : apparatusPerGymnast.get(gymnast.gender())) {
+                        var expected = profile.mean() + gymnast.level();
+                        var scored = !upcoming && (!live || random.nextBoolean());
+                        writer.write(id + "\t" + competitionIds.get(c) + "\t" + gymnast.id() + "\t" + apparatus.get(profile) + "\t");
+                        writer.write(scored ? formatScore(toScore(expected + formOfTheDay(random))) : "\\N");
+                        writer.write('\n');
+                        entries.add(new Entry(id++, toScore(expected)));
+                    }
+                }
+            }
+        });
+        return entries;
+    }
+
+    private static double formOfTheDay(SplittableRandom random) {
+        // Roughly every 15th routine has a fall
+        var fall = random.nextInt(15) == 0 ? 1.0 + random.nextDouble() : 0;
+        return random.nextGaussian(0, 0.5) - fall;
+    }
+
+    private List<Long> copyUsers(Connection connection, DSLContext dsl) {
+        var count = settings.users();
+        var firstId = reserveIds(dsl, "app_user", count);
+        // All users share one password, hashing it per user would take minutes
+        var passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+
+        var ids = new ArrayList<Long>(count);
+        copy(connection, "COPY app_user (id, username, email, password_hash, role) FROM STDIN", writer -> {
+            for (var i = 0; i < count; i++) {
+                var id = firstId + i;
+                writer.write(id + "\tfan" + id + "\tfan" + id + "@example.com\t" + passwordHash + "\tUSER\n");
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    private long copyPredictions(Connection connection, SplittableRandom random, List<Long> userIds, List<Entry> entries) {
+        // Marks the entries already predicted by the current user (Floyd's sampling without replacement)
+        var predictedBy = new int[entries.size()];
+        var geometric = Math.log(1 - 1.0 / settings.predictionsPerUser());
+
+        return copy(connection, "COPY prediction (user_id, competition_entry_id, predicted_score) FROM STDIN", writer -> {
+            for (var u = 0; u < userIds.size(); u++) {
+                var userId = userIds.get(u);
+                var marker = u + 1;
+                // Most users predict a few entries, some predict whole competitions
+                var predictions = settings.predictionsPerUser() == 1 ? 1
+                        : (int) Math.min(entries.size(), 1 + Math.floor(Math.log(1 - random.nextDouble()) / geometric));
+                var expertise = 0.2 + random.nextDouble();
+
+                for (var j = entries.size() - predictions; j < entries.size(); j++) {
+                    var index = random.nextInt(j + 1);
+                    if (predictedBy[index] == marker) {
+                        index = j;
+                    }
+                    predictedBy[index] = marker;
+
+                    var entry = entries.get(index);
+                    var predicted = toScore(entry.expectedScore() / 1000.0 + random.nextGaussian(0, expertise));
+                    writer.write(userId + "\t" + entry.id() + "\t" + formatScore(predicted) + "\n");
+                }
+            }
+        });
+    }
+
+    /**
+     * Reserves a range of IDs in the sequence of a table, so rows can be copied with their IDs.
+     *
+     * @return First ID of the range
+     */
+    private static long reserveIds(DSLContext dsl, String table, int count) {
+        var lastId = dsl.fetchSingle("""
+                SELECT setval(pg_get_serial_sequence({0}, 'id'), nextval(pg_get_serial_sequence({0}, 'id')) + {1} - 1)
+                """, DSL.inline(table), DSL.inline(count)).get(0, Long.class);
+        return lastId - count + 1;
+    }
+
+    /**
+     * Converts a score to thousandths, rounded to the usual 0.05 steps and limited to 0.000 - 20.000.
+     */
+    private static int toScore(double score) {
+        var steps = Math.round(score * 1000 / SCORE_STEP);
+        return Math.clamp(steps * SCORE_STEP, 0, MAX_SCORE);
+    }
+
+    private static String formatScore(int thousandths) {
+        var fraction = thousandths % 1000;
+        return thousandths / 1000 + (fraction < 10 ? ".00" : fraction < 100 ? ".0" : ".") + fraction;
+    }
+
+    private static String pick(SplittableRandom random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    private static long copy(Connection connection, String sql, RowWriter rows) {
+        try {
+            var out = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+            try {
+                var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+                rows.write(writer);
+                writer.flush();
+                return out.endCopy();
+            } catch (IOException | RuntimeException e) {
+                if (out.isActive()) {
+                    out.cancelCopy();
+                }
+                throw e;
+            }
+        } catch (IOException | SQLException e) {
+            throw new GeneratorException("Failed to load data with " + sql, e);
+        }
+    }
+
+    /**
+     * Generates data into the database given on the command line and commits it.
+     * Arguments: {@code --url}, {@code --user}, {@code --password} and optionally {@code --users},
+     * {@code --competitions}, {@code --gymnasts-per-gender}, {@code --predictions-per-user} and {@code --seed}
+     * (defaults: {@link Settings#season()}).
+     */
+    public static void main(String[] args) throws SQLException {
+        var arguments = new HashMap<String, String>();
+        for (var arg : args) {
+            var separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Arguments must be passed as --name=value: " + arg);
+            }
+            arguments.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        var season = Settings.season();
+        var settings = new Settings(
+                intArgument(arguments, "users", season.users()),
+                intArgument(arguments, "competitions", season.competitions()),
+                intArgument(arguments, "gymnasts-per-gender", season.gymnastsPerGender()),
+                intArgument(arguments, "predictions-per-user", season.predictionsPerUser()),
+                Long.parseLong(arguments.getOrDefault("seed", String.valueOf(season.seed())))
+        );
+
+        try (var connection = DriverManager.getConnection(
+                arguments.getOrDefault("url", "jdbc:postgresql://localhost:5432/kututipp"),
+                arguments.getOrDefault("user", "kututipp"),
+                arguments.getOrDefault("password", "secret"))) {
+            connection.setAutoCommit(false);
+            var summary = new TournamentDataGenerator(settings).generate(connection);
+            connection.commit();
+            System.out.println(summary);
+        }
+    }
+
+    private static int intArgument(Map<String, String> arguments, String name, int defaultValue) {
+        var value = arguments.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Exception thrown when the generated data cannot be loaded.
+     */
+    public static class GeneratorException extends RuntimeException {
+        public GeneratorException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
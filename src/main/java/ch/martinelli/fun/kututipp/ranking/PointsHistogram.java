@@ -0,0 +1,238 @@
+package ch.martinelli.fun.kututipp.ranking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Number of users per total points, answering "where do I stand" questions without ranking all users.
+ * <p>
+ * The users are counted per points value and per block of {@value #BLOCK_SIZE} points values. Updating a user
+ * changes two counters of each, so it takes O(1). Counting the users above some points sums the values up
+ * to the end of a block and the blocks above it, which is bounded by the (small) highest points value
+ * and independent of the number of users.
+ * <p>
+ * Only the points are known, so the rank of a user is a range: tied users are ordered by the BR-001 tie
+ * breakers, which the histogram does not keep.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class PointsHistogram {
+
+    private static final int BLOCK_BITS = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+    private final Map<Long, Integer> pointsByUserId = new HashMap<>();
+
+    // Users per points value and per block of points values, the length is a multiple of the block size
+    private int[] counts;
+    private int[] blockCounts;
+
+    public PointsHistogram() {
+        this(16 * BLOCK_SIZE);
+    }
+
+    public PointsHistogram(int maxPoints) {
+        var blocks = Math.max(maxPoints, 0) / BLOCK_SIZE + 1;
+        counts = new int[blocks * BLOCK_SIZE];
+        blockCounts = new int[blocks];
+    }
+
+    /**
+     * The possible ranks of a user.
+     *
+     * @param best  Rank if the user wins all ties (1 + users with more points)
+     * @param worst Rank if the user loses all ties (users with at least the same points)
+     */
+    public record RankRange(int best, int worst) {
+    }
+
+    /**
+     * Users in a range of points.
+     *
+     * @param fromPoints Lowest points value (inclusive)
+     * @param toPoints   Highest points value (inclusive)
+     * @param users      Number of users with points in the range
+     */
+    public record Bucket(int fromPoints, int toPoints, int users) {
+    }
+
+    /**
+     * Gets the number of users.
+     *
+     * @return Number of users
+     */
+    public int size() {
+        return pointsByUserId.size();
+    }
+
+    /**
+     * Gets the points of a user.
+     *
+     * @param userId The user ID
+     * @return The points, or -1 if the user is not counted
+     */
+    public int pointsOf(long userId) {
+        return pointsByUserId.getOrDefault(userId, -1);
+    }
+
+    /**
+     * Sets the points of a user, replacing any previous value.
+     *
+     * @param userId The user ID
+     * @param points Total points of the user
+     */
+    public void put(long userId, int points) {
+        if (points < 0) {
+            throw new IllegalArgumentException("Points must not be negative: " + points);
+        }
+        var previous = pointsByUserId.put(userId, points);
+        if (previous != null) {
+            decrement(previous);
+        }
+        if (points >= counts.length) {
+            grow(points);
+        }
+        counts[points]++;
+        blockCounts[points >>> BLOCK_BITS]++;
+    }
+
+    /**
+     * Removes a user.
+     *
+     * @param userId The user ID
+     * @return true if the user was counted
+     */
+    public boolean remove(long userId) {
+        var previous = pointsByUserId.remove(userId);
+        if (previous == null) {
+            return false;
+        }
+        decrement(previous);
+        return true;
+    }
+
+    /**
+     * Counts the users with more points.
+     *
+     * @param points Points value
+     * @return Number of users with more than {@code points} points
+     */
+    public int countAbove(int points) {
+        if (points < 0) {
+            return size();
+        }
+        var from = points + 1;
+        if (from >= counts.length) {
+            return 0;
+        }
+
+        var count = 0;
+        var block = from >>> BLOCK_BITS;
+        var blockEnd = (block + 1) << BLOCK_BITS;
+        for (var value = from; value < blockEnd; value++) {
+            count += counts[value];
+        }
+        for (var i = block + 1; i < blockCounts.length; i++) {
+            count += blockCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Gets the possible ranks of a user.
+     *
+     * @param userId The user ID
+     * @return The rank range, or null if the user is not counted
+     */
+    public RankRange rankRange(long userId) {
+        var points = pointsOf(userId);
+        if (points < 0) {
+            return null;
+        }
+        return new RankRange(countAbove(points) + 1, countAbove(points - 1));
+    }
+
+    /**
+     * Gets the percentile of a user: the share of users with fewer points.
+     *
+     * @param userId The user ID
+     * @return Percentile from 0 to 100, or -1 if the user is not counted
+     */
+    public double percentile(long userId) {
+        var points = pointsOf(userId);
+        if (points < 0) {
+            return -1;
+        }
+        var fewer = size() - countAbove(points - 1);
+        return 100.0 * fewer / size();
+    }
+
+    /**
+     * Gets the smallest X, so that the user is in the top X% ("you are in the top 5%").
+     * Ties are counted in favor of the user.
+     *
+     * @param userId The user ID
+     * @return Top percentage from 1 to 100, or -1 if the user is not counted
+     */
+    public int topPercent(long userId) {
+        var points = pointsOf(userId);
+        if (points < 0) {
+            return -1;
+        }
+        var bestRank = countAbove(points) + 1;
+        return Math.clamp((int) Math.ceilDiv(100L * bestRank, size()), 1, 100);
+    }
+
+    /**
+     * Gets the highest points value of all users.
+     *
+     * @return The highest points, or -1 if there are no users
+     */
+    public int maxPoints() {
+        for (var block = blockCounts.length - 1; block >= 0; block--) {
+            if (blockCounts[block] > 0) {
+                for (var value = ((block + 1) << BLOCK_BITS) - 1; ; value--) {
+                    if (counts[value] > 0) {
+                        return value;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the distribution of the points, e.g. for a chart.
+     *
+     * @param maxBuckets Maximum number of buckets
+     * @return Buckets of equal width from 0 to the highest points, empty if there are no users
+     */
+    public List<Bucket> distribution(int maxBuckets) {
+        var maxPoints = maxPoints();
+        if (maxPoints < 0 || maxBuckets <= 0) {
+            return List.of();
+        }
+
+        var width = Math.ceilDiv(maxPoints + 1, maxBuckets);
+        var buckets = new ArrayList<Bucket>(maxBuckets);
+        for (var from = 0; from <= maxPoints; from += width) {
+            var to = Math.min(from + width - 1, maxPoints);
+            buckets.add(new Bucket(from, to, countAbove(from - 1) - countAbove(to)));
+        }
+        return buckets;
+    }
+
+    private void decrement(int points) {
+        counts[points]--;
+        blockCounts[points >>> BLOCK_BITS]--;
+    }
+
+    private void grow(int points) {
+        var blocks = Math.max(blockCounts.length * 2, points / BLOCK_SIZE + 1);
+        counts = Arrays.copyOf(counts, blocks * BLOCK_SIZE);
+        blockCounts = Arrays.copyOf(blockCounts, blocks);
+    }
+}
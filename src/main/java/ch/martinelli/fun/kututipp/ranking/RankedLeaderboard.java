@@ -0,0 +1,507 @@
+package ch.martinelli.fun.kututipp.ranking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * In-memory leaderboard ordered by the BR-001 ranking rules:
+ * - Primary: Total points (descending)
+ * - Tie Breaker 1: Exact predictions (descending)
+ * - Tie Breaker 2: Total predictions (descending)
+ * <p>
+ * Users are stored in an order-statistic treap backed by primitive arrays, so updating a user,
+ * looking up the rank of a user and locating a position in the ranking take O(log n).
+ * Ranks follow the semantics of SQL {@code RANK()}: tied users share the same rank and the
+ * following rank is skipped.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class RankedLeaderboard {
+
+    private static final int NIL = -1;
+
+    private final Map<Long, Integer> nodeByUserId = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom(4711);
+
+    private long[] userIds;
+    private String[] usernames;
+    private int[] totalPoints;
+    private int[] exactPredictions;
+    private int[] totalPredictions;
+    private int[] priorities;
+    private int[] left;
+    private int[] right;
+    private int[] sizes;
+
+    private int root = NIL;
+    private int freeList = NIL;
+    private int nextNode;
+
+    // Results of split(), kept in fields to avoid allocating a pair per call
+    private int splitLeft;
+    private int splitRight;
+
+    public RankedLeaderboard() {
+        this(64);
+    }
+
+    public RankedLeaderboard(int initialCapacity) {
+        var capacity = Math.max(initialCapacity, 1);
+        userIds = new long[capacity];
+        usernames = new String[capacity];
+        totalPoints = new int[capacity];
+        exactPredictions = new int[capacity];
+        totalPredictions = new int[capacity];
+        priorities = new int[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        sizes = new int[capacity];
+    }
+
+    /**
+     * A ranked user.
+     *
+     * @param userId           The user's unique identifier
+     * @param username         The user's display name
+     * @param rank             The rank position (1 = first place)
+     * @param totalPoints      Total points earned
+     * @param exactPredictions Number of exact predictions (3 points)
+     * @param totalPredictions Number of scored predictions
+     */
+    public record Entry(
+            long userId,
+            String username,
+            int rank,
+            int totalPoints,
+            int exactPredictions,
+            int totalPredictions
+    ) {
+    }
+
+    /**
+     * Gets the number of ranked users.
+     *
+     * @return Number of users
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Checks if a user is ranked.
+     *
+     * @param userId The user ID
+     * @return true if the user is part of the leaderboard
+     */
+    public boolean contains(long userId) {
+        return nodeByUserId.containsKey(userId);
+    }
+
+    /**
+     * Sets the totals of a user, replacing any previous values.
+     * Users without scored predictions are removed from the leaderboard.
+     *
+     * @param userId           The user ID
+     * @param username         The username
+     * @param totalPoints      Total points earned
+     * @param exactPredictions Number of exact predictions
+     * @param totalPredictions Number of scored predictions
+     */
+    public void put(long userId, String username, int totalPoints, int exactPredictions, int totalPredictions) {
+        remove(userId);
+        if (totalPredictions <= 0) {
+            return;
+        }
+
+        var node = allocate(userId, username, totalPoints, exactPredictions, totalPredictions);
+        nodeByUserId.put(userId, node);
+
+        var position = indexOfNode(node);
+        split(root, position);
+        var lower = splitLeft;
+        var upper = splitRight;
+        root = merge(merge(lower, node), upper);
+    }
+
+    /**
+     * Adds the given deltas to the totals of a user, e.g. when an actual score has been entered.
+     *
+     * @param userId           The user ID
+     * @param username         The username
+     * @param pointsDelta      Change of the total points
+     * @param exactDelta       Change of the exact predictions
+     * @param predictionsDelta Change of the scored predictions
+     */
+    public void add(long userId, String username, int pointsDelta, int exactDelta, int predictionsDelta) {
+        var node = nodeByUserId.get(userId);
+        if (node == null) {
+            put(userId, username, pointsDelta, exactDelta, predictionsDelta);
+        } else {
+            put(userId, username,
+                    totalPoints[node] + pointsDelta,
+                    exactPredictions[node] + exactDelta,
+                    totalPredictions[node] + predictionsDelta);
+        }
+    }
+
+    /**
+     * Removes a user from the leaderboard.
+     *
+     * @param userId The user ID
+     * @return true if the user was ranked
+     */
+    public boolean remove(long userId) {
+        var node = nodeByUserId.remove(userId);
+        if (node == null) {
+            return false;
+        }
+
+        var position = indexOfNode(node);
+        split(root, position);
+        var lower = splitLeft;
+        split(splitRight, 1);
+        root = merge(lower, splitRight);
+
+        release(node);
+        return true;
+    }
+
+    /**
+     * Gets the rank of a user.
+     *
+     * @param userId The user ID
+     * @return The user's rank, or 0 if the user is not ranked
+     */
+    public int rankOf(long userId) {
+        var node = nodeByUserId.get(userId);
+        if (node == null) {
+            return 0;
+        }
+        return countBetter(totalPoints[node], exactPredictions[node], totalPredictions[node]) + 1;
+    }
+
+    /**
+     * Gets the position of a user in the ordered leaderboard (0-based).
+     * Unlike the rank, positions are unique even for tied users.
+     *
+     * @param userId The user ID
+     * @return The position, or -1 if the user is not ranked
+     */
+    public int positionOf(long userId) {
+        var node = nodeByUserId.get(userId);
+        return node == null ? -1 : indexOfNode(node);
+    }
+
+    /**
+     * Gets the position following a ranking key, i.e. the number of users ordered before or at the key.
+     * Used for keyset pagination: the key of the last entry of a page gives the start of the next page.
+     *
+     * @param totalPoints      Total points of the key
+     * @param exactPredictions Exact predictions of the key
+     * @param totalPredictions Total predictions of the key
+     * @param userId           User ID of the key
+     * @return The position of the first user ordered after the key
+     */
+    public int positionAfter(int totalPoints, int exactPredictions, int totalPredictions, long userId) {
+        var count = 0;
+        var node = root;
+        while (node != NIL) {
+            if (!isOrderedAfter(node, totalPoints, exactPredictions, totalPredictions, userId)) {
+                count += size(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the best ranked users.
+     *
+     * @param limit Maximum number of entries
+     * @return Entries ordered by rank
+     */
+    public List<Entry> top(int limit) {
+        return range(0, limit);
+    }
+
+    /**
+     * Gets the users ranked around a user, including the user.
+     *
+     * @param userId The user ID
+     * @param radius Number of entries before and after the user
+     * @return Entries ordered by rank, empty if the user is not ranked
+     */
+    public List<Entry> window(long userId, int radius) {
+        var position = positionOf(userId);
+        if (position < 0) {
+            return List.of();
+        }
+        return range(Math.max(0, position - radius), position + radius + 1);
+    }
+
+    /**
+     * Gets the entries of some users, e.g. of the members of a league.
+     * Every user is looked up on its own, so this takes O(m log n) for m users, independent of the users
+     * ranked between them.
+     *
+     * @param userIds The user IDs, users that are not ranked are skipped
+     * @return Entries ordered by rank
+     */
+    public List<Entry> entriesOf(long[] userIds) {
+        // Position in the upper half, node in the lower half, so sorting orders the nodes by position
+        var positionedNodes = new long[userIds.length];
+        var count = 0;
+        for (var userId : userIds) {
+            var node = nodeByUserId.get(userId);
+            if (node != null) {
+                positionedNodes[count++] = ((long) indexOfNode(node) << 32) | node;
+            }
+        }
+        Arrays.sort(positionedNodes, 0, count);
+
+        var entries = new ArrayList<Entry>(count);
+        for (var i = 0; i < count; i++) {
+            var node = (int) positionedNodes[i];
+            var rank = countBetter(totalPoints[node], exactPredictions[node], totalPredictions[node]) + 1;
+            entries.add(new Entry(this.userIds[node], usernames[node], rank,
+                    totalPoints[node], exactPredictions[node], totalPredictions[node]));
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the entries between two positions.
+     *
+     * @param from First position (inclusive, 0-based)
+     * @param to   Last position (exclusive)
+     * @return Entries ordered by rank
+     */
+    public List<Entry> range(int from, int to) {
+        var start = Math.max(0, from);
+        var end = Math.min(size(), to);
+        if (start >= end) {
+            return List.of();
+        }
+
+        var nodes = new int[end - start];
+        collect(root, 0, start, end, nodes);
+
+        var entries = new ArrayList<Entry>(nodes.length);
+        var rank = 0;
+        for (var i = 0; i < nodes.length; i++) {
+            var node = nodes[i];
+            if (i == 0) {
+                rank = countBetter(totalPoints[node], exactPredictions[node], totalPredictions[node]) + 1;
+            } else if (!sameScore(node, nodes[i - 1])) {
+                rank = start + i + 1;
+            }
+            entries.add(new Entry(userIds[node], usernames[node], rank,
+                    totalPoints[node], exactPredictions[node], totalPredictions[node]));
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all users.
+     */
+    public void clear() {
+        nodeByUserId.clear();
+        Arrays.fill(usernames, 0, nextNode, null);
+        root = NIL;
+        freeList = NIL;
+        nextNode = 0;
+    }
+
+    /**
+     * Counts the users with a strictly better score, ignoring the user ID used to order ties.
+     */
+    private int countBetter(int points, int exact, int predictions) {
+        var count = 0;
+        var node = root;
+        while (node != NIL) {
+            if (isBetter(node, points, exact, predictions)) {
+                count += size(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the nodes in the tree that are ordered before the given node.
+     */
+    private int indexOfNode(int target) {
+        var count = 0;
+        var node = root;
+        while (node != NIL) {
+            if (compare(node, target) < 0) {
+                count += size(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    private void collect(int node, int offset, int from, int to, int[] out) {
+        if (node == NIL || offset >= to || offset + sizes[node] <= from) {
+            return;
+        }
+        var position = offset + size(left[node]);
+        collect(left[node], offset, from, to, out);
+        if (position >= from && position < to) {
+            out[position - from] = node;
+        }
+        collect(right[node], position + 1, from, to, out);
+    }
+
+    /**
+     * Splits the tree into the first {@code count} nodes ({@link #splitLeft}) and the rest ({@link #splitRight}).
+     */
+    private void split(int node, int count) {
+        if (node == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (size(left[node]) < count) {
+            split(right[node], count - size(left[node]) - 1);
+            right[node] = splitLeft;
+            updateSize(node);
+            splitLeft = node;
+        } else {
+            split(left[node], count);
+            left[node] = splitRight;
+            updateSize(node);
+            splitRight = node;
+        }
+    }
+
+    /**
+     * Merges two trees where all nodes of {@code lower} are ordered before the nodes of {@code upper}.
+     */
+    private int merge(int lower, int upper) {
+        if (lower == NIL) {
+            return upper;
+        }
+        if (upper == NIL) {
+            return lower;
+        }
+        if (priorities[lower] > priorities[upper]) {
+            right[lower] = merge(right[lower], upper);
+            updateSize(lower);
+            return lower;
+        } else {
+            left[upper] = merge(lower, left[upper]);
+            updateSize(upper);
+            return upper;
+        }
+    }
+
+    /**
+     * Orders by points, exact predictions and total predictions (all descending), then by user ID.
+     */
+    private int compare(int a, int b) {
+        var result = Integer.compare(totalPoints[b], totalPoints[a]);
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(exactPredictions[b], exactPredictions[a]);
+        if (result != 0) {
+            return result;
+        }
+        result = Integer.compare(totalPredictions[b], totalPredictions[a]);
+        if (result != 0) {
+            return result;
+        }
+        return Long.compare(userIds[a], userIds[b]);
+    }
+
+    private boolean isOrderedAfter(int node, int points, int exact, int predictions, long userId) {
+        if (totalPoints[node] != points) {
+            return totalPoints[node] < points;
+        }
+        if (exactPredictions[node] != exact) {
+            return exactPredictions[node] < exact;
+        }
+        if (totalPredictions[node] != predictions) {
+            return totalPredictions[node] < predictions;
+        }
+        return userIds[node] > userId;
+    }
+
+    private boolean isBetter(int node, int points, int exact, int predictions) {
+        if (totalPoints[node] != points) {
+            return totalPoints[node] > points;
+        }
+        if (exactPredictions[node] != exact) {
+            return exactPredictions[node] > exact;
+        }
+        return totalPredictions[node] > predictions;
+    }
+
+    private boolean sameScore(int a, int b) {
+        return totalPoints[a] == totalPoints[b]
+                && exactPredictions[a] == exactPredictions[b]
+                && totalPredictions[a] == totalPredictions[b];
+    }
+
+    private int size(int node) {
+        return node == NIL ? 0 : sizes[node];
+    }
+
+    private void updateSize(int node) {
+        sizes[node] = size(left[node]) + size(right[node]) + 1;
+    }
+
+    private int allocate(long userId, String username, int points, int exact, int predictions) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (nextNode == userIds.length) {
+                grow();
+            }
+            node = nextNode++;
+        }
+        userIds[node] = userId;
+        usernames[node] = username;
+        totalPoints[node] = points;
+        exactPredictions[node] = exact;
+        totalPredictions[node] = predictions;
+        priorities[node] = random.nextInt();
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        return node;
+    }
+
+    private void release(int node) {
+        usernames[node] = null;
+        left[node] = freeList;
+        freeList = node;
+    }
+
+    private void grow() {
+        var capacity = userIds.length * 2;
+        userIds = Arrays.copyOf(userIds, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+        totalPoints = Arrays.copyOf(totalPoints, capacity);
+        exactPredictions = Arrays.copyOf(exactPredictions, capacity);
+        totalPredictions = Arrays.copyOf(totalPredictions, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+    }
+}
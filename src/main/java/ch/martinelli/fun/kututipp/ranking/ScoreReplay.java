@@ -0,0 +1,260 @@
+package ch.martinelli.fun.kututipp.ranking;
+
+import ch.martinelli.fun.kututipp.scoring.ScoringKernel;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays the leaderboard of a competition score event by score event, e.g. to show how the standings evolved
+ * during a final.
+ * <p>
+ * The totals of all users are kept for the latest event (the head) and copied as a checkpoint every
+ * {@code checkpointInterval} events. The standings at an event offset start from the checkpoint before it
+ * and apply the points deltas of the remaining events, which only touches the predictions of the changed
+ * entries. No aggregation runs from scratch, so jumping to any offset takes about the same time.
+ * <p>
+ * The predictions are fixed when the replay is created, new score events are appended.
+ * Ranks follow the BR-001 rules with the semantics of SQL {@code RANK()}, like {@link RankedLeaderboard}.
+ * <p>
+ * This class is not thread-safe, but concurrent calls of the read methods are safe while no event is appended.
+ */
+public class ScoreReplay {
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
+
+    // Entry index of events whose entry has no predictions
+    private static final int NO_ENTRY = -1;
+
+    private final int checkpointInterval;
+
+    private final long[] userIds;
+    private final String[] usernames;
+    private final Map<Long, Integer> entryIndexById = new HashMap<>();
+    // Users and predicted scores (in thousandths) of the predictions, per entry index
+    private final int[][] predictionUsers;
+    private final int[][] predictedScores;
+
+    private int[] eventEntries = new int[64];
+    private int[] eventScores = new int[64];
+    private int eventCount;
+
+    private final State head;
+    // checkpoints.get(i) holds the state after i * checkpointInterval events
+    private final List<State> checkpoints = new ArrayList<>();
+
+    /**
+     * A prediction of the competition.
+     *
+     * @param userId             The user ID
+     * @param username           The username
+     * @param competitionEntryId The predicted competition entry
+     * @param predictedScore     The predicted score
+     */
+    public record Prediction(long userId, String username, long competitionEntryId, BigDecimal predictedScore) {
+    }
+
+    public ScoreReplay(Collection<Prediction> predictions) {
+        this(predictions, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    public ScoreReplay(Collection<Prediction> predictions, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+
+        var userIndexById = new HashMap<Long, Integer>();
+        var userIdList = new ArrayList<Long>();
+        var usernameList = new ArrayList<String>();
+        var predictionCounts = new ArrayList<Integer>();
+        for (var prediction : predictions) {
+            if (userIndexById.putIfAbsent(prediction.userId(), userIdList.size()) == null) {
+                userIdList.add(prediction.userId());
+                usernameList.add(prediction.username());
+            }
+            var entryIndex = entryIndexById.computeIfAbsent(prediction.competitionEntryId(), _ -> entryIndexById.size());
+            if (entryIndex == predictionCounts.size()) {
+                predictionCounts.add(0);
+            }
+            predictionCounts.set(entryIndex, predictionCounts.get(entryIndex) + 1);
+        }
+
+        userIds = userIdList.stream().mapToLong(Long::longValue).toArray();
+        usernames = usernameList.toArray(String[]::new);
+
+        predictionUsers = new int[predictionCounts.size()][];
+        predictedScores = new int[predictionCounts.size()][];
+        for (var i = 0; i < predictionCounts.size(); i++) {
+            predictionUsers[i] = new int[predictionCounts.get(i)];
+            predictedScores[i] = new int[predictionCounts.get(i)];
+        }
+        var filled = new int[predictionCounts.size()];
+        for (var prediction : predictions) {
+            var entryIndex = entryIndexById.get(prediction.competitionEntryId());
+            var i = filled[entryIndex]++;
+            predictionUsers[entryIndex][i] = userIndexById.get(prediction.userId());
+            predictedScores[entryIndex][i] = ScoringKernel.toThousandths(prediction.predictedScore());
+        }
+
+        head = new State(userIds.length, predictionUsers.length);
+        checkpoints.add(head.copy());
+    }
+
+    /**
+     * Gets the number of appended score events.
+     *
+     * @return Number of events, the highest offset
+     */
+    public int eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Gets the number of users with predictions.
+     *
+     * @return Number of users
+     */
+    public int userCount() {
+        return userIds.length;
+    }
+
+    /**
+     * Appends a score event.
+     *
+     * @param competitionEntryId The competition entry whose score changed
+     * @param actualScore        The new actual score, or null if it was removed
+     */
+    public void append(long competitionEntryId, BigDecimal actualScore) {
+        if (eventCount == eventEntries.length) {
+            eventEntries = Arrays.copyOf(eventEntries, eventCount * 2);
+            eventScores = Arrays.copyOf(eventScores, eventCount * 2);
+        }
+        var entryIndex = entryIndexById.getOrDefault(competitionEntryId, NO_ENTRY);
+        var score = ScoringKernel.toThousandths(actualScore);
+        eventEntries[eventCount] = entryIndex;
+        eventScores[eventCount] = score;
+        eventCount++;
+
+        apply(head, entryIndex, score);
+        if (eventCount % checkpointInterval == 0) {
+            checkpoints.add(head.copy());
+        }
+    }
+
+    /**
+     * Gets the standings after a number of score events.
+     *
+     * @param offset Number of applied events, from 0 (no scores) to {@link #eventCount()} (current standings)
+     * @return Ranked users with scored predictions, ordered by rank
+     */
+    public List<RankedLeaderboard.Entry> standingsAt(int offset) {
+        if (offset < 0 || offset > eventCount) {
+            throw new IllegalArgumentException("Offset " + offset + " is not between 0 and " + eventCount);
+        }
+        if (offset == eventCount) {
+            return rank(head);
+        }
+
+        var checkpoint = offset / checkpointInterval;
+        var from = checkpoint * checkpointInterval;
+        if (from == offset) {
+            return rank(checkpoints.get(checkpoint));
+        }
+
+        var state = checkpoints.get(checkpoint).copy();
+        for (var event = from; event < offset; event++) {
+            apply(state, eventEntries[event], eventScores[event]);
+        }
+        return rank(state);
+    }
+
+    private void apply(State state, int entryIndex, int score) {
+        if (entryIndex == NO_ENTRY) {
+            return;
+        }
+        var previousScore = state.scores[entryIndex];
+        var users = predictionUsers[entryIndex];
+        var predicted = predictedScores[entryIndex];
+
+        for (var i = 0; i < users.length; i++) {
+            var user = users[i];
+            if (previousScore != ScoringKernel.NO_SCORE) {
+                var points = ScoringKernel.points(predicted[i], previousScore);
+                state.points[user] -= points;
+                state.exact[user] -= points == 3 ? 1 : 0;
+                state.predictions[user]--;
+            }
+            if (score != ScoringKernel.NO_SCORE) {
+                var points = ScoringKernel.points(predicted[i], score);
+                state.points[user] += points;
+                state.exact[user] += points == 3 ? 1 : 0;
+                state.predictions[user]++;
+            }
+        }
+        state.scores[entryIndex] = score;
+    }
+
+    private List<RankedLeaderboard.Entry> rank(State state) {
+        var ranked = new ArrayList<Integer>(userIds.length);
+        for (var user = 0; user < userIds.length; user++) {
+            // Like in the leaderboards, users without scored predictions are not ranked
+            if (state.predictions[user] > 0) {
+                ranked.add(user);
+            }
+        }
+        ranked.sort((a, b) -> {
+            var compare = Integer.compare(state.points[b], state.points[a]);
+            if (compare == 0) {
+                compare = Integer.compare(state.exact[b], state.exact[a]);
+            }
+            if (compare == 0) {
+                compare = Integer.compare(state.predictions[b], state.predictions[a]);
+            }
+            return compare != 0 ? compare : Long.compare(userIds[a], userIds[b]);
+        });
+
+        var entries = new ArrayList<RankedLeaderboard.Entry>(ranked.size());
+        var rank = 0;
+        for (var i = 0; i < ranked.size(); i++) {
+            int user = ranked.get(i);
+            if (i == 0 || !state.sameScore(user, ranked.get(i - 1))) {
+                rank = i + 1;
+            }
+            entries.add(new RankedLeaderboard.Entry(userIds[user], usernames[user], rank,
+                    state.points[user], state.exact[user], state.predictions[user]));
+        }
+        return entries;
+    }
+
+    /**
+     * Totals per user index and actual score per entry index after some events.
+     */
+    private record State(int[] points, int[] exact, int[] predictions, int[] scores) {
+
+        State(int users, int entries) {
+            this(new int[users], new int[users], new int[users], filledScores(entries));
+        }
+
+        State copy() {
+            return new State(points.clone(), exact.clone(), predictions.clone(), scores.clone());
+        }
+
+        boolean sameScore(int user, int other) {
+            return points[user] == points[other]
+                    && exact[user] == exact[other]
+                    && predictions[user] == predictions[other];
+        }
+
+        private static int[] filledScores(int entries) {
+            var scores = new int[entries];
+            Arrays.fill(scores, ScoringKernel.NO_SCORE);
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.db.tables.records.CompetitionEntryRecord;
+import ch.martinelli.fun.kututipp.dto.ScoreEntryDto;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.jooq.Records;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+
+/**
+ * Repository for competition entry database operations using jOOQ.
+ */
+@Repository
+public class CompetitionEntryRepository {
+
+    private final DSLContext dsl;
+
+    public CompetitionEntryRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * Finds a competition entry by ID.
+     *
+     * @param id the competition entry ID
+     * @return an Optional containing the competition entry record if found, empty otherwise
+     */
+    public Optional<CompetitionEntryRecord> findById(Long id) {
+        return dsl.selectFrom(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.ID.eq(id))
+                .fetchOptional();
+    }
+
+    /**
+     * Finds the competitions of competition entries.
+     *
+     * @param ids the competition entry IDs
+     * @return IDs of the competitions the entries belong to
+     */
+    public Set<Long> findCompetitionIds(Collection<Long> ids) {
+        return dsl.selectDistinct(COMPETITION_ENTRY.COMPETITION_ID)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.ID.in(ids))
+                .fetchSet(COMPETITION_ENTRY.COMPETITION_ID);
+    }
+
+    /**
+     * Sets or corrects the actual score of a competition entry.
+     * The leaderboard aggregate is updated by database triggers in the same transaction.
+     *
+     * @param id          the competition entry ID
+     * @param actualScore the actual score, or null to remove the score
+     * @return Number of updated records (0 or 1)
+     */
+    public int updateActualScore(Long id, BigDecimal actualScore) {
+        return dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, actualScore)
+                .set(COMPETITION_ENTRY.UPDATED_AT, OffsetDateTime.now())
+                .where(COMPETITION_ENTRY.ID.eq(id))
+                .execute();
+    }
+
+    /**
+     * Finds the entries of a competition in the order they are scored: by apparatus in the order of the
+     * competition program, then by team and gymnast.
+     *
+     * @param competitionId the competition ID
+     * @return entries of the competition
+     */
+    public List<ScoreEntryDto> findByCompetition(Long competitionId) {
+        return dsl.select(
+                        COMPETITION_ENTRY.ID,
+                        APPARATUS.ID,
+                        APPARATUS.NAME,
+                        GYMNAST.GENDER,
+                        GYMNAST.NAME,
+                        GYMNAST.TEAM_NAME,
+                        COMPETITION_ENTRY.ACTUAL_SCORE
+                )
+                .from(COMPETITION_ENTRY)
+                .join(GYMNAST).on(GYMNAST.ID.eq(COMPETITION_ENTRY.GYMNAST_ID))
+                .join(APPARATUS).on(APPARATUS.ID.eq(COMPETITION_ENTRY.APPARATUS_ID))
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(competitionId))
+                .orderBy(APPARATUS.ID, GYMNAST.TEAM_NAME, GYMNAST.NAME, COMPETITION_ENTRY.ID)
+                .fetch(Records.mapping(ScoreEntryDto::new));
+    }
+
+    /**
+     * Sets or corrects the actual scores of several competition entries with one multi-row UPDATE.
+     * Entries whose score does not change are not updated. The leaderboard aggregate is updated by database
+     * triggers in the same transaction.
+     *
+     * @param actualScores the actual scores by competition entry ID, null values remove the score
+     * @return IDs of the competition entries whose actual score changed
+     */
+    public List<Long> updateActualScores(Map<Long, BigDecimal> actualScores) {
+        var ids = actualScores.keySet().toArray(Long[]::new);
+        var scores = new BigDecimal[ids.length];
+        for (var i = 0; i < ids.length; i++) {
+            scores[i] = actualScores.get(ids[i]);
+        }
+
+        var scoreUpdate = DSL.table("unnest({0}, {1})",
+                        DSL.val(ids, SQLDataType.BIGINT.array()),
+                        DSL.val(scores, SQLDataType.NUMERIC(5, 3).array()))
+                .as("score_update", "id", "actual_score");
+        var id = scoreUpdate.field("id", Long.class);
+        var actualScore = scoreUpdate.field("actual_score", BigDecimal.class);
+
+        return dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, actualScore)
+                .set(COMPETITION_ENTRY.UPDATED_AT, OffsetDateTime.now())
+                .from(scoreUpdate)
+                .where(COMPETITION_ENTRY.ID.eq(id))
+                .and(COMPETITION_ENTRY.ACTUAL_SCORE.isDistinctFrom(actualScore))
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetch(Record1::value1);
+    }
+}
@@ -1,5 +1,6 @@
 package ch.martinelli.fun.kututipp.repository;
 
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
 import ch.martinelli.fun.kututipp.db.tables.records.CompetitionRecord;
 import org.jooq.DSLContext;
 import org.springframework.stereotype.Repository;
@@ -51,8 +52,22 @@ public class CompetitionRepository {
      */
     public List<CompetitionRecord> findUpcoming() {
         return dsl.selectFrom(COMPETITION)
-                .where(COMPETITION.STATUS.eq(ch.martinelli.fun.kututipp.db.enums.CompetitionStatus.upcoming))
+                .where(COMPETITION.STATUS.eq(CompetitionStatus.upcoming))
                 .orderBy(COMPETITION.DATE.asc())
                 .fetch();
     }
+
+    /**
+     * Updates the status of a competition.
+     *
+     * @param id     the competition ID
+     * @param status the new status
+     * @return number of updated rows (0 if the competition does not exist)
+     */
+    public int updateStatus(Long id, CompetitionStatus status) {
+        return dsl.update(COMPETITION)
+                .set(COMPETITION.STATUS, status)
+                .where(COMPETITION.ID.eq(id))
+                .execute();
+    }
 }
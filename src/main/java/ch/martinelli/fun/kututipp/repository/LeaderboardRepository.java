@@ -1,12 +1,36 @@
 package ch.martinelli.fun.kututipp.repository;
 
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.dto.LeaderboardCursor;
 import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
+import ch.martinelli.fun.kututipp.dto.PreviousRanks;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record4;
+import org.jooq.Record5;
+import org.jooq.Record6;
+import org.jooq.Records;
+import org.jooq.Select;
 import org.jooq.Result;
 import org.jooq.SelectConditionStep;
 import org.jooq.SelectHavingStep;
+import org.jooq.SelectJoinStep;
+import org.jooq.Table;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
 import static ch.martinelli.fun.kututipp.db.Routines.calculatePoints;
 import static ch.martinelli.fun.kututipp.db.Tables.*;
 import static org.jooq.impl.DSL.*;
@@ -14,6 +38,14 @@ import static org.jooq.impl.DSL.*;
 /**
  * Repository for leaderboard database operations using jOOQ.
  * Handles all leaderboard-related queries including ranking calculation via SQL window functions.
+ * <p>
+ * Leaderboards are aggregated from the {@code user_points_agg} table, which is kept up to date by
+ * database triggers whenever an actual score or a prediction changes. Finished competitions are
+ * additionally rolled up to one row per user in {@code user_competition_points}.
+ * <p>
+ * The paged leaderboard queries may run on a lagging read replica, the {@code LeaderboardService} calls them in
+ * read-only transactions. The overall leaderboard and the totals loaded by the {@code LeaderboardEngine} must not,
+ * so they run on the primary.
  */
 @Repository
 public class LeaderboardRepository {
@@ -21,21 +53,32 @@ public class LeaderboardRepository {
     private static final String TOTAL_POINTS = "total_points";
     private static final String TOTAL_PREDICTIONS = "total_predictions";
     private static final String EXACT_PREDICTIONS = "exact_predictions";
-    private static final String AVG_POINTS = "avg_points";
     private static final String RANK = "rank";
+    private static final String POSITION = "position";
 
     private final DSLContext dsl;
+    // Seconds, 0 for no timeout
+    private final int queryTimeout;
 
-    public LeaderboardRepository(DSLContext dsl) {
+    /**
+     * Creates a repository cancelling the leaderboard queries that exceed their budget (UC-014 E2: Query Timeout).
+     * Only the queries serving leaderboards to users are limited, not exports and maintenance statements.
+     *
+     * @param dsl          The DSL context
+     * @param queryTimeout Budget of a leaderboard query, rounded up to seconds; zero for no timeout
+     */
+    public LeaderboardRepository(DSLContext dsl,
+                                 @Value("${kututipp.leaderboard.query-timeout:3s}") Duration queryTimeout) {
         this.dsl = dsl;
+        this.queryTimeout = (int) Math.ceilDiv(queryTimeout.toMillis(), 1000);
     }
 
     /**
      * Get overall leaderboard across all competitions with rankings calculated in SQL.
      *
-     * @return Query results with leaderboard data including rank
+     * @return Ranked users ordered by rank
      */
-    public Result<? extends org.jooq.Record> getOverallLeaderboard() {
+    public List<LeaderboardRow> getOverallLeaderboard() {
         var aggregatedData = buildAggregatedLeaderboardQuery(null, null, null);
         return addRankingAndOrder(aggregatedData);
     }
@@ -44,9 +87,9 @@ public class LeaderboardRepository {
      * Get leaderboard for a specific competition with rankings calculated in SQL.
      *
      * @param competitionId The competition ID
-     * @return Competition-specific query results including rank
+     * @return Ranked users of the competition ordered by rank
      */
-    public Result<? extends org.jooq.Record> getCompetitionLeaderboard(Long competitionId) {
+    public List<LeaderboardRow> getCompetitionLeaderboard(Long competitionId) {
         var aggregatedData = buildAggregatedLeaderboardQuery(competitionId, null, null);
         return addRankingAndOrder(aggregatedData);
     }
@@ -55,9 +98,9 @@ public class LeaderboardRepository {
      * Get leaderboard for a specific apparatus with rankings calculated in SQL.
      *
      * @param apparatusId The apparatus ID
-     * @return Apparatus-specific query results including rank
+     * @return Ranked users of the apparatus ordered by rank
      */
-    public Result<? extends org.jooq.Record> getApparatusLeaderboard(Long apparatusId) {
+    public List<LeaderboardRow> getApparatusLeaderboard(Long apparatusId) {
         var aggregatedData = buildAggregatedLeaderboardQuery(null, apparatusId, null);
         return addRankingAndOrder(aggregatedData);
     }
@@ -66,9 +109,9 @@ public class LeaderboardRepository {
      * Get leaderboard with filters applied and rankings calculated in SQL.
      *
      * @param filter Filter criteria
-     * @return Filtered leaderboard query results including rank
+     * @return Ranked users ordered by rank
      */
-    public Result<? extends org.jooq.Record> getFilteredLeaderboard(LeaderboardFilter filter) {
+    public List<LeaderboardRow> getFilteredLeaderboard(LeaderboardFilter filter) {
         var aggregatedData = buildAggregatedLeaderboardQuery(
                 filter.competitionId(),
                 filter.apparatusId(),
@@ -78,8 +121,459 @@ public class LeaderboardRepository {
     }
 
     /**
-     * Builds the aggregated leaderboard query with points calculation.
-     * This query groups by user and calculates total points, predictions, etc.
+     * Get a page of the leaderboard using keyset pagination.
+     * The page starts after the given cursor, so paging stays stable and cheap however deep the page is.
+     * <p>
+     * The seek is applied to the aggregated totals before ranking: only the page is sorted and ranked, instead
+     * of all users. The ranks of the page continue from the number of users ranked before the cursor, which
+     * are counted in the same statement.
+     *
+     * @param filter Filter criteria
+     * @param after  Cursor of the last entry of the previous page, or null for the first page
+     * @param limit  Maximum number of entries
+     * @return Ranked users ordered by rank
+     */
+    public List<LeaderboardRow> getLeaderboardPage(LeaderboardFilter filter, LeaderboardCursor after, int limit) {
+        // Read twice below, so PostgreSQL aggregates it once
+        var leaderboardData = name("leaderboard_data")
+                .as(buildAggregatedLeaderboardQuery(filter.competitionId(), filter.apparatusId(), filter));
+        var totalPoints = leaderboardData.field(TOTAL_POINTS, Integer.class);
+        var exactPredictions = leaderboardData.field(EXACT_PREDICTIONS, Integer.class);
+        var totalPredictions = leaderboardData.field(TOTAL_PREDICTIONS, Integer.class);
+        var userId = leaderboardData.field(APP_USER.ID);
+
+        var ordered = select(userId, leaderboardData.field(APP_USER.USERNAME), totalPoints, exactPredictions, totalPredictions)
+                .from(leaderboardData)
+                .orderBy(totalPoints.desc(), exactPredictions.desc(), totalPredictions.desc(), userId.asc());
+        Select<?> pageQuery = after == null
+                ? ordered.limit(limit)
+                : ordered.seek(after.totalPoints(), after.exactPredictions(), after.totalPredictions(), after.userId()).limit(limit);
+        var page = pageQuery.asTable("page");
+
+        var pageTotalPoints = page.field(totalPoints);
+        var pageExactPredictions = page.field(exactPredictions);
+        var pageTotalPredictions = page.field(totalPredictions);
+        var pageUserId = page.field(userId);
+
+        Field<Integer> rankField = rank().over()
+                .orderBy(pageTotalPoints.desc(), pageExactPredictions.desc(), pageTotalPredictions.desc());
+        Table<?> from = page;
+
+        if (after != null) {
+            var totals = row(totalPoints, exactPredictions, totalPredictions);
+            var better = totals.gt(after.totalPoints(), after.exactPredictions(), after.totalPredictions());
+            var tied = totals.eq(after.totalPoints(), after.exactPredictions(), after.totalPredictions());
+
+            var before = select(
+                    count().filterWhere(better).as("better"),
+                    count().filterWhere(better.or(tied.and(userId.le(after.userId())))).as("preceding"))
+                    .from(leaderboardData)
+                    .asTable("before");
+
+            // Users tied with the cursor share its rank, all others are ranked after everyone before the page
+            rankField = when(row(pageTotalPoints, pageExactPredictions, pageTotalPredictions)
+                            .eq(after.totalPoints(), after.exactPredictions(), after.totalPredictions()),
+                    before.field("better", Integer.class).plus(1))
+                    .otherwise(before.field("preceding", Integer.class).plus(rankField));
+            from = page.crossJoin(before);
+        }
+
+        return dsl.with(leaderboardData)
+                .select(
+                        pageUserId,
+                        page.field(APP_USER.USERNAME),
+                        rankField,
+                        pageTotalPoints,
+                        pageTotalPredictions,
+                        pageExactPredictions)
+                .from(from)
+                .orderBy(pageTotalPoints.desc(), pageExactPredictions.desc(), pageTotalPredictions.desc(), pageUserId.asc())
+                .queryTimeout(queryTimeout)
+                .fetch(Records.mapping(LeaderboardRow::new));
+    }
+
+    /**
+     * Get the leaderboard entries between two positions.
+     * Used when a page is requested without a cursor, e.g. when jumping to a position.
+     *
+     * @param filter Filter criteria
+     * @param offset Number of entries to skip
+     * @param limit  Maximum number of entries
+     * @return Ranked users ordered by rank
+     */
+    public List<LeaderboardRow> getLeaderboardRange(LeaderboardFilter filter, int offset, int limit) {
+        var rankedLeaderboard = rankLeaderboard(filter);
+        var position = rankedLeaderboard.field(POSITION, Integer.class);
+        var last = (int) Math.min(Integer.MAX_VALUE, offset + (long) limit);
+
+        return selectRows(rankedLeaderboard)
+                .where(position.gt(offset).and(position.le(last)))
+                .orderBy(position)
+                .queryTimeout(queryTimeout)
+                .fetch(Records.mapping(LeaderboardRow::new));
+    }
+
+    /**
+     * Stream a complete leaderboard, e.g. for exports, without loading all rows into memory.
+     * The rows are read from a database cursor in batches of {@code fetchSize}. PostgreSQL only uses a cursor
+     * within a transaction, so call this in a transaction and close the stream to release the cursor.
+     *
+     * @param filter    Filter criteria
+     * @param fetchSize Number of rows fetched per round trip
+     * @return Ranked users ordered by rank
+     */
+    public Stream<LeaderboardRow> streamLeaderboard(LeaderboardFilter filter, int fetchSize) {
+        var rankedLeaderboard = rankLeaderboard(filter);
+
+        return selectRows(rankedLeaderboard)
+                .orderBy(rankedLeaderboard.field(POSITION))
+                .fetchSize(fetchSize)
+                .fetchStream()
+                .map(Records.mapping(LeaderboardRow::new));
+    }
+
+    /**
+     * Get the position (0-based, unique also for tied users) of a user in the leaderboard.
+     *
+     * @param filter Filter criteria
+     * @param userId The user ID
+     * @return The position, or -1 if the user is not ranked
+     */
+    public int getLeaderboardPosition(LeaderboardFilter filter, Long userId) {
+        var rankedLeaderboard = rankLeaderboard(filter);
+
+        return dsl.select(rankedLeaderboard.field(POSITION, Integer.class))
+                .from(rankedLeaderboard)
+                .where(rankedLeaderboard.field(APP_USER.ID).eq(userId))
+                .queryTimeout(queryTimeout)
+                .fetchOptional(record -> record.value1() - 1)
+                .orElse(-1);
+    }
+
+    /**
+     * Count the ranked users of a leaderboard.
+     *
+     * @param filter Filter criteria
+     * @return Number of users in the leaderboard
+     */
+    public int countLeaderboard(LeaderboardFilter filter) {
+        return dsl.selectCount()
+                .from(buildAggregatedLeaderboardQuery(filter.competitionId(), filter.apparatusId(), filter))
+                .queryTimeout(queryTimeout)
+                .fetchSingle()
+                .value1();
+    }
+
+    /**
+     * Get the overall totals of all users that predicted one of the given competition entries.
+     * Users whose predictions are no longer scored are returned with zero predictions.
+     *
+     * @param competitionEntryIds The competition entry IDs
+     * @return Records of user ID, username, total points, exact predictions and total predictions (without rank)
+     */
+    public Result<Record5<Long, String, Integer, Integer, Integer>> getOverallTotalsForEntries(Collection<Long> competitionEntryIds) {
+        var affectedUsers = select(PREDICTION.USER_ID)
+                .from(PREDICTION)
+                .where(PREDICTION.COMPETITION_ENTRY_ID.in(competitionEntryIds));
+
+        // One row per finished competition instead of one per apparatus and gender
+        var points = pointsPerCompetition();
+
+        return dsl.select(
+                        APP_USER.ID,
+                        APP_USER.USERNAME,
+                        coalesce(sum(points.field(USER_POINTS_AGG.TOTAL_POINTS)).cast(Integer.class), 0).as(TOTAL_POINTS),
+                        coalesce(sum(points.field(USER_POINTS_AGG.EXACT_PREDICTIONS)).cast(Integer.class), 0).as(EXACT_PREDICTIONS),
+                        coalesce(sum(points.field(USER_POINTS_AGG.TOTAL_PREDICTIONS)).cast(Integer.class), 0).as(TOTAL_PREDICTIONS)
+                )
+                .from(APP_USER)
+                .leftJoin(points).on(APP_USER.ID.eq(points.field(USER_POINTS_AGG.USER_ID)))
+                .where(APP_USER.ID.in(affectedUsers))
+                .groupBy(APP_USER.ID, APP_USER.USERNAME)
+                .fetch();
+    }
+
+    /**
+     * Get the per-competition totals of all users that predicted one of the given competition entries,
+     * in the competitions of these entries.
+     * Users whose predictions are no longer scored are returned with zero predictions.
+     *
+     * @param competitionEntryIds The competition entry IDs
+     * @return Records of user ID, competition ID, total points and total predictions
+     */
+    public Result<Record4<Long, Long, Integer, Integer>> getCompetitionTotalsForEntries(Collection<Long> competitionEntryIds) {
+        var affected = selectDistinct(PREDICTION.USER_ID, COMPETITION_ENTRY.COMPETITION_ID)
+                .from(PREDICTION)
+                .join(COMPETITION_ENTRY).on(COMPETITION_ENTRY.ID.eq(PREDICTION.COMPETITION_ENTRY_ID))
+                .where(PREDICTION.COMPETITION_ENTRY_ID.in(competitionEntryIds))
+                .asTable("affected");
+        var userId = affected.field(PREDICTION.USER_ID);
+        var competitionId = affected.field(COMPETITION_ENTRY.COMPETITION_ID);
+
+        return dsl.select(
+                        userId,
+                        competitionId,
+                        coalesce(sum(USER_POINTS_AGG.TOTAL_POINTS).cast(Integer.class), 0).as(TOTAL_POINTS),
+                        coalesce(sum(USER_POINTS_AGG.TOTAL_PREDICTIONS).cast(Integer.class), 0).as(TOTAL_PREDICTIONS)
+                )
+                .from(affected)
+                .leftJoin(USER_POINTS_AGG).on(USER_POINTS_AGG.USER_ID.eq(userId)
+                        .and(USER_POINTS_AGG.COMPETITION_ID.eq(competitionId)))
+                .groupBy(userId, competitionId)
+                .fetch();
+    }
+
+    /**
+     * Get the total points of all ranked users of a leaderboard, without ranking them.
+     *
+     * @param filter Filter criteria
+     * @return Total points by user ID
+     */
+    public Map<Long, Integer> getTotalPoints(LeaderboardFilter filter) {
+        var leaderboardData = buildAggregatedLeaderboardQuery(filter.competitionId(), filter.apparatusId(), filter)
+                .asTable("leaderboard_data");
+
+        var userId = leaderboardData.field(APP_USER.ID);
+        var totalPoints = leaderboardData.field(TOTAL_POINTS, Integer.class);
+
+        return dsl.select(userId, totalPoints)
+                .from(leaderboardData)
+                .fetchMap(userId, totalPoints);
+    }
+
+    /**
+     * Get the competition, apparatus and gender leaderboards, and the leaderboards of their combinations, in one
+     * query. The {@code user_points_agg} table is scanned once and grouped with {@code GROUPING SETS}; each row
+     * belongs to the leaderboard identified by its {@code competition_id}, {@code apparatus_id} and {@code gender}
+     * (null if not grouped by) and is ranked within it (BR-001). The overall leaderboard is not included.
+     *
+     * @return Ranked users ordered by rank per leaderboard, keyed by the filter of the leaderboard
+     */
+    public Map<LeaderboardFilter, List<LeaderboardRow>> getLeaderboardCube() {
+        var pointsSum = sum(USER_POINTS_AGG.TOTAL_POINTS);
+        var predictionsSum = sum(USER_POINTS_AGG.TOTAL_PREDICTIONS);
+        var exactSum = sum(USER_POINTS_AGG.EXACT_PREDICTIONS);
+
+        // The grouped columns are NOT NULL, so the columns that are set identify the grouping set
+        var rankField = rank().over()
+                .partitionBy(USER_POINTS_AGG.COMPETITION_ID, USER_POINTS_AGG.APPARATUS_ID, USER_POINTS_AGG.GENDER)
+                .orderBy(pointsSum.desc(), exactSum.desc(), predictionsSum.desc());
+
+        var rows = dsl.select(
+                        USER_POINTS_AGG.COMPETITION_ID,
+                        USER_POINTS_AGG.APPARATUS_ID,
+                        USER_POINTS_AGG.GENDER,
+                        APP_USER.ID,
+                        APP_USER.USERNAME,
+                        rankField.as(RANK),
+                        pointsSum.cast(Integer.class).as(TOTAL_POINTS),
+                        predictionsSum.cast(Integer.class).as(TOTAL_PREDICTIONS),
+                        exactSum.cast(Integer.class).as(EXACT_PREDICTIONS)
+                )
+                .from(USER_POINTS_AGG)
+                .join(APP_USER).on(APP_USER.ID.eq(USER_POINTS_AGG.USER_ID))
+                .where(USER_POINTS_AGG.TOTAL_PREDICTIONS.gt(0))
+                .groupBy(
+                        APP_USER.ID,
+                        APP_USER.USERNAME,
+                        // CUBE without the empty set, the overall leaderboard is served by the LeaderboardEngine
+                        groupingSets(
+                                new Field<?>[]{USER_POINTS_AGG.COMPETITION_ID},
+                                new Field<?>[]{USER_POINTS_AGG.APPARATUS_ID},
+                                new Field<?>[]{USER_POINTS_AGG.GENDER},
+                                new Field<?>[]{USER_POINTS_AGG.COMPETITION_ID, USER_POINTS_AGG.APPARATUS_ID},
+                                new Field<?>[]{USER_POINTS_AGG.COMPETITION_ID, USER_POINTS_AGG.GENDER},
+                                new Field<?>[]{USER_POINTS_AGG.APPARATUS_ID, USER_POINTS_AGG.GENDER},
+                                new Field<?>[]{USER_POINTS_AGG.COMPETITION_ID, USER_POINTS_AGG.APPARATUS_ID, USER_POINTS_AGG.GENDER}
+                        )
+                )
+                .orderBy(
+                        USER_POINTS_AGG.COMPETITION_ID, USER_POINTS_AGG.APPARATUS_ID, USER_POINTS_AGG.GENDER,
+                        field(name(RANK)), APP_USER.ID
+                )
+                .fetch();
+
+        var leaderboards = new LinkedHashMap<LeaderboardFilter, List<LeaderboardRow>>();
+        for (var row : rows) {
+            var filter = new LeaderboardFilter(row.value1(), row.value2(), row.value3(), null, null);
+            leaderboards.computeIfAbsent(filter, _ -> new ArrayList<>())
+                    .add(new LeaderboardRow(row.value4(), row.value5(), row.value6(), row.value7(), row.value8(), row.value9()));
+        }
+        return leaderboards;
+    }
+
+    /**
+     * Get leaderboard with filters applied, calculated directly from the predictions instead of the
+     * {@code user_points_agg} table. Used to verify and rebuild the aggregate.
+     *
+     * @param filter Filter criteria
+     * @return Ranked users ordered by rank
+     */
+    public List<LeaderboardRow> getLeaderboardFromPredictions(LeaderboardFilter filter) {
+        var aggregatedData = buildLeaderboardFromPredictionsQuery(
+                filter.competitionId(),
+                filter.apparatusId(),
+                filter
+        );
+        return addRankingAndOrder(aggregatedData);
+    }
+
+    /**
+     * Recalculates the complete {@code user_points_agg} table from the predictions, and the frozen totals of the
+     * finished competitions from it. The tables are maintained incrementally by database triggers, so this is only
+     * needed for repairs.
+     * <p>
+     * Must run in a transaction: the trigger refreshing the frozen totals per aggregate row is disabled meanwhile,
+     * which locks {@code user_points_agg} until the transaction ends. A rollback enables it again.
+     *
+     * @return Number of aggregate rows written
+     */
+    public int rebuildPointsAggregate() {
+        var pointsField = calculatePoints(PREDICTION.PREDICTED_SCORE, COMPETITION_ENTRY.ACTUAL_SCORE);
+
+        // Refreshed once per finished competition below instead of once or twice per row
+        dsl.execute("ALTER TABLE user_points_agg DISABLE TRIGGER trg_user_points_agg_competition_refresh");
+
+        dsl.deleteFrom(USER_POINTS_AGG).execute();
+
+        var rows = dsl.insertInto(USER_POINTS_AGG,
+                        USER_POINTS_AGG.USER_ID,
+                        USER_POINTS_AGG.COMPETITION_ID,
+                        USER_POINTS_AGG.APPARATUS_ID,
+                        USER_POINTS_AGG.GENDER,
+                        USER_POINTS_AGG.TOTAL_POINTS,
+                        USER_POINTS_AGG.EXACT_PREDICTIONS,
+                        USER_POINTS_AGG.TOTAL_PREDICTIONS)
+                .select(dsl.select(
+                                PREDICTION.USER_ID,
+                                COMPETITION_ENTRY.COMPETITION_ID,
+                                COMPETITION_ENTRY.APPARATUS_ID,
+                                GYMNAST.GENDER,
+                                sum(pointsField).cast(Integer.class),
+                                count(when(pointsField.eq(3), 1)),
+                                count(PREDICTION.ID)
+                        )
+                        .from(PREDICTION)
+                        .join(COMPETITION_ENTRY).on(PREDICTION.COMPETITION_ENTRY_ID.eq(COMPETITION_ENTRY.ID))
+                        .join(GYMNAST).on(COMPETITION_ENTRY.GYMNAST_ID.eq(GYMNAST.ID))
+                        .where(COMPETITION_ENTRY.ACTUAL_SCORE.isNotNull())
+                        .groupBy(
+                                PREDICTION.USER_ID,
+                                COMPETITION_ENTRY.COMPETITION_ID,
+                                COMPETITION_ENTRY.APPARATUS_ID,
+                                GYMNAST.GENDER
+                        ))
+                .execute();
+
+        dsl.execute("ALTER TABLE user_points_agg ENABLE TRIGGER trg_user_points_agg_competition_refresh");
+        dsl.select(field("user_competition_points_refresh({0}, NULL)", COMPETITION.ID))
+                .from(COMPETITION)
+                .where(COMPETITION.STATUS.eq(CompetitionStatus.finished))
+                .fetch();
+
+        return rows;
+    }
+
+    /**
+     * Writes the current overall ranking to {@code rank_history} as the snapshot of a finished competition.
+     * An existing snapshot of the competition is replaced.
+     * <p>
+     * The database takes the snapshot when the status of a competition changes to finished. This is only
+     * needed for competitions inserted as finished, e.g. by the data generator.
+     *
+     * @param competitionId The finished competition
+     * @return Number of users in the snapshot
+     */
+    public int snapshotRanks(Long competitionId) {
+        var rankedLeaderboard = rankLeaderboard(LeaderboardFilter.empty());
+
+        dsl.deleteFrom(RANK_HISTORY)
+                .where(RANK_HISTORY.COMPETITION_ID.eq(competitionId))
+                .execute();
+
+        return dsl.insertInto(RANK_HISTORY,
+                        RANK_HISTORY.COMPETITION_ID,
+                        RANK_HISTORY.USER_ID,
+                        RANK_HISTORY.RANK,
+                        RANK_HISTORY.TOTAL_POINTS,
+                        RANK_HISTORY.EXACT_PREDICTIONS,
+                        RANK_HISTORY.TOTAL_PREDICTIONS)
+                .select(dsl.select(
+                                val(competitionId),
+                                rankedLeaderboard.field(APP_USER.ID),
+                                rankedLeaderboard.field(RANK, Integer.class),
+                                rankedLeaderboard.field(TOTAL_POINTS, Integer.class),
+                                rankedLeaderboard.field(EXACT_PREDICTIONS, Integer.class),
+                                rankedLeaderboard.field(TOTAL_PREDICTIONS, Integer.class)
+                        )
+                        .from(rankedLeaderboard))
+                .execute();
+    }
+
+    /**
+     * Get the previous overall ranks of users for the rank trend, all users in one query.
+     * <p>
+     * While a competition is live, trends compare with the snapshot of the most recent finished competition.
+     * Otherwise, the most recent snapshot equals the current ranking, so trends compare with the snapshot
+     * before it and show the changes of the last competition.
+     *
+     * @param userIds The users to look up
+     * @return Previous ranks of the users
+     */
+    public PreviousRanks getPreviousRanks(Collection<Long> userIds) {
+        return fetchPreviousRanks(RANK_HISTORY.USER_ID.in(userIds));
+    }
+
+    /**
+     * Get the previous overall ranks of all users for the rank trend.
+     *
+     * @return Previous ranks of all users in the snapshot
+     * @see #getPreviousRanks(Collection)
+     */
+    public PreviousRanks getPreviousRanks() {
+        return fetchPreviousRanks(noCondition());
+    }
+
+    private PreviousRanks fetchPreviousRanks(Condition userCondition) {
+        var snapshots = select(
+                COMPETITION.ID,
+                rowNumber().over().orderBy(COMPETITION.DATE.desc(), COMPETITION.ID.desc()).as("snapshot_number"))
+                .from(COMPETITION)
+                .where(COMPETITION.STATUS.eq(CompetitionStatus.finished))
+                .andExists(selectOne().from(RANK_HISTORY).where(RANK_HISTORY.COMPETITION_ID.eq(COMPETITION.ID)))
+                .asTable("snapshots");
+
+        var snapshotNumber = when(exists(selectOne().from(COMPETITION).where(COMPETITION.STATUS.eq(CompetitionStatus.live))), 1)
+                .otherwise(2);
+
+        var previousRanks = dsl.select(RANK_HISTORY.USER_ID, RANK_HISTORY.RANK)
+                .from(snapshots)
+                .leftJoin(RANK_HISTORY)
+                .on(RANK_HISTORY.COMPETITION_ID.eq(snapshots.field(COMPETITION.ID)))
+                .and(userCondition)
+                .where(snapshots.field("snapshot_number", Integer.class).eq(snapshotNumber))
+                .fetch();
+
+        if (previousRanks.isEmpty()) {
+            return PreviousRanks.none();
+        }
+
+        var ranks = new HashMap<Long, Integer>();
+        for (var previousRank : previousRanks) {
+            if (previousRank.value1() != null) {
+                ranks.put(previousRank.value1(), previousRank.value2());
+            }
+        }
+        return new PreviousRanks(true, ranks);
+    }
+
+    /**
+     * Builds the aggregated leaderboard query from the {@code user_points_agg} table.
+     * The table already holds the points per user, competition, apparatus and gymnast gender,
+     * so only the matching rows have to be summed up.
+     * <p>
+     * Without apparatus and gender filter, finished competitions are read from the frozen per-competition
+     * totals in {@code user_competition_points}, see {@link #pointsPerCompetition()}.
      *
      * @param competitionId Optional competition ID filter
      * @param apparatusId   Optional apparatus ID filter
@@ -91,14 +585,113 @@ public class LeaderboardRepository {
             Long apparatusId,
             LeaderboardFilter filter) {
 
+        var byApparatusOrGender = apparatusId != null || (filter != null && filter.gender() != null);
+        Table<?> points = byApparatusOrGender ? USER_POINTS_AGG : pointsPerCompetition();
+
+        var userIdField = points.field(USER_POINTS_AGG.USER_ID);
+        var competitionIdField = points.field(USER_POINTS_AGG.COMPETITION_ID);
+        var totalPredictions = points.field(USER_POINTS_AGG.TOTAL_PREDICTIONS);
+
+        var pointsSum = sum(points.field(USER_POINTS_AGG.TOTAL_POINTS));
+        var predictionsSum = sum(totalPredictions);
+
+        // INTEGER instead of NUMERIC sums, so the totals are read without BigDecimal conversions
+        var totalPointsField = coalesce(pointsSum.cast(Integer.class), 0).as(TOTAL_POINTS);
+        var totalPredictionsField = coalesce(predictionsSum.cast(Integer.class), 0).as(TOTAL_PREDICTIONS);
+        var exactPredictionsField = coalesce(sum(points.field(USER_POINTS_AGG.EXACT_PREDICTIONS)).cast(Integer.class), 0).as(EXACT_PREDICTIONS);
+
+        var query = dsl.select(
+                        APP_USER.ID,
+                        APP_USER.USERNAME,
+                        totalPointsField,
+                        totalPredictionsField,
+                        exactPredictionsField
+                )
+                .from(APP_USER)
+                .join(points).on(APP_USER.ID.eq(userIdField));
+
+        SelectConditionStep<?> conditionStep = query.where(totalPredictions.gt(0));
+
+        if (competitionId != null) {
+            conditionStep = conditionStep.and(competitionIdField.eq(competitionId));
+        }
+
+        if (apparatusId != null) {
+            conditionStep = conditionStep.and(USER_POINTS_AGG.APPARATUS_ID.eq(apparatusId));
+        }
+
+        if (filter != null) {
+            if (filter.gender() != null) {
+                conditionStep = conditionStep.and(USER_POINTS_AGG.GENDER.eq(filter.gender()));
+            }
+            if (filter.startDate() != null || filter.endDate() != null) {
+                // Semi-join: the competitions in range are found with idx_competition_date first,
+                // then only their points are read instead of filtering after joining all points
+                var competitionsInRange = noCondition();
+                if (filter.startDate() != null) {
+                    competitionsInRange = competitionsInRange.and(COMPETITION.DATE.greaterOrEqual(filter.startDate()));
+                }
+                if (filter.endDate() != null) {
+                    competitionsInRange = competitionsInRange.and(COMPETITION.DATE.lessOrEqual(filter.endDate()));
+                }
+                conditionStep = conditionStep.and(competitionIdField.in(
+                        select(COMPETITION.ID).from(COMPETITION).where(competitionsInRange)));
+            }
+        }
+
+        return conditionStep.groupBy(APP_USER.ID, APP_USER.USERNAME);
+    }
+
+    /**
+     * Points per user and competition: the frozen totals of finished competitions (one row per user),
+     * followed by the {@code user_points_agg} rows of the competitions that are not finished yet.
+     * The columns are named like the ones of {@code user_points_agg}.
+     *
+     * @return Derived table with user ID, competition ID and totals
+     */
+    private Table<?> pointsPerCompetition() {
+        var frozenPoints = select(
+                USER_COMPETITION_POINTS.USER_ID,
+                USER_COMPETITION_POINTS.COMPETITION_ID,
+                USER_COMPETITION_POINTS.TOTAL_POINTS,
+                USER_COMPETITION_POINTS.EXACT_PREDICTIONS,
+                USER_COMPETITION_POINTS.TOTAL_PREDICTIONS)
+                .from(USER_COMPETITION_POINTS);
+
+        var openPoints = select(
+                USER_POINTS_AGG.USER_ID,
+                USER_POINTS_AGG.COMPETITION_ID,
+                USER_POINTS_AGG.TOTAL_POINTS,
+                USER_POINTS_AGG.EXACT_PREDICTIONS,
+                USER_POINTS_AGG.TOTAL_PREDICTIONS)
+                .from(USER_POINTS_AGG)
+                .join(COMPETITION).on(USER_POINTS_AGG.COMPETITION_ID.eq(COMPETITION.ID))
+                .where(COMPETITION.STATUS.ne(CompetitionStatus.finished));
+
+        return frozenPoints.unionAll(openPoints).asTable("competition_points");
+    }
+
+    /**
+     * Builds the aggregated leaderboard query with points calculated from every scored prediction.
+     * This query groups by user and calculates total points, predictions, etc.
+     *
+     * @param competitionId Optional competition ID filter
+     * @param apparatusId   Optional apparatus ID filter
+     * @param filter        Optional additional filters (gender, date range)
+     * @return Select query with aggregated leaderboard data (without ranking)
+     */
+    private SelectHavingStep<?> buildLeaderboardFromPredictionsQuery(
+            Long competitionId,
+            Long apparatusId,
+            LeaderboardFilter filter) {
+
         // Calculate points on-the-fly using database function
         var pointsField = calculatePoints(PREDICTION.PREDICTED_SCORE, COMPETITION_ENTRY.ACTUAL_SCORE);
 
         // Define field aliases for aggregations
-        var totalPointsField = coalesce(sum(pointsField), 0).as(TOTAL_POINTS);
+        var totalPointsField = coalesce(sum(pointsField).cast(Integer.class), 0).as(TOTAL_POINTS);
         var totalPredictionsField = count(PREDICTION.ID).as(TOTAL_PREDICTIONS);
         var exactPredictionsField = count(when(pointsField.eq(3), 1)).as(EXACT_PREDICTIONS);
-        var avgPointsField = coalesce(avg(pointsField), 0.0).as(AVG_POINTS);
 
         // Build base query
         var query = dsl.select(
@@ -106,8 +699,7 @@ public class LeaderboardRepository {
                         APP_USER.USERNAME,
                         totalPointsField,
                         totalPredictionsField,
-                        exactPredictionsField,
-                        avgPointsField
+                        exactPredictionsField
                 )
                 .from(APP_USER)
                 .join(PREDICTION).on(APP_USER.ID.eq(PREDICTION.USER_ID))
@@ -177,14 +769,49 @@ public class LeaderboardRepository {
      * - Tie Breaker 2: Total predictions (descending)
      *
      * @param aggregatedQuery The aggregated leaderboard query
-     * @return Query results with rank column, ordered by rank
+     * @return Ranked users ordered by rank
+     */
+    private List<LeaderboardRow> addRankingAndOrder(SelectHavingStep<?> aggregatedQuery) {
+        var rankedLeaderboard = rankLeaderboard(aggregatedQuery);
+
+        return selectRows(rankedLeaderboard)
+                .orderBy(rankedLeaderboard.field(POSITION))
+                .queryTimeout(queryTimeout)
+                .fetch(Records.mapping(LeaderboardRow::new));
+    }
+
+    /**
+     * Selects the columns of {@link LeaderboardRow} from a ranked leaderboard, in the order of its components.
+     * Rows are mapped by column index, without looking up the columns by name.
+     *
+     * @param rankedLeaderboard Derived table from {@link #rankLeaderboard(SelectHavingStep)}
+     * @return Select query of the leaderboard rows
+     */
+    private SelectJoinStep<Record6<Long, String, Integer, Integer, Integer, Integer>> selectRows(Table<?> rankedLeaderboard) {
+        return dsl.select(
+                        rankedLeaderboard.field(APP_USER.ID),
+                        rankedLeaderboard.field(APP_USER.USERNAME),
+                        rankedLeaderboard.field(RANK, Integer.class),
+                        rankedLeaderboard.field(TOTAL_POINTS, Integer.class),
+                        rankedLeaderboard.field(TOTAL_PREDICTIONS, Integer.class),
+                        rankedLeaderboard.field(EXACT_PREDICTIONS, Integer.class))
+                .from(rankedLeaderboard);
+    }
+
+    /**
+     * Adds the RANK() (BR-001, ties share a rank) and a unique position to the aggregated data.
+     * The position orders ties by user ID, which makes the order stable for pagination.
+     *
+     * @param aggregatedQuery The aggregated leaderboard query
+     * @return Derived table with rank and position columns
      */
-    private Result<? extends org.jooq.Record> addRankingAndOrder(SelectHavingStep<?> aggregatedQuery) {
+    private Table<?> rankLeaderboard(SelectHavingStep<?> aggregatedQuery) {
         var leaderboardData = aggregatedQuery.asTable("leaderboard_data");
 
         var totalPoints = leaderboardData.field(TOTAL_POINTS, Integer.class);
         var exactPredictions = leaderboardData.field(EXACT_PREDICTIONS, Integer.class);
         var totalPredictions = leaderboardData.field(TOTAL_PREDICTIONS, Integer.class);
+        var userId = leaderboardData.field(APP_USER.ID);
 
         // Use RANK() window function for ranking (handles ties properly)
         var rankField = rank().over()
@@ -195,12 +822,25 @@ public class LeaderboardRepository {
                 )
                 .as(RANK);
 
+        var positionField = rowNumber().over()
+                .orderBy(
+                        totalPoints.desc(),
+                        exactPredictions.desc(),
+                        totalPredictions.desc(),
+                        userId.asc()
+                )
+                .as(POSITION);
+
         return dsl.select(
                         leaderboardData.asterisk(),
-                        rankField
+                        rankField,
+                        positionField
                 )
                 .from(leaderboardData)
-                .orderBy(field(name(RANK)))
-                .fetch();
+                .asTable("ranked_leaderboard");
+    }
+
+    private Table<?> rankLeaderboard(LeaderboardFilter filter) {
+        return rankLeaderboard(buildAggregatedLeaderboardQuery(filter.competitionId(), filter.apparatusId(), filter));
     }
 }
@@ -0,0 +1,134 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.db.tables.records.LeagueRecord;
+import org.jooq.DSLContext;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static ch.martinelli.fun.kututipp.db.tables.League.LEAGUE;
+import static ch.martinelli.fun.kututipp.db.tables.LeagueMember.LEAGUE_MEMBER;
+
+/**
+ * Repository for private leagues and their members using jOOQ.
+ */
+@Repository
+public class LeagueRepository {
+
+    private final DSLContext dsl;
+
+    public LeagueRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * Creates a league.
+     *
+     * @param name     the league name
+     * @param joinCode the unique code to join the league
+     * @param ownerId  the user ID of the owner
+     * @return the created league
+     */
+    public LeagueRecord create(String name, String joinCode, Long ownerId) {
+        return dsl.insertInto(LEAGUE)
+                .set(LEAGUE.NAME, name)
+                .set(LEAGUE.JOIN_CODE, joinCode)
+                .set(LEAGUE.OWNER_ID, ownerId)
+                .returning()
+                .fetchOne();
+    }
+
+    /**
+     * Deletes a league with all its members.
+     *
+     * @param id the league ID
+     * @return number of deleted rows (0 if the league does not exist)
+     */
+    public int delete(Long id) {
+        return dsl.deleteFrom(LEAGUE)
+                .where(LEAGUE.ID.eq(id))
+                .execute();
+    }
+
+    /**
+     * Finds a league by ID.
+     *
+     * @param id the league ID
+     * @return an Optional containing the league if found, empty otherwise
+     */
+    public Optional<LeagueRecord> findById(Long id) {
+        return dsl.selectFrom(LEAGUE)
+                .where(LEAGUE.ID.eq(id))
+                .fetchOptional();
+    }
+
+    /**
+     * Finds a league by its join code.
+     *
+     * @param joinCode the join code
+     * @return an Optional containing the league if found, empty otherwise
+     */
+    public Optional<LeagueRecord> findByJoinCode(String joinCode) {
+        return dsl.selectFrom(LEAGUE)
+                .where(LEAGUE.JOIN_CODE.eq(joinCode))
+                .fetchOptional();
+    }
+
+    /**
+     * Finds the leagues a user is a member of, ordered by name.
+     *
+     * @param userId the user ID
+     * @return List of leagues
+     */
+    public List<LeagueRecord> findByMember(Long userId) {
+        return dsl.select(LEAGUE.fields())
+                .from(LEAGUE)
+                .join(LEAGUE_MEMBER).on(LEAGUE_MEMBER.LEAGUE_ID.eq(LEAGUE.ID))
+                .where(LEAGUE_MEMBER.USER_ID.eq(userId))
+                .orderBy(LEAGUE.NAME, LEAGUE.ID)
+                .fetchInto(LEAGUE);
+    }
+
+    /**
+     * Adds a member to a league.
+     *
+     * @param leagueId the league ID
+     * @param userId   the user ID
+     * @return true if the user was added, false if the user already is a member
+     */
+    public boolean addMember(Long leagueId, Long userId) {
+        return dsl.insertInto(LEAGUE_MEMBER)
+                .set(LEAGUE_MEMBER.LEAGUE_ID, leagueId)
+                .set(LEAGUE_MEMBER.USER_ID, userId)
+                .onConflictDoNothing()
+                .execute() > 0;
+    }
+
+    /**
+     * Removes a member from a league.
+     *
+     * @param leagueId the league ID
+     * @param userId   the user ID
+     * @return true if the user was removed, false if the user was not a member
+     */
+    public boolean removeMember(Long leagueId, Long userId) {
+        return dsl.deleteFrom(LEAGUE_MEMBER)
+                .where(LEAGUE_MEMBER.LEAGUE_ID.eq(leagueId))
+                .and(LEAGUE_MEMBER.USER_ID.eq(userId))
+                .execute() > 0;
+    }
+
+    /**
+     * Finds the user IDs of all members of a league.
+     *
+     * @param leagueId the league ID
+     * @return the member user IDs
+     */
+    public List<Long> findMemberIds(Long leagueId) {
+        return dsl.select(LEAGUE_MEMBER.USER_ID)
+                .from(LEAGUE_MEMBER)
+                .where(LEAGUE_MEMBER.LEAGUE_ID.eq(leagueId))
+                .fetch(LEAGUE_MEMBER.USER_ID);
+    }
+}
@@ -6,8 +6,11 @@ import ch.martinelli.fun.kututipp.dto.CompetitionDto;
 import ch.martinelli.fun.kututipp.dto.CompetitionEntryDto;
 import ch.martinelli.fun.kututipp.dto.UserCompetitionSummaryDto;
 import org.jooq.DSLContext;
+import org.jooq.Record4;
 import org.jooq.Records;
+import org.jooq.Result;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
@@ -86,6 +89,21 @@ public class PredictionRepository {
                 .fetch(Records.mapping(CompetitionEntryDto::new));
     }
 
+    /**
+     * Gets all predictions of a competition with the usernames, e.g. to replay its leaderboard.
+     *
+     * @param competitionId The competition ID
+     * @return User ID, username, competition entry ID and predicted score of every prediction
+     */
+    public Result<Record4<Long, String, Long, BigDecimal>> getPredictionsOfCompetition(Long competitionId) {
+        return dsl.select(PREDICTION.USER_ID, APP_USER.USERNAME, PREDICTION.COMPETITION_ENTRY_ID, PREDICTION.PREDICTED_SCORE)
+                .from(PREDICTION)
+                .join(COMPETITION_ENTRY).on(COMPETITION_ENTRY.ID.eq(PREDICTION.COMPETITION_ENTRY_ID))
+                .join(APP_USER).on(APP_USER.ID.eq(PREDICTION.USER_ID))
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(competitionId))
+                .fetch();
+    }
+
     /**
      * Saves or updates a prediction for a user.
      * BR-008-003: One prediction per user per competition entry.
@@ -216,10 +234,12 @@ public class PredictionRepository {
     /**
      * Gets all competitions where the user has made predictions.
      * UC-010: For viewing and editing existing predictions.
+     * Read-only, so it runs on the read replica if one is configured.
      *
      * @param userId The user ID
      * @return List of competitions with prediction summary
      */
+    @Transactional(readOnly = true)
     public List<UserCompetitionSummaryDto> getCompetitionsWithPredictions(Long userId) {
         var now = OffsetDateTime.now();
         var deadline = now.plusMinutes(30);
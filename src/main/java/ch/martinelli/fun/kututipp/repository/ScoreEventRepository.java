@@ -0,0 +1,67 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.dto.ScoreEventDto;
+import org.jooq.DSLContext;
+import org.jooq.Records;
+import org.jooq.impl.DSL;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+
+/**
+ * Repository for the score event log using jOOQ.
+ * The events are written by a database trigger whenever an actual score changes, they are never updated.
+ */
+@Repository
+public class ScoreEventRepository {
+
+    private final DSLContext dsl;
+
+    public ScoreEventRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * Gets the ID of the oldest transaction that is still running. All transactions with a lower ID have ended,
+     * the events they wrote are visible now.
+     *
+     * @return The transaction ID, pass it to {@link #findByCompetition(Long, long)} to read the events
+     * committed after this call
+     */
+    public long findOldestRunningTransaction() {
+        return dsl.fetchValue(DSL.field("pg_snapshot_xmin(pg_current_snapshot())::text::bigint", Long.class));
+    }
+
+    /**
+     * Finds the score events of a competition in log order.
+     * <p>
+     * Events are read by transaction and not by event ID, because IDs are taken when an event is written and a
+     * transaction with a lower ID can commit later. Events that have already been read can be returned again.
+     *
+     * @param competitionId The competition ID
+     * @param fromTxid      Only events written by this or later transactions are returned, 0 for all events;
+     *                      usually {@link #findOldestRunningTransaction()} before the previous read
+     * @return Score events ordered by ID
+     */
+    public List<ScoreEventDto> findByCompetition(Long competitionId, long fromTxid) {
+        return dsl.select(
+                        SCORE_EVENT.ID,
+                        SCORE_EVENT.COMPETITION_ENTRY_ID,
+                        GYMNAST.NAME,
+                        APPARATUS.NAME,
+                        SCORE_EVENT.ACTUAL_SCORE,
+                        SCORE_EVENT.PREVIOUS_SCORE,
+                        SCORE_EVENT.CREATED_AT
+                )
+                .from(SCORE_EVENT)
+                .join(COMPETITION_ENTRY).on(COMPETITION_ENTRY.ID.eq(SCORE_EVENT.COMPETITION_ENTRY_ID))
+                .join(GYMNAST).on(GYMNAST.ID.eq(COMPETITION_ENTRY.GYMNAST_ID))
+                .join(APPARATUS).on(APPARATUS.ID.eq(COMPETITION_ENTRY.APPARATUS_ID))
+                .where(SCORE_EVENT.COMPETITION_ID.eq(competitionId))
+                .and(SCORE_EVENT.TXID.ge(fromTxid))
+                .orderBy(SCORE_EVENT.ID)
+                .fetch(Records.mapping(ScoreEventDto::new));
+    }
+}
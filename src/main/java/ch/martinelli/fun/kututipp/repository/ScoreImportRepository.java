@@ -0,0 +1,131 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.dto.ScoreImportRow;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Repository;
+
+import java.io.StringReader;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.jooq.impl.DSL.count;
+import static org.jooq.impl.DSL.lower;
+
+/**
+ * Repository for bulk imports of actual scores using jOOQ.
+ * <p>
+ * Rows are staged in the unlogged {@code score_import} table with PostgreSQL COPY and applied to the competition
+ * entries with one set-based UPDATE. All methods must run in the same transaction, the staged rows are removed
+ * at the end of the import.
+ */
+@Repository
+public class ScoreImportRepository {
+
+    private static final String COPY_SQL =
+            "COPY score_import (import_id, line_number, gymnast_name, apparatus_name, actual_score) FROM STDIN";
+
+    private final DSLContext dsl;
+
+    public ScoreImportRepository(DSLContext dsl) {
+        this.dsl = dsl;
+    }
+
+    /**
+     * Stages the rows of an import with COPY.
+     *
+     * @param importId The import ID
+     * @param rows     Validated rows
+     * @return Number of staged rows
+     */
+    public long stage(UUID importId, List<ScoreImportRow> rows) {
+        var data = new StringBuilder(rows.size() * 64);
+        for (var row : rows) {
+            data.append(importId).append('\t')
+                    .append(row.lineNumber()).append('\t')
+                    .append(copyValue(row.gymnastName())).append('\t')
+                    .append(copyValue(row.apparatusName())).append('\t')
+                    .append(row.actualScore().toPlainString()).append('\n');
+        }
+        return dsl.connectionResult(connection -> connection.unwrap(PGConnection.class)
+                .getCopyAPI()
+                .copyIn(COPY_SQL, new StringReader(data.toString())));
+    }
+
+    /**
+     * Finds the staged rows that do not match exactly one competition entry of the competition.
+     *
+     * @param importId      The import ID
+     * @param competitionId The competition ID
+     * @return Number of matching competition entries (0 or more than 1) by line number
+     */
+    public Map<Integer, Integer> findUnmatched(UUID importId, Long competitionId) {
+        var matches = count(COMPETITION_ENTRY.ID);
+        return dsl.select(SCORE_IMPORT.LINE_NUMBER, matches)
+                .from(SCORE_IMPORT)
+                .leftJoin(COMPETITION_ENTRY
+                        .join(GYMNAST).on(GYMNAST.ID.eq(COMPETITION_ENTRY.GYMNAST_ID))
+                        .join(APPARATUS).on(APPARATUS.ID.eq(COMPETITION_ENTRY.APPARATUS_ID)))
+                .on(matchesEntry(competitionId))
+                .where(SCORE_IMPORT.IMPORT_ID.eq(importId))
+                .groupBy(SCORE_IMPORT.LINE_NUMBER)
+                .having(matches.ne(1))
+                .fetchMap(SCORE_IMPORT.LINE_NUMBER, matches);
+    }
+
+    /**
+     * Sets the actual scores of the competition entries matching the staged rows in one statement.
+     * Entries whose score does not change are not updated, so no triggers fire for them.
+     * The leaderboard aggregate is updated by database triggers in the same transaction.
+     *
+     * @param importId      The import ID
+     * @param competitionId The competition ID
+     * @return IDs of the competition entries whose actual score changed
+     */
+    public List<Long> apply(UUID importId, Long competitionId) {
+        return dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, SCORE_IMPORT.ACTUAL_SCORE)
+                .set(COMPETITION_ENTRY.UPDATED_AT, OffsetDateTime.now())
+                .from(SCORE_IMPORT, GYMNAST, APPARATUS)
+                .where(SCORE_IMPORT.IMPORT_ID.eq(importId))
+                .and(GYMNAST.ID.eq(COMPETITION_ENTRY.GYMNAST_ID))
+                .and(APPARATUS.ID.eq(COMPETITION_ENTRY.APPARATUS_ID))
+                .and(matchesEntry(competitionId))
+                .and(COMPETITION_ENTRY.ACTUAL_SCORE.isDistinctFrom(SCORE_IMPORT.ACTUAL_SCORE))
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetch(Record1::value1);
+    }
+
+    /**
+     * Removes the staged rows of an import.
+     *
+     * @param importId The import ID
+     * @return Number of removed rows
+     */
+    public int delete(UUID importId) {
+        return dsl.deleteFrom(SCORE_IMPORT)
+                .where(SCORE_IMPORT.IMPORT_ID.eq(importId))
+                .execute();
+    }
+
+    private static Condition matchesEntry(Long competitionId) {
+        return COMPETITION_ENTRY.COMPETITION_ID.eq(competitionId)
+                .and(lower(GYMNAST.NAME).eq(lower(SCORE_IMPORT.GYMNAST_NAME)))
+                .and(lower(APPARATUS.NAME).eq(lower(SCORE_IMPORT.APPARATUS_NAME)));
+    }
+
+    /**
+     * Escapes a value for the COPY text format.
+     */
+    private static String copyValue(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("\t", "\\t")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+}
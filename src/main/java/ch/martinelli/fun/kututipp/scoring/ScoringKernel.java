@@ -0,0 +1,139 @@
+package ch.martinelli.fun.kututipp.scoring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+
+/**
+ * Scores predictions in Java with exactly the same results as the {@code calculate_points} database function.
+ * <p>
+ * Scores are fixed-point integers in thousandths (14.500 = 14500), so all comparisons are exact:
+ * <ul>
+ *     <li>Scores below 0 or above 20000 are invalid and give 0 points (use {@link #NO_SCORE} for missing scores)</li>
+ *     <li>Exact match: 3 points</li>
+ *     <li>Within 5% deviation ({@code difference * 20 <= actual}): 2 points</li>
+ *     <li>Within 10% deviation ({@code difference * 10 <= actual}): 1 point</li>
+ *     <li>Otherwise, and for any inexact prediction of an actual score of 0: 0 points</li>
+ * </ul>
+ * Arrays are scored with the JDK Vector API if the {@code jdk.incubator.vector} module is available
+ * (started with {@code --add-modules jdk.incubator.vector}), otherwise with a scalar loop.
+ */
+public final class ScoringKernel {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoringKernel.class);
+
+    /**
+     * Marker for a missing score, scored like any other invalid score.
+     */
+    public static final int NO_SCORE = -1;
+
+    static final int MAX_SCORE = 20_000;
+
+    private static final boolean VECTORIZED = isVectorApiAvailable();
+
+    private ScoringKernel() {
+    }
+
+    /**
+     * Calculates the points of a single prediction.
+     *
+     * @param predicted Predicted score in thousandths
+     * @param actual    Actual score in thousandths
+     * @return Points (0 to 3)
+     */
+    public static int points(int predicted, int actual) {
+        if (predicted < 0 || predicted > MAX_SCORE || actual < 0 || actual > MAX_SCORE) {
+            return 0;
+        }
+        var difference = Math.abs(predicted - actual);
+        if (difference == 0) {
+            return 3;
+        }
+        // An actual score of 0 only matches exactly, the percentage checks below fail for it
+        if (difference * 20 <= actual) {
+            return 2;
+        }
+        if (difference * 10 <= actual) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Calculates the points of many predictions in one pass.
+     *
+     * @param predicted Predicted scores in thousandths
+     * @param actual    Actual scores in thousandths, same index as the prediction
+     * @param points    Receives the points, same index as the prediction
+     * @param length    Number of predictions to score, starting at index 0
+     */
+    public static void score(int[] predicted, int[] actual, int[] points, int length) {
+        if (length > predicted.length || length > actual.length || length > points.length) {
+            throw new IllegalArgumentException("Arrays are shorter than " + length);
+        }
+        if (VECTORIZED) {
+            VectorScoringKernel.score(predicted, actual, points, length);
+        } else {
+            scoreScalar(predicted, actual, points, 0, length);
+        }
+    }
+
+    /**
+     * Calculates the points of many predictions in one pass.
+     *
+     * @param predicted Predicted scores in thousandths
+     * @param actual    Actual scores in thousandths, same index as the prediction
+     * @return Points, same index as the prediction
+     */
+    public static int[] score(int[] predicted, int[] actual) {
+        if (predicted.length != actual.length) {
+            throw new IllegalArgumentException("Predicted and actual scores differ in length");
+        }
+        var points = new int[predicted.length];
+        score(predicted, actual, points, predicted.length);
+        return points;
+    }
+
+    /**
+     * Converts a score to thousandths.
+     *
+     * @param score Score with at most three decimals, or null
+     * @return Score in thousandths, or {@link #NO_SCORE} if the score is null
+     */
+    public static int toThousandths(BigDecimal score) {
+        if (score == null) {
+            return NO_SCORE;
+        }
+        return score.movePointRight(3).intValueExact();
+    }
+
+    /**
+     * Whether arrays are scored with the Vector API.
+     *
+     * @return True if the Vector API is used
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    static void scoreScalar(int[] predicted, int[] actual, int[] points, int from, int to) {
+        for (var i = from; i < to; i++) {
+            points[i] = points(predicted[i], actual[i]);
+        }
+    }
+
+    private static boolean isVectorApiAvailable() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            log.debug("Vector API not available, scoring predictions with scalar loop");
+            return false;
+        }
+        try {
+            log.debug("Scoring predictions with Vector API using {} int lanes", VectorScoringKernel.lanes());
+            return true;
+        } catch (LinkageError e) {
+            log.warn("Vector API could not be loaded, scoring predictions with scalar loop", e);
+            return false;
+        }
+    }
+}
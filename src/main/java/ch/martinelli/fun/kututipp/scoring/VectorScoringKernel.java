@@ -0,0 +1,53 @@
+package ch.martinelli.fun.kututipp.scoring;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of {@link ScoringKernel#score(int[], int[], int[], int)}.
+ * Only loaded if the {@code jdk.incubator.vector} module is available.
+ */
+final class VectorScoringKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorScoringKernel() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static void score(int[] predicted, int[] actual, int[] points, int length) {
+        var zero = IntVector.zero(SPECIES);
+        var one = IntVector.broadcast(SPECIES, 1);
+        var two = IntVector.broadcast(SPECIES, 2);
+        var three = IntVector.broadcast(SPECIES, 3);
+
+        var i = 0;
+        var upperBound = SPECIES.loopBound(length);
+        for (; i < upperBound; i += SPECIES.length()) {
+            var p = IntVector.fromArray(SPECIES, predicted, i);
+            var a = IntVector.fromArray(SPECIES, actual, i);
+
+            var valid = p.compare(VectorOperators.GE, 0)
+                    .and(p.compare(VectorOperators.LE, ScoringKernel.MAX_SCORE))
+                    .and(a.compare(VectorOperators.GE, 0))
+                    .and(a.compare(VectorOperators.LE, ScoringKernel.MAX_SCORE));
+
+            var difference = p.sub(a).abs();
+
+            // Same rules as ScoringKernel.points(), the better result overwrites the previous one
+            var result = zero
+                    .blend(one, difference.mul(10).compare(VectorOperators.LE, a))
+                    .blend(two, difference.mul(20).compare(VectorOperators.LE, a))
+                    .blend(three, difference.compare(VectorOperators.EQ, 0))
+                    .blend(zero, valid.not());
+
+            result.intoArray(points, i);
+        }
+
+        ScoringKernel.scoreScalar(predicted, actual, points, i, length);
+    }
+}
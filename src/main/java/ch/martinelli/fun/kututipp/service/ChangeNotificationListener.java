@@ -0,0 +1,276 @@
+package ch.martinelli.fun.kututipp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Keeps the in-memory caches of this node fresh when other application nodes change scores, competitions,
+ * predictions or league members.
+ * <p>
+ * Database triggers send every committed change with PostgreSQL {@code NOTIFY} (see {@code V010}). A dedicated
+ * connection listens for them, collects the notifications arriving within the batch window and publishes the
+ * same application events a local change publishes, e.g. one {@link ScoresChangedEvent} with all changed
+ * competition entries, so the caches update exactly the affected entries. Changes made by this node are
+ * recognized by the {@code application_name} of the writing connection and skipped, they have already been
+ * published locally.
+ * <p>
+ * If the connection is lost, it is reopened with exponential backoff. Notifications sent in the meantime are
+ * lost, so all caches are reloaded after reconnecting.
+ */
+@Component
+public class ChangeNotificationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeNotificationListener.class);
+
+    static final String CHANNEL = "kututipp_changes";
+    // Used if neither kututipp.cluster.node-id nor HOSTNAME is set
+    static final String DEFAULT_NODE_ID = "kutu-tipp";
+
+    private static final int POLL_TIMEOUT_MILLIS = 1_000;
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final JdbcConnectionDetails connectionDetails;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LeaderboardEngine leaderboardEngine;
+    private final PointsDistributionService pointsDistributionService;
+    private final ScoreReplayService scoreReplayService;
+    private final LeagueService leagueService;
+    private final boolean enabled;
+    private final String nodeId;
+    private final Duration batchWindow;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public ChangeNotificationListener(JdbcConnectionDetails connectionDetails,
+                                      ObjectMapper objectMapper,
+                                      ApplicationEventPublisher eventPublisher,
+                                      LeaderboardEngine leaderboardEngine,
+                                      PointsDistributionService pointsDistributionService,
+                                      ScoreReplayService scoreReplayService,
+                                      LeagueService leagueService,
+                                      @Value("${kututipp.cluster.notifications.enabled:true}") boolean enabled,
+                                      @Value("${kututipp.cluster.node-id:" + DEFAULT_NODE_ID + "}") String nodeId,
+                                      @Value("${kututipp.cluster.notifications.batch-window:20ms}") Duration batchWindow) {
+        this.connectionDetails = connectionDetails;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.leaderboardEngine = leaderboardEngine;
+        this.pointsDistributionService = pointsDistributionService;
+        this.scoreReplayService = scoreReplayService;
+        this.leagueService = leagueService;
+        this.enabled = enabled;
+        this.nodeId = nodeId;
+        this.batchWindow = batchWindow;
+    }
+
+    /**
+     * Change notification sent by the database triggers.
+     *
+     * @param type   What changed
+     * @param id     ID of the changed competition entry (scores and predictions), competition or league
+     * @param origin {@code application_name} of the connection that made the change
+     */
+    record ChangeNotification(Type type, long id, String origin) {
+
+        enum Type {
+            SCORE, COMPETITION, PREDICTION, LEAGUE
+        }
+    }
+
+    /**
+     * Changes of one batch of notifications, without duplicates.
+     *
+     * @param competitionEntryIds Competition entries whose scores or scored predictions changed
+     * @param competitionsChanged True if a competition changed, e.g. it was finished
+     * @param leagueIds           Leagues whose members changed
+     */
+    record Batch(List<Long> competitionEntryIds, boolean competitionsChanged, List<Long> leagueIds) {
+
+        static Batch of(List<ChangeNotification> notifications) {
+            var competitionEntryIds = new LinkedHashSet<Long>();
+            var competitionsChanged = false;
+            var leagueIds = new LinkedHashSet<Long>();
+
+            for (var notification : notifications) {
+                switch (notification.type()) {
+                    case SCORE, PREDICTION -> competitionEntryIds.add(notification.id());
+                    case COMPETITION -> competitionsChanged = true;
+                    case LEAGUE -> leagueIds.add(notification.id());
+                }
+            }
+            return new Batch(List.copyOf(competitionEntryIds), competitionsChanged, List.copyOf(leagueIds));
+        }
+
+        boolean isEmpty() {
+            return competitionEntryIds.isEmpty() && !competitionsChanged && leagueIds.isEmpty();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        if (DEFAULT_NODE_ID.equals(nodeId)) {
+            // Nodes with the same ID skip each other's changes and serve outdated leaderboards
+            log.warn("Using the default node ID {}, set kututipp.cluster.node-id to a unique ID per node "
+                    + "if more than one node is running", nodeId);
+        }
+        running = true;
+        thread = Thread.ofPlatform().name("change-notification-listener").daemon().start(this::listen);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void listen() {
+        var backoff = MIN_BACKOFF;
+        var reconnect = false;
+
+        while (running) {
+            try (var connection = connect()) {
+                log.info("Listening for changes of other nodes on channel {}", CHANNEL);
+                if (reconnect) {
+                    // Notifications sent while disconnected are lost
+                    reloadCaches();
+                }
+                backoff = MIN_BACKOFF;
+                reconnect = true;
+
+                var pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    var notifications = receive(pgConnection);
+                    if (!notifications.isEmpty()) {
+                        publish(Batch.of(notifications));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Change notification connection failed, reconnecting in {}", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException _) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = backoff.multipliedBy(2);
+                if (backoff.compareTo(MAX_BACKOFF) > 0) {
+                    backoff = MAX_BACKOFF;
+                }
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        var properties = new Properties();
+        properties.setProperty("user", connectionDetails.getUsername());
+        properties.setProperty("password", connectionDetails.getPassword());
+        properties.setProperty("ApplicationName", nodeId + "-listener");
+        // Detects a broken connection while waiting for notifications
+        properties.setProperty("tcpKeepAlive", "true");
+
+        var connection = DriverManager.getConnection(connectionDetails.getJdbcUrl(), properties);
+        try (var statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Waits for notifications, then collects the ones arriving within the batch window.
+     * Notifications of this node and unknown notifications are dropped.
+     */
+    private List<ChangeNotification> receive(PGConnection connection) throws SQLException {
+        var received = connection.getNotifications(POLL_TIMEOUT_MILLIS);
+        if (received == null || received.length == 0) {
+            return List.of();
+        }
+
+        var notifications = new ArrayList<ChangeNotification>();
+        var deadline = System.nanoTime() + batchWindow.toNanos();
+        while (received != null) {
+            for (var notification : received) {
+                var change = parse(notification.getParameter());
+                if (change != null && !nodeId.equals(change.origin())) {
+                    notifications.add(change);
+                }
+            }
+            var remainingMillis = (int) Duration.ofNanos(deadline - System.nanoTime()).toMillis();
+            received = remainingMillis > 0 ? connection.getNotifications(remainingMillis) : null;
+        }
+        return notifications;
+    }
+
+    private ChangeNotification parse(String payload) {
+        try {
+            var json = objectMapper.readTree(payload);
+            var type = ChangeNotification.Type.valueOf(json.path("type").asText().toUpperCase(Locale.ROOT));
+            return new ChangeNotification(type, json.path("id").asLong(), json.path("origin").asText());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.warn("Ignoring invalid change notification {}", payload, e);
+            return null;
+        }
+    }
+
+    private void publish(Batch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        log.debug("Received changes of other nodes: {}", batch);
+
+        if (!batch.competitionEntryIds().isEmpty()) {
+            eventPublisher.publishEvent(new ScoresChangedEvent(batch.competitionEntryIds()));
+        }
+        if (batch.competitionsChanged()) {
+            // Other leaderboard data of a changed competition (rank history, frozen totals), like after a
+            // competition was finished on this node
+            eventPublisher.publishEvent(new LeaderboardInvalidatedEvent());
+        }
+        for (var leagueId : batch.leagueIds()) {
+            eventPublisher.publishEvent(new LeagueMembershipChangedEvent(leagueId));
+        }
+    }
+
+    private void reloadCaches() {
+        log.info("Reloading caches after reconnecting");
+        leaderboardEngine.reload();
+        pointsDistributionService.reload();
+        scoreReplayService.reload();
+        leagueService.reload();
+        eventPublisher.publishEvent(new LeaderboardInvalidatedEvent());
+    }
+}
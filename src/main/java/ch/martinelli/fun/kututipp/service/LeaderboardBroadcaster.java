@@ -0,0 +1,220 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.shared.Registration;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Pushes the overall leaderboard to all attached UIs when actual scores change.
+ * <p>
+ * Score changes are coalesced: the first change of a burst schedules one recompute after the configured
+ * interval, all changes arriving in the meantime are covered by it. The ranking is computed once on the
+ * broadcaster thread (and shared through the {@link LeaderboardCache}), so listeners only have to apply
+ * the update and never query the database while holding a session lock.
+ * <p>
+ * While listeners are registered, each batch also warms up the {@link LeaderboardCache} with all competition,
+ * apparatus and gender leaderboards, computed in a single query. Without listeners, leaderboards are only
+ * computed when they are requested.
+ */
+@Component
+public class LeaderboardBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardBroadcaster.class);
+
+    private final LeaderboardService leaderboardService;
+    private final ScoresVersion scoresVersion;
+    private final Duration interval;
+    private final ScheduledExecutorService executor;
+    private final List<Consumer<Update>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean broadcastPending = new AtomicBoolean();
+
+    // Only accessed by the broadcaster thread
+    private List<LeaderboardEntryDto> lastLeaderboard;
+
+    public LeaderboardBroadcaster(LeaderboardService leaderboardService,
+                                  ScoresVersion scoresVersion,
+                                  @Value("${kututipp.leaderboard.push.interval:2s}") Duration interval) {
+        this.leaderboardService = leaderboardService;
+        this.scoresVersion = scoresVersion;
+        this.interval = interval;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "leaderboard-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Leaderboard update pushed to the listeners.
+     *
+     * @param version        Scores version the leaderboard was computed at
+     * @param leaderboard    The complete overall leaderboard (shared, immutable)
+     * @param changedEntries Entries that are new or differ from the previous update
+     * @param reordered      True if users changed their position, so the whole leaderboard has to be redrawn
+     */
+    public record Update(
+            long version,
+            List<LeaderboardEntryDto> leaderboard,
+            List<LeaderboardEntryDto> changedEntries,
+            boolean reordered
+    ) {
+    }
+
+    /**
+     * Registers a listener for leaderboard updates.
+     * Listeners are called on the broadcaster thread, UI changes have to be made with {@code UI.access()}.
+     *
+     * @param listener Receives the leaderboard updates
+     * @return Registration to remove the listener, e.g. when the UI is detached
+     */
+    public Registration register(Consumer<Update> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Schedules a broadcast once the score transaction has been committed, unless one is already pending.
+     * Ordered after the scores version has been incremented, so the broadcast computes the new ranking.
+     *
+     * @param event The scores changed event
+     */
+    @Order(200)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScoresChanged(ScoresChangedEvent event) {
+        scheduleBroadcast();
+    }
+
+    /**
+     * Schedules a broadcast once the rebuilt leaderboard aggregate has been committed.
+     *
+     * @param event The leaderboard rebuilt event
+     */
+    @Order(200)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardRebuilt(LeaderboardRebuiltEvent event) {
+        scheduleBroadcast();
+    }
+
+    /**
+     * Schedules a broadcast once the transaction that invalidated the leaderboards has been committed.
+     *
+     * @param event The leaderboard invalidated event
+     */
+    @Order(200)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardInvalidated(LeaderboardInvalidatedEvent event) {
+        scheduleBroadcast();
+    }
+
+    private void scheduleBroadcast() {
+        if (broadcastPending.compareAndSet(false, true)) {
+            executor.schedule(this::broadcast, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void broadcast() {
+        // Changes arriving from now on need another broadcast
+        broadcastPending.set(false);
+
+        if (listeners.isEmpty()) {
+            lastLeaderboard = null;
+            return;
+        }
+
+        try {
+            leaderboardService.warmUpCache();
+        } catch (RuntimeException e) {
+            log.error("Leaderboard cache warm-up failed", e);
+        }
+
+        try {
+            var version = scoresVersion.current();
+            var leaderboard = leaderboardService.getLeaderboard(LeaderboardFilter.empty());
+            var update = diff(version, lastLeaderboard, leaderboard);
+            lastLeaderboard = leaderboard;
+
+            log.debug("Broadcasting leaderboard version {} with {} changed entries to {} listeners",
+                    version, update.changedEntries().size(), listeners.size());
+
+            publish(update);
+        } catch (RuntimeException e) {
+            log.error("Leaderboard broadcast failed", e);
+        }
+    }
+
+    /**
+     * Passes an update to all listeners. A failing listener does not keep the others from receiving it.
+     * Listeners of UIs that have been detached without removing their registration, e.g. because the session
+     * expired, are removed.
+     *
+     * @param update The leaderboard update
+     */
+    void publish(Update update) {
+        for (var listener : listeners) {
+            try {
+                listener.accept(update);
+            } catch (UIDetachedException e) {
+                listeners.remove(listener);
+                log.debug("Removed leaderboard listener of detached UI");
+            } catch (RuntimeException e) {
+                log.warn("Leaderboard listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Compares two leaderboards.
+     *
+     * @param version     Scores version of the new leaderboard
+     * @param previous    Previously broadcast leaderboard, or null
+     * @param leaderboard New leaderboard
+     * @return Update with the entries that changed
+     */
+    static Update diff(long version, List<LeaderboardEntryDto> previous, List<LeaderboardEntryDto> leaderboard) {
+        if (previous == null) {
+            return new Update(version, leaderboard, leaderboard, true);
+        }
+
+        var previousEntries = new HashMap<Long, LeaderboardEntryDto>(previous.size() * 2);
+        for (var entry : previous) {
+            previousEntries.put(entry.userId(), entry);
+        }
+
+        var changedEntries = new ArrayList<LeaderboardEntryDto>();
+        var reordered = previous.size() != leaderboard.size();
+        for (var i = 0; i < leaderboard.size(); i++) {
+            var entry = leaderboard.get(i);
+            if (!entry.equals(previousEntries.get(entry.userId()))) {
+                changedEntries.add(entry);
+            }
+            if (!reordered && !entry.userId().equals(previous.get(i).userId())) {
+                reordered = true;
+            }
+        }
+        return new Update(version, leaderboard, List.copyOf(changedEntries), reordered);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,273 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of ranked leaderboards shared by all sessions.
+ * <p>
+ * Entries are keyed by {@link LeaderboardFilter} and tagged with the {@link ScoresVersion} they were
+ * computed at; an entry is only served while the scores version is unchanged. The cached lists are
+ * immutable and contain no user specific data, so the current user has to be highlighted when rendering.
+ * The least recently used entry is evicted when the cache is full.
+ * <p>
+ * Outdated entries are kept until they are replaced or evicted, they are the last good leaderboards served
+ * while the leaderboard queries fail (UC-014 E2: Query Timeout).
+ * <p>
+ * The statistics are exported as the {@code kututipp.leaderboard.cache.hits}, {@code .misses}, {@code .evictions}
+ * and {@code .size} metrics.
+ */
+@Component
+public class LeaderboardCache {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ScoresVersion scoresVersion;
+    private final Map<LeaderboardFilter, CachedLeaderboard> entries;
+    private final Object[] loadLocks = new Object[LOCK_STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LeaderboardCache(ScoresVersion scoresVersion,
+                            @Value("${kututipp.leaderboard.cache.max-size:256}") int maxSize,
+                            MeterRegistry meterRegistry) {
+        this.scoresVersion = scoresVersion;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LeaderboardFilter, CachedLeaderboard> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        for (var i = 0; i < LOCK_STRIPES; i++) {
+            loadLocks[i] = new Object();
+        }
+
+        FunctionCounter.builder("kututipp.leaderboard.cache.hits", hits, LongAdder::sum)
+                .description("Leaderboard lookups served from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("kututipp.leaderboard.cache.misses", misses, LongAdder::sum)
+                .description("Leaderboard lookups that computed the leaderboard")
+                .register(meterRegistry);
+        FunctionCounter.builder("kututipp.leaderboard.cache.evictions", evictions, LongAdder::sum)
+                .description("Leaderboards evicted because the cache was full")
+                .register(meterRegistry);
+        Gauge.builder("kututipp.leaderboard.cache.size", this, cache -> cache.getStatistics().size())
+                .description("Cached leaderboards")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cache statistics.
+     *
+     * @param hits      Number of lookups served from the cache
+     * @param misses    Number of lookups that had to compute the leaderboard
+     * @param evictions Number of entries evicted because the cache was full
+     * @param size      Current number of cached leaderboards
+     */
+    public record Statistics(long hits, long misses, long evictions, int size) {
+    }
+
+    /**
+     * A cached leaderboard that may be outdated.
+     *
+     * @param version    Scores version the leaderboard was computed at
+     * @param entries    Immutable list of leaderboard entries sorted by rank
+     * @param computedAt When the leaderboard was computed
+     */
+    public record LastGoodLeaderboard(long version, List<LeaderboardEntryDto> entries, OffsetDateTime computedAt) {
+    }
+
+    /**
+     * Gets the leaderboard for a filter, computing it if it is not cached for the current scores version.
+     * Concurrent lookups of the same filter compute it only once.
+     *
+     * @param filter Filter criteria
+     * @param loader Computes the ranked leaderboard
+     * @return Immutable list of leaderboard entries sorted by rank
+     */
+    public List<LeaderboardEntryDto> get(LeaderboardFilter filter, Supplier<List<LeaderboardEntryDto>> loader) {
+        var cached = lookup(filter);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        synchronized (loadLocks[Math.floorMod(filter.hashCode(), LOCK_STRIPES)]) {
+            cached = lookup(filter);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+
+            misses.increment();
+            // Read the version before loading, so a concurrent score change invalidates the result
+            var version = scoresVersion.current();
+            var leaderboard = List.copyOf(loader.get());
+            synchronized (entries) {
+                entries.put(filter, cached(version, leaderboard, OffsetDateTime.now()));
+            }
+            return leaderboard;
+        }
+    }
+
+    /**
+     * Gets the entries of some users in the leaderboard for a filter, e.g. of the members of a league, computing
+     * the leaderboard if it is not cached for the current scores version.
+     * The positions of the users are indexed on the first lookup of a cached leaderboard, after that every user
+     * is looked up on its own instead of walking the leaderboard.
+     *
+     * @param filter  Filter criteria
+     * @param userIds The user IDs, users that are not ranked are skipped
+     * @param loader  Computes the ranked leaderboard
+     * @return Entries sorted by rank
+     */
+    public List<LeaderboardEntryDto> getEntries(LeaderboardFilter filter, long[] userIds,
+                                                Supplier<List<LeaderboardEntryDto>> loader) {
+        var leaderboard = get(filter, loader);
+        Positions positions;
+        synchronized (entries) {
+            var cached = entries.get(filter);
+            // Replaced in the meantime, the positions of the returned leaderboard are indexed once
+            positions = cached != null && cached.entries() == leaderboard ? cached.positions() : new Positions(leaderboard);
+        }
+
+        var found = new int[userIds.length];
+        var count = 0;
+        for (var userId : userIds) {
+            var position = positions.byUserId().get(userId);
+            if (position != null) {
+                found[count++] = position;
+            }
+        }
+        Arrays.sort(found, 0, count);
+
+        var userEntries = new ArrayList<LeaderboardEntryDto>(count);
+        for (var i = 0; i < count; i++) {
+            userEntries.add(leaderboard.get(found[i]));
+        }
+        return userEntries;
+    }
+
+    /**
+     * Stores precomputed leaderboards, e.g. when warming up the cache.
+     * They are only served while the scores version is unchanged.
+     *
+     * @param leaderboards Ranked leaderboards by filter
+     * @param version      Scores version read before the leaderboards were computed
+     */
+    public void putAll(Map<LeaderboardFilter, List<LeaderboardEntryDto>> leaderboards, long version) {
+        var computedAt = OffsetDateTime.now();
+        synchronized (entries) {
+            leaderboards.forEach((filter, leaderboard) ->
+                    entries.put(filter, cached(version, List.copyOf(leaderboard), computedAt)));
+        }
+    }
+
+    /**
+     * Gets the last computed leaderboard for a filter, even if scores changed since.
+     *
+     * @param filter Filter criteria
+     * @return The last good leaderboard, empty if none is cached
+     */
+    public Optional<LastGoodLeaderboard> getLastGood(LeaderboardFilter filter) {
+        synchronized (entries) {
+            return Optional.ofNullable(entries.get(filter))
+                    .map(cached -> new LastGoodLeaderboard(cached.version(), cached.entries(), cached.computedAt()));
+        }
+    }
+
+    /**
+     * Gets the scores version new cache entries are tagged with.
+     *
+     * @return The current scores version
+     */
+    public long currentVersion() {
+        return scoresVersion.current();
+    }
+
+    /**
+     * Removes all cached leaderboards.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Gets the cache statistics.
+     *
+     * @return Hit, miss and eviction counts
+     */
+    public Statistics getStatistics() {
+        synchronized (entries) {
+            return new Statistics(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        }
+    }
+
+    private List<LeaderboardEntryDto> lookup(LeaderboardFilter filter) {
+        synchronized (entries) {
+            var cached = entries.get(filter);
+            if (cached != null && cached.version() == scoresVersion.current()) {
+                return cached.entries();
+            }
+            return null;
+        }
+    }
+
+    private static CachedLeaderboard cached(long version, List<LeaderboardEntryDto> leaderboard, OffsetDateTime computedAt) {
+        return new CachedLeaderboard(version, leaderboard, computedAt, new Positions(leaderboard));
+    }
+
+    private record CachedLeaderboard(long version, List<LeaderboardEntryDto> entries, OffsetDateTime computedAt,
+                                     Positions positions) {
+    }
+
+    /**
+     * Positions of the users in a leaderboard, indexed on first use. Most leaderboards are never looked up by user.
+     */
+    private static final class Positions {
+
+        private final List<LeaderboardEntryDto> leaderboard;
+        private volatile Map<Long, Integer> byUserId;
+
+        private Positions(List<LeaderboardEntryDto> leaderboard) {
+            this.leaderboard = leaderboard;
+        }
+
+        private Map<Long, Integer> byUserId() {
+            var index = byUserId;
+            if (index == null) {
+                // Concurrent first lookups may index twice, both indexes are equal
+                index = HashMap.newHashMap(leaderboard.size());
+                for (var position = 0; position < leaderboard.size(); position++) {
+                    index.put(leaderboard.get(position).userId(), position);
+                }
+                byUserId = index;
+            }
+            return index;
+        }
+    }
+}
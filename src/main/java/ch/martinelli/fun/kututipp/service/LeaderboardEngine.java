@@ -0,0 +1,231 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardCursor;
+import ch.martinelli.fun.kututipp.ranking.RankedLeaderboard;
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+
+/**
+ * Keeps the overall leaderboard (BR-002: all competitions) in memory.
+ * <p>
+ * The ranking is loaded once from the database and then updated incrementally for the users
+ * affected by a {@link ScoresChangedEvent}, so rank lookups, top-N and "around me" queries
+ * take O(log n) without a database round-trip.
+ * <p>
+ * The ranking is shared by all sessions and must contain the latest scores, so it is never loaded in a read-only
+ * transaction, which would run on a lagging read replica.
+ */
+@Service
+public class LeaderboardEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardEngine.class);
+
+    private final LeaderboardRepository leaderboardRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes the incremental updates, the totals are read without holding the write lock
+    private final Lock updateLock = new ReentrantLock();
+
+    private RankedLeaderboard leaderboard;
+
+    public LeaderboardEngine(LeaderboardRepository leaderboardRepository) {
+        this.leaderboardRepository = leaderboardRepository;
+    }
+
+    /**
+     * Gets the overall rank of a user.
+     *
+     * @param userId The user ID
+     * @return User's rank (position), or 0 if not ranked
+     */
+    public int getRank(Long userId) {
+        return read(ranking -> ranking.rankOf(userId));
+    }
+
+    /**
+     * Gets the number of ranked users.
+     *
+     * @return Number of users in the overall leaderboard
+     */
+    public int size() {
+        return read(RankedLeaderboard::size);
+    }
+
+    /**
+     * Gets the best ranked users.
+     *
+     * @param limit Maximum number of entries
+     * @return Entries ordered by rank
+     */
+    public List<RankedLeaderboard.Entry> getTop(int limit) {
+        return read(ranking -> ranking.top(limit));
+    }
+
+    /**
+     * Gets the entries between two positions of the overall leaderboard.
+     *
+     * @param from First position (inclusive, 0-based)
+     * @param to   Last position (exclusive)
+     * @return Entries ordered by rank
+     */
+    public List<RankedLeaderboard.Entry> getRange(int from, int to) {
+        return read(ranking -> ranking.range(from, to));
+    }
+
+    /**
+     * Gets the entries following a keyset cursor.
+     *
+     * @param after Cursor of the last entry of the previous page, or null for the first page
+     * @param limit Maximum number of entries
+     * @return Entries ordered by rank
+     */
+    public List<RankedLeaderboard.Entry> getPage(LeaderboardCursor after, int limit) {
+        return read(ranking -> {
+            var from = after == null ? 0 : ranking.positionAfter(
+                    after.totalPoints(), after.exactPredictions(), after.totalPredictions(), after.userId());
+            return ranking.range(from, from + limit);
+        });
+    }
+
+    /**
+     * Gets the position (0-based, unique also for tied users) of a user.
+     *
+     * @param userId The user ID
+     * @return The position, or -1 if not ranked
+     */
+    public int getPosition(Long userId) {
+        return read(ranking -> ranking.positionOf(userId));
+    }
+
+    /**
+     * Gets the users ranked around a user, including the user.
+     *
+     * @param userId The user ID
+     * @param radius Number of entries before and after the user
+     * @return Entries ordered by rank, empty if the user is not ranked
+     */
+    public List<RankedLeaderboard.Entry> getWindow(Long userId, int radius) {
+        return read(ranking -> ranking.window(userId, radius));
+    }
+
+    /**
+     * Gets the entries of some users, e.g. of the members of a league, each looked up in O(log n).
+     *
+     * @param userIds The user IDs, users that are not ranked are skipped
+     * @return Entries ordered by rank
+     */
+    public List<RankedLeaderboard.Entry> getEntries(long[] userIds) {
+        return read(ranking -> ranking.entriesOf(userIds));
+    }
+
+    /**
+     * Updates the ranking of all users that predicted the changed competition entries.
+     * Runs after the score transaction has been committed.
+     *
+     * @param event The scores changed event
+     */
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScoresChanged(ScoresChangedEvent event) {
+        if (!isLoaded()) {
+            // Will be loaded with the current scores on first access
+            return;
+        }
+
+        // Updates are applied in the order their totals were read. Readers only wait while they are applied.
+        updateLock.lock();
+        try {
+            var totals = leaderboardRepository.getOverallTotalsForEntries(event.competitionEntryIds());
+
+            lock.writeLock().lock();
+            try {
+                if (leaderboard == null) {
+                    // Discarded in the meantime
+                    return;
+                }
+                for (var row : totals) {
+                    leaderboard.put(row.value1(), row.value2(), row.value3(), row.value4(), row.value5());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Updated {} users in overall ranking", totals.size());
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the in-memory ranking once the rebuilt aggregate has been committed.
+     *
+     * @param event The leaderboard rebuilt event
+     */
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardRebuilt(LeaderboardRebuiltEvent event) {
+        reload();
+    }
+
+    /**
+     * Discards the in-memory ranking. It is reloaded from the database on next access.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            leaderboard = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return leaderboard != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T read(Function<RankedLeaderboard, T> query) {
+        lock.readLock().lock();
+        try {
+            if (leaderboard != null) {
+                return query.apply(leaderboard);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (leaderboard == null) {
+                leaderboard = load();
+            }
+            return query.apply(leaderboard);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private RankedLeaderboard load() {
+        var rows = leaderboardRepository.getOverallLeaderboard();
+        var ranking = new RankedLeaderboard(rows.size());
+        for (var row : rows) {
+            ranking.put(row.userId(), row.username(), row.totalPoints(), row.exactPredictions(), row.totalPredictions());
+        }
+        log.info("Loaded overall ranking with {} users", ranking.size());
+        return ranking;
+    }
+}
@@ -0,0 +1,163 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Exports complete leaderboards for club administrators.
+ * <p>
+ * Rows are streamed from a database cursor straight into the output, so the memory used does not depend on
+ * the number of users. All dimensions of {@link LeaderboardFilter} are supported.
+ */
+@Service
+public class LeaderboardExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardExportService.class);
+
+    static final int FETCH_SIZE = 1_000;
+
+    private static final String[] COLUMNS = {
+            "rank", "username", "total_points", "total_predictions", "exact_predictions", "avg_points"
+    };
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private final LeaderboardRepository leaderboardRepository;
+
+    public LeaderboardExportService(LeaderboardRepository leaderboardRepository) {
+        this.leaderboardRepository = leaderboardRepository;
+    }
+
+    /**
+     * Export file formats.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON("application/json", "json");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Writes the leaderboard to the output stream. The stream is flushed but not closed.
+     *
+     * @param filter Filter criteria
+     * @param format Export format
+     * @param out    Output stream, e.g. of the HTTP response
+     * @return Number of exported rows
+     * @throws IOException if writing to the output stream fails
+     */
+    @Transactional(readOnly = true)
+    public long export(LeaderboardFilter filter, Format format, OutputStream out) throws IOException {
+        try (var rows = leaderboardRepository.streamLeaderboard(filter, FETCH_SIZE)) {
+            var count = switch (format) {
+                case CSV -> writeCsv(rows.iterator(), out);
+                case JSON -> writeJson(rows.iterator(), out);
+            };
+            log.info("Exported {} leaderboard rows as {} for {}", count, format, filter);
+            return count;
+        }
+    }
+
+    /**
+     * Writes the rows as CSV with a header line (RFC 4180).
+     *
+     * @return Number of written rows
+     */
+    static long writeCsv(Iterator<LeaderboardRow> rows, OutputStream out) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+
+        var count = 0L;
+        while (rows.hasNext()) {
+            var row = rows.next();
+            writer.write(Integer.toString(row.rank()));
+            writer.write(',');
+            writer.write(csvValue(row.username()));
+            writer.write(',');
+            writer.write(Integer.toString(row.totalPoints()));
+            writer.write(',');
+            writer.write(Integer.toString(row.totalPredictions()));
+            writer.write(',');
+            writer.write(Integer.toString(row.exactPredictions()));
+            writer.write(',');
+            writer.write(avgPoints(row).toPlainString());
+            writer.write("\r\n");
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Writes the rows as a JSON array of objects.
+     *
+     * @return Number of written rows
+     */
+    static long writeJson(Iterator<LeaderboardRow> rows, OutputStream out) throws IOException {
+        try (var generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartArray();
+
+            var count = 0L;
+            while (rows.hasNext()) {
+                var row = rows.next();
+                generator.writeStartObject();
+                generator.writeNumberField(COLUMNS[0], row.rank());
+                generator.writeStringField(COLUMNS[1], row.username());
+                generator.writeNumberField(COLUMNS[2], row.totalPoints());
+                generator.writeNumberField(COLUMNS[3], row.totalPredictions());
+                generator.writeNumberField(COLUMNS[4], row.exactPredictions());
+                generator.writeNumberField(COLUMNS[5], avgPoints(row));
+                generator.writeEndObject();
+                count++;
+            }
+
+            generator.writeEndArray();
+            return count;
+        }
+    }
+
+    private static BigDecimal avgPoints(LeaderboardRow row) {
+        return BigDecimal.valueOf(row.avgPoints()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static String csvValue(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,10 @@
+package ch.martinelli.fun.kututipp.service;
+
+/**
+ * Application event published when leaderboard data other than the actual scores changed, e.g. the rank trends
+ * after a competition finished, or when changes of other nodes may have been missed.
+ * Nothing incrementally maintained from the scores is affected, but everything cached is stale. Like for a
+ * {@link ScoresChangedEvent} listeners should use {@code @TransactionalEventListener}.
+ */
+public record LeaderboardInvalidatedEvent() {
+}
@@ -0,0 +1,11 @@
+package ch.martinelli.fun.kututipp.service;
+
+/**
+ * Application event published when the leaderboard aggregate has been rebuilt from all predictions.
+ * Listeners discard everything derived from the previous aggregate; like for a {@link ScoresChangedEvent} they
+ * should use {@code @TransactionalEventListener}, so nothing is reloaded before the rebuild has been committed.
+ *
+ * @param rows Number of aggregate rows written
+ */
+public record LeaderboardRebuiltEvent(int rows) {
+}
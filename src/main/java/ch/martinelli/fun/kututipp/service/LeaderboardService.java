@@ -1,18 +1,36 @@
 package ch.martinelli.fun.kututipp.service;
 
+import ch.martinelli.fun.kututipp.dto.LeaderboardCursor;
 import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
 import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
 import ch.martinelli.fun.kututipp.dto.RankTrend;
+import ch.martinelli.fun.kututipp.ranking.RankedLeaderboard;
 import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
-import org.jooq.Result;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-import static ch.martinelli.fun.kututipp.db.Tables.APP_USER;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for retrieving leaderboard rankings.
@@ -23,18 +41,125 @@ import static ch.martinelli.fun.kututipp.db.Tables.APP_USER;
  * - Tie Breaker 1: Number of exact predictions (3 points)
  * - Tie Breaker 2: Total number of predictions made (more predictions = higher rank)
  * <p>
+ * Leaderboards are shared between all sessions through the {@link LeaderboardCache}.
+ * Rank trends compare the overall rank with the rank history written when a competition is finished.
+ * <p>
  * Note: Rankings are calculated in the database using SQL window functions (RANK())
- * for better performance and simpler code.
+ * for better performance and simpler code. The points are read from the {@code user_points_agg}
+ * table, which is updated together with every actual score (see {@link ScoreService}).
+ * <p>
+ * UC-014 E2: Query Timeout. The leaderboard queries have a budget (see {@link LeaderboardRepository}). If a query
+ * exceeds it or fails, views serve the last good leaderboard of the filter with
+ * {@link #getLastGoodLeaderboard(LeaderboardFilter, DataAccessException)}, which also refreshes the leaderboard
+ * in the background. Failures and fallbacks are counted in the {@code kututipp.leaderboard.query.failures}
+ * and {@code kututipp.leaderboard.fallbacks} metrics.
+ * <p>
+ * The filtered page, range, position and count queries run in read-only transactions, so they run on the read
+ * replica if one is configured (see {@code ReplicaDataSourceConfig}). Only these branches are read-only: the
+ * overall leaderboard of the {@link LeaderboardEngine} and the cached leaderboards are loaded on the primary,
+ * they must contain the latest scores.
  */
 @Service
 public class LeaderboardService {
 
     private static final Logger log = LoggerFactory.getLogger(LeaderboardService.class);
 
+    // Larger leaderboards load the previous ranks of all users instead of passing the user IDs
+    private static final int MAX_TREND_LOOKUP_USERS = 1000;
+
+    // SQLSTATE query_canceled, sent when the statement timeout cancels a query
+    private static final String QUERY_CANCELED = "57014";
+
+    // Larger parts of a leaderboard are loaded page by page
+    static final int MAX_PAGE_SIZE = 1_000;
+
+    private static final int MAX_REFRESH_ATTEMPTS = 3;
+    private static final Duration REFRESH_DELAY = Duration.ofSeconds(1);
+
     private final LeaderboardRepository leaderboardRepository;
+    private final LeaderboardEngine leaderboardEngine;
+    private final LeaderboardCache leaderboardCache;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Counter timeouts;
+    private final Counter errors;
+    private final Counter lastGoodFallbacks;
+    private final Counter unavailableFallbacks;
 
-    public LeaderboardService(LeaderboardRepository leaderboardRepository) {
+    private final ScheduledExecutorService refreshExecutor;
+    private final Map<LeaderboardFilter, CompletableFuture<List<LeaderboardEntryDto>>> refreshes = new ConcurrentHashMap<>();
+
+    public LeaderboardService(LeaderboardRepository leaderboardRepository,
+                              LeaderboardEngine leaderboardEngine,
+                              LeaderboardCache leaderboardCache,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
         this.leaderboardRepository = leaderboardRepository;
+        this.leaderboardEngine = leaderboardEngine;
+        this.leaderboardCache = leaderboardCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.timeouts = failureCounter(meterRegistry, "timeout");
+        this.errors = failureCounter(meterRegistry, "error");
+        this.lastGoodFallbacks = fallbackCounter(meterRegistry, "last_good");
+        this.unavailableFallbacks = fallbackCounter(meterRegistry, "unavailable");
+
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "leaderboard-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Leaderboard served while the leaderboard queries fail.
+     *
+     * @param version    Scores version the last good leaderboard was computed at, 0 if none is available
+     * @param entries    The last good leaderboard, empty if none is available
+     * @param computedAt When the last good leaderboard was computed, null if none is available
+     * @param refreshed  Completes with the current leaderboard once the background refresh succeeded
+     */
+    public record DegradedLeaderboard(
+            long version,
+            List<LeaderboardEntryDto> entries,
+            OffsetDateTime computedAt,
+            CompletableFuture<List<LeaderboardEntryDto>> refreshed
+    ) {
+        public boolean isAvailable() {
+            return computedAt != null;
+        }
+    }
+
+    /**
+     * Get the shared leaderboard for a filter.
+     * The returned list is cached for all sessions until the next actual score is entered. It is immutable
+     * and no entry is flagged as current user, so the current user has to be highlighted when rendering.
+     *
+     * @param filter Filter criteria
+     * @return Immutable list of leaderboard entries sorted by rank
+     */
+    public List<LeaderboardEntryDto> getLeaderboard(LeaderboardFilter filter) {
+        return leaderboardCache.get(filter, () -> loadLeaderboard(filter));
+    }
+
+    /**
+     * Get the entries of some users in a leaderboard, e.g. of the members of a league.
+     * The users are looked up one by one: in the in-memory {@link LeaderboardEngine} for the overall leaderboard,
+     * in the shared leaderboard of the {@link LeaderboardCache} otherwise. The rank history is not read, so the
+     * entries have no rank trends, like the filtered leaderboards.
+     *
+     * @param filter  Filter criteria
+     * @param userIds The user IDs, users that are not ranked are skipped
+     * @return Leaderboard entries sorted by rank
+     */
+    public List<LeaderboardEntryDto> getLeaderboardEntries(LeaderboardFilter filter, long[] userIds) {
+        if (isOverall(filter)) {
+            return leaderboardEngine.getEntries(userIds).stream()
+                    .map(entry -> toEntry(entry, RankTrend.STABLE))
+                    .toList();
+        }
+        return leaderboardCache.getEntries(filter, userIds, () -> loadLeaderboard(filter));
     }
 
     /**
@@ -49,6 +174,7 @@ public class LeaderboardService {
 
     /**
      * Get overall leaderboard across all competitions with current user context.
+     * Served from the in-memory {@link LeaderboardEngine}.
      *
      * @param currentUsername Username of currently logged-in user (for highlighting)
      * @return List of leaderboard entries sorted by rank
@@ -56,8 +182,121 @@ public class LeaderboardService {
     public List<LeaderboardEntryDto> getOverallLeaderboard(String currentUsername) {
         log.debug("Fetching overall leaderboard");
 
-        var results = leaderboardRepository.getOverallLeaderboard();
-        return calculateRankings(results, currentUsername);
+        return highlightCurrentUser(getLeaderboard(LeaderboardFilter.empty()), currentUsername);
+    }
+
+    /**
+     * Get the best ranked users of the overall leaderboard.
+     *
+     * @param limit           Maximum number of entries
+     * @param currentUsername Username of currently logged-in user (for highlighting)
+     * @return List of leaderboard entries sorted by rank
+     */
+    public List<LeaderboardEntryDto> getTopLeaderboard(int limit, String currentUsername) {
+        return highlightCurrentUser(toEntries(leaderboardEngine.getTop(limit)), currentUsername);
+    }
+
+    /**
+     * Get a page of a leaderboard using keyset pagination.
+     * The overall leaderboard is served from the in-memory {@link LeaderboardEngine}.
+     *
+     * @param filter Filter criteria
+     * @param after  Cursor of the last entry of the previous page, or null for the first page
+     * @param limit  Maximum number of entries, 1 to {@value #MAX_PAGE_SIZE}
+     * @return Leaderboard entries sorted by rank
+     * @throws IllegalArgumentException if the limit is out of range
+     */
+    public List<LeaderboardEntryDto> getLeaderboardPage(LeaderboardFilter filter, LeaderboardCursor after, int limit) {
+        validatePage(0, limit);
+        if (isOverall(filter)) {
+            return toEntries(leaderboardEngine.getPage(after, limit));
+        }
+        return calculateRankings(readOnlyTransaction.execute(_ ->
+                leaderboardRepository.getLeaderboardPage(filter, after, limit)));
+    }
+
+    /**
+     * Get the leaderboard entries between two positions.
+     * Prefer {@link #getLeaderboardPage(LeaderboardFilter, LeaderboardCursor, int)} when the previous entry is known.
+     *
+     * @param filter Filter criteria
+     * @param offset Number of entries to skip, not negative
+     * @param limit  Maximum number of entries, 1 to {@value #MAX_PAGE_SIZE}
+     * @return Leaderboard entries sorted by rank
+     * @throws IllegalArgumentException if the offset or limit is out of range
+     */
+    public List<LeaderboardEntryDto> getLeaderboardRange(LeaderboardFilter filter, int offset, int limit) {
+        validatePage(offset, limit);
+        if (isOverall(filter)) {
+            return toEntries(leaderboardEngine.getRange(offset, (int) Math.min(Integer.MAX_VALUE, offset + (long) limit)));
+        }
+        return calculateRankings(readOnlyTransaction.execute(_ ->
+                leaderboardRepository.getLeaderboardRange(filter, offset, limit)));
+    }
+
+    /**
+     * Get the users ranked around a user, including the user.
+     *
+     * @param filter Filter criteria
+     * @param userId The user ID
+     * @param radius Number of entries before and after the user, so that at most {@value #MAX_PAGE_SIZE} entries
+     *               are returned
+     * @return Leaderboard entries sorted by rank, empty if the user is not ranked
+     * @throws IllegalArgumentException if the radius is out of range
+     */
+    public List<LeaderboardEntryDto> getLeaderboardAroundUser(LeaderboardFilter filter, Long userId, int radius) {
+        if (radius < 0 || radius > (MAX_PAGE_SIZE - 1) / 2) {
+            throw new IllegalArgumentException("Radius " + radius + " is not between 0 and " + (MAX_PAGE_SIZE - 1) / 2);
+        }
+        if (isOverall(filter)) {
+            return toEntries(leaderboardEngine.getWindow(userId, radius));
+        }
+        // Position and range are read in the same transaction
+        return readOnlyTransaction.execute(_ -> {
+            var position = leaderboardRepository.getLeaderboardPosition(filter, userId);
+            if (position < 0) {
+                return List.of();
+            }
+            var offset = Math.max(0, position - radius);
+            var end = Math.min(Integer.MAX_VALUE, position + (long) radius + 1);
+            return getLeaderboardRange(filter, offset, (int) (end - offset));
+        });
+    }
+
+    private static void validatePage(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit " + limit + " is not between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Get the position (0-based, unique also for tied users) of a user in a leaderboard.
+     *
+     * @param filter Filter criteria
+     * @param userId The user ID
+     * @return The position, or -1 if the user is not ranked
+     */
+    public int getLeaderboardPosition(LeaderboardFilter filter, Long userId) {
+        if (isOverall(filter)) {
+            return leaderboardEngine.getPosition(userId);
+        }
+        return readOnlyTransaction.execute(_ -> leaderboardRepository.getLeaderboardPosition(filter, userId));
+    }
+
+    /**
+     * Count the ranked users of a leaderboard.
+     *
+     * @param filter Filter criteria
+     * @return Number of users in the leaderboard
+     */
+    public int countLeaderboard(LeaderboardFilter filter) {
+        if (isOverall(filter)) {
+            return leaderboardEngine.size();
+        }
+        return readOnlyTransaction.execute(_ -> leaderboardRepository.countLeaderboard(filter));
     }
 
     /**
@@ -71,8 +310,7 @@ public class LeaderboardService {
     public List<LeaderboardEntryDto> getCompetitionLeaderboard(Long competitionId, String currentUsername) {
         log.debug("Fetching leaderboard for competition: {}", competitionId);
 
-        var results = leaderboardRepository.getCompetitionLeaderboard(competitionId);
-        return calculateRankings(results, currentUsername);
+        return highlightCurrentUser(getLeaderboard(LeaderboardFilter.forCompetition(competitionId)), currentUsername);
     }
 
     /**
@@ -86,8 +324,7 @@ public class LeaderboardService {
     public List<LeaderboardEntryDto> getApparatusLeaderboard(Long apparatusId, String currentUsername) {
         log.debug("Fetching leaderboard for apparatus: {}", apparatusId);
 
-        var results = leaderboardRepository.getApparatusLeaderboard(apparatusId);
-        return calculateRankings(results, currentUsername);
+        return highlightCurrentUser(getLeaderboard(LeaderboardFilter.forApparatus(apparatusId)), currentUsername);
     }
 
     /**
@@ -101,85 +338,238 @@ public class LeaderboardService {
     public List<LeaderboardEntryDto> getFilteredLeaderboard(LeaderboardFilter filter, String currentUsername) {
         log.debug("Fetching filtered leaderboard: {}", filter);
 
-        var results = leaderboardRepository.getFilteredLeaderboard(filter);
-        return calculateRankings(results, currentUsername);
+        return highlightCurrentUser(getLeaderboard(filter), currentUsername);
     }
 
     /**
      * Get user's current rank in overall leaderboard.
-     * <p>
-     * TODO: This method is currently unused and kept for future feature implementation.
-     * Consider implementing a user statistics dashboard that displays personal rank.
+     * Looked up in the in-memory {@link LeaderboardEngine} in O(log n).
      *
      * @param userId The user ID
      * @return User's rank (position), or 0 if not found
      */
     public int getUserRank(Long userId) {
-        var leaderboard = getOverallLeaderboard();
-        return leaderboard.stream()
-                .filter(entry -> entry.userId().equals(userId))
-                .findFirst()
-                .map(LeaderboardEntryDto::rank)
-                .orElse(0);
+        return leaderboardEngine.getRank(userId);
     }
 
     /**
-     * Calculate rank trend by comparing with previous competition.
-     * <p>
-     * TODO: Future enhancement - implement rank trend calculation.
-     * This will require:
-     * - Storing historical rank snapshots after each competition
-     * - Creating a rank_history table with (user_id, competition_id, rank, timestamp)
-     * - Comparing current rank with previous competition's rank
-     * - Returns UP if rank improved (lower number), DOWN if worsened, NEW for first-time rankers
+     * Calculate rank trend by comparing with the rank history.
+     * Returns UP if rank improved (lower number), DOWN if worsened, NEW for first-time rankers
+     * and STABLE if the rank did not change or no competition has been finished yet.
      * <p>
-     * Currently returns STABLE for all users as a placeholder.
+     * Leaderboards look up the trends of all their users at once, use this only for single users.
      *
      * @param userId      The user ID
      * @param currentRank Current rank position
      * @return Rank trend indicator
      */
     public RankTrend calculateRankTrend(Long userId, int currentRank) {
-        // Placeholder implementation - always returns STABLE
-        return RankTrend.STABLE;
+        return leaderboardRepository.getPreviousRanks(List.of(userId)).trendOf(userId, currentRank);
+    }
+
+    /**
+     * Gets the last good leaderboard of a filter after a leaderboard query failed, and refreshes the leaderboard
+     * in the background. Concurrent failures of the same filter share one refresh.
+     *
+     * @param filter  Filter criteria
+     * @param failure The failure of the leaderboard query
+     * @return The last good leaderboard, with the time it was computed
+     */
+    public DegradedLeaderboard getLastGoodLeaderboard(LeaderboardFilter filter, DataAccessException failure) {
+        if (isTimeout(failure)) {
+            timeouts.increment();
+            log.warn("Leaderboard query for {} exceeded its budget", filter);
+        } else {
+            errors.increment();
+            log.error("Leaderboard query for {} failed", filter, failure);
+        }
+
+        var refreshed = refresh(filter);
+        var lastGood = leaderboardCache.getLastGood(filter);
+        if (lastGood.isEmpty()) {
+            unavailableFallbacks.increment();
+            return new DegradedLeaderboard(0, List.of(), null, refreshed);
+        }
+        lastGoodFallbacks.increment();
+        return new DegradedLeaderboard(lastGood.get().version(), lastGood.get().entries(), lastGood.get().computedAt(), refreshed);
     }
 
     /**
-     * Convert query results to LeaderboardEntryDto list.
+     * Checks if a query failed because it exceeded its budget.
+     *
+     * @param failure The failure of the query
+     * @return True if the query was cancelled by the statement timeout
+     */
+    static boolean isTimeout(DataAccessException failure) {
+        if (failure instanceof QueryTimeoutException) {
+            return true;
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTimeoutException
+                    || cause instanceof SQLException sqlException && QUERY_CANCELED.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CompletableFuture<List<LeaderboardEntryDto>> refresh(LeaderboardFilter filter) {
+        return refreshes.computeIfAbsent(filter, _ -> {
+            var refreshed = new CompletableFuture<List<LeaderboardEntryDto>>();
+            scheduleRefresh(filter, refreshed, 1);
+            return refreshed;
+        });
+    }
+
+    private void scheduleRefresh(LeaderboardFilter filter, CompletableFuture<List<LeaderboardEntryDto>> refreshed,
+                                 int attempt) {
+        var delay = REFRESH_DELAY.multipliedBy(1L << (attempt - 1));
+        refreshExecutor.schedule(() -> {
+            try {
+                var leaderboard = getLeaderboard(filter);
+                refreshes.remove(filter);
+                refreshed.complete(leaderboard);
+                log.info("Leaderboard for {} refreshed after {} attempts", filter, attempt);
+            } catch (RuntimeException e) {
+                if (attempt < MAX_REFRESH_ATTEMPTS) {
+                    scheduleRefresh(filter, refreshed, attempt + 1);
+                } else {
+                    log.warn("Leaderboard for {} could not be refreshed", filter, e);
+                    refreshes.remove(filter);
+                    refreshed.completeExceptionally(e);
+                }
+            }
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private static Counter failureCounter(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("kututipp.leaderboard.query.failures")
+                .description("Leaderboard queries that exceeded their budget or failed")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    private static Counter fallbackCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("kututipp.leaderboard.fallbacks")
+                .description("Leaderboards served from the last good leaderboard after a failed query")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Computes all competition, apparatus and gender leaderboards with a single query and stores them
+     * in the shared cache. The overall leaderboard is served from the in-memory {@link LeaderboardEngine}.
+     *
+     * @return Number of cached leaderboards
+     */
+    public int warmUpCache() {
+        // Read the version before querying, so a concurrent score change invalidates the result
+        var version = leaderboardCache.currentVersion();
+
+        var leaderboards = new LinkedHashMap<LeaderboardFilter, List<LeaderboardEntryDto>>();
+        leaderboardRepository.getLeaderboardCube()
+                .forEach((filter, rows) -> leaderboards.put(filter, calculateRankings(rows)));
+        leaderboardCache.putAll(leaderboards, version);
+
+        log.debug("Warmed up leaderboard cache with {} leaderboards", leaderboards.size());
+        return leaderboards.size();
+    }
+
+    /**
+     * Computes a leaderboard without user context, the overall leaderboard comes from the in-memory ranking.
+     *
+     * @param filter Filter criteria
+     * @return List of leaderboard entries sorted by rank
+     */
+    private List<LeaderboardEntryDto> loadLeaderboard(LeaderboardFilter filter) {
+        if (isOverall(filter)) {
+            return toEntries(leaderboardEngine.getRange(0, Integer.MAX_VALUE));
+        }
+        return calculateRankings(leaderboardRepository.getFilteredLeaderboard(filter));
+    }
+
+    private static boolean isOverall(LeaderboardFilter filter) {
+        return LeaderboardFilter.empty().equals(filter);
+    }
+
+    /**
+     * Copies a shared leaderboard and flags the entry of the current user.
+     *
+     * @param entries         Shared leaderboard entries
+     * @param currentUsername Username of currently logged-in user, or null
+     * @return Leaderboard entries with the current user flagged
+     */
+    private List<LeaderboardEntryDto> highlightCurrentUser(List<LeaderboardEntryDto> entries, String currentUsername) {
+        if (currentUsername == null) {
+            return entries;
+        }
+        return entries.stream()
+                .map(entry -> entry.username().equals(currentUsername) ? entry.asCurrentUser() : entry)
+                .toList();
+    }
+
+    /**
+     * Convert leaderboard rows to LeaderboardEntryDto list.
      * Rankings are now calculated in SQL using window functions (BR-001).
+     * <p>
+     * The rank history only holds overall ranks, so filtered leaderboards have no trends.
      *
-     * @param results         Query results (already sorted and ranked by database)
-     * @param currentUsername Username of currently logged-in user (for highlighting)
+     * @param rows Leaderboard rows (already sorted and ranked by database)
      * @return List of leaderboard entries with ranks from database
      */
-    private List<LeaderboardEntryDto> calculateRankings(Result<? extends org.jooq.Record> results, String currentUsername) {
-        var entries = new ArrayList<LeaderboardEntryDto>();
-
-        for (var result : results) {
-            var userId = result.get(APP_USER.ID);
-            var username = result.get(APP_USER.USERNAME);
-            var rank = result.get("rank", Integer.class);
-            var totalPoints = result.get("total_points", Integer.class);
-            var totalPredictions = result.get("total_predictions", Integer.class);
-            var exactPredictions = result.get("exact_predictions", Integer.class);
-            var avgPoints = result.get("avg_points", Double.class);
-
-            var entry = new LeaderboardEntryDto(
-                    userId,
-                    username,
-                    rank,
-                    totalPoints,
-                    totalPredictions,
-                    exactPredictions,
-                    Math.round(avgPoints * 100.0) / 100.0, // Round to 2 decimal places
-                    RankTrend.STABLE, // TODO: Implement trend calculation
-                    username.equals(currentUsername)
-            );
-
-            entries.add(entry);
+    private List<LeaderboardEntryDto> calculateRankings(List<LeaderboardRow> rows) {
+        var entries = new ArrayList<LeaderboardEntryDto>(rows.size());
+
+        for (var row : rows) {
+            entries.add(row.toEntry(RankTrend.STABLE));
         }
 
         log.debug("Mapped {} ranked users from database", entries.size());
         return entries;
     }
+
+    /**
+     * Convert in-memory ranking entries to LeaderboardEntryDto list.
+     * The previous ranks of all entries are looked up with a single query.
+     *
+     * @param rankedEntries Entries from the in-memory overall ranking (already sorted and ranked)
+     * @return List of leaderboard entries
+     */
+    private List<LeaderboardEntryDto> toEntries(List<RankedLeaderboard.Entry> rankedEntries) {
+        var entries = new ArrayList<LeaderboardEntryDto>(rankedEntries.size());
+        if (rankedEntries.isEmpty()) {
+            return entries;
+        }
+
+        var previousRanks = rankedEntries.size() > MAX_TREND_LOOKUP_USERS
+                ? leaderboardRepository.getPreviousRanks()
+                : leaderboardRepository.getPreviousRanks(rankedEntries.stream().map(RankedLeaderboard.Entry::userId).toList());
+
+        for (var rankedEntry : rankedEntries) {
+            entries.add(toEntry(rankedEntry, previousRanks.trendOf(rankedEntry.userId(), rankedEntry.rank())));
+        }
+
+        return entries;
+    }
+
+    private static LeaderboardEntryDto toEntry(RankedLeaderboard.Entry rankedEntry, RankTrend trend) {
+        var avgPoints = (double) rankedEntry.totalPoints() / rankedEntry.totalPredictions();
+
+        return new LeaderboardEntryDto(
+                rankedEntry.userId(),
+                rankedEntry.username(),
+                rankedEntry.rank(),
+                rankedEntry.totalPoints(),
+                rankedEntry.totalPredictions(),
+                rankedEntry.exactPredictions(),
+                Math.round(avgPoints * 100.0) / 100.0, // Round to 2 decimal places
+                trend,
+                false
+        );
+    }
 }
@@ -0,0 +1,9 @@
+package ch.martinelli.fun.kututipp.service;
+
+/**
+ * Application event published when users joined or left a league, or the league was deleted.
+ *
+ * @param leagueId ID of the league whose members changed
+ */
+public record LeagueMembershipChangedEvent(Long leagueId) {
+}
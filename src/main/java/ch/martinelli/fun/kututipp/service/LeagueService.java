@@ -0,0 +1,318 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.db.tables.records.LeagueRecord;
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import ch.martinelli.fun.kututipp.repository.LeagueRepository;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service for private leagues of friends and clubs.
+ * <p>
+ * League leaderboards are not aggregated in the database. The user IDs of the members of every league are
+ * kept in memory as a compressed bitmap, and the entry of every member is looked up in the shared leaderboard
+ * of the {@link LeaderboardService}, so a league costs O(members log users) and not O(users). The league ranks
+ * follow the ranks of the shared leaderboard, so the BR-001 tie breakers and ties are the same as in the
+ * shared leaderboard.
+ * <p>
+ * A bitmap is loaded on first access and discarded after membership changes have been committed.
+ */
+@Service
+public class LeagueService {
+
+    private static final Logger log = LoggerFactory.getLogger(LeagueService.class);
+
+    static final int MAX_NAME_LENGTH = 100;
+
+    // Without characters that are easily confused (0/O, 1/I/L)
+    private static final String JOIN_CODE_ALPHABET = "ABCDEFGHJKMNPQRSTUVWXYZ23456789";
+    private static final int JOIN_CODE_LENGTH = 8;
+
+    private final LeagueRepository leagueRepository;
+    private final LeaderboardService leaderboardService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SecureRandom random = new SecureRandom();
+
+    // Bitmaps are never modified after loading, changed leagues are reloaded
+    private final Map<Long, Roaring64Bitmap> membersByLeagueId = new ConcurrentHashMap<>();
+    // Incremented on every membership change, a bitmap loaded meanwhile may be outdated
+    private final AtomicLong membershipVersion = new AtomicLong();
+
+    public LeagueService(LeagueRepository leagueRepository,
+                         LeaderboardService leaderboardService,
+                         ApplicationEventPublisher eventPublisher) {
+        this.leagueRepository = leagueRepository;
+        this.leaderboardService = leaderboardService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Creates a league with the owner as its first member.
+     *
+     * @param ownerId The user ID of the owner
+     * @param name    The league name
+     * @return The created league including its join code
+     * @throws LeagueValidationException if the name is blank or too long
+     */
+    @Transactional
+    public LeagueRecord createLeague(Long ownerId, String name) {
+        var trimmedName = name == null ? "" : name.trim();
+        if (trimmedName.isEmpty()) {
+            throw new LeagueValidationException("League name is required");
+        }
+        if (trimmedName.length() > MAX_NAME_LENGTH) {
+            throw new LeagueValidationException("League name must not be longer than " + MAX_NAME_LENGTH + " characters");
+        }
+
+        var league = leagueRepository.create(trimmedName, generateJoinCode(), ownerId);
+        leagueRepository.addMember(league.getId(), ownerId);
+        eventPublisher.publishEvent(new LeagueMembershipChangedEvent(league.getId()));
+
+        log.info("User {} created league {} ({})", ownerId, league.getId(), trimmedName);
+        return league;
+    }
+
+    /**
+     * Joins a league by its join code. Joining a league twice has no effect.
+     *
+     * @param userId   The user ID
+     * @param joinCode The join code (case-insensitive)
+     * @return The joined league
+     * @throws LeagueNotFoundException if no league has the join code
+     */
+    @Transactional
+    public LeagueRecord joinLeague(Long userId, String joinCode) {
+        var normalizedCode = joinCode == null ? "" : joinCode.trim().toUpperCase(Locale.ROOT);
+        var league = leagueRepository.findByJoinCode(normalizedCode)
+                .orElseThrow(() -> new LeagueNotFoundException("No league found with code " + normalizedCode));
+
+        if (leagueRepository.addMember(league.getId(), userId)) {
+            eventPublisher.publishEvent(new LeagueMembershipChangedEvent(league.getId()));
+            log.info("User {} joined league {}", userId, league.getId());
+        }
+        return league;
+    }
+
+    /**
+     * Leaves a league. The owner cannot leave, but delete the league.
+     *
+     * @param userId   The user ID
+     * @param leagueId The league ID
+     * @throws LeagueNotFoundException   if the league does not exist
+     * @throws LeagueValidationException if the user is the owner
+     */
+    @Transactional
+    public void leaveLeague(Long userId, Long leagueId) {
+        var league = findLeague(leagueId);
+        if (league.getOwnerId().equals(userId)) {
+            throw new LeagueValidationException("The owner cannot leave the league, delete it instead");
+        }
+
+        if (leagueRepository.removeMember(leagueId, userId)) {
+            eventPublisher.publishEvent(new LeagueMembershipChangedEvent(leagueId));
+            log.info("User {} left league {}", userId, leagueId);
+        }
+    }
+
+    /**
+     * Deletes a league with all its members.
+     *
+     * @param userId   The user ID, must be the owner
+     * @param leagueId The league ID
+     * @throws LeagueNotFoundException   if the league does not exist
+     * @throws LeagueValidationException if the user is not the owner
+     */
+    @Transactional
+    public void deleteLeague(Long userId, Long leagueId) {
+        var league = findLeague(leagueId);
+        if (!league.getOwnerId().equals(userId)) {
+            throw new LeagueValidationException("Only the owner can delete the league");
+        }
+
+        leagueRepository.delete(leagueId);
+        eventPublisher.publishEvent(new LeagueMembershipChangedEvent(leagueId));
+        log.info("User {} deleted league {}", userId, leagueId);
+    }
+
+    /**
+     * Gets the leagues of a user ordered by name.
+     *
+     * @param userId The user ID
+     * @return List of leagues
+     */
+    public List<LeagueRecord> getLeagues(Long userId) {
+        return leagueRepository.findByMember(userId);
+    }
+
+    /**
+     * Counts the members of a league.
+     *
+     * @param leagueId The league ID
+     * @return Number of members, including members that are not ranked yet
+     */
+    public int countMembers(Long leagueId) {
+        return (int) getMembers(leagueId).getLongCardinality();
+    }
+
+    /**
+     * Gets the leaderboard of a league: the shared leaderboard of the filter reduced to the league members.
+     * No database query is executed if the league members and the shared leaderboard are cached.
+     *
+     * @param leagueId The league ID
+     * @param filter   Filter criteria
+     * @return League entries sorted by rank, ranked from 1 within the league
+     */
+    public List<LeaderboardEntryDto> getLeagueLeaderboard(Long leagueId, LeaderboardFilter filter) {
+        return rankMembers(leaderboardService.getLeaderboardEntries(filter, getMembers(leagueId).toArray()));
+    }
+
+    /**
+     * Gets the leaderboard of a league from a given shared leaderboard, e.g. the last good leaderboard served
+     * while the leaderboard queries fail. The given leaderboard is not indexed, so it is walked completely.
+     *
+     * @param leagueId    The league ID
+     * @param leaderboard Shared leaderboard entries sorted by rank
+     * @return League entries sorted by rank, ranked from 1 within the league
+     */
+    public List<LeaderboardEntryDto> getLeagueLeaderboard(Long leagueId, List<LeaderboardEntryDto> leaderboard) {
+        var members = getMembers(leagueId);
+        return rankMembers(leaderboard.stream()
+                .filter(entry -> members.contains(entry.userId()))
+                .toList());
+    }
+
+    /**
+     * Discards the member bitmap of a league after membership changes have been committed.
+     *
+     * @param event The membership changed event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMembershipChanged(LeagueMembershipChangedEvent event) {
+        // A concurrent load might have read the members before the commit, it is discarded after storing
+        membershipVersion.incrementAndGet();
+        membersByLeagueId.remove(event.leagueId());
+    }
+
+    /**
+     * Discards the member bitmaps of all leagues. They are reloaded from the database on next access.
+     */
+    public void reload() {
+        membershipVersion.incrementAndGet();
+        membersByLeagueId.clear();
+    }
+
+    /**
+     * Ranks the members of a league within the league.
+     * <p>
+     * Entries keep their order. Members tied in the leaderboard (same rank) share the league rank of the first
+     * of them, the next member gets its position in the league, like {@code RANK()} would. The rank trends
+     * compare overall ranks, so league entries get {@link RankTrend#STABLE}.
+     *
+     * @param memberEntries Leaderboard entries of the league members sorted by rank
+     * @return League entries sorted by rank
+     */
+    static List<LeaderboardEntryDto> rankMembers(List<LeaderboardEntryDto> memberEntries) {
+        var entries = new ArrayList<LeaderboardEntryDto>(memberEntries.size());
+
+        var previousRank = 0;
+        var leagueRank = 0;
+        for (var entry : memberEntries) {
+            if (entry.rank() != previousRank) {
+                leagueRank = entries.size() + 1;
+                previousRank = entry.rank();
+            }
+            entries.add(new LeaderboardEntryDto(
+                    entry.userId(),
+                    entry.username(),
+                    leagueRank,
+                    entry.totalPoints(),
+                    entry.totalPredictions(),
+                    entry.exactPredictions(),
+                    entry.avgPoints(),
+                    RankTrend.STABLE,
+                    false
+            ));
+        }
+        return entries;
+    }
+
+    private LeagueRecord findLeague(Long leagueId) {
+        return leagueRepository.findById(leagueId)
+                .orElseThrow(() -> new LeagueNotFoundException("League " + leagueId + " not found"));
+    }
+
+    private Roaring64Bitmap getMembers(Long leagueId) {
+        var members = membersByLeagueId.get(leagueId);
+        if (members != null) {
+            return members;
+        }
+
+        // Loaded outside the map, so the query does not block lookups of other leagues
+        var version = membershipVersion.get();
+        var loaded = loadMembers(leagueId);
+        members = membersByLeagueId.putIfAbsent(leagueId, loaded);
+        if (members != null) {
+            return members;
+        }
+        if (membershipVersion.get() != version) {
+            // The members changed during the load, the next access loads them again
+            membersByLeagueId.remove(leagueId, loaded);
+        }
+        return loaded;
+    }
+
+    private Roaring64Bitmap loadMembers(Long leagueId) {
+        var members = new Roaring64Bitmap();
+        for (var userId : leagueRepository.findMemberIds(leagueId)) {
+            members.addLong(userId);
+        }
+        members.runOptimize();
+        log.debug("Loaded {} members of league {}", members.getLongCardinality(), leagueId);
+        return members;
+    }
+
+    private String generateJoinCode() {
+        String joinCode;
+        do {
+            var code = new StringBuilder(JOIN_CODE_LENGTH);
+            for (var i = 0; i < JOIN_CODE_LENGTH; i++) {
+                code.append(JOIN_CODE_ALPHABET.charAt(random.nextInt(JOIN_CODE_ALPHABET.length())));
+            }
+            joinCode = code.toString();
+        } while (leagueRepository.findByJoinCode(joinCode).isPresent());
+        return joinCode;
+    }
+
+    /**
+     * Exception thrown when a league or join code does not exist.
+     */
+    public static class LeagueNotFoundException extends RuntimeException {
+        public LeagueNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Exception thrown when a league operation is not allowed.
+     */
+    public static class LeagueValidationException extends RuntimeException {
+        public LeagueValidationException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.UserStandingDto;
+import ch.martinelli.fun.kututipp.ranking.PointsHistogram;
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+
+/**
+ * Keeps a {@link PointsHistogram} of the overall leaderboard and of every competition in memory,
+ * answering percentile, rank range and distribution queries without ranking all users.
+ * <p>
+ * A histogram is loaded from the database on first access and then updated for the users affected
+ * by a {@link ScoresChangedEvent}, like the overall ranking of the {@link LeaderboardEngine}.
+ */
+@Service
+public class PointsDistributionService {
+
+    private static final Logger log = LoggerFactory.getLogger(PointsDistributionService.class);
+
+    // Key of the overall histogram, competitions are keyed by their ID
+    private static final long OVERALL = -1;
+
+    private final LeaderboardRepository leaderboardRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes the incremental updates, the totals are read without holding the write lock
+    private final Lock updateLock = new ReentrantLock();
+    private final Map<Long, PointsHistogram> histograms = new HashMap<>();
+
+    public PointsDistributionService(LeaderboardRepository leaderboardRepository) {
+        this.leaderboardRepository = leaderboardRepository;
+    }
+
+    /**
+     * Gets where a user stands in a leaderboard.
+     *
+     * @param competitionId The competition ID, or null for the overall leaderboard
+     * @param userId        The user ID
+     * @return The standing, or empty if the user is not ranked
+     */
+    public Optional<UserStandingDto> getStanding(Long competitionId, long userId) {
+        return read(competitionId, histogram -> {
+            var rankRange = histogram.rankRange(userId);
+            if (rankRange == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new UserStandingDto(
+                    histogram.pointsOf(userId),
+                    rankRange.best(),
+                    rankRange.worst(),
+                    histogram.size(),
+                    histogram.topPercent(userId),
+                    histogram.percentile(userId)
+            ));
+        });
+    }
+
+    /**
+     * Gets the distribution of the points in a leaderboard.
+     *
+     * @param competitionId The competition ID, or null for the overall leaderboard
+     * @param maxBuckets    Maximum number of buckets
+     * @return Buckets of equal width from 0 to the highest points
+     */
+    public List<PointsHistogram.Bucket> getDistribution(Long competitionId, int maxBuckets) {
+        return read(competitionId, histogram -> histogram.distribution(maxBuckets));
+    }
+
+    /**
+     * Updates the points of all users that predicted the changed competition entries.
+     * Runs after the score transaction has been committed, before the scores version is incremented.
+     *
+     * @param event The scores changed event
+     */
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScoresChanged(ScoresChangedEvent event) {
+        var loaded = loadedKeys();
+        if (loaded.isEmpty()) {
+            // Will be loaded with the current scores on first access
+            return;
+        }
+
+        // Updates are applied in the order their totals were read. Readers only wait while they are applied.
+        updateLock.lock();
+        try {
+            var overallTotals = loaded.contains(OVERALL)
+                    ? leaderboardRepository.getOverallTotalsForEntries(event.competitionEntryIds())
+                    : null;
+            var competitionTotals = loaded.stream().anyMatch(key -> key != OVERALL)
+                    ? leaderboardRepository.getCompetitionTotalsForEntries(event.competitionEntryIds())
+                    : null;
+
+            lock.writeLock().lock();
+            try {
+                var overall = histograms.get(OVERALL);
+                if (overall != null && overallTotals != null) {
+                    for (var row : overallTotals) {
+                        update(overall, row.value1(), row.value3(), row.value5());
+                    }
+                }
+                if (competitionTotals != null) {
+                    for (var row : competitionTotals) {
+                        var competition = histograms.get(row.value2());
+                        if (competition != null) {
+                            update(competition, row.value1(), row.value3(), row.value4());
+                        }
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the histograms once the rebuilt aggregate has been committed.
+     *
+     * @param event The leaderboard rebuilt event
+     */
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardRebuilt(LeaderboardRebuiltEvent event) {
+        reload();
+    }
+
+    /**
+     * Discards all histograms. They are reloaded from the database on next access.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            histograms.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void update(PointsHistogram histogram, long userId, int totalPoints, int totalPredictions) {
+        // Like in the leaderboards, users without scored predictions are not ranked
+        if (totalPredictions > 0) {
+            histogram.put(userId, totalPoints);
+        } else {
+            histogram.remove(userId);
+        }
+    }
+
+    private Set<Long> loadedKeys() {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(histograms.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T read(Long competitionId, Function<PointsHistogram, T> query) {
+        var key = competitionId == null ? OVERALL : competitionId;
+
+        lock.readLock().lock();
+        try {
+            var histogram = histograms.get(key);
+            if (histogram != null) {
+                return query.apply(histogram);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            return query.apply(histograms.computeIfAbsent(key, _ -> load(competitionId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private PointsHistogram load(Long competitionId) {
+        var filter = competitionId == null ? LeaderboardFilter.empty() : LeaderboardFilter.forCompetition(competitionId);
+        var totalPoints = leaderboardRepository.getTotalPoints(filter);
+
+        var histogram = new PointsHistogram();
+        totalPoints.forEach(histogram::put);
+        log.info("Loaded points histogram of {} with {} users",
+                competitionId == null ? "overall leaderboard" : "competition " + competitionId, histogram.size());
+        return histogram;
+    }
+}
@@ -0,0 +1,269 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.ScoreImportRow;
+import ch.martinelli.fun.kututipp.repository.CompetitionRepository;
+import ch.martinelli.fun.kututipp.repository.ScoreImportRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Imports the actual scores of a competition from a results file, e.g. the export of the judges' system.
+ * <p>
+ * The file is CSV with a header line and the columns {@code gymnast}, {@code apparatus} and {@code score},
+ * separated by commas or semicolons. Rows are matched to the competition entries by the names of the gymnast
+ * and the apparatus (case-insensitive).
+ * <p>
+ * The rows are staged with COPY and applied with one UPDATE, so the leaderboards are recalculated once per
+ * file instead of once per row: a single {@link ScoresChangedEvent} with all changed entries is published.
+ * An import is all or nothing, a file with an invalid or unmatched row changes no score.
+ */
+@Service
+public class ScoreImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreImportService.class);
+
+    static final List<String> COLUMNS = List.of("gymnast", "apparatus", "score");
+
+    // Same range as calculate_points() (BR-003)
+    private static final BigDecimal MIN_SCORE = BigDecimal.ZERO;
+    private static final BigDecimal MAX_SCORE = new BigDecimal("20.000");
+    private static final int MAX_SCALE = 3;
+
+    private final ScoreImportRepository scoreImportRepository;
+    private final CompetitionRepository competitionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ScoreImportService(ScoreImportRepository scoreImportRepository,
+                              CompetitionRepository competitionRepository,
+                              ApplicationEventPublisher eventPublisher) {
+        this.scoreImportRepository = scoreImportRepository;
+        this.competitionRepository = competitionRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Result of an import.
+     *
+     * @param rows                Number of rows in the file
+     * @param competitionEntryIds Competition entries whose actual score changed, rows with the current score
+     *                            are not counted
+     */
+    public record ImportResult(int rows, List<Long> competitionEntryIds) {
+    }
+
+    /**
+     * Imports the actual scores of a competition.
+     *
+     * @param competitionId The competition ID
+     * @param csv           The results file
+     * @return The import result
+     * @throws ScoreImportException if the competition does not exist, the file cannot be read or a row is
+     *                              invalid or does not match exactly one competition entry
+     */
+    @Transactional
+    public ImportResult importScores(Long competitionId, Reader csv) {
+        if (competitionRepository.findById(competitionId).isEmpty()) {
+            throw new ScoreImportException("Competition not found", List.of());
+        }
+        var rows = parse(csv);
+        if (rows.isEmpty()) {
+            return new ImportResult(0, List.of());
+        }
+
+        var importId = UUID.randomUUID();
+        scoreImportRepository.stage(importId, rows);
+
+        var unmatched = scoreImportRepository.findUnmatched(importId, competitionId);
+        if (!unmatched.isEmpty()) {
+            var errors = new ArrayList<String>(unmatched.size());
+            for (var row : rows) {
+                var matches = unmatched.get(row.lineNumber());
+                if (matches != null) {
+                    errors.add("Line " + row.lineNumber() + ": " + (matches == 0 ? "No entry" : matches + " entries")
+                            + " for " + row.gymnastName() + " on " + row.apparatusName());
+                }
+            }
+            // Rolls back the staged rows
+            throw new ScoreImportException(unmatched.size() + " rows do not match a competition entry", errors);
+        }
+
+        var competitionEntryIds = scoreImportRepository.apply(importId, competitionId);
+        scoreImportRepository.delete(importId);
+
+        if (!competitionEntryIds.isEmpty()) {
+            eventPublisher.publishEvent(new ScoresChangedEvent(competitionEntryIds));
+        }
+        log.info("Imported {} scores of competition {}, {} changed", rows.size(), competitionId, competitionEntryIds.size());
+        return new ImportResult(rows.size(), competitionEntryIds);
+    }
+
+    /**
+     * Parses and validates the rows of a results file.
+     *
+     * @param csv The results file
+     * @return Rows in file order
+     * @throws ScoreImportException with the errors of all invalid rows
+     */
+    static List<ScoreImportRow> parse(Reader csv) {
+        var rows = new ArrayList<ScoreImportRow>();
+        var errors = new ArrayList<String>();
+        var lineNumbersByKey = new HashMap<String, Integer>();
+
+        try (var reader = new BufferedReader(csv)) {
+            var header = reader.readLine();
+            if (header == null) {
+                throw new ScoreImportException("The file is empty", List.of());
+            }
+            // Spreadsheets write a byte order mark
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            var separator = header.indexOf(';') >= 0 ? ';' : ',';
+            var columns = split(header, separator).stream()
+                    .map(column -> column.toLowerCase(Locale.ROOT))
+                    .toList();
+            if (!columns.equals(COLUMNS)) {
+                throw new ScoreImportException("The header must be " + String.join(String.valueOf(separator), COLUMNS),
+                        List.of());
+            }
+
+            var lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                var values = split(line, separator);
+                if (values.size() != COLUMNS.size()) {
+                    errors.add("Line " + lineNumber + ": Expected " + COLUMNS.size() + " values, found " + values.size());
+                    continue;
+                }
+
+                var gymnastName = values.get(0);
+                var apparatusName = values.get(1);
+                if (gymnastName.isEmpty() || apparatusName.isEmpty()) {
+                    errors.add("Line " + lineNumber + ": Gymnast and apparatus are required");
+                    continue;
+                }
+                var error = validateScore(values.get(2), separator);
+                if (error != null) {
+                    errors.add("Line " + lineNumber + ": " + error);
+                    continue;
+                }
+                var score = parseScore(values.get(2), separator);
+
+                var key = gymnastName.toLowerCase(Locale.ROOT) + '\t' + apparatusName.toLowerCase(Locale.ROOT);
+                var previousLine = lineNumbersByKey.putIfAbsent(key, lineNumber);
+                if (previousLine != null) {
+                    errors.add("Line " + lineNumber + ": Duplicate of line " + previousLine);
+                    continue;
+                }
+                rows.add(new ScoreImportRow(lineNumber, gymnastName, apparatusName, score));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the results file", e);
+        }
+
+        if (!errors.isEmpty()) {
+            throw new ScoreImportException(errors.size() + " rows are invalid", errors);
+        }
+        return rows;
+    }
+
+    /**
+     * Validates a score with the rules of BR-003.
+     *
+     * @return Error message, or null if valid
+     */
+    private static String validateScore(String value, char separator) {
+        if (value.isEmpty()) {
+            return "Score is required";
+        }
+        BigDecimal score;
+        try {
+            score = parseScore(value, separator);
+        } catch (NumberFormatException _) {
+            return "Invalid score " + value;
+        }
+        if (score.compareTo(MIN_SCORE) < 0 || score.compareTo(MAX_SCORE) > 0) {
+            return "Score must be between 0.000 and 20.000";
+        }
+        if (score.stripTrailingZeros().scale() > MAX_SCALE) {
+            return "Score must not have more than " + MAX_SCALE + " decimal places";
+        }
+        return null;
+    }
+
+    private static BigDecimal parseScore(String value, char separator) {
+        // Spreadsheets using semicolons as separator use decimal commas
+        return new BigDecimal(separator == ';' ? value.replace(',', '.') : value);
+    }
+
+    /**
+     * Splits a CSV line into trimmed values. Values may be quoted, quotes in quoted values are doubled (RFC 4180).
+     */
+    static List<String> split(String line, char separator) {
+        var values = new ArrayList<String>();
+        var value = new StringBuilder();
+        var quoted = false;
+        for (var i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                values.add(value.toString().strip());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().strip());
+        return values;
+    }
+
+    /**
+     * Exception thrown when a results file cannot be imported.
+     */
+    public static class ScoreImportException extends RuntimeException {
+
+        private final List<String> errors;
+
+        public ScoreImportException(String message, List<String> errors) {
+            super(message);
+            this.errors = List.copyOf(errors);
+        }
+
+        /**
+         * Gets the errors of the rows, in file order.
+         *
+         * @return Error messages including the line number
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import ch.martinelli.fun.kututipp.dto.ScoreEventDto;
+import ch.martinelli.fun.kututipp.ranking.ScoreReplay;
+import ch.martinelli.fun.kututipp.repository.CompetitionEntryRepository;
+import ch.martinelli.fun.kututipp.repository.PredictionRepository;
+import ch.martinelli.fun.kututipp.repository.ScoreEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Replays the leaderboard of a competition from the score event log ("time travel").
+ * <p>
+ * A {@link ScoreReplay} of a competition is loaded on first access. New score events are appended to the
+ * loaded replays of the changed competitions after every {@link ScoresChangedEvent}, so a live competition can be
+ * scrubbed while it runs.
+ * <p>
+ * Events are appended in the order they become visible. An event ID is taken when the event is written, so an
+ * event committed late can have a lower ID than events already appended. Each read therefore starts at the
+ * oldest transaction that was running before the previous read, and events that were already appended are skipped.
+ */
+@Service
+public class ScoreReplayService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreReplayService.class);
+
+    private final ScoreEventRepository scoreEventRepository;
+    private final PredictionRepository predictionRepository;
+    private final CompetitionEntryRepository competitionEntryRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes the appends, the new events are read without holding the write lock
+    private final Lock updateLock = new ReentrantLock();
+    private final Map<Long, CompetitionReplay> replays = new HashMap<>();
+
+    public ScoreReplayService(ScoreEventRepository scoreEventRepository,
+                              PredictionRepository predictionRepository,
+                              CompetitionEntryRepository competitionEntryRepository) {
+        this.scoreEventRepository = scoreEventRepository;
+        this.predictionRepository = predictionRepository;
+        this.competitionEntryRepository = competitionEntryRepository;
+    }
+
+    /**
+     * Gets the score events of a competition.
+     *
+     * @param competitionId The competition ID
+     * @return Score events in log order, the standings after event i are at offset i + 1
+     */
+    public List<ScoreEventDto> getEvents(Long competitionId) {
+        return read(competitionId, replay -> List.copyOf(replay.events));
+    }
+
+    /**
+     * Gets the leaderboard of a competition after a number of score events.
+     *
+     * @param competitionId The competition ID
+     * @param offset        Number of applied score events, from 0 (no scores) to the number of events;
+     *                      larger values are limited to the current standings
+     * @return Leaderboard entries sorted by rank
+     */
+    public List<LeaderboardEntryDto> getStandings(Long competitionId, int offset) {
+        var standings = read(competitionId, replay ->
+                replay.replay.standingsAt(Math.clamp(offset, 0, replay.replay.eventCount())));
+
+        var entries = new ArrayList<LeaderboardEntryDto>(standings.size());
+        for (var entry : standings) {
+            var avgPoints = (double) entry.totalPoints() / entry.totalPredictions();
+            entries.add(new LeaderboardEntryDto(
+                    entry.userId(),
+                    entry.username(),
+                    entry.rank(),
+                    entry.totalPoints(),
+                    entry.totalPredictions(),
+                    entry.exactPredictions(),
+                    Math.round(avgPoints * 100.0) / 100.0, // Round to 2 decimal places
+                    RankTrend.STABLE,
+                    false
+            ));
+        }
+        return entries;
+    }
+
+    /**
+     * Appends the new score events to the loaded replays of the competitions of the changed entries.
+     * Runs after the score transaction has been committed, before the scores version is incremented.
+     *
+     * @param event The scores changed event
+     */
+    @Order(20)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScoresChanged(ScoresChangedEvent event) {
+        var loaded = loadedReplays();
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        // Updates are applied in the order their events were read. Readers only wait while they are appended.
+        updateLock.lock();
+        try {
+            var newEvents = new HashMap<Long, List<ScoreEventDto>>();
+            var fromTxids = new HashMap<Long, Long>();
+            for (var competitionId : competitionEntryRepository.findCompetitionIds(event.competitionEntryIds())) {
+                var replay = loaded.get(competitionId);
+                if (replay != null) {
+                    // Only this method appends events, so the read position of a loaded replay does not change meanwhile
+                    fromTxids.put(competitionId, scoreEventRepository.findOldestRunningTransaction());
+                    newEvents.put(competitionId, scoreEventRepository.findByCompetition(competitionId, replay.fromTxid));
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                newEvents.forEach((competitionId, events) -> {
+                    var replay = replays.get(competitionId);
+                    // Replays discarded in the meantime are reloaded with all events
+                    if (replay == loaded.get(competitionId)) {
+                        append(replay, events);
+                        replay.fromTxid = fromTxids.get(competitionId);
+                    }
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the replays once the rebuilt aggregate has been committed.
+     *
+     * @param event The leaderboard rebuilt event
+     */
+    @Order(20)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardRebuilt(LeaderboardRebuiltEvent event) {
+        reload();
+    }
+
+    /**
+     * Discards all replays, e.g. after predictions have been changed. They are reloaded on next access.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            replays.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, CompetitionReplay> loadedReplays() {
+        lock.readLock().lock();
+        try {
+            return Map.copyOf(replays);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T read(Long competitionId, Function<CompetitionReplay, T> query) {
+        lock.readLock().lock();
+        try {
+            var replay = replays.get(competitionId);
+            if (replay != null) {
+                return query.apply(replay);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            return query.apply(replays.computeIfAbsent(competitionId, this::load));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private CompetitionReplay load(Long competitionId) {
+        var predictions = predictionRepository.getPredictionsOfCompetition(competitionId).stream()
+                .map(row -> new ScoreReplay.Prediction(row.value1(), row.value2(), row.value3(), row.value4()))
+                .toList();
+
+        var replay = new CompetitionReplay(new ScoreReplay(predictions));
+        replay.fromTxid = scoreEventRepository.findOldestRunningTransaction();
+        append(replay, scoreEventRepository.findByCompetition(competitionId, 0));
+
+        log.info("Loaded score replay of competition {} with {} events and {} users",
+                competitionId, replay.replay.eventCount(), replay.replay.userCount());
+        return replay;
+    }
+
+    private static void append(CompetitionReplay replay, List<ScoreEventDto> events) {
+        for (var event : events) {
+            // Events of transactions that were running at the previous read are read again
+            if (replay.eventIds.add(event.id())) {
+                replay.replay.append(event.competitionEntryId(), event.actualScore());
+                replay.events.add(event);
+            }
+        }
+    }
+
+    /**
+     * A loaded replay with its events in the order they were appended.
+     */
+    private static final class CompetitionReplay {
+
+        private final ScoreReplay replay;
+        private final List<ScoreEventDto> events = new ArrayList<>();
+        private final Set<Long> eventIds = new HashSet<>();
+        // Events of this and later transactions may not have been visible at the previous read
+        private long fromTxid;
+
+        private CompetitionReplay(ScoreReplay replay) {
+            this.replay = replay;
+        }
+    }
+}
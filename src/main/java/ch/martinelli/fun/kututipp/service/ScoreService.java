@@ -0,0 +1,177 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.repository.CompetitionEntryRepository;
+import ch.martinelli.fun.kututipp.repository.CompetitionRepository;
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service for entering actual scores of competition entries.
+ * Implements UC-011: Enter Actual Scores.
+ * <p>
+ * Writing an actual score updates the leaderboard aggregate ({@code user_points_agg}) in the same
+ * transaction, so leaderboards never have to recalculate the points of all predictions.
+ */
+@Service
+public class ScoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreService.class);
+
+    private static final BigDecimal MIN_SCORE = BigDecimal.ZERO;
+    private static final BigDecimal MAX_SCORE = new BigDecimal("20.000");
+    private static final int MAX_SCALE = 3;
+
+    private final CompetitionEntryRepository competitionEntryRepository;
+    private final CompetitionRepository competitionRepository;
+    private final LeaderboardRepository leaderboardRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ScoreService(CompetitionEntryRepository competitionEntryRepository,
+                        CompetitionRepository competitionRepository,
+                        LeaderboardRepository leaderboardRepository,
+                        ApplicationEventPublisher eventPublisher) {
+        this.competitionEntryRepository = competitionEntryRepository;
+        this.competitionRepository = competitionRepository;
+        this.leaderboardRepository = leaderboardRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Sets or corrects the actual score of a competition entry.
+     * BR-003: Scores must be between 0.000 and 20.000.
+     *
+     * @param competitionEntryId The competition entry ID
+     * @param actualScore        The actual score
+     * @throws ScoreValidationException if the score is invalid or the entry does not exist
+     */
+    @Transactional
+    public void enterActualScore(Long competitionEntryId, BigDecimal actualScore) {
+        log.debug("Entering actual score for entry {}: {}", competitionEntryId, actualScore);
+
+        if (actualScore == null) {
+            throw new ScoreValidationException("Score is required");
+        }
+        validateScore(actualScore);
+
+        var updated = competitionEntryRepository.updateActualScore(competitionEntryId, actualScore);
+        if (updated == 0) {
+            throw new ScoreValidationException("Competition entry not found");
+        }
+        eventPublisher.publishEvent(new ScoresChangedEvent(List.of(competitionEntryId)));
+
+        log.info("Actual score {} entered for entry {}", actualScore, competitionEntryId);
+    }
+
+    /**
+     * Sets, corrects or removes the actual scores of several competition entries in one statement,
+     * e.g. the edits of the score entry console collected by the {@link ScoreWriteCoalescer}.
+     * One {@link ScoresChangedEvent} is published for all changed entries. Unknown entries are ignored.
+     * BR-003: Scores must be between 0.000 and 20.000.
+     *
+     * @param actualScores The actual scores by competition entry ID, null values remove the score
+     * @return IDs of the competition entries whose actual score changed
+     * @throws ScoreValidationException if a score is invalid
+     */
+    @Transactional
+    public List<Long> enterActualScores(Map<Long, BigDecimal> actualScores) {
+        for (var actualScore : actualScores.values()) {
+            if (actualScore != null) {
+                validateScore(actualScore);
+            }
+        }
+        if (actualScores.isEmpty()) {
+            return List.of();
+        }
+
+        var changed = competitionEntryRepository.updateActualScores(actualScores);
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new ScoresChangedEvent(changed));
+        }
+
+        log.info("Actual scores entered for {} entries, {} changed", actualScores.size(), changed.size());
+        return changed;
+    }
+
+    /**
+     * Validates an actual score.
+     * BR-003: Scores must be between 0.000 and 20.000, with at most 3 decimal places.
+     *
+     * @param actualScore The actual score
+     * @throws ScoreValidationException if the score is out of range or too precise
+     */
+    static void validateScore(BigDecimal actualScore) {
+        if (actualScore.compareTo(MIN_SCORE) < 0 || actualScore.compareTo(MAX_SCORE) > 0) {
+            throw new ScoreValidationException("Score must be between 0.000 and 20.000");
+        }
+        if (actualScore.stripTrailingZeros().scale() > MAX_SCALE) {
+            throw new ScoreValidationException("Score must not have more than " + MAX_SCALE + " decimal places");
+        }
+    }
+
+    /**
+     * Removes the actual score of a competition entry, e.g. if it was entered for the wrong gymnast.
+     *
+     * @param competitionEntryId The competition entry ID
+     */
+    @Transactional
+    public void clearActualScore(Long competitionEntryId) {
+        log.debug("Clearing actual score for entry {}", competitionEntryId);
+
+        if (competitionEntryRepository.updateActualScore(competitionEntryId, null) > 0) {
+            eventPublisher.publishEvent(new ScoresChangedEvent(List.of(competitionEntryId)));
+        }
+    }
+
+    /**
+     * Marks a competition as finished.
+     * The database records the overall ranking in the rank history, which is the base for the rank trends shown
+     * in the leaderboard, and freezes the competition's totals per user, which are then used for the overall and
+     * date range leaderboards. Both also happen if the status is updated directly in the database.
+     *
+     * @param competitionId The competition ID
+     * @throws ScoreValidationException if the competition does not exist
+     */
+    @Transactional
+    public void finishCompetition(Long competitionId) {
+        if (competitionRepository.updateStatus(competitionId, CompetitionStatus.finished) == 0) {
+            throw new ScoreValidationException("Competition not found");
+        }
+        // Trends are part of the cached leaderboards
+        eventPublisher.publishEvent(new LeaderboardInvalidatedEvent());
+
+        log.info("Competition {} finished", competitionId);
+    }
+
+    /**
+     * Recalculates the leaderboard aggregate from all predictions.
+     * Only needed to repair the aggregate, it is maintained incrementally otherwise.
+     * The in-memory rankings and cached leaderboards are discarded once the rebuild has been committed.
+     *
+     * @return Number of aggregate rows written
+     */
+    @Transactional
+    public int rebuildLeaderboardAggregate() {
+        var rows = leaderboardRepository.rebuildPointsAggregate();
+        eventPublisher.publishEvent(new LeaderboardRebuiltEvent(rows));
+        log.info("Rebuilt leaderboard aggregate with {} rows", rows);
+        return rows;
+    }
+
+    /**
+     * Exception thrown when an actual score cannot be entered.
+     */
+    public static class ScoreValidationException extends RuntimeException {
+        public ScoreValidationException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ch.martinelli.fun.kututipp.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for the actual scores entered in the score entry console.
+ * <p>
+ * Operators at the judges' desk enter scores at typing speed. Every edit is collected instead of written
+ * directly: the first edit of a burst schedules one flush after the configured window, which writes all edits
+ * collected in the meantime with one multi-row UPDATE in one transaction (see
+ * {@link ScoreService#enterActualScores}). Only the last edit of an entry within a window is written. So the
+ * leaderboards are updated once per batch, with one {@link ScoresChangedEvent}, instead of once per field.
+ * <p>
+ * Batches are written one after another on the coalescer thread, in the order of the edits.
+ */
+@Service
+public class ScoreWriteCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(ScoreWriteCoalescer.class);
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final ScoreService scoreService;
+    private final Duration window;
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private Map<Long, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    public ScoreWriteCoalescer(ScoreService scoreService,
+                               @Value("${kututipp.scores.write-window:250ms}") Duration window) {
+        this.scoreService = scoreService;
+        this.window = window;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "score-write-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Latest edit of a competition entry that has not been written yet.
+     *
+     * @param actualScore The actual score, null to remove the score
+     * @param written     Completed when the edit (or a later edit of the same entry) has been committed
+     */
+    private record PendingWrite(BigDecimal actualScore, CompletableFuture<Void> written) {
+    }
+
+    /**
+     * Submits the actual score of a competition entry. It is written with the next batch.
+     * BR-003: Scores must be between 0.000 and 20.000.
+     *
+     * @param competitionEntryId The competition entry ID
+     * @param actualScore        The actual score, null to remove the score
+     * @return Completed when the score has been committed, or exceptionally if the batch failed. Replaced
+     * edits complete with the edit replacing them.
+     * @throws ScoreService.ScoreValidationException if the score is invalid
+     */
+    public CompletableFuture<Void> submit(Long competitionEntryId, BigDecimal actualScore) {
+        if (actualScore != null) {
+            ScoreService.validateScore(actualScore);
+        }
+
+        synchronized (lock) {
+            var replaced = pending.get(competitionEntryId);
+            var written = replaced != null ? replaced.written() : new CompletableFuture<Void>();
+            pending.put(competitionEntryId, new PendingWrite(actualScore, written));
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Writes all pending edits as one batch.
+     */
+    void flush() {
+        Map<Long, PendingWrite> batch;
+        synchronized (lock) {
+            // Edits arriving from now on go to the next batch
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        var actualScores = new HashMap<Long, BigDecimal>(batch.size() * 2);
+        batch.forEach((competitionEntryId, write) -> actualScores.put(competitionEntryId, write.actualScore()));
+        try {
+            var changed = scoreService.enterActualScores(actualScores);
+            log.debug("Wrote batch of {} scores, {} changed", batch.size(), changed.size());
+            batch.values().forEach(write -> write.written().complete(null));
+        } catch (RuntimeException e) {
+            log.error("Failed to write batch of {} scores", batch.size(), e);
+            batch.values().forEach(write -> write.written().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Writes the pending edits before the application stops.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // A scheduled flush still runs after shutdown
+        executor.shutdown();
+        if (!executor.awaitTermination(window.toMillis() + SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            log.warn("Score writes did not finish within the shutdown timeout");
+        }
+        flush();
+    }
+}
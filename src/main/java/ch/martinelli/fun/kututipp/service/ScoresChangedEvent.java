@@ -0,0 +1,17 @@
+package ch.martinelli.fun.kututipp.service;
+
+import java.util.List;
+
+/**
+ * Application event published when actual scores of competition entries have been entered or corrected.
+ * Listeners that update leaderboards should use {@code @TransactionalEventListener} so they only see
+ * committed scores.
+ *
+ * @param competitionEntryIds IDs of the competition entries whose actual score changed
+ */
+public record ScoresChangedEvent(List<Long> competitionEntryIds) {
+
+    public ScoresChangedEvent {
+        competitionEntryIds = List.copyOf(competitionEntryIds);
+    }
+}
@@ -0,0 +1,85 @@
+package ch.martinelli.fun.kututipp.service;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global, monotonically increasing version of the actual scores.
+ * <p>
+ * The version is incremented after every committed actual-score write. Anything derived from
+ * the scores (cached leaderboards, HTTP ETags, ...) is valid as long as the version is unchanged.
+ */
+@Component
+public class ScoresVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    // The version restarts at 0, so ETags of a previous application start must not match
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Gets the current version.
+     *
+     * @return The current scores version
+     */
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Gets the HTTP entity tag of a version, unique across application restarts.
+     *
+     * @param version A scores version, usually {@link #current()}
+     * @return Entity tag without quotes
+     */
+    public String etag(long version) {
+        return epoch + "-" + version;
+    }
+
+    /**
+     * Increments the version, invalidating everything derived from the previous scores.
+     *
+     * @return The new version
+     */
+    public long increment() {
+        return version.incrementAndGet();
+    }
+
+    /**
+     * Increments the version once the score transaction has been committed.
+     * Ordered after the in-memory ranking update so a reader that sees the new version also sees the new ranking.
+     *
+     * @param event The scores changed event
+     */
+    @Order(100)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScoresChanged(ScoresChangedEvent event) {
+        increment();
+    }
+
+    /**
+     * Increments the version once the rebuilt leaderboard aggregate has been committed, after the in-memory
+     * rankings have been discarded.
+     *
+     * @param event The leaderboard rebuilt event
+     */
+    @Order(100)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardRebuilt(LeaderboardRebuiltEvent event) {
+        increment();
+    }
+
+    /**
+     * Increments the version once the transaction that invalidated the leaderboards has been committed.
+     *
+     * @param event The leaderboard invalidated event
+     */
+    @Order(100)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLeaderboardInvalidated(LeaderboardInvalidatedEvent event) {
+        increment();
+    }
+}
@@ -1,11 +1,17 @@
 package ch.martinelli.fun.kututipp.view;
 
+import ch.martinelli.fun.kututipp.ranking.PointsHistogram;
+import ch.martinelli.fun.kututipp.service.PointsDistributionService;
+import ch.martinelli.fun.kututipp.service.UserService;
+import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.html.Div;
 import com.vaadin.flow.component.html.H1;
 import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
@@ -16,6 +22,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 /**
  * Home/landing page for the Kutu-Tipp application.
  * Shows different content based on authentication status and user role.
+ * Logged in users see where they stand in the overall leaderboard and the distribution of the points.
  */
 @AnonymousAllowed
 @Route("")
@@ -23,8 +30,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
 public class HomeView extends VerticalLayout {
 
     private static final String MAX_WIDTH = "600px";
+    private static final int DISTRIBUTION_BUCKETS = 20;
+
+    private final transient PointsDistributionService pointsDistributionService;
+    private final transient UserService userService;
+
+    public HomeView(PointsDistributionService pointsDistributionService, UserService userService) {
+        this.pointsDistributionService = pointsDistributionService;
+        this.userService = userService;
 
-    public HomeView() {
         setSizeFull();
         setAlignItems(Alignment.CENTER);
         setJustifyContentMode(JustifyContentMode.CENTER);
@@ -64,20 +78,40 @@ public class HomeView extends VerticalLayout {
                 UI.getCurrent().navigate(LeaderboardView.class));
         leaderboardButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY, ButtonVariant.LUMO_SUCCESS);
 
+        var leaguesButton = new Button("My Leagues", _ ->
+                UI.getCurrent().navigate(LeagueView.class));
+        leaguesButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+
         var logoutButton = new Button("Logout", _ -> {
             SecurityContextHolder.clearContext();
             UI.getCurrent().getPage().setLocation("/login");
         });
         logoutButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
 
-        var content = new VerticalLayout(title, description, predictionsButton, myPredictionsButton, leaderboardButton);
+        var content = new VerticalLayout(title, description);
+
+        var user = userService.findByUsername(username);
+        if (user != null) {
+            content.add(createStanding(user.getId()));
+        }
+
+        content.add(predictionsButton, myPredictionsButton, leaderboardButton, leaguesButton);
 
         if (isAdmin) {
             var adminSection = new H2("Administrator Functions");
             var adminInfo = new Paragraph(
                     "As an administrator, you have access to manage competitions, gymnasts, and apparatus."
             );
-            content.add(adminSection, adminInfo);
+            var scoreEntryButton = new Button("Enter Scores", _ ->
+                    UI.getCurrent().navigate(ScoreEntryView.class));
+            scoreEntryButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+            var scoreImportButton = new Button("Import Scores", _ ->
+                    UI.getCurrent().navigate(ScoreImportView.class));
+            scoreImportButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+            var slowQueriesButton = new Button("Slow Queries", _ ->
+                    UI.getCurrent().navigate(SlowQueryView.class));
+            slowQueriesButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+            content.add(adminSection, adminInfo, scoreEntryButton, scoreImportButton, slowQueriesButton);
         }
 
         content.add(logoutButton);
@@ -87,6 +121,59 @@ public class HomeView extends VerticalLayout {
         add(content);
     }
 
+    /**
+     * Creates the overall standing of the user with a chart of the points distribution.
+     */
+    private Component createStanding(long userId) {
+        var standingLayout = new VerticalLayout();
+        standingLayout.setPadding(false);
+        standingLayout.setAlignItems(Alignment.CENTER);
+
+        var standing = pointsDistributionService.getStanding(null, userId).orElse(null);
+        if (standing == null) {
+            standingLayout.add(new Paragraph("Your standing is shown here once your first predictions have been scored."));
+            return standingLayout;
+        }
+
+        var rank = standing.bestRank() == standing.worstRank()
+                ? "rank " + standing.bestRank()
+                : "rank " + standing.bestRank() + "-" + standing.worstRank();
+        var summary = new H2("You are in the top " + standing.topPercent() + "%");
+        var details = new Paragraph(standing.totalPoints() + " points, " + rank + " of " + standing.users() + " players");
+
+        standingLayout.add(summary, details, createDistributionChart(standing.totalPoints()));
+        return standingLayout;
+    }
+
+    /**
+     * Creates a bar chart of the number of players per points range, highlighting the range of the user.
+     */
+    private Component createDistributionChart(int userPoints) {
+        var buckets = pointsDistributionService.getDistribution(null, DISTRIBUTION_BUCKETS);
+        var maxUsers = buckets.stream().mapToInt(PointsHistogram.Bucket::users).max().orElse(1);
+
+        var chart = new HorizontalLayout();
+        chart.setSpacing(false);
+        chart.setDefaultVerticalComponentAlignment(Alignment.END);
+        chart.setWidthFull();
+        chart.setHeight("120px");
+        chart.getStyle().set("gap", "2px");
+
+        for (var bucket : buckets) {
+            var ownBucket = userPoints >= bucket.fromPoints() && userPoints <= bucket.toPoints();
+
+            var bar = new Div();
+            // At least 1% so empty ranges remain visible as a baseline
+            bar.setHeight(Math.max(1, 100 * bucket.users() / maxUsers) + "%");
+            bar.getStyle()
+                    .set("flex", "1")
+                    .set("background-color", ownBucket ? "var(--lumo-primary-color)" : "var(--lumo-contrast-30pct)");
+            bar.setTitle(bucket.fromPoints() + "-" + bucket.toPoints() + " points: " + bucket.users() + " players");
+            chart.add(bar);
+        }
+        return chart;
+    }
+
     private void showAnonymousView() {
         var title = new H1("Welcome to Kutu-Tipp!");
 
@@ -1,13 +1,24 @@
 package ch.martinelli.fun.kututipp.view;
 
+import ch.martinelli.fun.kututipp.api.LeaderboardExportController;
+import ch.martinelli.fun.kututipp.dto.LeaderboardCursor;
 import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
 import ch.martinelli.fun.kututipp.dto.RankTrend;
 import ch.martinelli.fun.kututipp.repository.CompetitionRepository;
+import ch.martinelli.fun.kututipp.service.LeaderboardBroadcaster;
+import ch.martinelli.fun.kututipp.service.LeaderboardExportService;
 import ch.martinelli.fun.kututipp.service.LeaderboardService;
+import ch.martinelli.fun.kututipp.service.LeagueService;
+import ch.martinelli.fun.kututipp.service.UserService;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.H1;
 import com.vaadin.flow.component.html.Paragraph;
 import com.vaadin.flow.component.html.Span;
@@ -15,16 +26,24 @@ import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.data.provider.CallbackDataProvider;
 import com.vaadin.flow.data.renderer.ComponentRenderer;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.shared.Registration;
 import jakarta.annotation.security.PermitAll;
+import org.springframework.dao.DataAccessException;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Leaderboard view showing user rankings and statistics.
@@ -33,8 +52,14 @@ import java.util.List;
  * Features:
  * - Overall rankings across all competitions
  * - Filtering by competition
+ * - Rankings within the private leagues of the current user
  * - Highlighting of current user
  * - Real-time refresh capability
+ * - Live updates pushed by the server when actual scores change
+ * - Lazy loading: only the visible rows are fetched (keyset pagination)
+ * - CSV and JSON export of the selected leaderboard for administrators
+ * - Link to the score by score replay of a competition
+ * - UC-014 E2: the last good leaderboard is shown if a leaderboard query exceeds its budget or fails
  */
 @PermitAll
 @Route("leaderboard")
@@ -43,23 +68,56 @@ public class LeaderboardView extends VerticalLayout {
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
 
+    private static final int MAX_PAGE_CURSORS = 1000;
+
     private final transient LeaderboardService leaderboardService;
+    private final transient LeaderboardBroadcaster leaderboardBroadcaster;
     private final transient CompetitionRepository competitionRepository;
+    private final transient LeagueService leagueService;
     private final Grid<LeaderboardEntryDto> grid;
+    private final CallbackDataProvider<LeaderboardEntryDto, Void> dataProvider;
     private final Span lastUpdatedLabel;
+    private final Span degradedBanner;
     private String currentUsername;
+    private Long currentUserId;
+    private boolean admin;
+
+    // Keyset cursors of the loaded pages, keyed by the offset of the following page
+    private final Map<Integer, LeaderboardCursor> pageCursors = new HashMap<>();
+    private volatile LeaderboardFilter currentFilter = LeaderboardFilter.empty();
+
+    // League leaderboard or last good leaderboard, served instead of querying pages while set
+    private transient List<LeaderboardEntryDto> loadedLeaderboard;
+    private volatile Long currentLeagueId;
+    // Set while the last good leaderboard is served because a leaderboard query failed
+    private transient LeaderboardService.DegradedLeaderboard degraded;
+    private Registration broadcasterRegistration;
 
     // Filter components
     private ComboBox<CompetitionOption> competitionFilter;
+    private ComboBox<LeagueOption> leagueFilter;
 
-    public LeaderboardView(LeaderboardService leaderboardService, CompetitionRepository competitionRepository) {
+    // Export links, only shown to administrators
+    private final Map<LeaderboardExportService.Format, Anchor> exportLinks = new EnumMap<>(LeaderboardExportService.Format.class);
+
+    public LeaderboardView(LeaderboardService leaderboardService, LeaderboardBroadcaster leaderboardBroadcaster,
+                           CompetitionRepository competitionRepository, LeagueService leagueService,
+                           UserService userService) {
         this.leaderboardService = leaderboardService;
+        this.leaderboardBroadcaster = leaderboardBroadcaster;
         this.competitionRepository = competitionRepository;
+        this.leagueService = leagueService;
 
         // Get current username
         var authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated()) {
             this.currentUsername = authentication.getName();
+            this.admin = authentication.getAuthorities().stream()
+                    .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+            var currentUser = userService.findByUsername(currentUsername);
+            if (currentUser != null) {
+                this.currentUserId = currentUser.getId();
+            }
         }
 
         setSizeFull();
@@ -84,8 +142,20 @@ public class LeaderboardView extends VerticalLayout {
         var actionBar = createActionBar();
         add(actionBar);
 
-        // Create and configure grid
+        // Shown while the live ranking is not available
+        degradedBanner = new Span();
+        degradedBanner.getElement().getThemeList().add("badge warning");
+        degradedBanner.setVisible(false);
+        add(degradedBanner);
+
+        // Create and configure grid, rows are loaded page by page while scrolling
         this.grid = createGrid();
+        this.dataProvider = new CallbackDataProvider<>(
+                query -> fetchPage(query.getOffset(), query.getLimit()),
+                query -> countEntries(),
+                LeaderboardEntryDto::userId
+        );
+        grid.setItems(dataProvider);
         add(grid);
 
         // Last updated timestamp
@@ -98,8 +168,24 @@ public class LeaderboardView extends VerticalLayout {
         refreshLeaderboard();
     }
 
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        var ui = attachEvent.getUI();
+        broadcasterRegistration = leaderboardBroadcaster.register(update -> onLeaderboardUpdate(ui, update));
+    }
+
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        if (broadcasterRegistration != null) {
+            broadcasterRegistration.remove();
+            broadcasterRegistration = null;
+        }
+        super.onDetach(detachEvent);
+    }
+
     /**
-     * Creates the filter bar with competition filter.
+     * Creates the filter bar with competition and league filter.
      */
     private HorizontalLayout createFilterBar() {
         var filterBar = new HorizontalLayout();
@@ -117,13 +203,22 @@ public class LeaderboardView extends VerticalLayout {
         competitionFilter.setWidth("300px");
         competitionFilter.addValueChangeListener(event -> refreshLeaderboard());
 
+        // League filter, ranks the members of a league among themselves
+        leagueFilter = new ComboBox<>("League");
+        leagueFilter.setItems(loadLeagues());
+        leagueFilter.setItemLabelGenerator(LeagueOption::toString);
+        leagueFilter.setValue(LeagueOption.ALL);
+        leagueFilter.setWidth("250px");
+        leagueFilter.addValueChangeListener(event -> refreshLeaderboard());
+
         var resetButton = new Button("Show All", event -> {
             competitionFilter.setValue(CompetitionOption.ALL);
+            leagueFilter.setValue(LeagueOption.ALL);
             refreshLeaderboard();
         });
         resetButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
 
-        filterBar.add(competitionFilter, resetButton);
+        filterBar.add(competitionFilter, leagueFilter, resetButton);
         return filterBar;
     }
 
@@ -147,6 +242,21 @@ public class LeaderboardView extends VerticalLayout {
         return competitions;
     }
 
+    /**
+     * Loads the leagues of the current user.
+     */
+    private List<LeagueOption> loadLeagues() {
+        var leagues = new ArrayList<LeagueOption>();
+        leagues.add(LeagueOption.ALL);
+
+        if (currentUserId != null) {
+            for (var league : leagueService.getLeagues(currentUserId)) {
+                leagues.add(new LeagueOption(league.getId(), league.getName()));
+            }
+        }
+        return leagues;
+    }
+
     /**
      * Creates the action bar with refresh button.
      */
@@ -158,11 +268,25 @@ public class LeaderboardView extends VerticalLayout {
         var refreshButton = new Button("Refresh", new Icon(VaadinIcon.REFRESH), event -> refreshLeaderboard());
         refreshButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY, ButtonVariant.LUMO_SMALL);
 
+        var replayButton = new Button("Replay", new Icon(VaadinIcon.TIME_BACKWARD), event ->
+                UI.getCurrent().navigate(ReplayView.class));
+        replayButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY, ButtonVariant.LUMO_SMALL);
+
+        actionBar.add(refreshButton, replayButton);
+
         // TODO: Future enhancements
-        // - Export CSV button
         // - Top 10 toggle checkbox
 
-        actionBar.add(refreshButton);
+        if (admin) {
+            for (var format : LeaderboardExportService.Format.values()) {
+                // Downloaded from the export endpoint, which streams the leaderboard from the database
+                var exportLink = new Anchor("", "Export " + format.name());
+                exportLink.setRouterIgnore(true);
+                exportLink.getElement().setAttribute("download", true);
+                exportLinks.put(format, exportLink);
+                actionBar.add(exportLink);
+            }
+        }
         return actionBar;
     }
 
@@ -250,40 +374,205 @@ public class LeaderboardView extends VerticalLayout {
             return icon;
         })).setHeader("Trend").setWidth("80px").setFlexGrow(0);
 
+        // Highlight the current user's row, styled in the theme
+        leaderboardGrid.setPartNameGenerator(entry -> isCurrentUser(entry) ? "current-user" : null);
+
         return leaderboardGrid;
     }
 
     /**
      * Refreshes the leaderboard data from the service.
+     * Only the visible rows are fetched, the current user is highlighted when rendering.
      */
     private void refreshLeaderboard() {
-        List<LeaderboardEntryDto> entries;
-
         // Get selected competition
         var selectedCompetition = competitionFilter.getValue();
 
         if (selectedCompetition == null || selectedCompetition.id() == null) {
             // Show overall leaderboard (all competitions)
-            entries = leaderboardService.getOverallLeaderboard(currentUsername);
+            currentFilter = LeaderboardFilter.empty();
         } else {
             // Show leaderboard for specific competition
-            entries = leaderboardService.getCompetitionLeaderboard(selectedCompetition.id(), currentUsername);
+            currentFilter = LeaderboardFilter.forCompetition(selectedCompetition.id());
         }
 
-        grid.setItems(entries);
+        exportLinks.forEach((format, exportLink) ->
+                exportLink.setHref(LeaderboardExportController.exportPath(currentFilter, format)));
+
+        // League leaderboards are computed in memory from the shared leaderboard
+        var selectedLeague = leagueFilter.getValue();
+        currentLeagueId = selectedLeague == null ? null : selectedLeague.id();
+        degraded = null;
+        degradedBanner.setVisible(false);
+        try {
+            loadedLeaderboard = currentLeagueId == null ? null : leagueService.getLeagueLeaderboard(currentLeagueId, currentFilter);
+        } catch (DataAccessException e) {
+            fallBack(e);
+        }
 
-        // Update timestamp
-        var now = OffsetDateTime.now();
-        lastUpdatedLabel.setText("Last updated: " + now.format(TIME_FORMATTER));
+        pageCursors.clear();
+        dataProvider.refreshAll();
+        updateLastUpdatedLabel();
 
         // If current user is in the list, scroll to their position
-        entries.stream()
-                .filter(LeaderboardEntryDto::isCurrentUser)
-                .findFirst()
-                .ifPresent(entry -> {
-                    grid.select(entry);
-                    grid.scrollToIndex(entries.indexOf(entry));
+        if (currentUserId != null) {
+            var position = getCurrentUserPosition();
+            if (position >= 0) {
+                grid.scrollToIndex(position);
+            }
+        }
+    }
+
+    private int getCurrentUserPosition() {
+        var leaderboard = loadedLeaderboard;
+        if (leaderboard == null) {
+            try {
+                return leaderboardService.getLeaderboardPosition(currentFilter, currentUserId);
+            } catch (DataAccessException e) {
+                leaderboard = fallBack(e);
+            }
+        }
+        for (var i = 0; i < leaderboard.size(); i++) {
+            if (leaderboard.get(i).userId().equals(currentUserId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Applies a pushed leaderboard update. Called on the broadcaster thread.
+     * A league leaderboard is loaded here, before the session is locked, by looking up its members. Other
+     * leaderboards are not loaded: the changed rows of the overall leaderboard are replaced, or the visible
+     * pages are fetched again.
+     */
+    private void onLeaderboardUpdate(UI ui, LeaderboardBroadcaster.Update update) {
+        var filter = currentFilter;
+        var leagueId = currentLeagueId;
+        var overall = LeaderboardFilter.empty().equals(filter) && leagueId == null;
+        List<LeaderboardEntryDto> leagueLeaderboard = null;
+        if (leagueId != null) {
+            try {
+                leagueLeaderboard = leagueService.getLeagueLeaderboard(leagueId, filter);
+            } catch (DataAccessException e) {
+                // Keeps showing the current leaderboard, the next update or the background refresh replaces it
+                ui.access(() -> {
+                    if (filter.equals(currentFilter) && Objects.equals(leagueId, currentLeagueId) && degraded == null) {
+                        fallBack(e);
+                        pageCursors.clear();
+                        dataProvider.refreshAll();
+                    }
                 });
+                return;
+            }
+        }
+
+        var league = leagueLeaderboard;
+        ui.access(() -> {
+            if (!filter.equals(currentFilter) || !Objects.equals(leagueId, currentLeagueId)) {
+                // The filter or league has been changed in the meantime
+                return;
+            }
+            var wasDegraded = degraded != null;
+            loadedLeaderboard = league;
+            degraded = null;
+            degradedBanner.setVisible(false);
+
+            if (wasDegraded || !overall || update.reordered()) {
+                pageCursors.clear();
+                dataProvider.refreshAll();
+            } else {
+                update.changedEntries().forEach(dataProvider::refreshItem);
+            }
+            updateLastUpdatedLabel();
+        });
+    }
+
+    private void updateLastUpdatedLabel() {
+        var now = OffsetDateTime.now();
+        lastUpdatedLabel.setText("Last updated: " + now.format(TIME_FORMATTER));
+    }
+
+    /**
+     * Serves the last good leaderboard of the current filter after a leaderboard query failed, and shows it
+     * once the background refresh of the leaderboard succeeded.
+     *
+     * @return The last good leaderboard, empty if none is available
+     */
+    private List<LeaderboardEntryDto> fallBack(DataAccessException failure) {
+        var filter = currentFilter;
+        var leagueId = currentLeagueId;
+        var lastGood = leaderboardService.getLastGoodLeaderboard(filter, failure);
+        degraded = lastGood;
+
+        loadedLeaderboard = leagueId == null ? lastGood.entries() : leagueService.getLeagueLeaderboard(leagueId, lastGood.entries());
+        degradedBanner.setText(lastGood.isAvailable()
+                ? "Live ranking is delayed, showing data as of " + lastGood.computedAt().format(TIME_FORMATTER)
+                : "Live ranking is currently not available");
+        degradedBanner.setVisible(true);
+
+        var ui = UI.getCurrent();
+        lastGood.refreshed().thenAccept(leaderboard -> ui.access(() -> {
+            if (degraded != lastGood) {
+                // The filter has been changed or the leaderboard has been updated in the meantime
+                return;
+            }
+            degraded = null;
+            degradedBanner.setVisible(false);
+            loadedLeaderboard = leagueId == null ? leaderboard : leagueService.getLeagueLeaderboard(leagueId, leaderboard);
+            pageCursors.clear();
+            dataProvider.refreshAll();
+            updateLastUpdatedLabel();
+        }));
+        return loadedLeaderboard;
+    }
+
+    private int countEntries() {
+        var leaderboard = loadedLeaderboard;
+        if (leaderboard != null) {
+            return leaderboard.size();
+        }
+        try {
+            return leaderboardService.countLeaderboard(currentFilter);
+        } catch (DataAccessException e) {
+            return fallBack(e).size();
+        }
+    }
+
+    /**
+     * Fetches one page of the leaderboard.
+     * Pages following an already loaded page continue from its keyset cursor, other pages are loaded by position.
+     */
+    private Stream<LeaderboardEntryDto> fetchPage(int offset, int limit) {
+        var leaderboard = loadedLeaderboard;
+        if (leaderboard != null) {
+            return leaderboard.stream().skip(offset).limit(limit);
+        }
+
+        List<LeaderboardEntryDto> entries;
+        var cursor = pageCursors.get(offset);
+
+        try {
+            if (offset == 0 || cursor != null) {
+                entries = leaderboardService.getLeaderboardPage(currentFilter, cursor, limit);
+            } else {
+                entries = leaderboardService.getLeaderboardRange(currentFilter, offset, limit);
+            }
+        } catch (DataAccessException e) {
+            return fallBack(e).stream().skip(offset).limit(limit);
+        }
+
+        if (!entries.isEmpty()) {
+            if (pageCursors.size() >= MAX_PAGE_CURSORS) {
+                pageCursors.clear();
+            }
+            pageCursors.put(offset + entries.size(), LeaderboardCursor.after(entries.getLast()));
+        }
+        return entries.stream();
+    }
+
+    private boolean isCurrentUser(LeaderboardEntryDto entry) {
+        return entry.username().equals(currentUsername);
     }
 
     /**
@@ -300,4 +589,19 @@ public class LeaderboardView extends VerticalLayout {
             return name;
         }
     }
+
+    /**
+     * Represents a league option for the filter dropdown.
+     */
+    record LeagueOption(Long id, String name) {
+        /**
+         * Special constant for "All Users" option.
+         */
+        static final LeagueOption ALL = new LeagueOption(null, "All Users");
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }
@@ -0,0 +1,175 @@
+package ch.martinelli.fun.kututipp.view;
+
+import ch.martinelli.fun.kututipp.db.tables.records.LeagueRecord;
+import ch.martinelli.fun.kututipp.service.LeagueService;
+import ch.martinelli.fun.kututipp.service.UserService;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.PermitAll;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * View for creating, joining and leaving private leagues.
+ * The league rankings are shown in the {@link LeaderboardView}.
+ */
+@PermitAll
+@Route("leagues")
+@PageTitle("My Leagues - Kutu-Tipp")
+public class LeagueView extends VerticalLayout {
+
+    private final transient LeagueService leagueService;
+    private final Long currentUserId;
+
+    private final Grid<LeagueRecord> grid;
+
+    public LeagueView(LeagueService leagueService, UserService userService) {
+        this.leagueService = leagueService;
+
+        // Get current user
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        this.currentUserId = userService.getCurrentUserId(authentication.getName());
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        // Title
+        add(new H1("My Leagues"));
+
+        // Description
+        var description = new Paragraph(
+                "Compete with your friends and club mates. Create a league and share its code, or join a league with the code you got."
+        );
+        add(description);
+
+        add(createActionBar());
+
+        // Create grid
+        grid = createGrid();
+        add(grid);
+
+        // Load data
+        loadLeagues();
+    }
+
+    /**
+     * Creates the bar to create and join leagues.
+     */
+    private HorizontalLayout createActionBar() {
+        var actionBar = new HorizontalLayout();
+        actionBar.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
+        actionBar.setSpacing(true);
+
+        var nameField = new TextField("League name");
+        nameField.setMaxLength(100);
+        var createButton = new Button("Create League", new Icon(VaadinIcon.PLUS), _ -> {
+            try {
+                var league = leagueService.createLeague(currentUserId, nameField.getValue());
+                nameField.clear();
+                loadLeagues();
+                Notification.show(
+                        "League created, share the code " + league.getJoinCode() + " with your friends",
+                        5000,
+                        Notification.Position.BOTTOM_START
+                ).addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+            } catch (LeagueService.LeagueValidationException e) {
+                showError(e.getMessage());
+            }
+        });
+        createButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+
+        var codeField = new TextField("Join code");
+        var joinButton = new Button("Join League", new Icon(VaadinIcon.SIGN_IN), _ -> {
+            try {
+                var league = leagueService.joinLeague(currentUserId, codeField.getValue());
+                codeField.clear();
+                loadLeagues();
+                Notification.show(
+                        "You joined " + league.getName(),
+                        3000,
+                        Notification.Position.BOTTOM_START
+                ).addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+            } catch (LeagueService.LeagueNotFoundException e) {
+                showError(e.getMessage());
+            }
+        });
+
+        var leaderboardButton = new Button("View Leaderboard", _ ->
+                UI.getCurrent().navigate(LeaderboardView.class));
+        leaderboardButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+
+        actionBar.add(nameField, createButton, codeField, joinButton, leaderboardButton);
+        return actionBar;
+    }
+
+    /**
+     * Creates and configures the grid.
+     */
+    private Grid<LeagueRecord> createGrid() {
+        var leagueGrid = new Grid<LeagueRecord>();
+        leagueGrid.setHeight("400px");
+
+        leagueGrid.addColumn(LeagueRecord::getName)
+                .setHeader("League")
+                .setAutoWidth(true)
+                .setFlexGrow(1);
+
+        leagueGrid.addColumn(LeagueRecord::getJoinCode)
+                .setHeader("Join Code")
+                .setWidth("150px")
+                .setFlexGrow(0);
+
+        leagueGrid.addColumn(league -> leagueService.countMembers(league.getId()))
+                .setHeader("Members")
+                .setWidth("120px")
+                .setFlexGrow(0);
+
+        // Owners delete their league, other members leave it
+        leagueGrid.addColumn(new ComponentRenderer<>(league -> {
+            var owner = league.getOwnerId().equals(currentUserId);
+            var button = new Button(owner ? "Delete" : "Leave", new Icon(owner ? VaadinIcon.TRASH : VaadinIcon.SIGN_OUT));
+            button.addThemeVariants(ButtonVariant.LUMO_SMALL, ButtonVariant.LUMO_ERROR);
+            button.addClickListener(_ -> {
+                try {
+                    if (owner) {
+                        leagueService.deleteLeague(currentUserId, league.getId());
+                    } else {
+                        leagueService.leaveLeague(currentUserId, league.getId());
+                    }
+                    loadLeagues();
+                } catch (LeagueService.LeagueNotFoundException | LeagueService.LeagueValidationException e) {
+                    showError(e.getMessage());
+                }
+            });
+            return button;
+        })).setHeader("Actions").setWidth("150px").setFlexGrow(0);
+
+        return leagueGrid;
+    }
+
+    /**
+     * Loads the leagues of the current user.
+     */
+    private void loadLeagues() {
+        grid.setItems(leagueService.getLeagues(currentUserId));
+    }
+
+    private static void showError(String message) {
+        Notification.show(message, 5000, Notification.Position.MIDDLE)
+                .addThemeVariants(NotificationVariant.LUMO_ERROR);
+    }
+}
@@ -0,0 +1,156 @@
+package ch.martinelli.fun.kututipp.view;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.ScoreEventDto;
+import ch.martinelli.fun.kututipp.repository.CompetitionRepository;
+import ch.martinelli.fun.kututipp.service.ScoreReplayService;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.IntegerField;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.PermitAll;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * View replaying the leaderboard of a competition score by score.
+ * The standings after any entered score are computed in memory by the {@link ScoreReplayService}.
+ */
+@PermitAll
+@Route("replay")
+@PageTitle("Replay - Kutu-Tipp")
+public class ReplayView extends VerticalLayout {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final transient ScoreReplayService scoreReplayService;
+    private final String currentUsername;
+
+    private final ComboBox<LeaderboardView.CompetitionOption> competitionFilter;
+    private final IntegerField offsetField;
+    private final Span eventLabel;
+    private final Grid<LeaderboardEntryDto> grid;
+
+    private transient List<ScoreEventDto> events = List.of();
+
+    public ReplayView(ScoreReplayService scoreReplayService, CompetitionRepository competitionRepository) {
+        this.scoreReplayService = scoreReplayService;
+        this.currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        // Title
+        add(new H1("Leaderboard Replay"));
+
+        // Description
+        add(new Paragraph("See how the standings of a competition evolved with every score that was entered."));
+
+        // Competition selection
+        competitionFilter = new ComboBox<>("Competition");
+        competitionFilter.setItems(competitionRepository.findAll().stream()
+                .map(competition -> new LeaderboardView.CompetitionOption(competition.getId(), competition.getName()))
+                .toList());
+        competitionFilter.setItemLabelGenerator(LeaderboardView.CompetitionOption::toString);
+        competitionFilter.setWidth("300px");
+        competitionFilter.addValueChangeListener(_ -> loadEvents());
+        add(competitionFilter);
+
+        // Navigation through the score events
+        offsetField = new IntegerField("Score");
+        offsetField.setMin(0);
+        offsetField.setStepButtonsVisible(true);
+        offsetField.setWidth("150px");
+        offsetField.addValueChangeListener(_ -> showStandings());
+
+        var firstButton = new Button(new Icon(VaadinIcon.FAST_BACKWARD), _ -> setOffset(0));
+        var previousButton = new Button(new Icon(VaadinIcon.STEP_BACKWARD), _ -> setOffset(getOffset() - 1));
+        var nextButton = new Button(new Icon(VaadinIcon.STEP_FORWARD), _ -> setOffset(getOffset() + 1));
+        var lastButton = new Button(new Icon(VaadinIcon.FAST_FORWARD), _ -> setOffset(events.size()));
+        for (var button : List.of(firstButton, previousButton, nextButton, lastButton)) {
+            button.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+        }
+
+        var navigationBar = new HorizontalLayout(offsetField, firstButton, previousButton, nextButton, lastButton);
+        navigationBar.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
+        add(navigationBar);
+
+        eventLabel = new Span();
+        eventLabel.getStyle().set("color", "var(--lumo-secondary-text-color)");
+        add(eventLabel);
+
+        // Standings
+        grid = new Grid<>();
+        grid.setHeight("600px");
+        grid.addColumn(LeaderboardEntryDto::rank).setHeader("Rank").setWidth("100px").setFlexGrow(0);
+        grid.addColumn(LeaderboardEntryDto::username).setHeader("Username").setAutoWidth(true).setFlexGrow(1);
+        grid.addColumn(LeaderboardEntryDto::totalPoints).setHeader("Total Points").setWidth("120px").setFlexGrow(0);
+        grid.addColumn(LeaderboardEntryDto::totalPredictions).setHeader("Predictions").setWidth("120px").setFlexGrow(0);
+        grid.addColumn(LeaderboardEntryDto::exactPredictions).setHeader("Exact (3pts)").setWidth("120px").setFlexGrow(0);
+        grid.setPartNameGenerator(entry -> entry.username().equals(currentUsername) ? "current-user" : null);
+        add(grid);
+    }
+
+    /**
+     * Loads the score events of the selected competition and shows the current standings.
+     */
+    private void loadEvents() {
+        var competition = competitionFilter.getValue();
+        events = competition == null ? List.of() : scoreReplayService.getEvents(competition.id());
+
+        offsetField.setMax(events.size());
+        if (events.size() == getOffset()) {
+            // The value does not change, so the listener is not called
+            showStandings();
+        } else {
+            offsetField.setValue(events.size());
+        }
+    }
+
+    private int getOffset() {
+        var offset = offsetField.getValue();
+        return offset == null ? 0 : offset;
+    }
+
+    private void setOffset(int offset) {
+        offsetField.setValue(Math.clamp(offset, 0, events.size()));
+    }
+
+    /**
+     * Shows the standings after the selected number of score events.
+     */
+    private void showStandings() {
+        var competition = competitionFilter.getValue();
+        if (competition == null) {
+            grid.setItems(List.of());
+            eventLabel.setText("");
+            return;
+        }
+
+        var offset = Math.clamp(getOffset(), 0, events.size());
+        grid.setItems(scoreReplayService.getStandings(competition.id(), offset));
+
+        if (offset == 0) {
+            eventLabel.setText("Before the first score (" + events.size() + " scores entered)");
+        } else {
+            var event = events.get(offset - 1);
+            var score = event.actualScore() == null ? "removed" : event.actualScore().toPlainString();
+            eventLabel.setText(String.format("Score %d of %d at %s: %s on %s, %s",
+                    offset, events.size(), event.createdAt().format(TIME_FORMATTER),
+                    event.gymnastName(), event.apparatusName(), score));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ch.martinelli.fun.kututipp.view;
+
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.dto.ScoreEntryDto;
+import ch.martinelli.fun.kututipp.repository.CompetitionEntryRepository;
+import ch.martinelli.fun.kututipp.repository.CompetitionRepository;
+import ch.martinelli.fun.kututipp.service.ScoreService;
+import ch.martinelli.fun.kututipp.service.ScoreWriteCoalescer;
+import com.vaadin.flow.component.Key;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.BigDecimalField;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import jakarta.annotation.security.RolesAllowed;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Administrator console for entering the actual scores of a live competition at the judges' desk.
+ * Implements UC-011: Enter Actual Scores.
+ * <p>
+ * Entries are listed in the order they are scored (apparatus, team, gymnast) and can be reduced to the
+ * apparatus of the desk. A score is submitted when the field is left or Enter is pressed, Enter also moves to
+ * the next gymnast. Scores are written in batches by the {@link ScoreWriteCoalescer}.
+ */
+@RolesAllowed("ADMIN")
+@Route("admin/scores")
+@PageTitle("Score Entry - Kutu-Tipp")
+public class ScoreEntryView extends VerticalLayout {
+
+    private final transient ScoreWriteCoalescer scoreWriteCoalescer;
+    private final transient CompetitionEntryRepository competitionEntryRepository;
+
+    private final ComboBox<LeaderboardView.CompetitionOption> competitionFilter;
+    private final ComboBox<ApparatusOption> apparatusFilter;
+    private final Span statusLabel;
+    private final Grid<ScoreEntryDto> grid;
+
+    private transient List<ScoreEntryDto> entries = List.of();
+    // Entered scores by competition entry ID, the grid renders its fields from them
+    private final Map<Long, BigDecimal> scores = new HashMap<>();
+    // Scores as last saved, restored if saving an entered score fails
+    private final Map<Long, BigDecimal> savedScores = new HashMap<>();
+    // Fields of the rendered rows, to move the focus to the next gymnast
+    private final Map<Long, BigDecimalField> fields = new HashMap<>();
+    private final Set<Long> unsaved = new HashSet<>();
+
+    /**
+     * Option of the apparatus filter.
+     */
+    record ApparatusOption(Long id, String name) {
+        static final ApparatusOption ALL = new ApparatusOption(null, "All Apparatus");
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public ScoreEntryView(ScoreWriteCoalescer scoreWriteCoalescer,
+                          CompetitionEntryRepository competitionEntryRepository,
+                          CompetitionRepository competitionRepository) {
+        this.scoreWriteCoalescer = scoreWriteCoalescer;
+        this.competitionEntryRepository = competitionEntryRepository;
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        // Title
+        add(new H1("Score Entry"));
+
+        // Description
+        add(new Paragraph("Enter the actual scores as they are announced. Press Enter to save a score and move "
+                + "to the next gymnast, the leaderboards are updated within a second."));
+
+        // Competition and apparatus selection, a live competition is selected
+        var competitions = competitionRepository.findAll();
+        competitionFilter = new ComboBox<>("Competition");
+        competitionFilter.setItems(competitions.stream()
+                .map(competition -> new LeaderboardView.CompetitionOption(competition.getId(), competition.getName()))
+                .toList());
+        competitionFilter.setItemLabelGenerator(LeaderboardView.CompetitionOption::toString);
+        competitionFilter.setWidth("300px");
+        competitionFilter.addValueChangeListener(_ -> loadEntries());
+
+        apparatusFilter = new ComboBox<>("Apparatus");
+        apparatusFilter.setItemLabelGenerator(ApparatusOption::toString);
+        apparatusFilter.setWidth("200px");
+        apparatusFilter.addValueChangeListener(_ -> showEntries());
+
+        var reloadButton = new Button("Reload", new Icon(VaadinIcon.REFRESH), _ -> loadEntries());
+        reloadButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+
+        var filterBar = new HorizontalLayout(competitionFilter, apparatusFilter, reloadButton);
+        filterBar.setDefaultVerticalComponentAlignment(Alignment.BASELINE);
+        add(filterBar);
+
+        statusLabel = new Span();
+        statusLabel.getStyle().set("color", "var(--lumo-secondary-text-color)");
+        add(statusLabel);
+
+        // Entries
+        grid = new Grid<>();
+        grid.setSizeFull();
+        grid.addColumn(ScoreEntryDto::apparatusName).setHeader("Apparatus").setWidth("160px").setFlexGrow(0);
+        grid.addColumn(ScoreEntryDto::gender).setHeader("Gender").setWidth("100px").setFlexGrow(0);
+        grid.addColumn(ScoreEntryDto::gymnastName).setHeader("Gymnast").setAutoWidth(true).setFlexGrow(1);
+        grid.addColumn(ScoreEntryDto::teamName).setHeader("Team").setAutoWidth(true).setFlexGrow(1);
+        grid.addComponentColumn(this::createScoreField).setHeader("Score").setWidth("170px").setFlexGrow(0);
+        add(grid);
+
+        competitions.stream()
+                .filter(competition -> competition.getStatus() == CompetitionStatus.live)
+                .findFirst()
+                .ifPresent(competition -> competitionFilter.setValue(
+                        new LeaderboardView.CompetitionOption(competition.getId(), competition.getName())));
+    }
+
+    private BigDecimalField createScoreField(ScoreEntryDto entry) {
+        var id = entry.competitionEntryId();
+        var field = new BigDecimalField();
+        field.setWidthFull();
+        field.setPlaceholder("0.000");
+        field.setValue(scores.get(id));
+        fields.put(id, field);
+        field.addDetachListener(_ -> fields.remove(id, field));
+
+        // Submitted on Enter and when the field is left
+        field.addValueChangeListener(event -> {
+            if (event.isFromClient()) {
+                submit(id, field, event.getValue());
+            }
+        });
+        field.addKeyDownListener(Key.ENTER, _ -> focusNext(id));
+        return field;
+    }
+
+    private void submit(Long competitionEntryId, BigDecimalField field, BigDecimal actualScore) {
+        try {
+            var written = scoreWriteCoalescer.submit(competitionEntryId, actualScore);
+            field.setInvalid(false);
+            scores.put(competitionEntryId, actualScore);
+            unsaved.add(competitionEntryId);
+            updateStatus();
+
+            var ui = UI.getCurrent();
+            written.whenComplete((_, e) -> ui.access(() -> {
+                unsaved.remove(competitionEntryId);
+                if (e != null) {
+                    revert(competitionEntryId, actualScore);
+                    Notification.show("Score could not be saved: " + e.getMessage(), 5000, Notification.Position.MIDDLE)
+                            .addThemeVariants(NotificationVariant.LUMO_ERROR);
+                    statusLabel.setText("Saving failed, please enter the score again");
+                } else {
+                    savedScores.put(competitionEntryId, actualScore);
+                    updateStatus();
+                }
+            }));
+        } catch (ScoreService.ScoreValidationException e) {
+            field.setInvalid(true);
+            field.setErrorMessage(e.getMessage());
+        }
+    }
+
+    /**
+     * Restores the last saved score of an entry whose entered score could not be saved,
+     * unless it has been edited again in the meantime.
+     */
+    private void revert(Long competitionEntryId, BigDecimal failedScore) {
+        if (!Objects.equals(scores.get(competitionEntryId), failedScore)) {
+            return;
+        }
+        var savedScore = savedScores.get(competitionEntryId);
+        scores.put(competitionEntryId, savedScore);
+        var field = fields.get(competitionEntryId);
+        if (field != null) {
+            field.setValue(savedScore);
+        }
+    }
+
+    private void focusNext(Long competitionEntryId) {
+        var visible = visibleEntries();
+        for (var i = 0; i < visible.size() - 1; i++) {
+            if (visible.get(i).competitionEntryId().equals(competitionEntryId)) {
+                grid.scrollToIndex(i + 1);
+                var next = fields.get(visible.get(i + 1).competitionEntryId());
+                if (next != null) {
+                    next.focus();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Loads the entries of the selected competition with their current scores.
+     */
+    private void loadEntries() {
+        var competition = competitionFilter.getValue();
+        entries = competition == null ? List.of() : competitionEntryRepository.findByCompetition(competition.id());
+
+        scores.clear();
+        savedScores.clear();
+        for (var entry : entries) {
+            scores.put(entry.competitionEntryId(), entry.actualScore());
+            savedScores.put(entry.competitionEntryId(), entry.actualScore());
+        }
+
+        var apparatus = new LinkedHashMap<Long, ApparatusOption>();
+        apparatus.put(null, ApparatusOption.ALL);
+        for (var entry : entries) {
+            apparatus.putIfAbsent(entry.apparatusId(), new ApparatusOption(entry.apparatusId(),
+                    entry.apparatusName() + " (" + entry.gender() + ")"));
+        }
+        var selected = apparatusFilter.getValue();
+        apparatusFilter.setItems(apparatus.values());
+        // Keeps the apparatus of the desk when reloading
+        apparatusFilter.setValue(selected != null && apparatus.containsKey(selected.id()) ? selected : ApparatusOption.ALL);
+
+        showEntries();
+    }
+
+    private void showEntries() {
+        grid.setItems(visibleEntries());
+        updateStatus();
+    }
+
+    private List<ScoreEntryDto> visibleEntries() {
+        var apparatus = apparatusFilter.getValue();
+        if (apparatus == null || apparatus.id() == null) {
+            return entries;
+        }
+        return entries.stream()
+                .filter(entry -> Objects.equals(entry.apparatusId(), apparatus.id()))
+                .toList();
+    }
+
+    private void updateStatus() {
+        if (competitionFilter.getValue() == null) {
+            statusLabel.setText("");
+            return;
+        }
+        var visible = visibleEntries();
+        var scored = visible.stream().filter(entry -> scores.get(entry.competitionEntryId()) != null).count();
+        var saving = unsaved.isEmpty() ? "all scores saved" : "saving " + unsaved.size() + " scores...";
+        statusLabel.setText(scored + " of " + visible.size() + " scored, " + saving);
+    }
+}
@@ -0,0 +1,107 @@
+package ch.martinelli.fun.kututipp.view;
+
+import ch.martinelli.fun.kututipp.repository.CompetitionRepository;
+import ch.martinelli.fun.kututipp.service.ScoreImportService;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.combobox.ComboBox;
+import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.ListItem;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.UnorderedList;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.upload.Upload;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.streams.UploadHandler;
+import jakarta.annotation.security.RolesAllowed;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Administrator view importing the actual scores of a competition from a results file.
+ * See {@link ScoreImportService} for the file format.
+ */
+@RolesAllowed("ADMIN")
+@Route("admin/score-import")
+@PageTitle("Import Scores - Kutu-Tipp")
+public class ScoreImportView extends VerticalLayout {
+
+    private static final int MAX_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_SHOWN_ERRORS = 20;
+
+    private final transient ScoreImportService scoreImportService;
+
+    private final ComboBox<LeaderboardView.CompetitionOption> competitionFilter;
+    private final UnorderedList errorList;
+
+    public ScoreImportView(ScoreImportService scoreImportService, CompetitionRepository competitionRepository) {
+        this.scoreImportService = scoreImportService;
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        // Title
+        add(new H1("Import Scores"));
+
+        // Description
+        add(new Paragraph("Upload the results of a competition as CSV with the columns gymnast, apparatus and score. "
+                + "The file is imported completely or not at all."));
+
+        // Competition selection
+        competitionFilter = new ComboBox<>("Competition");
+        competitionFilter.setItems(competitionRepository.findAll().stream()
+                .map(competition -> new LeaderboardView.CompetitionOption(competition.getId(), competition.getName()))
+                .toList());
+        competitionFilter.setItemLabelGenerator(LeaderboardView.CompetitionOption::toString);
+        competitionFilter.setWidth("300px");
+        add(competitionFilter);
+
+        var ui = UI.getCurrent();
+        var upload = new Upload(UploadHandler.inMemory((metadata, data) -> ui.access(() -> importScores(data))));
+        upload.setAcceptedFileTypes("text/csv", ".csv");
+        upload.setMaxFileSize(MAX_FILE_SIZE);
+        upload.setMaxFiles(1);
+        add(upload);
+
+        errorList = new UnorderedList();
+        add(errorList);
+    }
+
+    private void importScores(byte[] data) {
+        errorList.removeAll();
+
+        var competition = competitionFilter.getValue();
+        if (competition == null) {
+            Notification.show("Please select a competition", 3000, Notification.Position.MIDDLE)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+            return;
+        }
+
+        try {
+            var result = scoreImportService.importScores(competition.id(),
+                    new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+            Notification.show(String.format("Imported %d scores, %d changed", result.rows(),
+                            result.competitionEntryIds().size()), 3000, Notification.Position.MIDDLE)
+                    .addThemeVariants(NotificationVariant.LUMO_SUCCESS);
+        } catch (ScoreImportService.ScoreImportException e) {
+            Notification.show("Nothing imported: " + e.getMessage(), 5000, Notification.Position.MIDDLE)
+                    .addThemeVariants(NotificationVariant.LUMO_ERROR);
+            showErrors(e.getErrors());
+        }
+    }
+
+    private void showErrors(List<String> errors) {
+        errors.stream()
+                .limit(MAX_SHOWN_ERRORS)
+                .forEach(error -> errorList.add(new ListItem(error)));
+        if (errors.size() > MAX_SHOWN_ERRORS) {
+            errorList.add(new ListItem("... and " + (errors.size() - MAX_SHOWN_ERRORS) + " more"));
+        }
+    }
+}
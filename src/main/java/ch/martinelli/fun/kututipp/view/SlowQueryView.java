@@ -0,0 +1,122 @@
+package ch.martinelli.fun.kututipp.view;
+
+import ch.martinelli.fun.kututipp.config.SlowQueryLog;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.Anchor;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.html.Pre;
+import com.vaadin.flow.component.html.Span;
+import com.vaadin.flow.component.icon.Icon;
+import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.streams.DownloadHandler;
+import jakarta.annotation.security.RolesAllowed;
+
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Administrator view showing the queries that exceeded the slow query threshold, see {@link SlowQueryLog}.
+ * Select a query to see its SQL, bind values and plan.
+ */
+@RolesAllowed("ADMIN")
+@Route("admin/slow-queries")
+@PageTitle("Slow Queries - Kutu-Tipp")
+public class SlowQueryView extends VerticalLayout {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final int MAX_SQL_PREVIEW_LENGTH = 120;
+
+    private final transient SlowQueryLog slowQueryLog;
+    private final Grid<SlowQueryLog.SlowQuery> grid;
+
+    public SlowQueryView(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+
+        setSizeFull();
+        setPadding(true);
+        setSpacing(true);
+
+        // Title
+        add(new H1("Slow Queries"));
+
+        // Description
+        add(new Paragraph("The latest queries that took longer than %d ms%s.".formatted(
+                slowQueryLog.getThreshold().toMillis(),
+                slowQueryLog.isExplainEnabled() ? ", with the plan captured in the background" : "")));
+
+        // Actions
+        var refreshButton = new Button("Refresh", new Icon(VaadinIcon.REFRESH), _ -> refresh());
+        refreshButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY, ButtonVariant.LUMO_SMALL);
+
+        var clearButton = new Button("Clear", new Icon(VaadinIcon.TRASH), _ -> {
+            slowQueryLog.clear();
+            refresh();
+        });
+        clearButton.addThemeVariants(ButtonVariant.LUMO_TERTIARY, ButtonVariant.LUMO_SMALL);
+
+        // Dumps the slow queries to a text file
+        DownloadHandler dump = event -> {
+            event.setFileName("slow-queries.txt");
+            event.setContentType("text/plain;charset=UTF-8");
+            slowQueryLog.writeTo(new OutputStreamWriter(event.getOutputStream(), StandardCharsets.UTF_8));
+        };
+        var downloadLink = new Anchor(dump, "Download");
+        downloadLink.getElement().setAttribute("download", true);
+
+        var actionBar = new HorizontalLayout(refreshButton, clearButton, downloadLink);
+        actionBar.setDefaultVerticalComponentAlignment(Alignment.CENTER);
+        add(actionBar);
+
+        // Slow queries, newest first
+        grid = new Grid<>();
+        grid.setSizeFull();
+        grid.addColumn(query -> query.executedAt().format(TIME_FORMATTER)).setHeader("Time").setWidth("100px").setFlexGrow(0);
+        grid.addColumn(SlowQueryLog.SlowQuery::method).setHeader("Method").setAutoWidth(true).setFlexGrow(0);
+        grid.addColumn(query -> query.elapsed().toMillis()).setHeader("Duration (ms)").setWidth("130px").setFlexGrow(0);
+        grid.addColumn(SlowQueryLog.SlowQuery::rows).setHeader("Rows").setWidth("100px").setFlexGrow(0);
+        grid.addColumn(query -> query.error() == null ? "" : "Failed").setHeader("Status").setWidth("100px").setFlexGrow(0);
+        grid.addColumn(query -> preview(query.sql())).setHeader("SQL").setFlexGrow(1);
+        grid.setItemDetailsRenderer(new ComponentRenderer<>(this::createDetails));
+        add(grid);
+
+        refresh();
+    }
+
+    private void refresh() {
+        grid.setItems(slowQueryLog.getEntries());
+    }
+
+    private Div createDetails(SlowQueryLog.SlowQuery query) {
+        var details = new Div();
+        details.add(new Pre(query.sql()));
+        details.add(new Paragraph("Bind values: " + query.bindValues()));
+        if (query.error() != null) {
+            var error = new Span("Error: " + query.error());
+            error.getStyle().set("color", "var(--lumo-error-text-color)");
+            details.add(error);
+        }
+        if (query.plan() != null) {
+            details.add(new Pre(query.plan()));
+        } else if (slowQueryLog.isExplainEnabled() && "read".equals(query.type())) {
+            details.add(new Paragraph("The plan is being captured, refresh to see it."));
+        }
+        return details;
+    }
+
+    private static String preview(String sql) {
+        var singleLine = sql.replaceAll("\\s+", " ");
+        return singleLine.length() > MAX_SQL_PREVIEW_LENGTH
+                ? singleLine.substring(0, MAX_SQL_PREVIEW_LENGTH) + "..."
+                : singleLine;
+    }
+}
@@ -0,0 +1,212 @@
+-- Incrementally maintained leaderboard aggregate
+-- Instead of evaluating calculate_points() for every scored prediction on each leaderboard request,
+-- the per-user sums are kept per (competition, apparatus, gymnast gender) and updated by triggers
+-- in the same transaction as the change to competition_entry, prediction or gymnast.
+
+CREATE TABLE user_points_agg
+(
+    user_id           BIGINT      NOT NULL,
+    competition_id    BIGINT      NOT NULL,
+    apparatus_id      BIGINT      NOT NULL,
+    gender            gender_type NOT NULL,
+    total_points      INTEGER     NOT NULL DEFAULT 0,
+    exact_predictions INTEGER     NOT NULL DEFAULT 0,
+    total_predictions INTEGER     NOT NULL DEFAULT 0,
+    CONSTRAINT pk_user_points_agg PRIMARY KEY (user_id, competition_id, apparatus_id, gender),
+    CONSTRAINT fk_user_points_agg_user FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE CASCADE,
+    CONSTRAINT fk_user_points_agg_competition FOREIGN KEY (competition_id) REFERENCES competition (id) ON DELETE CASCADE,
+    CONSTRAINT fk_user_points_agg_apparatus FOREIGN KEY (apparatus_id) REFERENCES apparatus (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_user_points_agg_competition ON user_points_agg (competition_id);
+CREATE INDEX idx_user_points_agg_apparatus ON user_points_agg (apparatus_id);
+
+COMMENT
+ON TABLE user_points_agg IS 'Leaderboard sums per user, competition, apparatus and gymnast gender. Maintained by triggers.';
+
+-- Adds (p_sign = 1) or removes (p_sign = -1) the contribution of the predictions on one competition entry.
+-- p_user_id restricts the change to a single user's prediction, NULL applies it to all predictions of the entry.
+-- Removal only updates existing rows, so it is a no-op while the referenced rows are being cascade-deleted.
+CREATE OR REPLACE FUNCTION user_points_agg_apply(
+    p_entry_id BIGINT,
+    p_user_id BIGINT,
+    p_sign INTEGER
+) RETURNS VOID AS
+$$
+BEGIN
+    IF p_sign > 0 THEN
+        INSERT INTO user_points_agg AS agg (user_id, competition_id, apparatus_id, gender,
+                                            total_points, exact_predictions, total_predictions)
+        SELECT scored.user_id,
+               scored.competition_id,
+               scored.apparatus_id,
+               scored.gender,
+               scored.points,
+               CASE WHEN scored.points = 3 THEN 1 ELSE 0 END,
+               1
+        FROM (SELECT p.user_id,
+                     ce.competition_id,
+                     ce.apparatus_id,
+                     g.gender,
+                     calculate_points(p.predicted_score, ce.actual_score) AS points
+              FROM competition_entry ce
+                       JOIN gymnast g ON g.id = ce.gymnast_id
+                       JOIN prediction p ON p.competition_entry_id = ce.id
+              WHERE ce.id = p_entry_id
+                AND ce.actual_score IS NOT NULL
+                AND (p_user_id IS NULL OR p.user_id = p_user_id)) scored
+        ON CONFLICT (user_id, competition_id, apparatus_id, gender) DO UPDATE
+            SET total_points      = agg.total_points + EXCLUDED.total_points,
+                exact_predictions = agg.exact_predictions + EXCLUDED.exact_predictions,
+                total_predictions = agg.total_predictions + EXCLUDED.total_predictions;
+    ELSE
+        UPDATE user_points_agg agg
+        SET total_points      = agg.total_points - scored.points,
+            exact_predictions = agg.exact_predictions - CASE WHEN scored.points = 3 THEN 1 ELSE 0 END,
+            total_predictions = agg.total_predictions - 1
+        FROM (SELECT p.user_id,
+                     ce.competition_id,
+                     ce.apparatus_id,
+                     g.gender,
+                     calculate_points(p.predicted_score, ce.actual_score) AS points
+              FROM competition_entry ce
+                       JOIN gymnast g ON g.id = ce.gymnast_id
+                       JOIN prediction p ON p.competition_entry_id = ce.id
+              WHERE ce.id = p_entry_id
+                AND ce.actual_score IS NOT NULL
+                AND (p_user_id IS NULL OR p.user_id = p_user_id)) scored
+        WHERE agg.user_id = scored.user_id
+          AND agg.competition_id = scored.competition_id
+          AND agg.apparatus_id = scored.apparatus_id
+          AND agg.gender = scored.gender;
+
+        DELETE
+        FROM user_points_agg agg
+        WHERE agg.total_predictions = 0
+          AND agg.competition_id = (SELECT competition_id FROM competition_entry WHERE id = p_entry_id)
+          AND (p_user_id IS NULL OR agg.user_id = p_user_id);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Old contributions are removed BEFORE the row changes (while it is still visible with its old values),
+-- new contributions are added AFTER the change.
+CREATE OR REPLACE FUNCTION competition_entry_points_agg_before() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_points_agg_apply(OLD.id, NULL, -1);
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION competition_entry_points_agg_after() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_points_agg_apply(NEW.id, NULL, 1);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_competition_entry_points_agg_before
+    BEFORE UPDATE OF actual_score, competition_id, gymnast_id, apparatus_id OR DELETE
+    ON competition_entry
+    FOR EACH ROW
+EXECUTE FUNCTION competition_entry_points_agg_before();
+
+CREATE TRIGGER trg_competition_entry_points_agg_after
+    AFTER UPDATE OF actual_score, competition_id, gymnast_id, apparatus_id
+    ON competition_entry
+    FOR EACH ROW
+EXECUTE FUNCTION competition_entry_points_agg_after();
+
+CREATE OR REPLACE FUNCTION prediction_points_agg_before() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_points_agg_apply(OLD.competition_entry_id, OLD.user_id, -1);
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION prediction_points_agg_after() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_points_agg_apply(NEW.competition_entry_id, NEW.user_id, 1);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_prediction_points_agg_before
+    BEFORE UPDATE OF predicted_score, user_id, competition_entry_id OR DELETE
+    ON prediction
+    FOR EACH ROW
+EXECUTE FUNCTION prediction_points_agg_before();
+
+CREATE TRIGGER trg_prediction_points_agg_after
+    AFTER INSERT OR UPDATE OF predicted_score, user_id, competition_entry_id
+    ON prediction
+    FOR EACH ROW
+EXECUTE FUNCTION prediction_points_agg_after();
+
+-- The gymnast's gender is part of the aggregate key, so gender changes and deletions
+-- (which cascade to competition_entry after the gymnast row is gone) are handled here.
+CREATE OR REPLACE FUNCTION gymnast_points_agg_before() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_points_agg_apply(ce.id, NULL, -1)
+    FROM competition_entry ce
+    WHERE ce.gymnast_id = OLD.id;
+    IF TG_OP = 'DELETE' THEN
+        RETURN OLD;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION gymnast_points_agg_after() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_points_agg_apply(ce.id, NULL, 1)
+    FROM competition_entry ce
+    WHERE ce.gymnast_id = NEW.id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_gymnast_points_agg_before
+    BEFORE UPDATE OF gender OR DELETE
+    ON gymnast
+    FOR EACH ROW
+EXECUTE FUNCTION gymnast_points_agg_before();
+
+CREATE TRIGGER trg_gymnast_points_agg_after
+    AFTER UPDATE OF gender
+    ON gymnast
+    FOR EACH ROW
+EXECUTE FUNCTION gymnast_points_agg_after();
+
+-- Backfill from existing data
+INSERT INTO user_points_agg (user_id, competition_id, apparatus_id, gender,
+                             total_points, exact_predictions, total_predictions)
+SELECT scored.user_id,
+       scored.competition_id,
+       scored.apparatus_id,
+       scored.gender,
+       SUM(scored.points),
+       COUNT(*) FILTER (WHERE scored.points = 3),
+       COUNT(*)
+FROM (SELECT p.user_id,
+             ce.competition_id,
+             ce.apparatus_id,
+             g.gender,
+             calculate_points(p.predicted_score, ce.actual_score) AS points
+      FROM prediction p
+               JOIN competition_entry ce ON ce.id = p.competition_entry_id
+               JOIN gymnast g ON g.id = ce.gymnast_id
+      WHERE ce.actual_score IS NOT NULL) scored
+GROUP BY scored.user_id, scored.competition_id, scored.apparatus_id, scored.gender;
@@ -0,0 +1,23 @@
+-- Overall rank of every user after each finished competition
+-- Written as one set-based snapshot when a competition is finished, used to show rank trends (UP/DOWN/NEW).
+
+CREATE TABLE rank_history
+(
+    competition_id    BIGINT                   NOT NULL,
+    user_id           BIGINT                   NOT NULL,
+    rank              INTEGER                  NOT NULL,
+    total_points      INTEGER                  NOT NULL,
+    exact_predictions INTEGER                  NOT NULL,
+    total_predictions INTEGER                  NOT NULL,
+    recorded_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_rank_history PRIMARY KEY (competition_id, user_id),
+    CONSTRAINT fk_rank_history_competition FOREIGN KEY (competition_id) REFERENCES competition (id) ON DELETE CASCADE,
+    CONSTRAINT fk_rank_history_user FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_rank_history_user ON rank_history (user_id);
+
+COMMENT
+ON TABLE rank_history IS 'Overall leaderboard snapshot taken when a competition is finished';
+COMMENT
+ON COLUMN rank_history.rank IS 'Overall rank (BR-001) after the competition was finished';
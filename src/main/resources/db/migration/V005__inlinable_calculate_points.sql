@@ -0,0 +1,38 @@
+-- Replace the plpgsql calculate_points() with a single-expression SQL function
+-- PostgreSQL inlines LANGUAGE sql functions consisting of one SELECT into the calling query, so the
+-- leaderboard aggregation no longer pays a PL/pgSQL call per prediction and stays eligible for parallel plans.
+-- The rules are unchanged (see V002):
+-- - Exact match (< 0.001 difference): 3 points
+-- - Within 5% deviation: 2 points
+-- - Within 10% deviation: 1 point
+-- - More than 10% deviation, missing or invalid scores: 0 points
+
+-- Keep the previous implementation as reference for the parity tests
+ALTER FUNCTION calculate_points(NUMERIC, NUMERIC) RENAME TO calculate_points_plpgsql;
+
+COMMENT ON FUNCTION calculate_points_plpgsql(NUMERIC, NUMERIC) IS
+    'Previous plpgsql implementation of calculate_points(), only used to verify the SQL implementation';
+
+-- Not STRICT, a NULL score returns 0 and STRICT functions are not inlined if the arguments could be NULL
+CREATE FUNCTION calculate_points(
+    predicted NUMERIC(5, 3),
+    actual NUMERIC(5, 3)
+) RETURNS INTEGER AS
+$$
+SELECT CASE
+           WHEN actual IS NULL OR predicted IS NULL THEN 0
+           -- Validate scores are within valid range (BR-003)
+           WHEN actual < 0.0 OR actual > 20.0 OR predicted < 0.0 OR predicted > 20.0 THEN 0
+           -- Exact match (BR-001)
+           WHEN ABS(predicted - actual) < 0.001 THEN 3
+           -- If actual is essentially zero, only exact match gets points
+           WHEN actual < 0.001 THEN 0
+           -- Percentage deviation thresholds (BR-001)
+           WHEN (ABS(predicted - actual) / actual) * 100.0 <= 5.0 THEN 2
+           WHEN (ABS(predicted - actual) / actual) * 100.0 <= 10.0 THEN 1
+           ELSE 0
+           END
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE;
+
+COMMENT ON FUNCTION calculate_points(NUMERIC, NUMERIC) IS
+    'Calculates prediction points: 3 (exact), 2 (within 5%), 1 (within 10%), 0 (more than 10% off)';
@@ -0,0 +1,100 @@
+-- Frozen per-competition leaderboard totals
+-- Once a competition is finished, the points of its users no longer change. Its rows in user_points_agg
+-- (per apparatus and gymnast gender) are rolled up to one row per user, so the overall leaderboard and
+-- date range leaderboards sum up one row per user and finished competition.
+-- Competitions that are not finished yet are still read from user_points_agg.
+
+CREATE TABLE user_competition_points
+(
+    user_id           BIGINT  NOT NULL,
+    competition_id    BIGINT  NOT NULL,
+    total_points      INTEGER NOT NULL,
+    exact_predictions INTEGER NOT NULL,
+    total_predictions INTEGER NOT NULL,
+    CONSTRAINT pk_user_competition_points PRIMARY KEY (user_id, competition_id),
+    CONSTRAINT fk_user_competition_points_user FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE CASCADE,
+    CONSTRAINT fk_user_competition_points_competition FOREIGN KEY (competition_id) REFERENCES competition (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_user_competition_points_competition ON user_competition_points (competition_id);
+
+COMMENT
+ON TABLE user_competition_points IS 'Leaderboard totals per user of finished competitions. Maintained by triggers.';
+
+-- Recalculates the frozen totals of a competition (p_user_id NULL: of all users) from user_points_agg.
+-- Rows are only kept while the competition is finished.
+CREATE OR REPLACE FUNCTION user_competition_points_refresh(
+    p_competition_id BIGINT,
+    p_user_id BIGINT
+) RETURNS VOID AS
+$$
+BEGIN
+    DELETE
+    FROM user_competition_points
+    WHERE competition_id = p_competition_id
+      AND (p_user_id IS NULL OR user_id = p_user_id);
+
+    INSERT INTO user_competition_points (user_id, competition_id, total_points, exact_predictions, total_predictions)
+    SELECT agg.user_id,
+           agg.competition_id,
+           SUM(agg.total_points),
+           SUM(agg.exact_predictions),
+           SUM(agg.total_predictions)
+    FROM user_points_agg agg
+             JOIN competition c ON c.id = agg.competition_id
+    WHERE agg.competition_id = p_competition_id
+      AND (p_user_id IS NULL OR agg.user_id = p_user_id)
+      AND c.status = 'finished'
+    GROUP BY agg.user_id, agg.competition_id
+    HAVING SUM(agg.total_predictions) > 0;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Freezes the totals when a competition is finished and drops them if it is reopened
+CREATE OR REPLACE FUNCTION competition_status_points_refresh() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM user_competition_points_refresh(NEW.id, NULL);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_competition_status_points_refresh
+    AFTER UPDATE OF status
+    ON competition
+    FOR EACH ROW
+    WHEN (OLD.status IS DISTINCT FROM NEW.status)
+EXECUTE FUNCTION competition_status_points_refresh();
+
+-- Keeps frozen totals right if scores of a finished competition are corrected
+CREATE OR REPLACE FUNCTION user_points_agg_competition_refresh() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') AND EXISTS(SELECT 1 FROM competition WHERE id = OLD.competition_id AND status = 'finished') THEN
+        PERFORM user_competition_points_refresh(OLD.competition_id, OLD.user_id);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND EXISTS(SELECT 1 FROM competition WHERE id = NEW.competition_id AND status = 'finished') THEN
+        PERFORM user_competition_points_refresh(NEW.competition_id, NEW.user_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_user_points_agg_competition_refresh
+    AFTER INSERT OR UPDATE OR DELETE
+    ON user_points_agg
+    FOR EACH ROW
+EXECUTE FUNCTION user_points_agg_competition_refresh();
+
+-- Backfill finished competitions
+INSERT INTO user_competition_points (user_id, competition_id, total_points, exact_predictions, total_predictions)
+SELECT agg.user_id,
+       agg.competition_id,
+       SUM(agg.total_points),
+       SUM(agg.exact_predictions),
+       SUM(agg.total_predictions)
+FROM user_points_agg agg
+         JOIN competition c ON c.id = agg.competition_id
+WHERE c.status = 'finished'
+GROUP BY agg.user_id, agg.competition_id
+HAVING SUM(agg.total_predictions) > 0;
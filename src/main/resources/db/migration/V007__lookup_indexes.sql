@@ -0,0 +1,10 @@
+-- Indexes found missing by QueryPlanRegressionTest
+-- Username and email lookups are case-insensitive (lower(username) = lower(?)), which cannot use the plain
+-- column indexes and scanned all users on every login and registration check.
+
+CREATE INDEX idx_app_user_username_lower ON app_user (lower(username));
+CREATE INDEX idx_app_user_email_lower ON app_user (lower(email));
+
+-- Duplicates of the indexes behind the UNIQUE constraints
+DROP INDEX IF EXISTS idx_user_username;
+DROP INDEX IF EXISTS idx_user_email;
@@ -0,0 +1,30 @@
+-- Private leagues
+-- Friends and clubs rank their members among themselves. League rankings are derived in memory from the
+-- global rankings (intersected with a bitmap of the member IDs), so no leaderboard query joins these tables.
+
+CREATE TABLE league
+(
+    id         BIGSERIAL PRIMARY KEY,
+    name       VARCHAR(100)             NOT NULL,
+    -- Shared with friends to join the league
+    join_code  VARCHAR(16)              NOT NULL UNIQUE,
+    owner_id   BIGINT                   NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_league_owner FOREIGN KEY (owner_id) REFERENCES app_user (id) ON DELETE CASCADE
+);
+
+CREATE TABLE league_member
+(
+    league_id BIGINT                   NOT NULL,
+    user_id   BIGINT                   NOT NULL,
+    joined_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_league_member PRIMARY KEY (league_id, user_id),
+    CONSTRAINT fk_league_member_league FOREIGN KEY (league_id) REFERENCES league (id) ON DELETE CASCADE,
+    CONSTRAINT fk_league_member_user FOREIGN KEY (user_id) REFERENCES app_user (id) ON DELETE CASCADE
+);
+
+-- Leagues of a user
+CREATE INDEX idx_league_member_user ON league_member (user_id);
+
+COMMENT
+ON TABLE league IS 'Private leagues ranking their members among themselves.';
@@ -0,0 +1,57 @@
+-- Append-only log of actual score changes
+-- competition_entry only holds the current actual score. Every change is logged by a trigger, so the
+-- leaderboard of a competition can be replayed score by score. The ID orders the events.
+
+CREATE TABLE score_event
+(
+    id                   BIGSERIAL PRIMARY KEY,
+    competition_id       BIGINT                   NOT NULL,
+    competition_entry_id BIGINT                   NOT NULL,
+    actual_score         NUMERIC(5, 3), -- NULL if the score was removed
+    previous_score       NUMERIC(5, 3),
+    created_at           TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_score_event_competition FOREIGN KEY (competition_id) REFERENCES competition (id) ON DELETE CASCADE,
+    CONSTRAINT fk_score_event_competition_entry FOREIGN KEY (competition_entry_id) REFERENCES competition_entry (id) ON DELETE CASCADE
+);
+
+-- Events of a competition in log order
+CREATE INDEX idx_score_event_competition ON score_event (competition_id, id);
+CREATE INDEX idx_score_event_competition_entry ON score_event (competition_entry_id);
+
+COMMENT
+ON TABLE score_event IS 'Append-only log of actual score changes. Written by triggers.';
+
+CREATE OR REPLACE FUNCTION competition_entry_score_event() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP = 'UPDATE' THEN
+        INSERT INTO score_event (competition_id, competition_entry_id, actual_score, previous_score)
+        VALUES (NEW.competition_id, NEW.id, NEW.actual_score, OLD.actual_score);
+    ELSE
+        INSERT INTO score_event (competition_id, competition_entry_id, actual_score)
+        VALUES (NEW.competition_id, NEW.id, NEW.actual_score);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_competition_entry_score_event_insert
+    AFTER INSERT
+    ON competition_entry
+    FOR EACH ROW
+    WHEN (NEW.actual_score IS NOT NULL)
+EXECUTE FUNCTION competition_entry_score_event();
+
+CREATE TRIGGER trg_competition_entry_score_event_update
+    AFTER UPDATE OF actual_score
+    ON competition_entry
+    FOR EACH ROW
+    WHEN (OLD.actual_score IS DISTINCT FROM NEW.actual_score)
+EXECUTE FUNCTION competition_entry_score_event();
+
+-- Backfill the current scores, the history before this migration is lost
+INSERT INTO score_event (competition_id, competition_entry_id, actual_score, created_at)
+SELECT ce.competition_id, ce.id, ce.actual_score, ce.updated_at
+FROM competition_entry ce
+WHERE ce.actual_score IS NOT NULL
+ORDER BY ce.updated_at, ce.id;
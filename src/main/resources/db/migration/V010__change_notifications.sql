@@ -0,0 +1,108 @@
+-- Change notifications for the in-memory caches of all application nodes
+-- Committed changes are sent on the channel kututipp_changes as JSON: {"type": ..., "id": ..., "origin": ...}.
+-- The origin is the application_name of the writing connection, so a node can skip its own changes.
+-- Identical payloads of a transaction are delivered once, so bulk changes send one notification per ID.
+
+CREATE OR REPLACE FUNCTION notify_change(p_type TEXT, p_id BIGINT) RETURNS VOID AS
+$$
+BEGIN
+    PERFORM pg_notify('kututipp_changes', json_build_object(
+            'type', p_type,
+            'id', p_id,
+            'origin', current_setting('application_name'))::TEXT);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Actual scores: the ID is the competition entry
+CREATE OR REPLACE FUNCTION competition_entry_notify_change() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM notify_change('score', OLD.id);
+    ELSE
+        PERFORM notify_change('score', NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_competition_entry_notify_change_insert
+    AFTER INSERT
+    ON competition_entry
+    FOR EACH ROW
+    WHEN (NEW.actual_score IS NOT NULL)
+EXECUTE FUNCTION competition_entry_notify_change();
+
+CREATE TRIGGER trg_competition_entry_notify_change_update
+    AFTER UPDATE OF actual_score
+    ON competition_entry
+    FOR EACH ROW
+    WHEN (OLD.actual_score IS DISTINCT FROM NEW.actual_score)
+EXECUTE FUNCTION competition_entry_notify_change();
+
+CREATE TRIGGER trg_competition_entry_notify_change_delete
+    AFTER DELETE
+    ON competition_entry
+    FOR EACH ROW
+    WHEN (OLD.actual_score IS NOT NULL)
+EXECUTE FUNCTION competition_entry_notify_change();
+
+-- Competitions: status changes freeze totals and record the rank history
+CREATE OR REPLACE FUNCTION competition_notify_change() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM notify_change('competition', OLD.id);
+    ELSE
+        PERFORM notify_change('competition', NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_competition_notify_change
+    AFTER INSERT OR UPDATE OR DELETE
+    ON competition
+    FOR EACH ROW
+EXECUTE FUNCTION competition_notify_change();
+
+-- Predictions only change leaderboards if their entry is scored, the ID is the competition entry
+CREATE OR REPLACE FUNCTION prediction_notify_change() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE')
+        AND EXISTS(SELECT 1 FROM competition_entry WHERE id = OLD.competition_entry_id AND actual_score IS NOT NULL) THEN
+        PERFORM notify_change('prediction', OLD.competition_entry_id);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE')
+        AND EXISTS(SELECT 1 FROM competition_entry WHERE id = NEW.competition_entry_id AND actual_score IS NOT NULL) THEN
+        PERFORM notify_change('prediction', NEW.competition_entry_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_prediction_notify_change
+    AFTER INSERT OR UPDATE OR DELETE
+    ON prediction
+    FOR EACH ROW
+EXECUTE FUNCTION prediction_notify_change();
+
+-- League members, the ID is the league
+CREATE OR REPLACE FUNCTION league_member_notify_change() RETURNS TRIGGER AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM notify_change('league', OLD.league_id);
+    ELSE
+        PERFORM notify_change('league', NEW.league_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_league_member_notify_change
+    AFTER INSERT OR UPDATE OR DELETE
+    ON league_member
+    FOR EACH ROW
+EXECUTE FUNCTION league_member_notify_change();
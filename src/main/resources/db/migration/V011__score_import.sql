@@ -0,0 +1,19 @@
+-- Staging table for bulk imports of actual scores
+-- The rows of a results file are loaded with COPY and applied to competition_entry with one set-based UPDATE.
+-- UNLOGGED skips the write-ahead log; the rows only live for the importing transaction, so losing them on a
+-- crash does not matter.
+
+CREATE UNLOGGED TABLE score_import
+(
+    import_id      UUID          NOT NULL,
+    line_number    INTEGER       NOT NULL,
+    gymnast_name   VARCHAR(255)  NOT NULL,
+    apparatus_name VARCHAR(100)  NOT NULL,
+    actual_score   NUMERIC(5, 3) NOT NULL,
+    CONSTRAINT pk_score_import PRIMARY KEY (import_id, line_number),
+    -- Same range as calculate_points() (BR-003)
+    CONSTRAINT check_score_import_range CHECK (actual_score >= 0 AND actual_score <= 20)
+);
+
+COMMENT
+ON TABLE score_import IS 'Staged rows of actual score imports. Emptied by the importing transaction.';
@@ -0,0 +1,46 @@
+-- Rank history snapshots when a competition is finished
+-- Competitions are finished by updating their status, by the application or directly in the database.
+-- The overall ranking (BR-001) is recorded in rank_history in the same transaction, it is the base of
+-- the rank trends. A competition that is finished again replaces its snapshot.
+
+-- The overall totals equal the sums of user_points_agg, the frozen totals of user_competition_points are
+-- rolled up from it
+CREATE OR REPLACE FUNCTION rank_history_snapshot(p_competition_id BIGINT) RETURNS VOID AS
+$$
+BEGIN
+    DELETE
+    FROM rank_history
+    WHERE competition_id = p_competition_id;
+
+    INSERT INTO rank_history (competition_id, user_id, rank, total_points, exact_predictions, total_predictions)
+    SELECT p_competition_id,
+           totals.user_id,
+           RANK() OVER (ORDER BY totals.total_points DESC, totals.exact_predictions DESC, totals.total_predictions DESC),
+           totals.total_points,
+           totals.exact_predictions,
+           totals.total_predictions
+    FROM (SELECT agg.user_id,
+                 SUM(agg.total_points)::INTEGER      AS total_points,
+                 SUM(agg.exact_predictions)::INTEGER AS exact_predictions,
+                 SUM(agg.total_predictions)::INTEGER AS total_predictions
+          FROM user_points_agg agg
+                   JOIN app_user u ON u.id = agg.user_id
+          WHERE agg.total_predictions > 0
+          GROUP BY agg.user_id) totals;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION competition_status_rank_history() RETURNS TRIGGER AS
+$$
+BEGIN
+    PERFORM rank_history_snapshot(NEW.id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_competition_status_rank_history
+    AFTER UPDATE OF status
+    ON competition
+    FOR EACH ROW
+    WHEN (NEW.status = 'finished' AND OLD.status IS DISTINCT FROM NEW.status)
+EXECUTE FUNCTION competition_status_rank_history();
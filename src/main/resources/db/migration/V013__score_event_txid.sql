@@ -0,0 +1,14 @@
+-- Transaction IDs of the score events
+-- Event IDs are taken from the sequence when the event is written, not when its transaction commits. An event
+-- with a lower ID can become visible after one with a higher ID, so readers cannot continue after the last ID
+-- they have seen. They continue from the oldest transaction that was still running instead, see
+-- ScoreEventRepository, and skip the events they already have.
+
+ALTER TABLE score_event
+    ADD COLUMN txid BIGINT NOT NULL DEFAULT pg_current_xact_id()::TEXT::BIGINT;
+
+COMMENT
+ON COLUMN score_event.txid IS 'ID of the writing transaction (pg_current_xact_id), used to read events committed late';
+
+-- Events of a competition written since a transaction
+CREATE INDEX idx_score_event_competition_txid ON score_event (competition_id, txid);
@@ -0,0 +1,71 @@
+package ch.martinelli.fun.kututipp.api;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.service.ScoresVersion;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(TestcontainersConfiguration.class)
+class LeaderboardControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ScoresVersion scoresVersion;
+
+    @Test
+    void shouldAnswerNotModifiedUntilScoresChange() throws Exception {
+        var etag = mockMvc.perform(get(LeaderboardController.LEADERBOARD_PATH))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.version").value(scoresVersion.current()))
+                .andExpect(jsonPath("$.entries").isArray())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isEqualTo("\"" + scoresVersion.etag(scoresVersion.current()) + "\"");
+
+        mockMvc.perform(get(LeaderboardController.LEADERBOARD_PATH).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        scoresVersion.increment();
+
+        mockMvc.perform(get(LeaderboardController.LEADERBOARD_PATH).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + scoresVersion.etag(scoresVersion.current()) + "\""));
+    }
+
+    @Test
+    void shouldOnlyExportForAdministrators() throws Exception {
+        // Anonymous requests are redirected to the login view (or rejected)
+        mockMvc.perform(get(LeaderboardExportController.EXPORT_PATH))
+                .andExpect(result -> assertThat(result.getResponse().getStatus()).isIn(302, 401));
+
+        mockMvc.perform(get(LeaderboardExportController.EXPORT_PATH).with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get(LeaderboardExportController.EXPORT_PATH).with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"leaderboard.csv\""))
+                .andExpect(content().string(startsWith("rank,username,total_points")));
+    }
+}
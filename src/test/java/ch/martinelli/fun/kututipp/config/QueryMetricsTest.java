@@ -0,0 +1,98 @@
+package ch.martinelli.fun.kututipp.config;
+
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QueryMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldRecordLatencyAndRowsByMethod() {
+        var id = DSL.field("id", SQLDataType.BIGINT);
+        var result = DSL.using(SQLDialect.POSTGRES).newResult(id);
+        for (var i = 1L; i <= 3; i++) {
+            var record = DSL.using(SQLDialect.POSTGRES).newRecord(id);
+            record.set(id, i);
+            result.add(record);
+        }
+        var dsl = dsl(_ -> new MockResult[]{new MockResult(result.size(), result)});
+
+        fetchUsers(dsl);
+        fetchUsers(dsl);
+
+        var timer = meterRegistry.get(QueryMetrics.QUERY_METER)
+                .tag("method", "QueryMetricsTest.fetchUsers")
+                .tag("type", "read")
+                .tag("outcome", "success")
+                .timer();
+        assertThat(timer.count()).isEqualTo(2);
+
+        var rows = meterRegistry.get(QueryMetrics.ROWS_METER).tag("method", "QueryMetricsTest.fetchUsers").summary();
+        assertThat(rows.count()).isEqualTo(2);
+        assertThat(rows.totalAmount()).isEqualTo(6);
+    }
+
+    @Test
+    void shouldRecordAffectedRowsOfWrites() {
+        var dsl = dsl(_ -> new MockResult[]{new MockResult(2, null)});
+
+        dsl.update(DSL.table("app_user")).set(DSL.field("email", String.class), "alice@example.com").execute();
+
+        var rows = meterRegistry.get(QueryMetrics.ROWS_METER)
+                .tag("method", "QueryMetricsTest.shouldRecordAffectedRowsOfWrites")
+                .tag("type", "write")
+                .summary();
+        assertThat(rows.totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRecordFailures() {
+        var dsl = dsl(_ -> {
+            throw new SQLException("canceling statement due to statement timeout", "57014");
+        });
+
+        assertThatThrownBy(() -> fetchUsers(dsl)).isInstanceOf(DataAccessException.class);
+
+        var timer = meterRegistry.get(QueryMetrics.QUERY_METER)
+                .tag("method", "QueryMetricsTest.fetchUsers")
+                .tag("outcome", "error")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAttributeLambdasToEnclosingMethod() {
+        assertThat(QueryMetrics.methodTag(LeaderboardRepository.class, "getCompetitionLeaderboard"))
+                .isEqualTo("LeaderboardRepository.getCompetitionLeaderboard");
+        assertThat(QueryMetrics.methodTag(LeaderboardRepository.class, "lambda$getLeaderboardCube$2"))
+                .isEqualTo("LeaderboardRepository.getLeaderboardCube");
+        assertThat(QueryMetrics.methodTag(null, "unknown")).isEqualTo("unknown");
+    }
+
+    private DSLContext dsl(MockDataProvider provider) {
+        return DSL.using(new DefaultConfiguration()
+                .set(new MockConnection(provider))
+                .set(SQLDialect.POSTGRES)
+                .set(new QueryMetrics(meterRegistry)));
+    }
+
+    private static void fetchUsers(DSLContext dsl) {
+        dsl.select(DSL.field("id", SQLDataType.BIGINT)).from(DSL.table("app_user")).fetch();
+    }
+}
@@ -0,0 +1,245 @@
+package ch.martinelli.fun.kututipp.config;
+
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.db.enums.UserRole;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.service.LeaderboardEngine;
+import ch.martinelli.fun.kututipp.service.LeaderboardService;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.impl.DSL.field;
+
+/**
+ * Runs the application against a primary and a hot standby replicating from it with streaming replication.
+ */
+@Testcontainers
+// The replay is paused in a test, the replica must not be considered lagging meanwhile
+@SpringBootTest(properties = "kututipp.datasource.replica.max-lag=1h")
+class ReplicaDataSourceConfigTest {
+
+    private static final DockerImageName POSTGRES = DockerImageName.parse("postgres:16.1");
+
+    private static final Network network = Network.newNetwork();
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>(POSTGRES)
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withCommand("postgres", "-c", "fsync=off", "-c", "wal_level=replica", "-c", "max_wal_senders=4")
+            // The default pg_hba.conf only allows local replication connections
+            .withCopyToContainer(Transferable.of("echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\""),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+
+    // Clones the primary and starts as hot standby, pg_basebackup -R configures the replication connection
+    @Container
+    static final GenericContainer<?> replica = new GenericContainer<>(POSTGRES)
+            .dependsOn(primary)
+            .withNetwork(network)
+            .withEnv("PGDATA", "/var/lib/postgresql/data")
+            .withEnv("PGPASSWORD", "test")
+            .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+            .withCreateContainerCmdModifier(cmd -> cmd.withEntrypoint("bash", "-c", """
+                    until pg_basebackup -h primary -U test -D "$PGDATA" -R -X stream; do sleep 1; done
+                    chown -R postgres "$PGDATA" && chmod 700 "$PGDATA"
+                    exec gosu postgres postgres -c hot_standby=on
+                    """))
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("kututipp.datasource.replica.url", () -> "jdbc:postgresql://%s:%d/test".formatted(
+                replica.getHost(), replica.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT)));
+        registry.add("kututipp.datasource.replica.username", () -> "test");
+        registry.add("kututipp.datasource.replica.password", () -> "test");
+    }
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private ReadReplica readReplica;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LeaderboardEngine leaderboardEngine;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @BeforeEach
+    void checkReplica() {
+        readReplica.check();
+        assertThat(readReplica.isAvailable()).isTrue();
+    }
+
+    @Test
+    void shouldRunReadOnlyTransactionsOnReplica() {
+        assertThat(isInRecovery(true)).isTrue();
+    }
+
+    @Test
+    void shouldRunOtherWorkOnPrimary() {
+        assertThat(isInRecovery(false)).isFalse();
+        assertThat(dsl.select(field("pg_is_in_recovery()", Boolean.class)).fetchSingle().value1()).isFalse();
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhileReplicaIsUnavailable() {
+        readReplica.markUnavailable(new IllegalStateException("Replica down"));
+
+        assertThat(isInRecovery(true)).isFalse();
+
+        readReplica.check();
+        assertThat(isInRecovery(true)).isTrue();
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWhileReplicaDoesNotStream() throws Exception {
+        var primaryConnInfo = executeOnReplica("SHOW primary_conninfo");
+        setPrimaryConnInfo("");
+        try {
+            // The WAL receiver stops, everything received so far has been replayed
+            for (var attempt = 0; attempt < 50 && readReplica.isAvailable(); attempt++) {
+                Thread.sleep(100);
+                readReplica.check();
+            }
+            assertThat(readReplica.isAvailable()).isFalse();
+            assertThat(isInRecovery(true)).isFalse();
+        } finally {
+            setPrimaryConnInfo(primaryConnInfo);
+        }
+
+        for (var attempt = 0; attempt < 100 && !readReplica.isAvailable(); attempt++) {
+            Thread.sleep(100);
+            readReplica.check();
+        }
+        assertThat(readReplica.isAvailable()).isTrue();
+    }
+
+    @Test
+    void shouldLoadOverallLeaderboardFromPrimary() throws SQLException {
+        setReplayPaused(true);
+        try {
+            // Committed on the primary, but not yet replayed on the replica
+            var userId = createRankedUser();
+            assertThat(existsUser(userId, true)).isFalse();
+
+            leaderboardEngine.reload();
+
+            assertThat(leaderboardService.getLeaderboardPosition(LeaderboardFilter.empty(), userId)).isNotNegative();
+            assertThat(leaderboardEngine.getRank(userId)).isPositive();
+        } finally {
+            setReplayPaused(false);
+        }
+    }
+
+    private boolean isInRecovery(boolean readOnly) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(_ ->
+                dsl.select(field("pg_is_in_recovery()", Boolean.class)).fetchSingle().value1());
+    }
+
+    private boolean existsUser(Long userId, boolean readOnly) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return Boolean.TRUE.equals(transactionTemplate.execute(_ -> dsl.fetchExists(APP_USER, APP_USER.ID.eq(userId))));
+    }
+
+    private void setPrimaryConnInfo(String primaryConnInfo) throws SQLException {
+        executeOnReplica("ALTER SYSTEM SET primary_conninfo = '" + primaryConnInfo.replace("'", "''") + "'");
+        executeOnReplica("SELECT pg_reload_conf()");
+    }
+
+    private String executeOnReplica(String sql) throws SQLException {
+        try (var connection = readReplica.getConnection();
+             var statement = connection.createStatement()) {
+            if (!statement.execute(sql)) {
+                return null;
+            }
+            try (var resultSet = statement.getResultSet()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        }
+    }
+
+    private void setReplayPaused(boolean paused) throws SQLException {
+        try (var connection = readReplica.getConnection();
+             var statement = connection.createStatement()) {
+            statement.execute(paused ? "SELECT pg_wal_replay_pause()" : "SELECT pg_wal_replay_resume()");
+        }
+    }
+
+    private Long createRankedUser() {
+        var userId = dsl.insertInto(APP_USER)
+                .set(APP_USER.USERNAME, "replica_lag_user")
+                .set(APP_USER.EMAIL, "replica_lag_user@example.com")
+                .set(APP_USER.PASSWORD_HASH, "dummy_hash")
+                .set(APP_USER.ROLE, UserRole.USER)
+                .returningResult(APP_USER.ID)
+                .fetchOne()
+                .value1();
+        var competitionId = dsl.insertInto(COMPETITION)
+                .set(COMPETITION.NAME, "Replica Cup")
+                .set(COMPETITION.DATE, OffsetDateTime.now().minusDays(1))
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .returningResult(COMPETITION.ID)
+                .fetchOne()
+                .value1();
+        var gymnastId = dsl.insertInto(GYMNAST)
+                .set(GYMNAST.NAME, "Replica Gymnast")
+                .set(GYMNAST.TEAM_NAME, "Team Replica")
+                .set(GYMNAST.GENDER, GenderType.F)
+                .returningResult(GYMNAST.ID)
+                .fetchOne()
+                .value1();
+        var apparatusId = dsl.insertInto(APPARATUS)
+                .set(APPARATUS.NAME, "Replica Beam")
+                .set(APPARATUS.GENDER, GenderType.F)
+                .returningResult(APPARATUS.ID)
+                .fetchOne()
+                .value1();
+        var entryId = dsl.insertInto(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.COMPETITION_ID, competitionId)
+                .set(COMPETITION_ENTRY.GYMNAST_ID, gymnastId)
+                .set(COMPETITION_ENTRY.APPARATUS_ID, apparatusId)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.500"))
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetchOne()
+                .value1();
+        dsl.insertInto(PREDICTION)
+                .set(PREDICTION.USER_ID, userId)
+                .set(PREDICTION.COMPETITION_ENTRY_ID, entryId)
+                .set(PREDICTION.PREDICTED_SCORE, new BigDecimal("13.500"))
+                .execute();
+        return userId;
+    }
+}
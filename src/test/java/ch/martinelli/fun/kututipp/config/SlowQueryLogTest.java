@@ -0,0 +1,102 @@
+package ch.martinelli.fun.kututipp.config;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    private static final Field<String> USERNAME = DSL.field("username", SQLDataType.VARCHAR);
+
+    @Test
+    void shouldRecordSlowQueriesWithBindValuesAndMethod() {
+        var slowQueryLog = new SlowQueryLog(null, Duration.ZERO, 10, false);
+
+        findUser(dsl(slowQueryLog), "alice");
+
+        assertThat(slowQueryLog.getEntries()).singleElement().satisfies(query -> {
+            assertThat(query.method()).isEqualTo("SlowQueryLogTest.findUser");
+            assertThat(query.type()).isEqualTo("read");
+            assertThat(query.sql()).contains("where username = ?");
+            assertThat(query.bindValues()).containsExactly("alice");
+            assertThat(query.error()).isNull();
+            assertThat(query.plan()).isNull();
+        });
+    }
+
+    @Test
+    void shouldKeepNewestQueriesUpToCapacity() {
+        var slowQueryLog = new SlowQueryLog(null, Duration.ZERO, 2, false);
+        var dsl = dsl(slowQueryLog);
+
+        findUser(dsl, "alice");
+        findUser(dsl, "bob");
+        findUser(dsl, "carol");
+
+        assertThat(slowQueryLog.getEntries())
+                .extracting(query -> query.bindValues().getFirst())
+                .containsExactly("carol", "bob");
+
+        slowQueryLog.clear();
+        assertThat(slowQueryLog.getEntries()).isEmpty();
+    }
+
+    @Test
+    void shouldOnlyKeepTypesOfBindValuesOfSensitiveColumns() {
+        var slowQueryLog = new SlowQueryLog(null, Duration.ZERO, 10, false);
+
+        dsl(slowQueryLog).select(USERNAME)
+                .from(DSL.table("app_user"))
+                .where(DSL.field("email", SQLDataType.VARCHAR).eq("alice@example.com"))
+                .and(DSL.field("id", SQLDataType.BIGINT).eq(1L))
+                .fetch();
+
+        assertThat(slowQueryLog.getEntries()).singleElement()
+                .satisfies(query -> assertThat(query.bindValues()).containsExactly("(String)", "(Long)"));
+    }
+
+    @Test
+    void shouldIgnoreQueriesBelowThreshold() {
+        var slowQueryLog = new SlowQueryLog(null, Duration.ofHours(1), 10, false);
+
+        findUser(dsl(slowQueryLog), "alice");
+
+        assertThat(slowQueryLog.getEntries()).isEmpty();
+    }
+
+    @Test
+    void shouldDumpQueriesAsText() throws Exception {
+        var slowQueryLog = new SlowQueryLog(null, Duration.ZERO, 10, false);
+        findUser(dsl(slowQueryLog), "alice");
+
+        var dump = new StringWriter();
+        slowQueryLog.writeTo(dump);
+
+        assertThat(dump.toString())
+                .contains("SlowQueryLogTest.findUser (read)")
+                .contains("Bind values: [alice]");
+    }
+
+    private static DSLContext dsl(SlowQueryLog slowQueryLog) {
+        var result = DSL.using(SQLDialect.POSTGRES).newResult(USERNAME);
+        return DSL.using(new DefaultConfiguration()
+                .set(new MockConnection(_ -> new MockResult[]{new MockResult(0, result)}))
+                .set(SQLDialect.POSTGRES)
+                .set(slowQueryLog));
+    }
+
+    private static void findUser(DSLContext dsl, String username) {
+        dsl.select(USERNAME).from(DSL.table("app_user")).where(USERNAME.eq(username)).fetch();
+    }
+}
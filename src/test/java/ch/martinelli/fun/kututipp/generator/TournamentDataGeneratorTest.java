@@ -0,0 +1,71 @@
+package ch.martinelli.fun.kututipp.generator;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.UserRole;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
+import ch.martinelli.fun.kututipp.repository.LeaderboardRepository;
+import ch.martinelli.fun.kututipp.repository.UserRepository;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.stream.Collectors;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.impl.DSL.select;
+
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Transactional
+class TournamentDataGeneratorTest {
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private LeaderboardRepository leaderboardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void shouldGenerateSeasonWithConsistentLeaderboard() {
+        var settings = TournamentDataGenerator.Settings.small();
+
+        var summary = dsl.connectionResult(connection -> new TournamentDataGenerator(settings).generate(connection));
+
+        // 6 men on 6 apparatus and 6 women on 4 apparatus per competition
+        assertThat(summary.competitions()).isEqualTo(4);
+        assertThat(summary.gymnasts()).isEqualTo(12);
+        assertThat(summary.competitionEntries()).isEqualTo(4 * (6 * 6 + 6 * 4));
+        assertThat(summary.users()).isEqualTo(200);
+
+        var generatedUsers = select(APP_USER.ID).from(APP_USER).where(APP_USER.USERNAME.like("fan%"));
+        assertThat((long) dsl.fetchCount(PREDICTION, PREDICTION.USER_ID.in(generatedUsers))).isEqualTo(summary.predictions());
+        assertThat(summary.predictions()).isGreaterThan(summary.users());
+
+        assertThat(dsl.fetchCount(COMPETITION_ENTRY, COMPETITION_ENTRY.ACTUAL_SCORE.gt(new BigDecimal("20.000")))).isZero();
+        assertThat(dsl.fetchCount(PREDICTION, PREDICTION.PREDICTED_SCORE.gt(new BigDecimal("20.000")))).isZero();
+        assertThat(dsl.fetchCount(COMPETITION_ENTRY.join(COMPETITION).on(COMPETITION_ENTRY.COMPETITION_ID.eq(COMPETITION.ID)),
+                COMPETITION.STATUS.eq(CompetitionStatus.upcoming).and(COMPETITION_ENTRY.ACTUAL_SCORE.isNotNull()))).isZero();
+
+        // Aggregates rebuilt after the load match the points calculated from the predictions
+        var expected = leaderboardRepository.getLeaderboardFromPredictions(LeaderboardFilter.empty()).stream()
+                .collect(Collectors.toMap(LeaderboardRow::userId, LeaderboardRow::totalPoints));
+        var actual = leaderboardRepository.getOverallLeaderboard().stream()
+                .collect(Collectors.toMap(LeaderboardRow::userId, LeaderboardRow::totalPoints));
+        assertThat(actual).isNotEmpty().isEqualTo(expected);
+        assertThat(leaderboardRepository.getPreviousRanks().available()).isTrue();
+
+        // Rows are inserted after the reserved IDs
+        var user = userRepository.create("after_generator", "after_generator@example.com", "hash", UserRole.USER);
+        assertThat(user.getId()).isNotNull();
+    }
+}
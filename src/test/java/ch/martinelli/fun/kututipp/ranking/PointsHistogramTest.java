@@ -0,0 +1,118 @@
+package ch.martinelli.fun.kututipp.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PointsHistogramTest {
+
+    @Test
+    void shouldAnswerRankRangeAndPercentile() {
+        var histogram = new PointsHistogram();
+        histogram.put(1, 10);
+        histogram.put(2, 6);
+        histogram.put(3, 6);
+        histogram.put(4, 2);
+
+        assertThat(histogram.size()).isEqualTo(4);
+        assertThat(histogram.rankRange(1)).isEqualTo(new PointsHistogram.RankRange(1, 1));
+        assertThat(histogram.rankRange(2)).isEqualTo(new PointsHistogram.RankRange(2, 3));
+        assertThat(histogram.rankRange(4)).isEqualTo(new PointsHistogram.RankRange(4, 4));
+        assertThat(histogram.rankRange(5)).isNull();
+
+        assertThat(histogram.topPercent(1)).isEqualTo(25);
+        assertThat(histogram.topPercent(3)).isEqualTo(50);
+        assertThat(histogram.topPercent(4)).isEqualTo(100);
+        assertThat(histogram.percentile(1)).isEqualTo(75.0);
+        assertThat(histogram.percentile(2)).isEqualTo(25.0);
+        assertThat(histogram.percentile(4)).isZero();
+        assertThat(histogram.percentile(5)).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldMoveUserWhenPointsChange() {
+        var histogram = new PointsHistogram();
+        histogram.put(1, 10);
+        histogram.put(2, 6);
+
+        histogram.put(2, 12);
+
+        assertThat(histogram.size()).isEqualTo(2);
+        assertThat(histogram.pointsOf(2)).isEqualTo(12);
+        assertThat(histogram.rankRange(2)).isEqualTo(new PointsHistogram.RankRange(1, 1));
+        assertThat(histogram.countAbove(6)).isEqualTo(2);
+
+        assertThat(histogram.remove(2)).isTrue();
+        assertThat(histogram.remove(2)).isFalse();
+        assertThat(histogram.countAbove(6)).isEqualTo(1);
+        assertThat(histogram.maxPoints()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldGrowBeyondInitialPoints() {
+        var histogram = new PointsHistogram(10);
+        histogram.put(1, 5_000);
+        histogram.put(2, 63);
+        histogram.put(3, 64);
+
+        assertThat(histogram.maxPoints()).isEqualTo(5_000);
+        assertThat(histogram.countAbove(63)).isEqualTo(2);
+        assertThat(histogram.countAbove(64)).isEqualTo(1);
+        assertThat(histogram.countAbove(5_000)).isZero();
+        assertThat(histogram.countAbove(-1)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldDistributePointsInBucketsOfEqualWidth() {
+        var histogram = new PointsHistogram();
+        histogram.put(1, 0);
+        histogram.put(2, 4);
+        histogram.put(3, 5);
+        histogram.put(4, 9);
+
+        assertThat(histogram.distribution(2)).containsExactly(
+                new PointsHistogram.Bucket(0, 4, 2),
+                new PointsHistogram.Bucket(5, 9, 2));
+        assertThat(histogram.distribution(3)).containsExactly(
+                new PointsHistogram.Bucket(0, 3, 1),
+                new PointsHistogram.Bucket(4, 7, 2),
+                new PointsHistogram.Bucket(8, 9, 1));
+        assertThat(new PointsHistogram().distribution(10)).isEmpty();
+    }
+
+    @Test
+    void shouldRejectNegativePoints() {
+        var histogram = new PointsHistogram();
+
+        assertThatThrownBy(() -> histogram.put(1, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldMatchCountingAllUsers() {
+        var histogram = new PointsHistogram(0);
+        var points = new HashMap<Long, Integer>();
+        var random = new Random(42);
+
+        for (var i = 0; i < 5_000; i++) {
+            var userId = (long) random.nextInt(500);
+            if (random.nextInt(10) == 0) {
+                histogram.remove(userId);
+                points.remove(userId);
+            } else {
+                var userPoints = random.nextInt(300);
+                histogram.put(userId, userPoints);
+                points.put(userId, userPoints);
+            }
+        }
+
+        assertThat(histogram.size()).isEqualTo(points.size());
+        for (var threshold = -1; threshold <= 300; threshold++) {
+            var expected = points.values().stream().filter(p -> p > threshold).count();
+            assertThat(histogram.countAbove(threshold)).isEqualTo((int) expected);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ch.martinelli.fun.kututipp.ranking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class RankedLeaderboardTest {
+
+    @Test
+    void shouldRankByPointsThenExactThenTotalPredictions() {
+        var leaderboard = new RankedLeaderboard();
+        leaderboard.put(1, "alice", 6, 2, 2);
+        leaderboard.put(2, "bob", 6, 0, 3);
+        leaderboard.put(3, "charlie", 5, 1, 3);
+        leaderboard.put(4, "dave", 5, 1, 2);
+
+        assertThat(leaderboard.top(10))
+                .extracting(RankedLeaderboard.Entry::username)
+                .containsExactly("alice", "bob", "charlie", "dave");
+        assertThat(leaderboard.rankOf(1)).isEqualTo(1);
+        assertThat(leaderboard.rankOf(4)).isEqualTo(4);
+    }
+
+    @Test
+    void shouldShareRankForTiesAndSkipFollowingRank() {
+        var leaderboard = new RankedLeaderboard();
+        leaderboard.put(1, "alice", 6, 2, 2);
+        leaderboard.put(2, "bob", 4, 0, 2);
+        leaderboard.put(3, "charlie", 4, 0, 2);
+        leaderboard.put(4, "dave", 2, 0, 2);
+
+        assertThat(leaderboard.top(10))
+                .extracting(RankedLeaderboard.Entry::rank)
+                .containsExactly(1, 2, 2, 4);
+        assertThat(leaderboard.rankOf(3)).isEqualTo(2);
+
+        // A range starting in the middle of a tie still reports the shared rank
+        assertThat(leaderboard.range(2, 4))
+                .extracting(RankedLeaderboard.Entry::rank)
+                .containsExactly(2, 4);
+    }
+
+    @Test
+    void shouldUpdateRankWhenScoreChanges() {
+        var leaderboard = new RankedLeaderboard();
+        leaderboard.put(1, "alice", 6, 2, 2);
+        leaderboard.put(2, "bob", 4, 0, 2);
+
+        leaderboard.add(2, "bob", 3, 1, 1);
+
+        assertThat(leaderboard.rankOf(2)).isEqualTo(1);
+        assertThat(leaderboard.rankOf(1)).isEqualTo(2);
+        assertThat(leaderboard.top(1).getFirst().totalPoints()).isEqualTo(7);
+    }
+
+    @Test
+    void shouldRemoveUsersWithoutScoredPredictions() {
+        var leaderboard = new RankedLeaderboard();
+        leaderboard.put(1, "alice", 6, 2, 2);
+        leaderboard.put(2, "bob", 4, 0, 2);
+
+        leaderboard.put(1, "alice", 0, 0, 0);
+
+        assertThat(leaderboard.size()).isEqualTo(1);
+        assertThat(leaderboard.contains(1)).isFalse();
+        assertThat(leaderboard.rankOf(1)).isZero();
+        assertThat(leaderboard.rankOf(2)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnWindowAroundUser() {
+        var leaderboard = new RankedLeaderboard();
+        for (var userId = 1; userId <= 10; userId++) {
+            leaderboard.put(userId, "user" + userId, 100 - userId, 0, 1);
+        }
+
+        assertThat(leaderboard.window(5, 2))
+                .extracting(RankedLeaderboard.Entry::userId)
+                .containsExactly(3L, 4L, 5L, 6L, 7L);
+        assertThat(leaderboard.window(1, 2))
+                .extracting(RankedLeaderboard.Entry::rank)
+                .containsExactly(1, 2, 3);
+        assertThat(leaderboard.window(42, 2)).isEmpty();
+    }
+
+    @Test
+    void shouldReturnEntriesOfUsersOrderedByRank() {
+        var leaderboard = new RankedLeaderboard();
+        leaderboard.put(1, "alice", 6, 2, 2);
+        leaderboard.put(2, "bob", 4, 0, 2);
+        leaderboard.put(3, "charlie", 4, 0, 2);
+        leaderboard.put(4, "dave", 2, 0, 2);
+
+        assertThat(leaderboard.entriesOf(new long[]{4, 42, 3, 1}))
+                .extracting(RankedLeaderboard.Entry::username, RankedLeaderboard.Entry::rank)
+                .containsExactly(tuple("alice", 1), tuple("charlie", 2), tuple("dave", 4));
+        assertThat(leaderboard.entriesOf(new long[0])).isEmpty();
+    }
+
+    @Test
+    void shouldContinueAfterKeyOfLastEntry() {
+        var leaderboard = new RankedLeaderboard();
+        leaderboard.put(1, "alice", 6, 2, 2);
+        leaderboard.put(2, "bob", 4, 0, 2);
+        leaderboard.put(3, "charlie", 4, 0, 2);
+        leaderboard.put(4, "dave", 2, 0, 2);
+
+        var firstPage = leaderboard.top(2);
+        var last = firstPage.getLast();
+        var position = leaderboard.positionAfter(
+                last.totalPoints(), last.exactPredictions(), last.totalPredictions(), last.userId());
+
+        assertThat(position).isEqualTo(2);
+        assertThat(leaderboard.range(position, position + 2))
+                .extracting(RankedLeaderboard.Entry::username)
+                .containsExactly("charlie", "dave");
+
+        // The key of a user that has been removed in the meantime still continues at the right place
+        leaderboard.remove(2);
+        assertThat(leaderboard.positionAfter(4, 0, 2, 2)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldMatchSortedReferenceAfterRandomUpdates() {
+        var random = new Random(1);
+        var leaderboard = new RankedLeaderboard(2);
+        var reference = new HashMap<Long, int[]>();
+
+        for (var i = 0; i < 20_000; i++) {
+            long userId = random.nextInt(300);
+            if (random.nextInt(10) == 0) {
+                leaderboard.remove(userId);
+                reference.remove(userId);
+            } else {
+                var predictions = 1 + random.nextInt(5);
+                var exact = random.nextInt(predictions + 1);
+                var points = exact * 3 + random.nextInt(predictions - exact + 1) * 2;
+                leaderboard.put(userId, "user" + userId, points, exact, predictions);
+                reference.put(userId, new int[]{points, exact, predictions});
+            }
+        }
+
+        var expected = new ArrayList<>(reference.entrySet());
+        expected.sort(Comparator.<Map.Entry<Long, int[]>>comparingInt(e -> -e.getValue()[0])
+                .thenComparingInt(e -> -e.getValue()[1])
+                .thenComparingInt(e -> -e.getValue()[2])
+                .thenComparingLong(Map.Entry::getKey));
+
+        var actual = leaderboard.range(0, Integer.MAX_VALUE);
+        assertThat(actual).hasSize(expected.size());
+        for (var i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).userId()).isEqualTo(expected.get(i).getKey());
+            assertThat(leaderboard.rankOf(actual.get(i).userId())).isEqualTo(actual.get(i).rank());
+        }
+    }
+}
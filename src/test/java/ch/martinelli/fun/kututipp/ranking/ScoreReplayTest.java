@@ -0,0 +1,130 @@
+package ch.martinelli.fun.kututipp.ranking;
+
+import ch.martinelli.fun.kututipp.scoring.ScoringKernel;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ScoreReplayTest {
+
+    @Test
+    void shouldReplayStandingsScoreByScore() {
+        var replay = new ScoreReplay(List.of(
+                prediction(1, "alice", 10, "14.500"),
+                prediction(1, "alice", 11, "13.000"),
+                prediction(2, "bob", 10, "14.000"),
+                prediction(2, "bob", 11, "12.000")), 2);
+
+        replay.append(10, new BigDecimal("14.500"));
+        replay.append(11, new BigDecimal("12.000"));
+        replay.append(10, new BigDecimal("14.000"));
+
+        assertThat(replay.eventCount()).isEqualTo(3);
+        assertThat(replay.standingsAt(0)).isEmpty();
+        assertThat(replay.standingsAt(1))
+                .extracting(RankedLeaderboard.Entry::username, RankedLeaderboard.Entry::rank, RankedLeaderboard.Entry::totalPoints)
+                .containsExactly(tuple("alice", 1, 3), tuple("bob", 2, 2));
+        assertThat(replay.standingsAt(2))
+                .extracting(RankedLeaderboard.Entry::username, RankedLeaderboard.Entry::rank, RankedLeaderboard.Entry::totalPoints)
+                .containsExactly(tuple("bob", 1, 5), tuple("alice", 2, 4));
+        // The first score was corrected
+        assertThat(replay.standingsAt(3))
+                .extracting(RankedLeaderboard.Entry::username, RankedLeaderboard.Entry::rank, RankedLeaderboard.Entry::totalPoints)
+                .containsExactly(tuple("bob", 1, 6), tuple("alice", 2, 3));
+    }
+
+    @Test
+    void shouldShareRankOfTiedUsers() {
+        var replay = new ScoreReplay(List.of(
+                prediction(1, "alice", 10, "14.000"),
+                prediction(2, "bob", 10, "14.000"),
+                prediction(3, "carol", 10, "10.000")));
+
+        replay.append(10, new BigDecimal("14.000"));
+
+        assertThat(replay.standingsAt(1))
+                .extracting(RankedLeaderboard.Entry::username, RankedLeaderboard.Entry::rank)
+                .containsExactly(tuple("alice", 1), tuple("bob", 1), tuple("carol", 3));
+    }
+
+    @Test
+    void shouldRemoveUsersWhoseScoresWereRemoved() {
+        var replay = new ScoreReplay(List.of(prediction(1, "alice", 10, "14.000")));
+
+        replay.append(10, new BigDecimal("14.000"));
+        replay.append(10, null);
+        // Entry without predictions
+        replay.append(99, new BigDecimal("9.000"));
+
+        assertThat(replay.standingsAt(1)).hasSize(1);
+        assertThat(replay.standingsAt(2)).isEmpty();
+        assertThat(replay.standingsAt(3)).isEmpty();
+        assertThatThrownBy(() -> replay.standingsAt(4)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldMatchRankingFromScratchAtEveryOffset() {
+        var random = new Random(42);
+        var predictions = new ArrayList<ScoreReplay.Prediction>();
+        for (var user = 1; user <= 50; user++) {
+            for (var entry = 1; entry <= 20; entry++) {
+                if (random.nextInt(4) > 0) {
+                    predictions.add(prediction(user, "user" + user, entry, randomScore(random)));
+                }
+            }
+        }
+        var events = new ArrayList<long[]>();
+        for (var i = 0; i < 100; i++) {
+            var score = random.nextInt(10) == 0 ? ScoringKernel.NO_SCORE : ScoringKernel.toThousandths(new BigDecimal(randomScore(random)));
+            events.add(new long[]{1 + random.nextInt(20), score});
+        }
+
+        var replay = new ScoreReplay(predictions, 7);
+        for (var event : events) {
+            replay.append(event[0], score((int) event[1]));
+        }
+
+        for (var offset = 0; offset <= events.size(); offset++) {
+            assertThat(replay.standingsAt(offset)).as("offset %d", offset)
+                    .isEqualTo(rankFromScratch(predictions, events.subList(0, offset)));
+        }
+    }
+
+    private static List<RankedLeaderboard.Entry> rankFromScratch(List<ScoreReplay.Prediction> predictions, List<long[]> events) {
+        var scores = new HashMap<Long, Integer>();
+        for (var event : events) {
+            scores.put(event[0], (int) event[1]);
+        }
+
+        var leaderboard = new RankedLeaderboard();
+        for (var prediction : predictions) {
+            var actual = scores.getOrDefault(prediction.competitionEntryId(), ScoringKernel.NO_SCORE);
+            if (actual != ScoringKernel.NO_SCORE) {
+                var points = ScoringKernel.points(ScoringKernel.toThousandths(prediction.predictedScore()), actual);
+                leaderboard.add(prediction.userId(), prediction.username(), points, points == 3 ? 1 : 0, 1);
+            }
+        }
+        return leaderboard.range(0, leaderboard.size());
+    }
+
+    private static ScoreReplay.Prediction prediction(long userId, String username, long entryId, String score) {
+        return new ScoreReplay.Prediction(userId, username, entryId, new BigDecimal(score));
+    }
+
+    private static String randomScore(Random random) {
+        // Few distinct values, so there are exact matches and ties
+        return BigDecimal.valueOf(12_000 + random.nextInt(8) * 250, 3).toPlainString();
+    }
+
+    private static BigDecimal score(int thousandths) {
+        return thousandths == ScoringKernel.NO_SCORE ? null : BigDecimal.valueOf(thousandths, 3);
+    }
+}
@@ -0,0 +1,110 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.scoring.ScoringKernel;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that the SQL implementation of calculate_points() returns the same points as the
+ * previous plpgsql implementation and the Java {@link ScoringKernel}, and is inlined by the planner.
+ */
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Transactional
+class CalculatePointsFunctionTest {
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Test
+    void shouldMatchPlpgsqlImplementationOnCoarseGrid() {
+        // Every combination of scores in steps of 0.025, including invalid scores and NULL
+        var mismatches = dsl.fetchValue("""
+                WITH scores AS (SELECT s / 1000.0 AS score
+                                FROM generate_series(-25, 20025, 25) s
+                                UNION ALL
+                                SELECT NULL)
+                SELECT count(*)
+                FROM scores predicted
+                         CROSS JOIN scores actual
+                WHERE calculate_points(predicted.score, actual.score)
+                          IS DISTINCT FROM calculate_points_plpgsql(predicted.score, actual.score)
+                """, Integer.class);
+
+        assertThat(mismatches).isZero();
+    }
+
+    @Test
+    void shouldMatchPlpgsqlImplementationAtThresholds() {
+        // Every actual score on the 0.000-20.000 grid, with predictions around the exact, 5% and 10% thresholds
+        var mismatches = dsl.fetchValue("""
+                WITH actual AS (SELECT s / 1000.0 AS score
+                                FROM generate_series(0, 20000) s),
+                     predicted AS (SELECT actual.score AS actual_score,
+                                          round(actual.score * factor, 3) + delta / 1000.0 AS score
+                                   FROM actual
+                                            CROSS JOIN unnest(ARRAY [0.90, 0.95, 1.00, 1.05, 1.10]) factor
+                                            CROSS JOIN generate_series(-1, 1) delta)
+                SELECT count(*)
+                FROM predicted
+                WHERE calculate_points(predicted.score, predicted.actual_score)
+                          IS DISTINCT FROM calculate_points_plpgsql(predicted.score, predicted.actual_score)
+                """, Integer.class);
+
+        assertThat(mismatches).isZero();
+    }
+
+    @Test
+    void shouldMatchJavaScoringKernel() {
+        // Coarse grid including invalid scores and NULL, plus predictions around the thresholds of every actual score
+        var scored = dsl.fetch("""
+                WITH scores AS (SELECT s / 1000.0 AS score
+                                FROM generate_series(-50, 20050, 50) s
+                                UNION ALL
+                                SELECT NULL),
+                     pairs AS (SELECT predicted.score AS predicted, actual.score AS actual
+                               FROM scores predicted
+                                        CROSS JOIN scores actual
+                               UNION ALL
+                               SELECT round(a / 1000.0 * factor, 3) + delta / 1000.0, a / 1000.0
+                               FROM generate_series(0, 20000) a
+                                        CROSS JOIN unnest(ARRAY [0.90, 0.95, 1.00, 1.05, 1.10]) factor
+                                        CROSS JOIN generate_series(-1, 1) delta)
+                SELECT predicted, actual, calculate_points(predicted, actual) AS points
+                FROM pairs
+                """);
+
+        assertThat(scored).hasSizeGreaterThan(400_000);
+        for (var row : scored) {
+            var predicted = ScoringKernel.toThousandths(row.get("predicted", BigDecimal.class));
+            var actual = ScoringKernel.toThousandths(row.get("actual", BigDecimal.class));
+            var points = row.get("points", Integer.class);
+
+            if (ScoringKernel.points(predicted, actual) != points) {
+                throw new AssertionError("Points differ for predicted " + predicted + ", actual " + actual);
+            }
+        }
+    }
+
+    @Test
+    void shouldBeInlinedIntoLeaderboardQuery() {
+        var plan = dsl.fetch("""
+                EXPLAIN (VERBOSE)
+                SELECT p.user_id, sum(calculate_points(p.predicted_score, ce.actual_score))
+                FROM prediction p
+                         JOIN competition_entry ce ON ce.id = p.competition_entry_id
+                GROUP BY p.user_id
+                """).formatCSV(false);
+
+        assertThat(plan).doesNotContain("calculate_points").contains("CASE");
+    }
+}
@@ -0,0 +1,165 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+
+/**
+ * Measures the bytes allocated per row when mapping a leaderboard of 100k users: untyped records read by
+ * column name (the previous mapping) and by column index into {@code LeaderboardRow}. Both mappings read
+ * the same rows from a jOOQ mock connection, so only reading the JDBC result set and the mapping are
+ * measured. Not part of the regular build, run with {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LeaderboardMappingBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardMappingBenchmarkTest.class);
+
+    private static final int ROWS = 100_000;
+
+    private static final Field<Long> ID = field(name("id"), Long.class);
+    private static final Field<String> USERNAME = field(name("username"), String.class);
+
+    private DSLContext byNameDsl;
+    private LeaderboardRepository leaderboardRepository;
+
+    @Setup
+    public void setUp() {
+        Field<?>[] fields = {
+                ID,
+                USERNAME,
+                field(name("rank"), Integer.class),
+                field(name("total_points"), Integer.class),
+                field(name("total_predictions"), Integer.class),
+                field(name("exact_predictions"), Integer.class)
+        };
+        var ctx = DSL.using(SQLDialect.POSTGRES);
+        var leaderboard = ctx.newResult(fields);
+
+        // Descending points, so ranks are ascending like in the real leaderboard
+        var random = new Random(1);
+        var totalPoints = 3 * 200;
+        for (var i = 0; i < ROWS; i++) {
+            totalPoints = Math.max(0, totalPoints - random.nextInt(2));
+            var totalPredictions = Math.max(totalPoints / 3, 1 + random.nextInt(200));
+            var exactPredictions = Math.min(totalPredictions, totalPoints / 3);
+            var userId = (long) i + 1;
+
+            var record = ctx.newRecord(fields);
+            record.fromArray(userId, "fan" + userId, i + 1, totalPoints, totalPredictions, exactPredictions);
+            leaderboard.add(record);
+        }
+
+        byNameDsl = mockDsl(leaderboard);
+        leaderboardRepository = new LeaderboardRepository(mockDsl(leaderboard), Duration.ZERO);
+    }
+
+    private static DSLContext mockDsl(Result<?> result) {
+        return DSL.using(new MockConnection(_ -> new MockResult[]{new MockResult(result.size(), result)}),
+                SQLDialect.POSTGRES);
+    }
+
+    /**
+     * Previous mapping: untyped records, looked up and converted by column name.
+     */
+    @Benchmark
+    public List<LeaderboardEntryDto> mapByName() {
+        var results = byNameDsl.fetch("SELECT * FROM leaderboard");
+        var entries = new ArrayList<LeaderboardEntryDto>();
+
+        for (var result : results) {
+            var totalPoints = result.get("total_points", Integer.class);
+            var totalPredictions = result.get("total_predictions", Integer.class);
+            var avgPoints = totalPredictions == 0 ? 0 : (double) totalPoints / totalPredictions;
+            entries.add(new LeaderboardEntryDto(
+                    result.get(ID),
+                    result.get(USERNAME),
+                    result.get("rank", Integer.class),
+                    totalPoints,
+                    totalPredictions,
+                    result.get("exact_predictions", Integer.class),
+                    Math.round(avgPoints * 100.0) / 100.0,
+                    RankTrend.STABLE,
+                    false
+            ));
+        }
+        return entries;
+    }
+
+    /**
+     * Current mapping: read by column index into {@code LeaderboardRow}.
+     */
+    @Benchmark
+    public List<LeaderboardEntryDto> mapByIndex() {
+        var rows = leaderboardRepository.getOverallLeaderboard();
+        var entries = new ArrayList<LeaderboardEntryDto>(rows.size());
+
+        for (var row : rows) {
+            entries.add(row.toEntry(RankTrend.STABLE));
+        }
+        return entries;
+    }
+
+    @Test
+    void shouldAllocateLessPerRowWhenMappingByIndex() throws RunnerException {
+        // Allocations per operation don't depend on forking, and the surefire classpath can't always be forked
+        var options = new OptionsBuilder()
+                .include(LeaderboardMappingBenchmarkTest.class.getName() + "\\.map")
+                .addProfiler(GCProfiler.class)
+                .forks(0)
+                .build();
+
+        var bytesPerRow = new HashMap<String, Double>();
+        for (var result : new Runner(options).run()) {
+            var benchmark = result.getParams().getBenchmark();
+            var method = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            var allocated = result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+            bytesPerRow.put(method, allocated / ROWS);
+
+            log.info("{}: {} ms per leaderboard, {} bytes per row", method,
+                    String.format("%.1f", result.getPrimaryResult().getScore()), String.format("%.0f", allocated / ROWS));
+        }
+
+        assertThat(bytesPerRow).containsKeys("mapByName", "mapByIndex");
+        assertThat(bytesPerRow.get("mapByIndex")).isLessThan(bytesPerRow.get("mapByName"));
+    }
+}
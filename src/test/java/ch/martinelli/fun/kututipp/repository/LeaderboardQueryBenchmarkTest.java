@@ -0,0 +1,133 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the leaderboard query with the plpgsql and the SQL implementation of calculate_points()
+ * on a generated dataset. Not part of the regular build, run with {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Transactional
+class LeaderboardQueryBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardQueryBenchmarkTest.class);
+
+    private static final int USERS = 2_000;
+    private static final int COMPETITION_ENTRIES = 400;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+
+    private static final String LEADERBOARD_QUERY = """
+            SELECT u.id,
+                   u.username,
+                   sum(%1$s(p.predicted_score, ce.actual_score))                                 AS total_points,
+                   count(p.id)                                                                   AS total_predictions,
+                   count(*) FILTER (WHERE %1$s(p.predicted_score, ce.actual_score) = 3)          AS exact_predictions,
+                   rank() OVER (ORDER BY sum(%1$s(p.predicted_score, ce.actual_score)) DESC,
+                       count(*) FILTER (WHERE %1$s(p.predicted_score, ce.actual_score) = 3) DESC,
+                       count(p.id) DESC)                                                         AS rank
+            FROM app_user u
+                     JOIN prediction p ON p.user_id = u.id
+                     JOIN competition_entry ce ON ce.id = p.competition_entry_id
+            WHERE ce.actual_score IS NOT NULL
+            GROUP BY u.id, u.username
+            ORDER BY rank
+            """;
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private LeaderboardRepository leaderboardRepository;
+
+    @BeforeEach
+    void setUp() {
+        dsl.execute("""
+                INSERT INTO competition (name, date, status)
+                VALUES ('Benchmark Cup', now(), 'finished')
+                """);
+        dsl.execute("""
+                INSERT INTO apparatus (name, gender)
+                VALUES ('Benchmark Floor', 'M')
+                """);
+        dsl.execute("""
+                INSERT INTO gymnast (name, team_name, gender)
+                SELECT 'Benchmark Gymnast ' || g, 'Team ' || (g % 20), 'M'
+                FROM generate_series(1, %d) g
+                """.formatted(COMPETITION_ENTRIES));
+        dsl.execute("""
+                INSERT INTO competition_entry (competition_id, gymnast_id, apparatus_id, actual_score)
+                SELECT (SELECT id FROM competition WHERE name = 'Benchmark Cup'),
+                       g.id,
+                       (SELECT id FROM apparatus WHERE name = 'Benchmark Floor'),
+                       round((10 + random() * 6)::numeric, 3)
+                FROM gymnast g
+                WHERE g.name LIKE 'Benchmark Gymnast %'
+                """);
+        dsl.execute("""
+                INSERT INTO app_user (username, email, password_hash, role)
+                SELECT 'benchmark' || u, 'benchmark' || u || '@example.com', 'dummy_hash', 'USER'
+                FROM generate_series(1, %d) u
+                """.formatted(USERS));
+        dsl.execute("""
+                INSERT INTO prediction (user_id, competition_entry_id, predicted_score)
+                SELECT u.id, ce.id, least(20, greatest(0, round((ce.actual_score + (random() - 0.5) * 3)::numeric, 3)))
+                FROM app_user u
+                         CROSS JOIN competition_entry ce
+                WHERE u.username LIKE 'benchmark%'
+                  AND ce.actual_score IS NOT NULL
+                """);
+        dsl.execute("ANALYZE");
+    }
+
+    @Test
+    void compareCalculatePointsImplementations() {
+        var plpgsql = measure("plpgsql calculate_points", () -> dsl.fetch(LEADERBOARD_QUERY.formatted("calculate_points_plpgsql")).size());
+        var sql = measure("SQL calculate_points", () -> dsl.fetch(LEADERBOARD_QUERY.formatted("calculate_points")).size());
+        var repository = measure("LeaderboardRepository.getLeaderboardFromPredictions",
+                () -> leaderboardRepository.getLeaderboardFromPredictions(LeaderboardFilter.empty()).size());
+
+        log.info("Leaderboard query median: plpgsql {} ms, SQL {} ms (speedup {}x), repository {} ms",
+                plpgsql, sql, String.format("%.1f", (double) plpgsql / Math.max(1, sql)), repository);
+    }
+
+    private long measure(String name, RowCountingQuery query) {
+        for (var i = 0; i < WARMUP_RUNS; i++) {
+            query.run();
+        }
+
+        var timings = new long[MEASURED_RUNS];
+        for (var i = 0; i < MEASURED_RUNS; i++) {
+            var start = System.nanoTime();
+            var rows = query.run();
+            timings[i] = (System.nanoTime() - start) / 1_000_000;
+            assertThat(rows).isGreaterThanOrEqualTo(USERS);
+        }
+
+        Arrays.sort(timings);
+        log.info("{}: {} ms (min {} ms, max {} ms)", name, timings[MEASURED_RUNS / 2], timings[0], timings[MEASURED_RUNS - 1]);
+        return timings[MEASURED_RUNS / 2];
+    }
+
+    @FunctionalInterface
+    private interface RowCountingQuery {
+        int run();
+    }
+}
@@ -4,6 +4,10 @@ import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
 import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
 import ch.martinelli.fun.kututipp.db.enums.GenderType;
 import ch.martinelli.fun.kututipp.db.enums.UserRole;
+import ch.martinelli.fun.kututipp.dto.LeaderboardCursor;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
 import org.jooq.DSLContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,9 +18,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 import static ch.martinelli.fun.kututipp.db.Tables.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest
 @Import(TestcontainersConfiguration.class)
@@ -59,25 +67,25 @@ class LeaderboardRepositoryTest {
 
         // Verify leaderboard structure and data
         var firstPlace = results.get(0);
-        assertThat(firstPlace.getValue("username")).isEqualTo("alice");
-        assertThat(firstPlace.getValue("rank", Integer.class)).isEqualTo(1);
-        assertThat(firstPlace.getValue("total_points", Integer.class)).isEqualTo(6); // 3+3
-        assertThat(firstPlace.getValue("total_predictions", Integer.class)).isEqualTo(2);
-        assertThat(firstPlace.getValue("exact_predictions", Integer.class)).isEqualTo(2);
+        assertThat(firstPlace.username()).isEqualTo("alice");
+        assertThat(firstPlace.rank()).isEqualTo(1);
+        assertThat(firstPlace.totalPoints()).isEqualTo(6); // 3+3
+        assertThat(firstPlace.totalPredictions()).isEqualTo(2);
+        assertThat(firstPlace.exactPredictions()).isEqualTo(2);
 
         var secondPlace = results.get(1);
-        assertThat(secondPlace.getValue("username")).isEqualTo("bob");
-        assertThat(secondPlace.getValue("rank", Integer.class)).isEqualTo(2);
-        assertThat(secondPlace.getValue("total_points", Integer.class)).isEqualTo(4); // 2+2
-        assertThat(secondPlace.getValue("total_predictions", Integer.class)).isEqualTo(2);
-        assertThat(secondPlace.getValue("exact_predictions", Integer.class)).isZero();
+        assertThat(secondPlace.username()).isEqualTo("bob");
+        assertThat(secondPlace.rank()).isEqualTo(2);
+        assertThat(secondPlace.totalPoints()).isEqualTo(4); // 2+2
+        assertThat(secondPlace.totalPredictions()).isEqualTo(2);
+        assertThat(secondPlace.exactPredictions()).isZero();
 
         var thirdPlace = results.get(2);
-        assertThat(thirdPlace.getValue("username")).isEqualTo("charlie");
-        assertThat(thirdPlace.getValue("rank", Integer.class)).isEqualTo(3);
-        assertThat(thirdPlace.getValue("total_points", Integer.class)).isEqualTo(2); // 1+1
-        assertThat(thirdPlace.getValue("total_predictions", Integer.class)).isEqualTo(2);
-        assertThat(thirdPlace.getValue("exact_predictions", Integer.class)).isZero();
+        assertThat(thirdPlace.username()).isEqualTo("charlie");
+        assertThat(thirdPlace.rank()).isEqualTo(3);
+        assertThat(thirdPlace.totalPoints()).isEqualTo(2); // 1+1
+        assertThat(thirdPlace.totalPredictions()).isEqualTo(2);
+        assertThat(thirdPlace.exactPredictions()).isZero();
     }
 
     @Test
@@ -97,11 +105,11 @@ class LeaderboardRepositoryTest {
 
         // Assert - Alice should still have only 2 predictions counted (not 3)
         var aliceResult = results.stream()
-                .filter(r -> r.getValue("username").equals("alice"))
+                .filter(r -> r.username().equals("alice"))
                 .findFirst()
                 .orElseThrow();
 
-        assertThat(aliceResult.getValue("total_predictions", Integer.class)).isEqualTo(2);
+        assertThat(aliceResult.totalPredictions()).isEqualTo(2);
     }
 
     @Test
@@ -146,16 +154,16 @@ class LeaderboardRepositoryTest {
         assertThat(results).hasSizeGreaterThanOrEqualTo(2);
 
         var firstPlace = results.getFirst();
-        assertThat(firstPlace.getValue("username")).isEqualTo("alice");
-        assertThat(firstPlace.getValue("rank", Integer.class)).isEqualTo(1);
-        assertThat(firstPlace.getValue("total_points", Integer.class)).isEqualTo(6);
-        assertThat(firstPlace.getValue("exact_predictions", Integer.class)).isEqualTo(2);
+        assertThat(firstPlace.username()).isEqualTo("alice");
+        assertThat(firstPlace.rank()).isEqualTo(1);
+        assertThat(firstPlace.totalPoints()).isEqualTo(6);
+        assertThat(firstPlace.exactPredictions()).isEqualTo(2);
 
         var secondPlace = results.get(1);
-        assertThat(secondPlace.getValue("username")).isEqualTo("bob");
-        assertThat(secondPlace.getValue("rank", Integer.class)).isEqualTo(2);
-        assertThat(secondPlace.getValue("total_points", Integer.class)).isEqualTo(6);
-        assertThat(secondPlace.getValue("exact_predictions", Integer.class)).isZero();
+        assertThat(secondPlace.username()).isEqualTo("bob");
+        assertThat(secondPlace.rank()).isEqualTo(2);
+        assertThat(secondPlace.totalPoints()).isEqualTo(6);
+        assertThat(secondPlace.exactPredictions()).isZero();
     }
 
     @Test
@@ -200,18 +208,18 @@ class LeaderboardRepositoryTest {
         assertThat(results).hasSizeGreaterThanOrEqualTo(2);
 
         var firstPlace = results.getFirst();
-        assertThat(firstPlace.getValue("username")).isEqualTo("bob");
-        assertThat(firstPlace.getValue("rank", Integer.class)).isEqualTo(1);
-        assertThat(firstPlace.getValue("total_points", Integer.class)).isEqualTo(5);
-        assertThat(firstPlace.getValue("exact_predictions", Integer.class)).isEqualTo(1);
-        assertThat(firstPlace.getValue("total_predictions", Integer.class)).isEqualTo(3);
+        assertThat(firstPlace.username()).isEqualTo("bob");
+        assertThat(firstPlace.rank()).isEqualTo(1);
+        assertThat(firstPlace.totalPoints()).isEqualTo(5);
+        assertThat(firstPlace.exactPredictions()).isEqualTo(1);
+        assertThat(firstPlace.totalPredictions()).isEqualTo(3);
 
         var secondPlace = results.get(1);
-        assertThat(secondPlace.getValue("username")).isEqualTo("alice");
-        assertThat(secondPlace.getValue("rank", Integer.class)).isEqualTo(2);
-        assertThat(secondPlace.getValue("total_points", Integer.class)).isEqualTo(5);
-        assertThat(secondPlace.getValue("exact_predictions", Integer.class)).isEqualTo(1);
-        assertThat(secondPlace.getValue("total_predictions", Integer.class)).isEqualTo(2);
+        assertThat(secondPlace.username()).isEqualTo("alice");
+        assertThat(secondPlace.rank()).isEqualTo(2);
+        assertThat(secondPlace.totalPoints()).isEqualTo(5);
+        assertThat(secondPlace.exactPredictions()).isEqualTo(1);
+        assertThat(secondPlace.totalPredictions()).isEqualTo(2);
     }
 
     @Test
@@ -224,12 +232,12 @@ class LeaderboardRepositoryTest {
 
         // Verify that scores are only from competition1
         var aliceResult = results.stream()
-                .filter(r -> r.getValue("username").equals("alice"))
+                .filter(r -> r.username().equals("alice"))
                 .findFirst()
                 .orElseThrow();
 
         // Alice should have 6 points from competition1 (not 11 from both competitions)
-        assertThat(aliceResult.getValue("total_points", Integer.class)).isEqualTo(6);
+        assertThat(aliceResult.totalPoints()).isEqualTo(6);
     }
 
     @Test
@@ -257,26 +265,327 @@ class LeaderboardRepositoryTest {
 
         // Assert
         var aliceResult = results.stream()
-                .filter(r -> r.getValue("username").equals("alice"))
+                .filter(r -> r.username().equals("alice"))
                 .findFirst()
                 .orElseThrow();
 
         // Alice: 6 points / 2 predictions = 3.0 average
-        var avgPoints = aliceResult.getValue("avg_points", BigDecimal.class);
-        assertThat(avgPoints).isEqualByComparingTo("3.0");
+        assertThat(aliceResult.avgPoints()).isEqualTo(3.0);
 
         var bobResult = results.stream()
-                .filter(r -> r.getValue("username").equals("bob"))
+                .filter(r -> r.username().equals("bob"))
                 .findFirst()
                 .orElseThrow();
 
         // Bob: 4 points / 2 predictions = 2.0 average
-        avgPoints = bobResult.getValue("avg_points", BigDecimal.class);
-        assertThat(avgPoints).isEqualByComparingTo("2.0");
+        assertThat(bobResult.avgPoints()).isEqualTo(2.0);
+    }
+
+    @Test
+    void shouldMatchLeaderboardCalculatedFromPredictions() {
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.forCompetition(competition1Id));
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.forCompetition(competition2Id));
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.forGender(GenderType.F));
+        assertSameAsLeaderboardFromPredictions(new LeaderboardFilter(
+                null, null, null, OffsetDateTime.now().plusDays(1), null));
+    }
+
+    @Test
+    void shouldUpdateAggregateWhenActualScoreIsCorrected() {
+        var entryId = dsl.select(COMPETITION_ENTRY.ID)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(competition2Id))
+                .fetchSingle()
+                .value1();
+
+        // Bob predicted 15.000, the corrected score makes his prediction exact
+        dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("15.000"))
+                .where(COMPETITION_ENTRY.ID.eq(entryId))
+                .execute();
+
+        var results = leaderboardRepository.getCompetitionLeaderboard(competition2Id);
+        var bobResult = results.stream()
+                .filter(r -> r.username().equals("bob"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(bobResult.totalPoints()).isEqualTo(3);
+        assertThat(bobResult.exactPredictions()).isEqualTo(1);
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+
+        // Removing the score removes the entry from the leaderboard
+        dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, (BigDecimal) null)
+                .where(COMPETITION_ENTRY.ID.eq(entryId))
+                .execute();
+
+        assertThat(leaderboardRepository.getCompetitionLeaderboard(competition2Id)).isEmpty();
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+    }
+
+    @Test
+    void shouldUpdateAggregateWhenPredictionChanges() {
+        var entryId = dsl.select(COMPETITION_ENTRY.ID)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(competition2Id))
+                .fetchSingle()
+                .value1();
+
+        dsl.update(PREDICTION)
+                .set(PREDICTION.PREDICTED_SCORE, new BigDecimal("10.000"))
+                .where(PREDICTION.USER_ID.eq(user1Id))
+                .and(PREDICTION.COMPETITION_ENTRY_ID.eq(entryId))
+                .execute();
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+
+        dsl.deleteFrom(PREDICTION)
+                .where(PREDICTION.USER_ID.eq(user2Id))
+                .execute();
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.forCompetition(competition1Id));
+    }
+
+    @Test
+    void shouldRebuildPointsAggregate() {
+        dsl.deleteFrom(USER_POINTS_AGG).execute();
+
+        var rows = leaderboardRepository.rebuildPointsAggregate();
+
+        // alice, bob and charlie in competition 1 (two apparatus), alice and bob in competition 2
+        assertThat(rows).isEqualTo(8);
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+        // The frozen totals of the finished competition are refreshed and their trigger is enabled again
+        assertThat(dsl.fetchCount(USER_COMPETITION_POINTS)).isEqualTo(5);
+        assertThat(dsl.fetchValue("SELECT tgenabled FROM pg_trigger WHERE tgname = 'trg_user_points_agg_competition_refresh'"))
+                .hasToString("O");
+    }
+
+    @Test
+    void shouldFreezeTotalsOfFinishedCompetitions() {
+        var frozenTotals = dsl.selectFrom(USER_COMPETITION_POINTS)
+                .where(USER_COMPETITION_POINTS.COMPETITION_ID.eq(competition1Id))
+                .and(USER_COMPETITION_POINTS.USER_ID.eq(user1Id))
+                .fetchOne();
+
+        // alice: two exact predictions on two apparatus rolled up to one row
+        assertThat(frozenTotals).isNotNull();
+        assertThat(frozenTotals.getTotalPoints()).isEqualTo(6);
+        assertThat(frozenTotals.getExactPredictions()).isEqualTo(2);
+        assertThat(frozenTotals.getTotalPredictions()).isEqualTo(2);
+        assertThat(dsl.fetchCount(USER_COMPETITION_POINTS)).isEqualTo(5);
+    }
+
+    @Test
+    void shouldCombineFrozenAndOpenCompetitions() {
+        // Reopening a competition drops its frozen totals, it is read from user_points_agg again
+        dsl.update(COMPETITION)
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .where(COMPETITION.ID.eq(competition2Id))
+                .execute();
+        assertThat(dsl.fetchCount(USER_COMPETITION_POINTS, USER_COMPETITION_POINTS.COMPETITION_ID.eq(competition2Id)))
+                .isZero();
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+        assertSameAsLeaderboardFromPredictions(new LeaderboardFilter(null, null, null,
+                OffsetDateTime.now().minusDays(1), OffsetDateTime.now().plusDays(1)));
+
+        // Correcting a score of a finished competition updates the frozen totals
+        dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("14.200"))
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(competition1Id))
+                .and(COMPETITION_ENTRY.ACTUAL_SCORE.eq(new BigDecimal("14.500")))
+                .execute();
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+
+        // Finishing it again freezes its totals
+        dsl.update(COMPETITION)
+                .set(COMPETITION.STATUS, CompetitionStatus.finished)
+                .where(COMPETITION.ID.eq(competition2Id))
+                .execute();
+        assertThat(dsl.fetchCount(USER_COMPETITION_POINTS, USER_COMPETITION_POINTS.COMPETITION_ID.eq(competition2Id)))
+                .isEqualTo(2);
+        assertSameAsLeaderboardFromPredictions(LeaderboardFilter.empty());
+    }
+
+    @Test
+    void shouldRankAllLeaderboardsOfCube() {
+        var cube = leaderboardRepository.getLeaderboardCube();
+
+        // Two competitions, two apparatus and two genders, combined as entered:
+        // (competition 1, pommel horse, M), (competition 1, vault, F) and (competition 2, pommel horse, M)
+        assertThat(cube).hasSize(2 + 2 + 2 + 3 + 3 + 2 + 3)
+                .doesNotContainKey(LeaderboardFilter.empty())
+                .containsKey(new LeaderboardFilter(competition1Id, null, GenderType.F, null, null));
+
+        cube.forEach((filter, rows) ->
+                assertThat(rows).containsExactlyElementsOf(leaderboardRepository.getFilteredLeaderboard(filter)));
+    }
+
+    @Test
+    void shouldContinueLeaderboardPageAfterCursor() {
+        var filter = LeaderboardFilter.forCompetition(competition1Id);
+
+        var firstPage = leaderboardRepository.getLeaderboardPage(filter, null, 2);
+        assertThat(firstPage).extracting(r -> r.username()).containsExactly("alice", "bob");
+
+        var last = firstPage.getLast();
+        var cursor = new LeaderboardCursor(last.totalPoints(), last.exactPredictions(), last.totalPredictions(), last.userId());
+        var secondPage = leaderboardRepository.getLeaderboardPage(filter, cursor, 2);
+
+        assertThat(secondPage).extracting(r -> r.username()).containsExactly("charlie");
+        assertThat(secondPage.getFirst().rank()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldRankTiedUsersOnFollowingPages() {
+        dsl.deleteFrom(PREDICTION).execute();
+
+        var entry = createCompetitionEntry(
+                competition1Id,
+                createGymnast("Gymnast 1", "Team A", GenderType.M),
+                createApparatus("Rings", GenderType.M),
+                new BigDecimal("14.000")
+        );
+        createPrediction(user1Id, entry, new BigDecimal("14.000")); // Exact: 3 points
+        createPrediction(user2Id, entry, new BigDecimal("13.000")); // Within 10%: 1 point
+        createPrediction(user3Id, entry, new BigDecimal("13.000")); // Within 10%: 1 point
+
+        // One entry per page, so bob and charlie are on different pages
+        var filter = LeaderboardFilter.forCompetition(competition1Id);
+        var rows = new ArrayList<LeaderboardRow>();
+        LeaderboardCursor cursor = null;
+        List<LeaderboardRow> page;
+        while (!(page = leaderboardRepository.getLeaderboardPage(filter, cursor, 1)).isEmpty()) {
+            rows.addAll(page);
+            var last = page.getLast();
+            cursor = new LeaderboardCursor(last.totalPoints(), last.exactPredictions(), last.totalPredictions(), last.userId());
+        }
+
+        assertThat(rows).extracting(LeaderboardRow::username, LeaderboardRow::rank)
+                .containsExactly(tuple("alice", 1), tuple("bob", 2), tuple("charlie", 2));
+        assertThat(rows).isEqualTo(leaderboardRepository.getCompetitionLeaderboard(competition1Id));
+    }
+
+    @Test
+    void shouldReturnLeaderboardRangeAndPosition() {
+        var filter = LeaderboardFilter.forCompetition(competition1Id);
+
+        var range = leaderboardRepository.getLeaderboardRange(filter, 1, 5);
+
+        assertThat(range).extracting(r -> r.username()).containsExactly("bob", "charlie");
+        assertThat(leaderboardRepository.countLeaderboard(filter)).isEqualTo(3);
+        assertThat(leaderboardRepository.getLeaderboardPosition(filter, user3Id)).isEqualTo(2);
+        assertThat(leaderboardRepository.getLeaderboardPosition(
+                LeaderboardFilter.forCompetition(competition2Id), user3Id)).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldStreamSameRowsAsLeaderboard() {
+        var filter = LeaderboardFilter.forCompetition(competition1Id);
+
+        try (var rows = leaderboardRepository.streamLeaderboard(filter, 2)) {
+            assertThat(rows.toList()).isEqualTo(leaderboardRepository.getFilteredLeaderboard(filter));
+        }
+    }
+
+    @Test
+    void shouldReturnTotalPointsOfLeaderboard() {
+        // Overall: alice 6 + 3, bob 4 + 2, charlie 2
+        assertThat(leaderboardRepository.getTotalPoints(LeaderboardFilter.empty()))
+                .containsOnly(entry(user1Id, 9), entry(user2Id, 6), entry(user3Id, 2));
+        assertThat(leaderboardRepository.getTotalPoints(LeaderboardFilter.forCompetition(competition2Id)))
+                .containsOnly(entry(user1Id, 3), entry(user2Id, 2));
+    }
+
+    @Test
+    void shouldReturnCompetitionTotalsOfUsersAffectedByEntries() {
+        var entry3Id = dsl.select(COMPETITION_ENTRY.ID)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(competition2Id))
+                .fetchSingle(COMPETITION_ENTRY.ID);
+
+        var totals = leaderboardRepository.getCompetitionTotalsForEntries(List.of(entry3Id));
+
+        assertThat(totals)
+                .extracting(r -> tuple(r.value1(), r.value2(), r.value3(), r.value4()))
+                .containsExactlyInAnyOrder(
+                        tuple(user1Id, competition2Id, 3, 1),
+                        tuple(user2Id, competition2Id, 2, 1));
+
+        dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, (BigDecimal) null)
+                .where(COMPETITION_ENTRY.ID.eq(entry3Id))
+                .execute();
+
+        // Users whose predictions are no longer scored are still returned
+        assertThat(leaderboardRepository.getCompetitionTotalsForEntries(List.of(entry3Id)))
+                .extracting(r -> tuple(r.value1(), r.value4()))
+                .containsExactlyInAnyOrder(tuple(user1Id, 0), tuple(user2Id, 0));
+    }
+
+    @Test
+    void shouldCompareWithSnapshotOfLastFinishedCompetition() {
+        // Overall: alice 9 points, bob 6 points, charlie 2 points
+        var rankedUsers = leaderboardRepository.snapshotRanks(competition1Id);
+        assertThat(rankedUsers).isEqualTo(3);
+
+        // Without a live competition the snapshot before the latest one is compared, there is none yet
+        var userIds = List.of(user1Id, user2Id, user3Id);
+        assertThat(leaderboardRepository.getPreviousRanks(userIds).available()).isFalse();
+
+        dsl.update(COMPETITION)
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .where(COMPETITION.ID.eq(competition2Id))
+                .execute();
+
+        var previousRanks = leaderboardRepository.getPreviousRanks(userIds);
+
+        assertThat(previousRanks.available()).isTrue();
+        assertThat(previousRanks.ranks()).containsEntry(user1Id, 1).containsEntry(user2Id, 2).containsEntry(user3Id, 3);
+        assertThat(previousRanks.trendOf(user3Id, 2)).isEqualTo(RankTrend.UP);
+        assertThat(previousRanks.trendOf(user1Id, 2)).isEqualTo(RankTrend.DOWN);
+        assertThat(previousRanks.trendOf(user2Id, 2)).isEqualTo(RankTrend.STABLE);
+        assertThat(previousRanks.trendOf(-1L, 4)).isEqualTo(RankTrend.NEW);
+    }
+
+    @Test
+    void shouldRecordSnapshotWhenCompetitionIsFinished() {
+        var userIds = List.of(user1Id, user2Id, user3Id);
+
+        // Reopened and finished again, e.g. after correcting a score
+        updateStatus(competition1Id, CompetitionStatus.live);
+        assertThat(dsl.fetchCount(RANK_HISTORY)).isZero();
+        updateStatus(competition1Id, CompetitionStatus.finished);
+
+        // Overall: alice 9 points, bob 6 points, charlie 2 points
+        assertThat(dsl.fetchCount(RANK_HISTORY, RANK_HISTORY.COMPETITION_ID.eq(competition1Id))).isEqualTo(3);
+
+        updateStatus(competition2Id, CompetitionStatus.live);
+
+        var previousRanks = leaderboardRepository.getPreviousRanks(userIds);
+
+        assertThat(previousRanks.available()).isTrue();
+        assertThat(previousRanks.ranks()).containsEntry(user1Id, 1).containsEntry(user2Id, 2).containsEntry(user3Id, 3);
+        assertThat(previousRanks.trendOf(user3Id, 2)).isEqualTo(RankTrend.UP);
+        assertThat(previousRanks.trendOf(user1Id, 2)).isEqualTo(RankTrend.DOWN);
+
+        // Same snapshot as the one written by the application
+        var recorded = fetchRankHistory();
+        leaderboardRepository.snapshotRanks(competition1Id);
+        assertThat(fetchRankHistory()).isEqualTo(recorded);
     }
 
     // Helper methods for test data setup
 
+    private void assertSameAsLeaderboardFromPredictions(LeaderboardFilter filter) {
+        var expected = leaderboardRepository.getLeaderboardFromPredictions(filter);
+        var actual = leaderboardRepository.getFilteredLeaderboard(filter);
+
+        // Users with the same rank may be listed in a different order
+        assertThat(actual).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+
     private void setupTestData() {
         // Create competitions
         competition1Id = createCompetition("Swiss Cup Final 2025", OffsetDateTime.now());
@@ -371,6 +680,21 @@ class LeaderboardRepositoryTest {
                 .value1();
     }
 
+    private void updateStatus(Long competitionId, CompetitionStatus status) {
+        dsl.update(COMPETITION)
+                .set(COMPETITION.STATUS, status)
+                .where(COMPETITION.ID.eq(competitionId))
+                .execute();
+    }
+
+    private List<List<Object>> fetchRankHistory() {
+        return dsl.select(RANK_HISTORY.COMPETITION_ID, RANK_HISTORY.USER_ID, RANK_HISTORY.RANK, RANK_HISTORY.TOTAL_POINTS,
+                        RANK_HISTORY.EXACT_PREDICTIONS, RANK_HISTORY.TOTAL_PREDICTIONS)
+                .from(RANK_HISTORY)
+                .orderBy(RANK_HISTORY.COMPETITION_ID, RANK_HISTORY.USER_ID)
+                .fetch(r -> List.of(r.intoArray()));
+    }
+
     private void createPrediction(Long userId, Long competitionEntryId, BigDecimal predictedScore) {
         dsl.insertInto(PREDICTION)
                 .set(PREDICTION.USER_ID, userId)
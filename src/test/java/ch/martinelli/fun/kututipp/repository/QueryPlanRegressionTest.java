@@ -0,0 +1,431 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.dto.LeaderboardCursor;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
+import com.jayway.jsonpath.JsonPath;
+import org.assertj.core.api.SoftAssertions;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static ch.martinelli.fun.kututipp.db.Tables.APP_USER;
+import static ch.martinelli.fun.kututipp.db.Tables.COMPETITION;
+import static ch.martinelli.fun.kututipp.db.Tables.COMPETITION_ENTRY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the execution plans of the repository queries against regressions.
+ * <p>
+ * Loads a synthetic dataset (2000 users, 10 competitions, 600k predictions) once for all checks, captures the
+ * SQL of every repository call and runs it with {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)}. A query fails
+ * if a plan node processes more rows than its budget, the query touches more shared buffers than allowed, takes
+ * longer to plan and execute than allowed, or a large table is read with a sequential scan where an index must be
+ * used. The time limits are about ten times the times measured on a developer machine, so only plans that got
+ * slower by an order of magnitude fail, not slower machines.
+ * <p>
+ * Every repository call is a test of its own, run in a transaction that is rolled back. Writes are rolled back to
+ * a savepoint before their statements are explained, so {@code ANALYZE} executes them on the same data as the
+ * repository call.
+ */
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Transactional
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanRegressionTest {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanRegressionTest.class);
+
+    private static final int USERS = 2_000;
+    private static final int COMPETITIONS = 10;
+    private static final int GYMNASTS = 40;
+    private static final int APPARATUS_PER_GENDER = 3;
+    private static final OffsetDateTime FIRST_COMPETITION = OffsetDateTime.of(2020, 1, 4, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    // Point lookups must use an index on every table
+    private static final PlanBudget POINT_LOOKUP = new PlanBudget(100, 100, 500,
+            Set.of("app_user", "competition_entry", "prediction", "user_points_agg", "user_competition_points"));
+    // Writes of single rows, the buffers include the index updates
+    private static final PlanBudget POINT_WRITE = new PlanBudget(100, 1_000, 1_000,
+            Set.of("app_user", "competition_entry", "prediction", "user_points_agg", "user_competition_points"));
+    // The competitions table stays small, a sequential scan is fine
+    private static final PlanBudget COMPETITIONS = new PlanBudget(1_000, 100, 500, Set.of());
+    // Leaderboards of a competition or date range only read the points of the selected competitions
+    private static final PlanBudget COMPETITION_LEADERBOARD = new PlanBudget(30_000, 20_000, 5_000,
+            Set.of("competition_entry", "prediction", "user_points_agg", "user_competition_points"));
+    // The overall leaderboard reads the frozen totals and the aggregate of the open competitions
+    private static final PlanBudget OVERALL_LEADERBOARD = new PlanBudget(60_000, 20_000, 10_000,
+            Set.of("competition_entry", "prediction", "user_points_agg"));
+    // Apparatus and gender leaderboards span all competitions, so they may read the whole aggregate
+    private static final PlanBudget AGGREGATE_SCAN = new PlanBudget(150_000, 20_000, 10_000,
+            Set.of("competition_entry", "prediction"));
+    private static final PlanBudget CUBE = new PlanBudget(500_000, 20_000, 30_000,
+            Set.of("competition_entry", "prediction"));
+    private static final PlanBudget ENTRY_TOTALS = new PlanBudget(30_000, 30_000, 5_000,
+            Set.of("prediction", "user_points_agg"));
+    private static final PlanBudget PREDICTIONS_OF_USER = new PlanBudget(5_000, 2_000, 1_000,
+            Set.of("prediction"));
+    private static final PlanBudget RANK_LOOKUP = new PlanBudget(20_000, 2_000, 1_000,
+            Set.of("prediction", "user_points_agg"));
+    // All predictions of a competition, e.g. to replay its leaderboard
+    private static final PlanBudget PREDICTIONS_OF_COMPETITION = new PlanBudget(100_000, 20_000, 10_000,
+            Set.of("competition_entry", "prediction"));
+
+    /**
+     * Limits for the plan of a query.
+     *
+     * @param maxRows    Maximum rows processed (returned and removed by filters) by any plan node over all loops
+     * @param maxBuffers Maximum shared buffers hit or read by the query
+     * @param maxMillis  Maximum planning and execution time
+     * @param noSeqScan  Tables that must not be read with a sequential scan
+     */
+    private record PlanBudget(long maxRows, long maxBuffers, double maxMillis, Set<String> noSeqScan) {
+    }
+
+    @Autowired
+    private DSLContext dsl;
+
+    private final List<String> capturedStatements = new ArrayList<>();
+
+    private LeaderboardRepository leaderboardRepository;
+    private PredictionRepository predictionRepository;
+    private UserRepository userRepository;
+    private CompetitionEntryRepository competitionEntryRepository;
+    private CompetitionRepository competitionRepository;
+
+    private Long finishedCompetition;
+    private Long liveCompetition;
+    private Long upcomingCompetition;
+    private Long scoredEntry;
+    private Long predictedEntry;
+    private Long unpredictedEntry;
+    private Long apparatusId;
+    private Long userId;
+    private LeaderboardFilter competitionFilter;
+    private LeaderboardFilter dateRangeFilter;
+    private LeaderboardCursor cursor;
+    private List<Long> pageUserIds;
+
+    @BeforeAll
+    void setUp() {
+        // Committed, so the dataset is only loaded once; removed again after all checks
+        loadSyntheticData();
+
+        // Repositories on a configuration that records the inlined SQL of every executed query
+        var capturingDsl = dsl.configuration().derive(new DefaultExecuteListenerProvider(
+                ExecuteListener.onExecuteStart(ctx -> {
+                    if (ctx.query() != null) {
+                        capturedStatements.add(dsl.renderInlined(ctx.query()));
+                    }
+                }))).dsl();
+
+        leaderboardRepository = new LeaderboardRepository(capturingDsl, Duration.ZERO);
+        predictionRepository = new PredictionRepository(capturingDsl);
+        userRepository = new UserRepository(capturingDsl);
+        competitionEntryRepository = new CompetitionEntryRepository(capturingDsl);
+        competitionRepository = new CompetitionRepository(capturingDsl);
+
+        finishedCompetition = competitionId(4);
+        liveCompetition = competitionId(COMPETITIONS - 1);
+        upcomingCompetition = competitionId(COMPETITIONS);
+        scoredEntry = dsl.select(COMPETITION_ENTRY.ID)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(liveCompetition))
+                .limit(1)
+                .fetchSingle(COMPETITION_ENTRY.ID);
+        apparatusId = dsl.fetchSingle("SELECT min(id) FROM apparatus WHERE name LIKE 'Plan Apparatus %'").get(0, Long.class);
+        userId = dsl.select(APP_USER.ID).from(APP_USER).where(APP_USER.USERNAME.eq("plan_user_1000")).fetchSingle(APP_USER.ID);
+        // Every user predicts the entries with (user ID + entry ID) % 4 = 0
+        var liveEntries = dsl.select(COMPETITION_ENTRY.ID)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.COMPETITION_ID.eq(liveCompetition))
+                .fetch(COMPETITION_ENTRY.ID);
+        predictedEntry = liveEntries.stream().filter(id -> (userId + id) % 4 == 0).findFirst().orElseThrow();
+        unpredictedEntry = liveEntries.stream().filter(id -> (userId + id) % 4 != 0).findFirst().orElseThrow();
+        competitionFilter = LeaderboardFilter.forCompetition(finishedCompetition);
+        dateRangeFilter = new LeaderboardFilter(null, null, null,
+                FIRST_COMPETITION.plusWeeks(2).minusDays(1), FIRST_COMPETITION.plusWeeks(3).plusDays(1));
+        var firstPage = leaderboardRepository.getLeaderboardPage(competitionFilter, null, 50);
+        var lastOfFirstPage = firstPage.getLast();
+        cursor = new LeaderboardCursor(lastOfFirstPage.totalPoints(), lastOfFirstPage.exactPredictions(),
+                lastOfFirstPage.totalPredictions(), lastOfFirstPage.userId());
+        pageUserIds = firstPage.stream().map(LeaderboardRow::userId).toList();
+    }
+
+    @AfterAll
+    void tearDown() {
+        dsl.execute("TRUNCATE app_user, competition, apparatus, gymnast CASCADE");
+    }
+
+    Stream<Arguments> repositoryCalls() {
+        return Stream.of(
+                check("findByUsername", POINT_LOOKUP, () -> userRepository.findByUsername("PLAN_USER_1000")),
+                check("existsByUsername", POINT_LOOKUP, () -> userRepository.existsByUsername("Plan_User_1000")),
+                check("findByEmail", POINT_LOOKUP, () -> userRepository.findByEmail("Plan_User_1000@Example.com")),
+                check("existsByEmail", POINT_LOOKUP, () -> userRepository.existsByEmail("plan_user_1000@example.com")),
+                check("findCompetitionEntryById", POINT_LOOKUP, () -> competitionEntryRepository.findById(scoredEntry)),
+
+                check("overallLeaderboard", OVERALL_LEADERBOARD, () -> leaderboardRepository.getOverallLeaderboard()),
+                check("finishedCompetitionLeaderboard", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.getCompetitionLeaderboard(finishedCompetition)),
+                check("liveCompetitionLeaderboard", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.getCompetitionLeaderboard(liveCompetition)),
+                check("dateRangeLeaderboard", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.getFilteredLeaderboard(dateRangeFilter)),
+                check("leaderboardPage", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.getLeaderboardPage(competitionFilter, cursor, 50)),
+                check("leaderboardRange", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.getLeaderboardRange(competitionFilter, 1_000, 50)),
+                check("leaderboardPosition", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.getLeaderboardPosition(competitionFilter, userId)),
+                check("countLeaderboard", COMPETITION_LEADERBOARD,
+                        () -> leaderboardRepository.countLeaderboard(competitionFilter)),
+                check("apparatusLeaderboard", AGGREGATE_SCAN,
+                        () -> leaderboardRepository.getApparatusLeaderboard(apparatusId)),
+                check("leaderboardCube", CUBE, () -> leaderboardRepository.getLeaderboardCube()),
+                check("overallTotalsForEntries", ENTRY_TOTALS,
+                        () -> leaderboardRepository.getOverallTotalsForEntries(List.of(scoredEntry))),
+                check("previousRanks", RANK_LOOKUP, () -> leaderboardRepository.getPreviousRanks(pageUserIds)),
+
+                check("competitionEntriesWithPredictions", PREDICTIONS_OF_USER,
+                        () -> predictionRepository.getCompetitionEntriesWithPredictions(liveCompetition, userId)),
+                check("competitionsWithPredictions", PREDICTIONS_OF_USER,
+                        () -> predictionRepository.getCompetitionsWithPredictions(userId)),
+                check("countPredictionsForCompetition", PREDICTIONS_OF_USER,
+                        () -> predictionRepository.countPredictionsForCompetition(userId, liveCompetition)),
+                check("hasPredictionsForCompetition", PREDICTIONS_OF_USER,
+                        () -> predictionRepository.hasPredictionsForCompetition(userId, liveCompetition)),
+                check("availableCompetitions", COMPETITIONS, () -> predictionRepository.getAvailableCompetitions()),
+                check("competitionByEntryId", POINT_LOOKUP,
+                        () -> predictionRepository.getCompetitionByEntryId(scoredEntry)),
+                check("predictionsOfCompetition", PREDICTIONS_OF_COMPETITION,
+                        () -> predictionRepository.getPredictionsOfCompetition(liveCompetition)),
+                check("insertPrediction", POINT_WRITE,
+                        () -> predictionRepository.savePrediction(userId, unpredictedEntry, new BigDecimal("13.500"))),
+                check("updatePrediction", POINT_WRITE,
+                        () -> predictionRepository.savePrediction(userId, predictedEntry, new BigDecimal("13.500"))),
+                check("deletePrediction", POINT_WRITE,
+                        () -> predictionRepository.deletePrediction(userId, predictedEntry)),
+                check("deleteAllPredictionsForCompetition", PREDICTIONS_OF_USER,
+                        () -> predictionRepository.deleteAllPredictionsForCompetition(userId, liveCompetition)),
+
+                check("findAllCompetitions", COMPETITIONS, () -> competitionRepository.findAll()),
+                check("findCompetitionById", COMPETITIONS, () -> competitionRepository.findById(liveCompetition)),
+                check("findUpcomingCompetitions", COMPETITIONS, () -> competitionRepository.findUpcoming()),
+                check("updateCompetitionStatus", POINT_WRITE,
+                        () -> competitionRepository.updateStatus(upcomingCompetition, CompetitionStatus.live))
+        );
+    }
+
+    private static Arguments check(String name, PlanBudget budget, Runnable repositoryCall) {
+        return Arguments.of(name, budget, repositoryCall);
+    }
+
+    /**
+     * Runs a repository call, then explains every statement it executed and checks the plans against the budget.
+     * The changes of the call are rolled back before, explaining the statements in order executes them again.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void shouldStayWithinPlanBudget(String name, PlanBudget budget, Runnable repositoryCall) {
+        capturedStatements.clear();
+        dsl.execute("SAVEPOINT plan_check");
+        repositoryCall.run();
+        var statements = List.copyOf(capturedStatements);
+        dsl.execute("ROLLBACK TO SAVEPOINT plan_check");
+        assertThat(statements).as("statements of %s", name).isNotEmpty();
+
+        var softly = new SoftAssertions();
+        for (var sql : statements) {
+            var explain = explain(sql);
+            var plan = node(explain.get("Plan"));
+            var planningTime = ((Number) explain.get("Planning Time")).doubleValue();
+            var executionTime = ((Number) explain.get("Execution Time")).doubleValue();
+            var buffers = count(plan, "Shared Hit Blocks") + count(plan, "Shared Read Blocks");
+
+            var nodes = new ArrayList<Map<String, Object>>();
+            collectNodes(plan, nodes);
+            var maxRows = 0L;
+            var seqScans = new ArrayList<String>();
+            for (var node : nodes) {
+                var rows = (count(node, "Actual Rows") + count(node, "Rows Removed by Filter")
+                        + count(node, "Rows Removed by Index Recheck")) * Math.max(1, count(node, "Actual Loops"));
+                maxRows = Math.max(maxRows, rows);
+                if ("Seq Scan".equals(node.get("Node Type"))) {
+                    seqScans.add((String) node.get("Relation Name"));
+                }
+            }
+
+            log.info("{}: {} ms planning, {} ms execution, {} buffers, max {} rows per node, sequential scans {}",
+                    name, planningTime, executionTime, buffers, maxRows, seqScans);
+
+            softly.assertThat(maxRows).as("%s rows per plan node of: %s", name, sql).isLessThanOrEqualTo(budget.maxRows());
+            softly.assertThat(buffers).as("%s shared buffers of: %s", name, sql).isLessThanOrEqualTo(budget.maxBuffers());
+            softly.assertThat(planningTime + executionTime).as("%s planning and execution time of: %s", name, sql)
+                    .isLessThanOrEqualTo(budget.maxMillis());
+            softly.assertThat(seqScans).as("%s sequential scans of: %s", name, sql).doesNotContainAnyElementsOf(budget.noSeqScan());
+        }
+        softly.assertAll();
+    }
+
+    private Map<String, Object> explain(String sql) {
+        // Plain JDBC, jOOQ's plain SQL templating would interpret the braces and question marks of inlined values
+        var json = dsl.connectionResult(connection -> {
+            try (var statement = connection.createStatement();
+                 var resultSet = statement.executeQuery("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql)) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        });
+        return node(JsonPath.read(json, "$[0]"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> node(Object json) {
+        return (Map<String, Object>) json;
+    }
+
+    private static void collectNodes(Map<String, Object> node, List<Map<String, Object>> nodes) {
+        nodes.add(node);
+        if (node.get("Plans") instanceof List<?> children) {
+            for (var child : children) {
+                collectNodes(node(child), nodes);
+            }
+        }
+    }
+
+    private static long count(Map<String, Object> node, String property) {
+        return node.get(property) instanceof Number number ? Math.round(number.doubleValue()) : 0;
+    }
+
+    private Long competitionId(int number) {
+        return dsl.select(COMPETITION.ID)
+                .from(COMPETITION)
+                .where(COMPETITION.NAME.eq("Plan Cup " + number))
+                .fetchSingle(COMPETITION.ID);
+    }
+
+    /**
+     * Loads the synthetic dataset. Competitions 1-8 are finished, 9 is live and 10 is upcoming.
+     * Every user predicts a quarter of the entries of each competition.
+     * <p>
+     * The triggers are disabled during the load and the aggregates are built set-based afterward, in the
+     * physical order they have in production: rows of one competition are written when it is scored.
+     */
+    private void loadSyntheticData() {
+        for (var table : List.of("competition", "competition_entry", "prediction", "user_points_agg")) {
+            dsl.execute("ALTER TABLE " + table + " DISABLE TRIGGER USER");
+        }
+
+        dsl.execute("""
+                INSERT INTO competition (name, date, status)
+                SELECT 'Plan Cup ' || c,
+                       '%s'::timestamptz + (c - 1) * interval '1 week',
+                       (CASE WHEN c <= %2$d - 2 THEN 'finished' WHEN c = %2$d - 1 THEN 'live' ELSE 'upcoming' END)::competition_status
+                FROM generate_series(1, %2$d) c
+                """.formatted(FIRST_COMPETITION, COMPETITIONS));
+        dsl.execute("""
+                INSERT INTO apparatus (name, gender)
+                SELECT 'Plan Apparatus ' || a, gender::gender_type
+                FROM generate_series(1, %d) a
+                         CROSS JOIN (VALUES ('M'), ('F')) genders(gender)
+                """.formatted(APPARATUS_PER_GENDER));
+        dsl.execute("""
+                INSERT INTO gymnast (name, team_name, gender)
+                SELECT 'Plan Gymnast ' || g, 'Plan Team ' || (g % 8), (CASE WHEN g % 2 = 0 THEN 'M' ELSE 'F' END)::gender_type
+                FROM generate_series(1, %d) g
+                """.formatted(GYMNASTS));
+        dsl.execute("""
+                INSERT INTO competition_entry (competition_id, gymnast_id, apparatus_id, actual_score)
+                SELECT c.id,
+                       g.id,
+                       a.id,
+                       CASE WHEN c.status <> 'upcoming' THEN round((11 + random() * 4)::numeric, 3) END
+                FROM competition c
+                         JOIN gymnast g ON g.name LIKE 'Plan Gymnast %'
+                         JOIN apparatus a ON a.name LIKE 'Plan Apparatus %' AND a.gender = g.gender
+                WHERE c.name LIKE 'Plan Cup %'
+                ORDER BY c.id, g.id, a.id
+                """);
+        dsl.execute("""
+                INSERT INTO app_user (username, email, password_hash, role)
+                SELECT 'plan_user_' || u, 'plan_user_' || u || '@example.com', 'dummy_hash', 'USER'
+                FROM generate_series(1, %d) u
+                """.formatted(USERS));
+        dsl.execute("""
+                INSERT INTO prediction (user_id, competition_entry_id, predicted_score)
+                SELECT u.id, ce.id, round((11 + random() * 4)::numeric, 3)
+                FROM competition_entry ce
+                         JOIN competition c ON c.id = ce.competition_id
+                         JOIN app_user u ON (u.id + ce.id) % 4 = 0
+                WHERE c.name LIKE 'Plan Cup %'
+                  AND u.username LIKE 'plan_user_%'
+                ORDER BY ce.competition_id, u.id
+                """);
+
+        dsl.execute("DELETE FROM user_points_agg");
+        dsl.execute("""
+                INSERT INTO user_points_agg (user_id, competition_id, apparatus_id, gender,
+                                             total_points, exact_predictions, total_predictions)
+                SELECT scored.user_id,
+                       scored.competition_id,
+                       scored.apparatus_id,
+                       scored.gender,
+                       sum(scored.points),
+                       count(*) FILTER (WHERE scored.points = 3),
+                       count(*)
+                FROM (SELECT p.user_id,
+                             ce.competition_id,
+                             ce.apparatus_id,
+                             g.gender,
+                             calculate_points(p.predicted_score, ce.actual_score) AS points
+                      FROM prediction p
+                               JOIN competition_entry ce ON ce.id = p.competition_entry_id
+                               JOIN gymnast g ON g.id = ce.gymnast_id
+                      WHERE ce.actual_score IS NOT NULL) scored
+                GROUP BY scored.user_id, scored.competition_id, scored.apparatus_id, scored.gender
+                ORDER BY scored.competition_id, scored.user_id
+                """);
+        dsl.execute("DELETE FROM user_competition_points");
+        dsl.execute("""
+                INSERT INTO user_competition_points (user_id, competition_id, total_points, exact_predictions, total_predictions)
+                SELECT agg.user_id, agg.competition_id, sum(agg.total_points), sum(agg.exact_predictions), sum(agg.total_predictions)
+                FROM user_points_agg agg
+                         JOIN competition c ON c.id = agg.competition_id
+                WHERE c.status = 'finished'
+                GROUP BY agg.user_id, agg.competition_id
+                ORDER BY agg.competition_id, agg.user_id
+                """);
+
+        for (var table : List.of("competition", "competition_entry", "prediction", "user_points_agg")) {
+            dsl.execute("ALTER TABLE " + table + " ENABLE TRIGGER USER");
+        }
+
+        new LeaderboardRepository(dsl, Duration.ZERO).snapshotRanks(competitionId(COMPETITIONS - 2));
+        dsl.execute("ANALYZE");
+    }
+}
@@ -0,0 +1,95 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.dto.ScoreEventDto;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Transactional
+class ScoreEventRepositoryTest {
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private ScoreEventRepository scoreEventRepository;
+
+    @Autowired
+    private CompetitionEntryRepository competitionEntryRepository;
+
+    private Long competitionId;
+    private Long entryId;
+
+    @BeforeEach
+    void setUp() {
+        dsl.deleteFrom(COMPETITION).execute();
+        dsl.deleteFrom(GYMNAST).execute();
+        dsl.deleteFrom(APPARATUS).execute();
+
+        competitionId = dsl.insertInto(COMPETITION)
+                .set(COMPETITION.NAME, "Swiss Cup Final 2025")
+                .set(COMPETITION.DATE, OffsetDateTime.now())
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .returningResult(COMPETITION.ID)
+                .fetchOne()
+                .value1();
+        var gymnastId = dsl.insertInto(GYMNAST)
+                .set(GYMNAST.NAME, "Max Müller")
+                .set(GYMNAST.TEAM_NAME, "TV Wil")
+                .set(GYMNAST.GENDER, GenderType.M)
+                .returningResult(GYMNAST.ID)
+                .fetchOne()
+                .value1();
+        var apparatusId = dsl.insertInto(APPARATUS)
+                .set(APPARATUS.NAME, "Pommel Horse")
+                .set(APPARATUS.GENDER, GenderType.M)
+                .returningResult(APPARATUS.ID)
+                .fetchOne()
+                .value1();
+        entryId = dsl.insertInto(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.COMPETITION_ID, competitionId)
+                .set(COMPETITION_ENTRY.GYMNAST_ID, gymnastId)
+                .set(COMPETITION_ENTRY.APPARATUS_ID, apparatusId)
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetchOne()
+                .value1();
+    }
+
+    @Test
+    void shouldLogEveryChangeOfActualScore() {
+        competitionEntryRepository.updateActualScore(entryId, new BigDecimal("14.500"));
+        // Unchanged scores are not logged
+        competitionEntryRepository.updateActualScore(entryId, new BigDecimal("14.500"));
+        competitionEntryRepository.updateActualScore(entryId, new BigDecimal("14.300"));
+        competitionEntryRepository.updateActualScore(entryId, null);
+
+        var events = scoreEventRepository.findByCompetition(competitionId, 0);
+
+        assertThat(events)
+                .extracting(ScoreEventDto::competitionEntryId, ScoreEventDto::gymnastName, ScoreEventDto::apparatusName,
+                        ScoreEventDto::actualScore, ScoreEventDto::previousScore)
+                .containsExactly(
+                        tuple(entryId, "Max Müller", "Pommel Horse", new BigDecimal("14.500"), null),
+                        tuple(entryId, "Max Müller", "Pommel Horse", new BigDecimal("14.300"), new BigDecimal("14.500")),
+                        tuple(entryId, "Max Müller", "Pommel Horse", null, new BigDecimal("14.300")));
+        // The events of this transaction are returned again until it has ended
+        assertThat(scoreEventRepository.findByCompetition(competitionId, scoreEventRepository.findOldestRunningTransaction()))
+                .hasSize(3);
+    }
+}
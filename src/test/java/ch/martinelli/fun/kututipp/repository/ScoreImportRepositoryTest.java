@@ -0,0 +1,137 @@
+package ch.martinelli.fun.kututipp.repository;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.dto.ScoreImportRow;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest
+@Import(TestcontainersConfiguration.class)
+@Transactional
+class ScoreImportRepositoryTest {
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private ScoreImportRepository scoreImportRepository;
+
+    private Long competitionId;
+    private Long pommelHorseEntryId;
+    private Long ringsEntryId;
+
+    @BeforeEach
+    void setUp() {
+        dsl.deleteFrom(COMPETITION).execute();
+        dsl.deleteFrom(GYMNAST).execute();
+        dsl.deleteFrom(APPARATUS).execute();
+
+        competitionId = dsl.insertInto(COMPETITION)
+                .set(COMPETITION.NAME, "Swiss Cup Final 2025")
+                .set(COMPETITION.DATE, OffsetDateTime.now())
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .returningResult(COMPETITION.ID)
+                .fetchOne()
+                .value1();
+        var gymnastId = insertGymnast("Max Müller");
+        // Two gymnasts with the same name cannot be told apart by the import
+        insertGymnast("Luca Rossi");
+        insertGymnast("Luca Rossi");
+
+        pommelHorseEntryId = insertEntry(gymnastId, insertApparatus("Pommel Horse"));
+        ringsEntryId = insertEntry(gymnastId, insertApparatus("Rings"));
+        var floorId = insertApparatus("Floor");
+        for (var rossi : dsl.select(GYMNAST.ID).from(GYMNAST).where(GYMNAST.NAME.eq("Luca Rossi")).fetch(GYMNAST.ID)) {
+            insertEntry(rossi, floorId);
+        }
+        dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.900"))
+                .where(COMPETITION_ENTRY.ID.eq(ringsEntryId))
+                .execute();
+    }
+
+    @Test
+    void shouldApplyStagedScoresInOneUpdate() {
+        var importId = UUID.randomUUID();
+        var staged = scoreImportRepository.stage(importId, List.of(
+                new ScoreImportRow(2, "max müller", "POMMEL HORSE", new BigDecimal("14.500")),
+                // Unchanged
+                new ScoreImportRow(3, "Max Müller", "Rings", new BigDecimal("13.9"))));
+
+        assertThat(staged).isEqualTo(2);
+        assertThat(scoreImportRepository.findUnmatched(importId, competitionId)).isEmpty();
+
+        var changed = scoreImportRepository.apply(importId, competitionId);
+
+        assertThat(changed).containsExactly(pommelHorseEntryId);
+        assertThat(dsl.select(COMPETITION_ENTRY.ID, COMPETITION_ENTRY.ACTUAL_SCORE)
+                .from(COMPETITION_ENTRY)
+                .where(COMPETITION_ENTRY.ID.in(pommelHorseEntryId, ringsEntryId))
+                .fetchMap(COMPETITION_ENTRY.ID, COMPETITION_ENTRY.ACTUAL_SCORE))
+                .containsOnly(entry(pommelHorseEntryId, new BigDecimal("14.500")), entry(ringsEntryId, new BigDecimal("13.900")));
+
+        assertThat(scoreImportRepository.delete(importId)).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFindRowsNotMatchingExactlyOneEntry() {
+        var importId = UUID.randomUUID();
+        scoreImportRepository.stage(importId, List.of(
+                new ScoreImportRow(2, "Max Müller", "Pommel Horse", new BigDecimal("14.500")),
+                new ScoreImportRow(3, "Max Müller", "Vault", new BigDecimal("13.000")),
+                new ScoreImportRow(4, "Luca Rossi", "Floor", new BigDecimal("12.750")),
+                new ScoreImportRow(5, "Tab\tand \\backslash", "Rings", new BigDecimal("12.000"))));
+
+        assertThat(scoreImportRepository.findUnmatched(importId, competitionId))
+                .containsOnly(entry(3, 0), entry(4, 2), entry(5, 0));
+        assertThat(dsl.select(SCORE_IMPORT.GYMNAST_NAME).from(SCORE_IMPORT)
+                .where(SCORE_IMPORT.IMPORT_ID.eq(importId).and(SCORE_IMPORT.LINE_NUMBER.eq(5)))
+                .fetchSingle(SCORE_IMPORT.GYMNAST_NAME))
+                .isEqualTo("Tab\tand \\backslash");
+    }
+
+    private Long insertGymnast(String name) {
+        return dsl.insertInto(GYMNAST)
+                .set(GYMNAST.NAME, name)
+                .set(GYMNAST.TEAM_NAME, "TV Wil")
+                .set(GYMNAST.GENDER, GenderType.M)
+                .returningResult(GYMNAST.ID)
+                .fetchOne()
+                .value1();
+    }
+
+    private Long insertApparatus(String name) {
+        return dsl.insertInto(APPARATUS)
+                .set(APPARATUS.NAME, name)
+                .set(APPARATUS.GENDER, GenderType.M)
+                .returningResult(APPARATUS.ID)
+                .fetchOne()
+                .value1();
+    }
+
+    private Long insertEntry(Long gymnastId, Long apparatusId) {
+        return dsl.insertInto(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.COMPETITION_ID, competitionId)
+                .set(COMPETITION_ENTRY.GYMNAST_ID, gymnastId)
+                .set(COMPETITION_ENTRY.APPARATUS_ID, apparatusId)
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetchOne()
+                .value1();
+    }
+}
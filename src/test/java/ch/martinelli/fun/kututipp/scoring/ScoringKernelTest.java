@@ -0,0 +1,85 @@
+package ch.martinelli.fun.kututipp.scoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScoringKernelTest {
+
+    @Test
+    void shouldScoreLikeCalculatePoints() {
+        // Exact match
+        assertThat(ScoringKernel.points(14500, 14500)).isEqualTo(3);
+        // Exactly 5% and 10% deviation
+        assertThat(ScoringKernel.points(10500, 10000)).isEqualTo(2);
+        assertThat(ScoringKernel.points(10501, 10000)).isEqualTo(1);
+        assertThat(ScoringKernel.points(9000, 10000)).isEqualTo(1);
+        assertThat(ScoringKernel.points(8999, 10000)).isZero();
+    }
+
+    @Test
+    void shouldOnlyScoreExactPredictionOfZero() {
+        assertThat(ScoringKernel.points(0, 0)).isEqualTo(3);
+        assertThat(ScoringKernel.points(1, 0)).isZero();
+        assertThat(ScoringKernel.points(0, 1)).isZero();
+    }
+
+    @Test
+    void shouldNotScoreInvalidScores() {
+        assertThat(ScoringKernel.points(20001, 20000)).isZero();
+        assertThat(ScoringKernel.points(20000, 20001)).isZero();
+        assertThat(ScoringKernel.points(ScoringKernel.NO_SCORE, 14500)).isZero();
+        assertThat(ScoringKernel.points(14500, ScoringKernel.NO_SCORE)).isZero();
+        assertThat(ScoringKernel.points(Integer.MIN_VALUE, Integer.MAX_VALUE)).isZero();
+        assertThat(ScoringKernel.points(20000, 20000)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldScoreArraysLikeSinglePredictions() {
+        // Every prediction for every actual score on the grid, including invalid scores next to the bounds
+        var length = ScoringKernel.MAX_SCORE + 5;
+        var predicted = new int[length];
+        var actual = new int[length];
+        var points = new int[length];
+        for (var i = 0; i < length; i++) {
+            predicted[i] = i - 2;
+        }
+
+        for (var actualScore = -2; actualScore <= ScoringKernel.MAX_SCORE + 2; actualScore++) {
+            Arrays.fill(actual, actualScore);
+            ScoringKernel.score(predicted, actual, points, length);
+
+            for (var i = 0; i < length; i++) {
+                if (points[i] != ScoringKernel.points(predicted[i], actualScore)) {
+                    throw new AssertionError("Points differ for predicted " + predicted[i] + ", actual " + actualScore);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldScoreArraysWithRemainder() {
+        var points = ScoringKernel.score(
+                new int[]{14500, 14000, 13500, 0, 20001, 10500, 9000},
+                new int[]{14500, 14500, 14500, 0, 20000, 10000, 10000});
+
+        assertThat(points).containsExactly(3, 2, 1, 3, 0, 2, 1);
+    }
+
+    @Test
+    void shouldRejectShortArrays() {
+        assertThatThrownBy(() -> ScoringKernel.score(new int[2], new int[1], new int[2], 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldConvertScoresToThousandths() {
+        assertThat(ScoringKernel.toThousandths(new BigDecimal("14.500"))).isEqualTo(14500);
+        assertThat(ScoringKernel.toThousandths(new BigDecimal("9.1"))).isEqualTo(9100);
+        assertThat(ScoringKernel.toThousandths(null)).isEqualTo(ScoringKernel.NO_SCORE);
+    }
+}
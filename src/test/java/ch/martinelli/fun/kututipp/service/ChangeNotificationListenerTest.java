@@ -0,0 +1,275 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.db.enums.UserRole;
+import ch.martinelli.fun.kututipp.service.ChangeNotificationListener.Batch;
+import ch.martinelli.fun.kututipp.service.ChangeNotificationListener.ChangeNotification;
+import ch.martinelli.fun.kututipp.service.ChangeNotificationListener.ChangeNotification.Type;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+
+import java.math.BigDecimal;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The notifications are only sent when a transaction commits, so the tests are not transactional.
+ * This node writes with the application name node-a, the other node with node-b.
+ */
+@SpringBootTest(properties = "kututipp.cluster.node-id=node-a")
+@Import(TestcontainersConfiguration.class)
+class ChangeNotificationListenerTest {
+
+    private static final String LISTENER_APPLICATION_NAME = "node-a-listener";
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private JdbcConnectionDetails connectionDetails;
+
+    @Autowired
+    private ScoresChangedEvents scoresChangedEvents;
+
+    private Long scoredEntryId;
+    private Long entry1Id;
+    private Long entry2Id;
+    private Long unscoredEntryId;
+    private Long userId;
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class ScoresChangedEvents {
+
+        private final BlockingQueue<ScoresChangedEvent> events = new LinkedBlockingQueue<>();
+        private final BlockingQueue<LeaderboardInvalidatedEvent> invalidatedEvents = new LinkedBlockingQueue<>();
+
+        @EventListener
+        public void onScoresChanged(ScoresChangedEvent event) {
+            events.add(event);
+        }
+
+        @EventListener
+        public void onLeaderboardInvalidated(LeaderboardInvalidatedEvent event) {
+            invalidatedEvents.add(event);
+        }
+
+        ScoresChangedEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return events.poll(timeout, unit);
+        }
+
+        LeaderboardInvalidatedEvent pollInvalidated(long timeout, TimeUnit unit) throws InterruptedException {
+            return invalidatedEvents.poll(timeout, unit);
+        }
+
+        void clear() {
+            events.clear();
+            invalidatedEvents.clear();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        dsl.deleteFrom(PREDICTION).execute();
+        dsl.deleteFrom(COMPETITION_ENTRY).execute();
+        dsl.deleteFrom(COMPETITION).execute();
+        dsl.deleteFrom(GYMNAST).execute();
+        dsl.deleteFrom(APPARATUS).execute();
+        dsl.deleteFrom(APP_USER).execute();
+
+        var competitionId = dsl.insertInto(COMPETITION)
+                .set(COMPETITION.NAME, "Swiss Cup Final 2025")
+                .set(COMPETITION.DATE, OffsetDateTime.now())
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .returningResult(COMPETITION.ID)
+                .fetchOne()
+                .value1();
+        var gymnastId = dsl.insertInto(GYMNAST)
+                .set(GYMNAST.NAME, "John Doe")
+                .set(GYMNAST.TEAM_NAME, "Team A")
+                .set(GYMNAST.GENDER, GenderType.M)
+                .returningResult(GYMNAST.ID)
+                .fetchOne()
+                .value1();
+        var apparatusId = dsl.insertInto(APPARATUS)
+                .set(APPARATUS.NAME, "Floor")
+                .set(APPARATUS.GENDER, GenderType.M)
+                .returningResult(APPARATUS.ID)
+                .fetchOne()
+                .value1();
+        userId = dsl.insertInto(APP_USER)
+                .set(APP_USER.USERNAME, "alice")
+                .set(APP_USER.EMAIL, "alice@example.com")
+                .set(APP_USER.PASSWORD_HASH, "dummy_hash")
+                .set(APP_USER.ROLE, UserRole.USER)
+                .returningResult(APP_USER.ID)
+                .fetchOne()
+                .value1();
+
+        scoredEntryId = createCompetitionEntry(competitionId, gymnastId, apparatusId, new BigDecimal("14.000"));
+        entry1Id = createCompetitionEntry(competitionId, gymnastId, apparatusId, null);
+        entry2Id = createCompetitionEntry(competitionId, gymnastId, apparatusId, null);
+        unscoredEntryId = createCompetitionEntry(competitionId, gymnastId, apparatusId, null);
+
+        // The setup was written by this node
+        awaitListening();
+        assertThat(scoresChangedEvents.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        scoresChangedEvents.clear();
+    }
+
+    @Test
+    void shouldPublishChangesOfOtherNodeOnce() throws Exception {
+        writeAsOtherNode(other -> {
+            other.update(COMPETITION_ENTRY)
+                    .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.500"))
+                    .where(COMPETITION_ENTRY.ID.in(entry1Id, entry2Id))
+                    .execute();
+            other.update(COMPETITION_ENTRY)
+                    .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.600"))
+                    .where(COMPETITION_ENTRY.ID.eq(entry1Id))
+                    .execute();
+            // Only predictions of scored entries change leaderboards
+            other.insertInto(PREDICTION)
+                    .set(PREDICTION.USER_ID, userId)
+                    .set(PREDICTION.COMPETITION_ENTRY_ID, scoredEntryId)
+                    .set(PREDICTION.PREDICTED_SCORE, new BigDecimal("14.000"))
+                    .execute();
+            other.insertInto(PREDICTION)
+                    .set(PREDICTION.USER_ID, userId)
+                    .set(PREDICTION.COMPETITION_ENTRY_ID, unscoredEntryId)
+                    .set(PREDICTION.PREDICTED_SCORE, new BigDecimal("14.000"))
+                    .execute();
+        });
+
+        var event = scoresChangedEvents.poll(10, TimeUnit.SECONDS);
+        assertThat(event).isNotNull();
+        assertThat(event.competitionEntryIds()).containsExactlyInAnyOrder(entry1Id, entry2Id, scoredEntryId);
+        assertThat(scoresChangedEvents.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void shouldSkipChangesOfThisNode() throws Exception {
+        dsl.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.500"))
+                .where(COMPETITION_ENTRY.ID.eq(entry1Id))
+                .execute();
+        // Notifications are delivered in commit order, the change of this node would arrive first
+        writeAsOtherNode(other -> other.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.500"))
+                .where(COMPETITION_ENTRY.ID.eq(entry2Id))
+                .execute());
+
+        var event = scoresChangedEvents.poll(10, TimeUnit.SECONDS);
+        assertThat(event).isNotNull();
+        assertThat(event.competitionEntryIds()).containsExactly(entry2Id);
+        assertThat(scoresChangedEvents.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void shouldReloadCachesAfterReconnecting() throws Exception {
+        var listenerPid = listenerPid();
+        dsl.fetchValue(DSL.field("pg_terminate_backend({0})", Boolean.class, listenerPid));
+
+        // Changes sent while disconnected are lost, everything is reloaded
+        assertThat(scoresChangedEvents.pollInvalidated(20, TimeUnit.SECONDS)).isNotNull();
+        assertThat(listenerPid()).isNotEqualTo(listenerPid);
+
+        writeAsOtherNode(other -> other.update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal("13.500"))
+                .where(COMPETITION_ENTRY.ID.eq(entry1Id))
+                .execute());
+
+        var event = scoresChangedEvents.poll(10, TimeUnit.SECONDS);
+        assertThat(event).isNotNull();
+        assertThat(event.competitionEntryIds()).containsExactly(entry1Id);
+    }
+
+    @Test
+    void shouldMergeNotificationsOfBatch() {
+        var batch = Batch.of(List.of(
+                new ChangeNotification(Type.SCORE, 10, "node-b"),
+                new ChangeNotification(Type.PREDICTION, 11, "node-b"),
+                new ChangeNotification(Type.SCORE, 10, "node-c"),
+                new ChangeNotification(Type.LEAGUE, 3, "node-b"),
+                new ChangeNotification(Type.LEAGUE, 3, "node-c")));
+
+        assertThat(batch.competitionEntryIds()).containsExactly(10L, 11L);
+        assertThat(batch.competitionsChanged()).isFalse();
+        assertThat(batch.leagueIds()).containsExactly(3L);
+        assertThat(batch.isEmpty()).isFalse();
+    }
+
+    @Test
+    void shouldFlagCompetitionChanges() {
+        var batch = Batch.of(List.of(new ChangeNotification(Type.COMPETITION, 1, "node-b")));
+
+        assertThat(batch.competitionEntryIds()).isEmpty();
+        assertThat(batch.competitionsChanged()).isTrue();
+        assertThat(batch.isEmpty()).isFalse();
+        assertThat(Batch.of(List.of()).isEmpty()).isTrue();
+    }
+
+    /**
+     * Writes in one transaction on a connection of another node.
+     */
+    private void writeAsOtherNode(Consumer<DSLContext> work) throws SQLException {
+        var properties = new Properties();
+        properties.setProperty("user", connectionDetails.getUsername());
+        properties.setProperty("password", connectionDetails.getPassword());
+        properties.setProperty("ApplicationName", "node-b");
+
+        try (var connection = DriverManager.getConnection(connectionDetails.getJdbcUrl(), properties)) {
+            connection.setAutoCommit(false);
+            work.accept(DSL.using(connection, SQLDialect.POSTGRES));
+            connection.commit();
+        }
+    }
+
+    private void awaitListening() throws InterruptedException {
+        for (var attempt = 0; attempt < 100 && listenerPid() == null; attempt++) {
+            Thread.sleep(100);
+        }
+        assertThat(listenerPid()).as("Listener connection").isNotNull();
+    }
+
+    private Integer listenerPid() {
+        return dsl.select(DSL.field("pid", Integer.class))
+                .from(DSL.table("pg_stat_activity"))
+                .where(DSL.field("application_name", String.class).eq(LISTENER_APPLICATION_NAME))
+                .and(DSL.field("query", String.class).startsWith("LISTEN"))
+                .orderBy(DSL.field("backend_start").desc())
+                .limit(1)
+                .fetchOne(DSL.field("pid", Integer.class));
+    }
+
+    private Long createCompetitionEntry(Long competitionId, Long gymnastId, Long apparatusId, BigDecimal actualScore) {
+        return dsl.insertInto(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.COMPETITION_ID, competitionId)
+                .set(COMPETITION_ENTRY.GYMNAST_ID, gymnastId)
+                .set(COMPETITION_ENTRY.APPARATUS_ID, apparatusId)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, actualScore)
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetchOne()
+                .value1();
+    }
+}
@@ -0,0 +1,83 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import com.vaadin.flow.component.UIDetachedException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeaderboardBroadcasterTest {
+
+    @Test
+    void shouldSendCompleteLeaderboardFirst() {
+        var leaderboard = List.of(entry(1L, "alice", 1, 6), entry(2L, "bob", 2, 4));
+
+        var update = LeaderboardBroadcaster.diff(1, null, leaderboard);
+
+        assertThat(update.changedEntries()).isEqualTo(leaderboard);
+        assertThat(update.reordered()).isTrue();
+    }
+
+    @Test
+    void shouldOnlySendChangedEntries() {
+        var previous = List.of(entry(1L, "alice", 1, 6), entry(2L, "bob", 2, 4));
+        var leaderboard = List.of(entry(1L, "alice", 1, 6), entry(2L, "bob", 2, 5));
+
+        var update = LeaderboardBroadcaster.diff(2, previous, leaderboard);
+
+        assertThat(update.version()).isEqualTo(2);
+        assertThat(update.changedEntries()).containsExactly(entry(2L, "bob", 2, 5));
+        assertThat(update.reordered()).isFalse();
+    }
+
+    @Test
+    void shouldDetectChangedPositions() {
+        var previous = List.of(entry(1L, "alice", 1, 6), entry(2L, "bob", 2, 4));
+        var leaderboard = List.of(entry(2L, "bob", 1, 7), entry(1L, "alice", 2, 6));
+
+        var update = LeaderboardBroadcaster.diff(2, previous, leaderboard);
+
+        assertThat(update.changedEntries()).containsExactly(entry(2L, "bob", 1, 7), entry(1L, "alice", 2, 6));
+        assertThat(update.reordered()).isTrue();
+    }
+
+    @Test
+    void shouldRemoveListenersOfDetachedUis() {
+        var broadcaster = new LeaderboardBroadcaster(null, null, Duration.ofSeconds(2));
+        var detachedCalls = new AtomicInteger();
+        var failingCalls = new AtomicInteger();
+        var received = new ArrayList<LeaderboardBroadcaster.Update>();
+        broadcaster.register(_ -> {
+            detachedCalls.incrementAndGet();
+            throw new UIDetachedException();
+        });
+        broadcaster.register(_ -> {
+            failingCalls.incrementAndGet();
+            throw new IllegalStateException("Listener failed");
+        });
+        broadcaster.register(received::add);
+
+        try {
+            var update = LeaderboardBroadcaster.diff(1, null, List.of(entry(1L, "alice", 1, 6)));
+            broadcaster.publish(update);
+            broadcaster.publish(update);
+
+            assertThat(detachedCalls).hasValue(1);
+            assertThat(failingCalls).hasValue(2);
+            assertThat(received).containsExactly(update, update);
+        } finally {
+            broadcaster.shutdown();
+        }
+    }
+
+    private static LeaderboardEntryDto entry(Long userId, String username, int rank, int totalPoints) {
+        return new LeaderboardEntryDto(userId, username, rank, totalPoints, 2, 0, totalPoints / 2.0,
+                RankTrend.STABLE, false);
+    }
+}
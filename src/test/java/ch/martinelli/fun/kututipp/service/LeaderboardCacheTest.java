@@ -0,0 +1,134 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LeaderboardCacheTest {
+
+    private final ScoresVersion scoresVersion = new ScoresVersion();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LeaderboardCache cache = new LeaderboardCache(scoresVersion, 2, meterRegistry);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void shouldShareLeaderboardUntilScoresChange() {
+        var first = cache.get(LeaderboardFilter.empty(), this::load);
+        var second = cache.get(LeaderboardFilter.empty(), this::load);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+
+        scoresVersion.increment();
+        cache.get(LeaderboardFilter.empty(), this::load);
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.getStatistics().hits()).isEqualTo(1);
+        assertThat(cache.getStatistics().misses()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedLeaderboard() {
+        cache.get(LeaderboardFilter.forCompetition(1L), this::load);
+        cache.get(LeaderboardFilter.forCompetition(2L), this::load);
+        cache.get(LeaderboardFilter.forCompetition(1L), this::load);
+        cache.get(LeaderboardFilter.forCompetition(3L), this::load);
+
+        // Competition 2 was evicted, competition 1 is still cached
+        cache.get(LeaderboardFilter.forCompetition(1L), this::load);
+        assertThat(loads).hasValue(3);
+        cache.get(LeaderboardFilter.forCompetition(2L), this::load);
+        assertThat(loads).hasValue(4);
+
+        var statistics = cache.getStatistics();
+        assertThat(statistics.evictions()).isEqualTo(2);
+        assertThat(statistics.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldExportStatisticsAsMetrics() {
+        cache.get(LeaderboardFilter.forCompetition(1L), this::load);
+        cache.get(LeaderboardFilter.forCompetition(1L), this::load);
+        cache.get(LeaderboardFilter.forCompetition(2L), this::load);
+        cache.get(LeaderboardFilter.forCompetition(3L), this::load);
+
+        assertThat(meterRegistry.get("kututipp.leaderboard.cache.hits").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("kututipp.leaderboard.cache.misses").functionCounter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("kututipp.leaderboard.cache.evictions").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("kututipp.leaderboard.cache.size").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldServeWarmedUpLeaderboardsUntilScoresChange() {
+        var filter = LeaderboardFilter.forCompetition(1L);
+        cache.putAll(Map.of(filter, load()), cache.currentVersion());
+        loads.set(0);
+
+        cache.get(filter, this::load);
+        assertThat(loads).hasValue(0);
+
+        scoresVersion.increment();
+        cache.get(filter, this::load);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void shouldKeepLastGoodLeaderboardAfterScoresChange() {
+        var filter = LeaderboardFilter.forCompetition(1L);
+        assertThat(cache.getLastGood(filter)).isEmpty();
+
+        var leaderboard = cache.get(filter, this::load);
+        scoresVersion.increment();
+
+        assertThatThrownBy(() -> cache.get(filter, () -> {
+            throw new IllegalStateException("Query timeout");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.getLastGood(filter)).hasValueSatisfying(lastGood -> {
+            assertThat(lastGood.version()).isLessThan(scoresVersion.current());
+            assertThat(lastGood.entries()).isSameAs(leaderboard);
+            assertThat(lastGood.computedAt()).isNotNull();
+        });
+    }
+
+    @Test
+    void shouldReturnEntriesOfUsersOrderedByRank() {
+        var leaderboard = List.of(
+                new LeaderboardEntryDto(1L, "alice", 1, 9, 3, 3, 3.0, RankTrend.STABLE, false),
+                new LeaderboardEntryDto(2L, "bob", 2, 7, 3, 1, 2.33, RankTrend.STABLE, false),
+                new LeaderboardEntryDto(3L, "carol", 3, 5, 3, 0, 1.67, RankTrend.STABLE, false));
+
+        var entries = cache.getEntries(LeaderboardFilter.forCompetition(1L), new long[]{3, 42, 1}, () -> leaderboard);
+
+        assertThat(entries).extracting(LeaderboardEntryDto::username).containsExactly("alice", "carol");
+        // The cached leaderboard is looked up again
+        assertThat(cache.getEntries(LeaderboardFilter.forCompetition(1L), new long[]{2}, this::load))
+                .extracting(LeaderboardEntryDto::username)
+                .containsExactly("bob");
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void shouldReturnImmutableLeaderboard() {
+        var leaderboard = cache.get(LeaderboardFilter.empty(), this::load);
+
+        assertThatThrownBy(leaderboard::clear).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private List<LeaderboardEntryDto> load() {
+        loads.incrementAndGet();
+        return new ArrayList<>(List.of(
+                new LeaderboardEntryDto(1L, "alice", 1, 6, 2, 2, 3.0, RankTrend.STABLE, false)
+        ));
+    }
+}
@@ -0,0 +1,58 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeaderboardExportServiceTest {
+
+    private static final List<LeaderboardRow> ROWS = List.of(
+            new LeaderboardRow(1L, "alice", 1, 6, 2, 2),
+            new LeaderboardRow(2L, "bob \"the\", builder", 2, 4, 3, 0),
+            new LeaderboardRow(3L, "charlie", 2, 4, 3, 0));
+
+    @Test
+    void shouldWriteCsv() throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        var count = LeaderboardExportService.writeCsv(ROWS.iterator(), out);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                rank,username,total_points,total_predictions,exact_predictions,avg_points\r
+                1,alice,6,2,2,3.00\r
+                2,"bob ""the"", builder",4,3,0,1.33\r
+                2,charlie,4,3,0,1.33\r
+                """);
+    }
+
+    @Test
+    void shouldWriteJson() throws IOException {
+        var out = new ByteArrayOutputStream();
+
+        var count = LeaderboardExportService.writeJson(ROWS.subList(0, 1).iterator(), out);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                [{"rank":1,"username":"alice","total_points":6,"total_predictions":2,\
+                "exact_predictions":2,"avg_points":3.00}]""");
+    }
+
+    @Test
+    void shouldWriteEmptyLeaderboard() throws IOException {
+        var csv = new ByteArrayOutputStream();
+        var json = new ByteArrayOutputStream();
+
+        assertThat(LeaderboardExportService.writeCsv(List.<LeaderboardRow>of().iterator(), csv)).isZero();
+        assertThat(LeaderboardExportService.writeJson(List.<LeaderboardRow>of().iterator(), json)).isZero();
+
+        assertThat(csv.toString(StandardCharsets.UTF_8)).hasLineCount(1);
+        assertThat(json.toString(StandardCharsets.UTF_8)).isEqualTo("[]");
+    }
+}
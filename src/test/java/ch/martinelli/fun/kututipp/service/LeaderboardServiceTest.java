@@ -0,0 +1,41 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Argument checks of the paged leaderboard queries, rejected before any leaderboard is read.
+ */
+class LeaderboardServiceTest {
+
+    private final LeaderboardService leaderboardService = new LeaderboardService(null, null, null, null, new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        leaderboardService.shutdown();
+    }
+
+    @Test
+    void shouldRejectRangesOutOfBounds() {
+        var filter = LeaderboardFilter.empty();
+
+        assertThatThrownBy(() -> leaderboardService.getLeaderboardRange(filter, -1, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Offset must not be negative: -1");
+        assertThatThrownBy(() -> leaderboardService.getLeaderboardRange(filter, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> leaderboardService.getLeaderboardRange(filter, Integer.MAX_VALUE, Integer.MAX_VALUE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Limit " + Integer.MAX_VALUE + " is not between 1 and " + LeaderboardService.MAX_PAGE_SIZE);
+        assertThatThrownBy(() -> leaderboardService.getLeaderboardPage(filter, null, LeaderboardService.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> leaderboardService.getLeaderboardAroundUser(filter, 1L, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> leaderboardService.getLeaderboardAroundUser(filter, 1L, LeaderboardService.MAX_PAGE_SIZE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,61 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.RankTrend;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LeagueServiceTest {
+
+    @Test
+    void shouldRankMembersWithinLeague() {
+        // alice and carol are not members
+        var memberEntries = List.of(
+                entry(2L, "bob", 2, 7),
+                entry(4L, "dave", 4, 3));
+
+        var entries = LeagueService.rankMembers(memberEntries);
+
+        assertThat(entries)
+                .extracting(LeaderboardEntryDto::username, LeaderboardEntryDto::rank, LeaderboardEntryDto::totalPoints)
+                .containsExactly(tuple("bob", 1, 7), tuple("dave", 2, 3));
+    }
+
+    @Test
+    void shouldKeepTiesOfLeaderboard() {
+        // bob is not a member
+        var memberEntries = List.of(
+                entry(1L, "alice", 1, 9),
+                entry(3L, "carol", 2, 7),
+                entry(4L, "dave", 2, 7),
+                entry(5L, "eve", 5, 3));
+
+        var entries = LeagueService.rankMembers(memberEntries);
+
+        assertThat(entries)
+                .extracting(LeaderboardEntryDto::username, LeaderboardEntryDto::rank)
+                .containsExactly(tuple("alice", 1), tuple("carol", 2), tuple("dave", 2), tuple("eve", 4));
+    }
+
+    @Test
+    void shouldStartTiedMembersAtFirstLeagueRank() {
+        // alice is not a member
+        var memberEntries = List.of(
+                entry(2L, "bob", 2, 7),
+                entry(3L, "carol", 2, 7));
+
+        var entries = LeagueService.rankMembers(memberEntries);
+
+        assertThat(entries).extracting(LeaderboardEntryDto::rank).containsExactly(1, 1);
+        assertThat(LeagueService.rankMembers(List.of())).isEmpty();
+    }
+
+    private static LeaderboardEntryDto entry(Long userId, String username, int rank, int totalPoints) {
+        return new LeaderboardEntryDto(userId, username, rank, totalPoints, 3, 0, totalPoints / 3.0,
+                RankTrend.UP, false);
+    }
+}
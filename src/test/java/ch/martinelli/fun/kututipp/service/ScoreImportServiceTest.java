@@ -0,0 +1,83 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.dto.ScoreImportRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ScoreImportServiceTest {
+
+    @Test
+    void shouldParseCommaSeparatedRows() {
+        var rows = ScoreImportService.parse(new StringReader("""
+                Gymnast,Apparatus,Score
+                Max Müller,Pommel Horse,14.500
+                "Müller, Anna",Vault,13.85
+
+                Luca Rossi,Floor,20
+                """));
+
+        assertThat(rows)
+                .extracting(ScoreImportRow::lineNumber, ScoreImportRow::gymnastName, ScoreImportRow::apparatusName,
+                        ScoreImportRow::actualScore)
+                .containsExactly(
+                        tuple(2, "Max Müller", "Pommel Horse", new BigDecimal("14.500")),
+                        tuple(3, "Müller, Anna", "Vault", new BigDecimal("13.85")),
+                        tuple(5, "Luca Rossi", "Floor", new BigDecimal("20")));
+    }
+
+    @Test
+    void shouldParseSemicolonSeparatedRowsWithDecimalComma() {
+        var rows = ScoreImportService.parse(new StringReader("\uFEFFgymnast;apparatus;score\r\nMax Müller;Rings;13,9\r\n"));
+
+        assertThat(rows)
+                .extracting(ScoreImportRow::gymnastName, ScoreImportRow::apparatusName, ScoreImportRow::actualScore)
+                .containsExactly(tuple("Max Müller", "Rings", new BigDecimal("13.9")));
+    }
+
+    @Test
+    void shouldReportAllInvalidRows() {
+        var csv = """
+                gymnast,apparatus,score
+                Max Müller,Pommel Horse,20.001
+                Max Müller,Rings,-1
+                Max Müller,Floor,
+                Max Müller,Vault,abc
+                Max Müller,Parallel Bars,13.1234
+                Max Müller,High Bar
+                ,High Bar,13.5
+                Luca Rossi,Floor,13.5
+                luca rossi,FLOOR,13.6
+                """;
+
+        assertThatThrownBy(() -> ScoreImportService.parse(new StringReader(csv)))
+                .isInstanceOfSatisfying(ScoreImportService.ScoreImportException.class, e ->
+                        assertThat(e.getErrors()).containsExactly(
+                                "Line 2: Score must be between 0.000 and 20.000",
+                                "Line 3: Score must be between 0.000 and 20.000",
+                                "Line 4: Score is required",
+                                "Line 5: Invalid score abc",
+                                "Line 6: Score must not have more than 3 decimal places",
+                                "Line 7: Expected 3 values, found 2",
+                                "Line 8: Gymnast and apparatus are required",
+                                "Line 10: Duplicate of line 9"));
+    }
+
+    @Test
+    void shouldRejectUnknownHeader() {
+        assertThatThrownBy(() -> ScoreImportService.parse(new StringReader("name,score\nMax Müller,14.5\n")))
+                .isInstanceOf(ScoreImportService.ScoreImportException.class)
+                .hasMessage("The header must be gymnast,apparatus,score");
+    }
+
+    @Test
+    void shouldSplitQuotedValues() {
+        assertThat(ScoreImportService.split("\"a \"\"b\"\", c\", d ,", ','))
+                .containsExactly("a \"b\", c", "d", "");
+    }
+}
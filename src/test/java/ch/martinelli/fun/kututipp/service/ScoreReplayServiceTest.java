@@ -0,0 +1,168 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import ch.martinelli.fun.kututipp.db.enums.UserRole;
+import ch.martinelli.fun.kututipp.dto.LeaderboardEntryDto;
+import ch.martinelli.fun.kututipp.dto.ScoreEventDto;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Properties;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * The scores are written by concurrent transactions on their own connections, so the test is not transactional.
+ * They are written as this node, the change notifications of the writes are skipped.
+ */
+@SpringBootTest(properties = "kututipp.cluster.node-id=node-a")
+@Import(TestcontainersConfiguration.class)
+class ScoreReplayServiceTest {
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private JdbcConnectionDetails connectionDetails;
+
+    @Autowired
+    private ScoreReplayService scoreReplayService;
+
+    private Long competitionId;
+    private Long entry1Id;
+    private Long entry2Id;
+
+    @BeforeEach
+    void setUp() {
+        dsl.deleteFrom(PREDICTION).execute();
+        dsl.deleteFrom(COMPETITION_ENTRY).execute();
+        dsl.deleteFrom(COMPETITION).execute();
+        dsl.deleteFrom(GYMNAST).execute();
+        dsl.deleteFrom(APPARATUS).execute();
+        dsl.deleteFrom(APP_USER).execute();
+
+        competitionId = dsl.insertInto(COMPETITION)
+                .set(COMPETITION.NAME, "Swiss Cup Final 2025")
+                .set(COMPETITION.DATE, OffsetDateTime.now())
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .returningResult(COMPETITION.ID)
+                .fetchOne()
+                .value1();
+        var gymnastId = dsl.insertInto(GYMNAST)
+                .set(GYMNAST.NAME, "John Doe")
+                .set(GYMNAST.TEAM_NAME, "Team A")
+                .set(GYMNAST.GENDER, GenderType.M)
+                .returningResult(GYMNAST.ID)
+                .fetchOne()
+                .value1();
+        var apparatusId = dsl.insertInto(APPARATUS)
+                .set(APPARATUS.NAME, "Floor")
+                .set(APPARATUS.GENDER, GenderType.M)
+                .returningResult(APPARATUS.ID)
+                .fetchOne()
+                .value1();
+        var userId = dsl.insertInto(APP_USER)
+                .set(APP_USER.USERNAME, "alice")
+                .set(APP_USER.EMAIL, "alice@example.com")
+                .set(APP_USER.PASSWORD_HASH, "dummy_hash")
+                .set(APP_USER.ROLE, UserRole.USER)
+                .returningResult(APP_USER.ID)
+                .fetchOne()
+                .value1();
+
+        entry1Id = createCompetitionEntry(gymnastId, apparatusId);
+        entry2Id = createCompetitionEntry(gymnastId, apparatusId);
+        createPrediction(userId, entry1Id, "14.000");
+        createPrediction(userId, entry2Id, "13.000");
+
+        scoreReplayService.reload();
+    }
+
+    @Test
+    void shouldAppendEventsCommittedAfterEventsWithHigherId() throws SQLException {
+        assertThat(scoreReplayService.getEvents(competitionId)).isEmpty();
+
+        try (var first = connect(); var second = connect()) {
+            // The first transaction writes the event with the lower ID, but commits last
+            updateActualScore(first, entry1Id, "14.000");
+            updateActualScore(second, entry2Id, "13.000");
+            second.commit();
+            scoreReplayService.onScoresChanged(new ScoresChangedEvent(List.of(entry2Id)));
+
+            assertThat(scoreReplayService.getEvents(competitionId))
+                    .extracting(ScoreEventDto::competitionEntryId)
+                    .containsExactly(entry2Id);
+
+            first.commit();
+            scoreReplayService.onScoresChanged(new ScoresChangedEvent(List.of(entry1Id)));
+        }
+
+        var events = scoreReplayService.getEvents(competitionId);
+        assertThat(events).extracting(ScoreEventDto::competitionEntryId).containsExactly(entry2Id, entry1Id);
+        assertThat(events.get(1).id()).isLessThan(events.get(0).id());
+        assertThat(scoreReplayService.getStandings(competitionId, events.size()))
+                .extracting(LeaderboardEntryDto::username, LeaderboardEntryDto::totalPoints, LeaderboardEntryDto::totalPredictions)
+                .containsExactly(tuple("alice", 6, 2));
+
+        // Events that have already been appended are not appended again
+        scoreReplayService.onScoresChanged(new ScoresChangedEvent(List.of(entry1Id, entry2Id)));
+        assertThat(scoreReplayService.getEvents(competitionId)).hasSize(2);
+    }
+
+    /**
+     * Opens a connection of this node with a transaction.
+     */
+    private Connection connect() throws SQLException {
+        var properties = new Properties();
+        properties.setProperty("user", connectionDetails.getUsername());
+        properties.setProperty("password", connectionDetails.getPassword());
+        properties.setProperty("ApplicationName", "node-a");
+
+        var connection = DriverManager.getConnection(connectionDetails.getJdbcUrl(), properties);
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    private static void updateActualScore(Connection connection, Long entryId, String actualScore) {
+        DSL.using(connection, SQLDialect.POSTGRES)
+                .update(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, new BigDecimal(actualScore))
+                .where(COMPETITION_ENTRY.ID.eq(entryId))
+                .execute();
+    }
+
+    private Long createCompetitionEntry(Long gymnastId, Long apparatusId) {
+        return dsl.insertInto(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.COMPETITION_ID, competitionId)
+                .set(COMPETITION_ENTRY.GYMNAST_ID, gymnastId)
+                .set(COMPETITION_ENTRY.APPARATUS_ID, apparatusId)
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetchOne()
+                .value1();
+    }
+
+    private void createPrediction(Long userId, Long entryId, String predictedScore) {
+        dsl.insertInto(PREDICTION)
+                .set(PREDICTION.USER_ID, userId)
+                .set(PREDICTION.COMPETITION_ENTRY_ID, entryId)
+                .set(PREDICTION.PREDICTED_SCORE, new BigDecimal(predictedScore))
+                .execute();
+    }
+}
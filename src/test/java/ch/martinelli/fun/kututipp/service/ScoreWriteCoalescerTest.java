@@ -0,0 +1,124 @@
+package ch.martinelli.fun.kututipp.service;
+
+import ch.martinelli.fun.kututipp.TestcontainersConfiguration;
+import ch.martinelli.fun.kututipp.db.enums.CompetitionStatus;
+import ch.martinelli.fun.kututipp.db.enums.GenderType;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+import static ch.martinelli.fun.kututipp.db.Tables.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+// The batches are flushed by the test, in the test transaction
+@SpringBootTest(properties = "kututipp.scores.write-window=1h")
+@Import(TestcontainersConfiguration.class)
+@Transactional
+@RecordApplicationEvents
+class ScoreWriteCoalescerTest {
+
+    @Autowired
+    private DSLContext dsl;
+
+    @Autowired
+    private ScoreWriteCoalescer scoreWriteCoalescer;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    private Long floorEntryId;
+    private Long ringsEntryId;
+    private Long vaultEntryId;
+
+    @BeforeEach
+    void setUp() {
+        dsl.deleteFrom(COMPETITION).execute();
+        dsl.deleteFrom(GYMNAST).execute();
+        dsl.deleteFrom(APPARATUS).execute();
+
+        var competitionId = dsl.insertInto(COMPETITION)
+                .set(COMPETITION.NAME, "Swiss Cup Final 2025")
+                .set(COMPETITION.DATE, OffsetDateTime.now())
+                .set(COMPETITION.STATUS, CompetitionStatus.live)
+                .returningResult(COMPETITION.ID)
+                .fetchOne()
+                .value1();
+        var gymnastId = dsl.insertInto(GYMNAST)
+                .set(GYMNAST.NAME, "Max Müller")
+                .set(GYMNAST.TEAM_NAME, "TV Wil")
+                .set(GYMNAST.GENDER, GenderType.M)
+                .returningResult(GYMNAST.ID)
+                .fetchOne()
+                .value1();
+
+        floorEntryId = insertEntry(competitionId, gymnastId, "Floor", null);
+        ringsEntryId = insertEntry(competitionId, gymnastId, "Rings", new BigDecimal("13.900"));
+        vaultEntryId = insertEntry(competitionId, gymnastId, "Vault", new BigDecimal("14.100"));
+    }
+
+    @Test
+    void shouldWriteLastEditOfEachEntryInOneBatch() {
+        var typo = scoreWriteCoalescer.submit(floorEntryId, new BigDecimal("1.45"));
+        var corrected = scoreWriteCoalescer.submit(floorEntryId, new BigDecimal("14.5"));
+        var unchanged = scoreWriteCoalescer.submit(ringsEntryId, new BigDecimal("13.9"));
+        var removed = scoreWriteCoalescer.submit(vaultEntryId, null);
+
+        scoreWriteCoalescer.flush();
+
+        assertThat(dsl.select(COMPETITION_ENTRY.ID, COMPETITION_ENTRY.ACTUAL_SCORE)
+                .from(COMPETITION_ENTRY)
+                .fetchMap(COMPETITION_ENTRY.ID, COMPETITION_ENTRY.ACTUAL_SCORE))
+                .containsOnly(
+                        entry(floorEntryId, new BigDecimal("14.500")),
+                        entry(ringsEntryId, new BigDecimal("13.900")),
+                        entry(vaultEntryId, null));
+        assertThat(applicationEvents.stream(ScoresChangedEvent.class))
+                .singleElement()
+                .satisfies(event -> assertThat(event.competitionEntryIds())
+                        .containsExactlyInAnyOrder(floorEntryId, vaultEntryId));
+        assertThat(typo).isSameAs(corrected).isCompleted();
+        assertThat(unchanged).isCompleted();
+        assertThat(removed).isCompleted();
+    }
+
+    @Test
+    void shouldRejectInvalidScore() {
+        assertThatThrownBy(() -> scoreWriteCoalescer.submit(floorEntryId, new BigDecimal("20.001")))
+                .isInstanceOf(ScoreService.ScoreValidationException.class);
+        assertThatThrownBy(() -> scoreWriteCoalescer.submit(floorEntryId, new BigDecimal("14.5001")))
+                .isInstanceOf(ScoreService.ScoreValidationException.class)
+                .hasMessage("Score must not have more than 3 decimal places");
+
+        scoreWriteCoalescer.flush();
+
+        assertThat(applicationEvents.stream(ScoresChangedEvent.class)).isEmpty();
+    }
+
+    private Long insertEntry(Long competitionId, Long gymnastId, String apparatus, BigDecimal actualScore) {
+        var apparatusId = dsl.insertInto(APPARATUS)
+                .set(APPARATUS.NAME, apparatus)
+                .set(APPARATUS.GENDER, GenderType.M)
+                .returningResult(APPARATUS.ID)
+                .fetchOne()
+                .value1();
+        return dsl.insertInto(COMPETITION_ENTRY)
+                .set(COMPETITION_ENTRY.COMPETITION_ID, competitionId)
+                .set(COMPETITION_ENTRY.GYMNAST_ID, gymnastId)
+                .set(COMPETITION_ENTRY.APPARATUS_ID, apparatusId)
+                .set(COMPETITION_ENTRY.ACTUAL_SCORE, actualScore)
+                .returningResult(COMPETITION_ENTRY.ID)
+                .fetchOne()
+                .value1();
+    }
+}